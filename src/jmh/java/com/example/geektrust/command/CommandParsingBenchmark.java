@@ -0,0 +1,61 @@
+package com.example.geektrust.command;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing cost of {@link CommandBinding#toExecutable(CharSequence)} per
+ * command, throughput and latency percentiles.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandParsingBenchmark {
+    @Param({ "ALLOCATE", "SIP", "CHANGE", "BALANCE", "REBALANCE", "INVALID" })
+    public String command;
+
+    private CharSequence line;
+
+    @Setup
+    public void setUp() {
+        switch (this.command) {
+        case "ALLOCATE":
+            this.line = "ALLOCATE 6000 3000 1000";
+            break;
+        case "SIP":
+            this.line = "SIP 2000 1000 500";
+            break;
+        case "CHANGE":
+            this.line = "CHANGE 12.50% -3.00% 7.00% DECEMBER";
+            break;
+        case "BALANCE":
+            this.line = "BALANCE SEPTEMBER";
+            break;
+        case "REBALANCE":
+            this.line = "REBALANCE";
+            break;
+        default:
+            this.line = "CHANGE 12.50% -3.00% 7.00% SOMEDAY";
+        }
+    }
+
+    @Benchmark
+    public Optional<ExecutablePortfolioCommand> toExecutable() {
+        return CommandBinding.toExecutable(this.line);
+    }
+}
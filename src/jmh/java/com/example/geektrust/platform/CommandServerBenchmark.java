@@ -0,0 +1,109 @@
+package com.example.geektrust.platform;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+/**
+ * Pipelined BALANCE round trips over loopback through a {@link CommandServer},
+ * {@value #PIPELINED} lines written at once on one of {@code connections}
+ * connections then their outputs read back, timed per line.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandServerBenchmark {
+    private static final int PIPELINED = 64;
+
+    @Param({ "1", "1000" })
+    public int connections;
+
+    private MultiTenantPlatform platform;
+    private CommandServer server;
+    private Socket[] sockets;
+    private BufferedReader[] readers;
+    private byte[][] requests; // by connection
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.platform = MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                Runtime.getRuntime().availableProcessors(),
+                Optional::empty,
+                Optional.empty());
+        this.server = CommandServer.open(this.platform, new InetSocketAddress("127.0.0.1", 0));
+        int port = this.server.getLocalAddress().getPort();
+
+        this.sockets = new Socket[this.connections];
+        this.readers = new BufferedReader[this.connections];
+        this.requests = new byte[this.connections][];
+        for (int i = 0; i < this.connections; i++) {
+            this.sockets[i] = new Socket("127.0.0.1", port);
+            this.readers[i] = new BufferedReader(
+                    new InputStreamReader(this.sockets[i].getInputStream(), StandardCharsets.US_ASCII));
+            String tenant = "t" + i;
+            send(i, (tenant + " ALLOCATE 6000 3000 1000\n" + tenant + " CHANGE 4.00% 10.00% 2.00% JANUARY\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+
+            StringBuilder lines = new StringBuilder();
+            for (int line = 0; line < PIPELINED; line++)
+                lines.append(tenant).append(" BALANCE JANUARY\n");
+            this.requests[i] = lines.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        for (Socket socket : this.sockets)
+            socket.close();
+        this.server.close();
+        this.platform.shutDown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINED)
+    public int pipelinedBalance() throws IOException {
+        int connection = this.next;
+        this.next = (this.next + 1) % this.connections;
+        send(connection, this.requests[connection]);
+        int length = 0;
+        for (int line = 0; line < PIPELINED; line++)
+            length += this.readers[connection].readLine().length();
+        return length;
+    }
+
+    private void send(int connection, byte[] lines) throws IOException {
+        OutputStream out = this.sockets[connection].getOutputStream();
+        out.write(lines);
+        out.flush();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.geektrust.portfolio;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Balance lookups over portfolios with a long transaction history, cycling the
+ * month and the portfolio on every call.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BalanceBenchmark {
+    private static final Month[] MONTHS = Month.values();
+
+    @Param({ "1", "10", "100" })
+    public int years;
+
+    @Param({ "1", "64" })
+    public int portfolios;
+
+    private PortfolioManager[] portfolio;
+    private Fund[] funds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.portfolio = BenchmarkPortfolios.withHistory(this.portfolios, this.years, 42L);
+        this.funds = new Fund[this.portfolios];
+        for (int i = 0; i < this.portfolios; i++) {
+            Fund fund = new Fund(FundType.EQUITY);
+            fund.initialise(Money.ofWhole(6000), YearMonth.of(2000, Month.JANUARY));
+            for (int month = 0; month < this.years * 12; month++) {
+                int monthIndex = fund.lastMonth() + (month == 0 ? 0 : 1);
+                fund.doTransaction(monthIndex, TransactionEvent.MONTHLY_CHANGE, Money.ofWhole(10));
+                fund.doTransaction(monthIndex, TransactionEvent.MONTHLY_SIP, Money.ofWhole(100));
+            }
+            this.funds[i] = fund;
+        }
+    }
+
+    @Benchmark
+    public Optional<Map<FundType, BigDecimal>> calculateBalance() {
+        int call = this.next++;
+        return this.portfolio[call % this.portfolios].calculateBalance(MONTHS[call % 12]);
+    }
+
+    @Benchmark
+    public Optional<BigDecimal> fundBalanceOf() {
+        int call = this.next++;
+        return this.funds[call % this.portfolios].balanceOf(MONTHS[call % 12]);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.geektrust.portfolio;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Builds portfolios with a given length of transaction history for the
+ * benchmarks.
+ */
+final class BenchmarkPortfolios {
+    private static final Month[] MONTHS = Month.values();
+    private static final FundType[] TYPES = FundType.values();
+
+    private BenchmarkPortfolios() {
+    }
+
+    /**
+     * @return portfolios with {@code years} of monthly changes from January,
+     *         ending with the December change and rebalance.
+     */
+    static PortfolioManager[] withHistory(int count, int years, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        PortfolioManager[] portfolios = new PortfolioManager[count];
+        for (int i = 0; i < count; i++) {
+            PortfolioManager portfolio = new PortfolioManager(Arrays.asList(TYPES));
+            for (FundType type : TYPES)
+                portfolio.allocate(type, BigDecimal.valueOf(1000 + random.nextInt(9000)));
+            Map<FundType, BigDecimal> sip = new FundTypeMap<>();
+            for (FundType type : TYPES)
+                sip.put(type, BigDecimal.valueOf(random.nextInt(1000)));
+            portfolio.setSip(sip);
+
+            for (int month = 0; month < years * 12; month++)
+                advance(portfolio, MONTHS[month % 12], random);
+            portfolios[i] = portfolio;
+        }
+        return portfolios;
+    }
+
+    /**
+     * Apply a random change for the month, and rebalance in the compulsory
+     * months.
+     */
+    static void advance(PortfolioManager portfolio, Month month, SplittableRandom random) {
+        portfolio.applyMonthlyChange(month, randomChange(random));
+        if (PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month))
+            portfolio.rebalance();
+    }
+
+    static Map<FundType, BigDecimal> randomChange(SplittableRandom random) {
+        Map<FundType, BigDecimal> change = new FundTypeMap<>();
+        for (FundType type : TYPES)
+            change.put(type, BigDecimal.valueOf(random.nextInt(-200, 300), 2)); // -2.00% .. 2.99%
+        return change;
+    }
+}
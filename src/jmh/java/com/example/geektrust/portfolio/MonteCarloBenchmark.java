@@ -0,0 +1,56 @@
+package com.example.geektrust.portfolio;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Monte Carlo projection of a year over {@code paths} paths on all cores.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MonteCarloBenchmark {
+    @Param({ "100000", "1000000" })
+    public long paths;
+
+    private MonteCarloProjection projection;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PortfolioManager portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        portfolio.allocate(FundType.EQUITY, BigDecimal.valueOf(6000));
+        portfolio.allocate(FundType.DEBT, BigDecimal.valueOf(3000));
+        portfolio.allocate(FundType.GOLD, BigDecimal.valueOf(1000));
+        portfolio.setSip(Map.of(FundType.EQUITY, BigDecimal.valueOf(2000), FundType.DEBT, BigDecimal.valueOf(1000),
+                FundType.GOLD, BigDecimal.valueOf(500)));
+        this.projection = MonteCarloProjection.of(portfolio, Map.of(
+                FundType.EQUITY, ReturnDistribution.normal(1, 5),
+                FundType.DEBT, ReturnDistribution.normal(0.5, 1),
+                FundType.GOLD, ReturnDistribution.uniform(-2, 3)));
+    }
+
+    @Benchmark
+    public double projectYear() {
+        return this.projection.run(12, this.paths, this.seed++, Runtime.getRuntime().availableProcessors())
+                .percentile(11, 50);
+    }
+}
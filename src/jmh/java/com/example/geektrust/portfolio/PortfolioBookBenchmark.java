@@ -0,0 +1,74 @@
+package com.example.geektrust.portfolio;
+
+import java.time.Month;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Market wide monthly change and rebalance over a {@link PortfolioBook}, the
+ * time of a call is the time to update every portfolio of the book.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PortfolioBookBenchmark {
+    private static final Month[] MONTHS = Month.values();
+
+    @Param({ "1000", "1000000" })
+    public int portfolios;
+
+    private PortfolioBook book;
+    private double[][] changes; // alternating gains and losses keep the balances stable
+    private int month;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int funds = FundType.count();
+        SplittableRandom random = new SplittableRandom(42L);
+        this.book = new PortfolioBook(this.portfolios);
+        for (int i = 0; i < this.portfolios; i++) {
+            double[] allocation = new double[funds];
+            double[] sip = new double[funds];
+            for (int fund = 0; fund < funds; fund++) {
+                allocation[fund] = 1000 + random.nextInt(9000);
+                sip[fund] = random.nextInt(3000);
+            }
+            this.book.add(allocation, sip);
+        }
+
+        this.changes = new double[2][funds];
+        for (int fund = 0; fund < funds; fund++) {
+            this.changes[0][fund] = 4d;
+            this.changes[1][fund] = -4d;
+        }
+    }
+
+    @Benchmark
+    public boolean applyMonthlyChange() {
+        Month next = MONTHS[this.month];
+        this.month = (this.month + 1) % 12;
+        return this.book.applyMonthlyChange(next, this.changes[this.month & 1]);
+    }
+
+    @Benchmark
+    public int changeAndRebalance() {
+        applyMonthlyChange();
+        return this.book.rebalance();
+    }
+}
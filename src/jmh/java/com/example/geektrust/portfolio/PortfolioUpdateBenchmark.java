@@ -0,0 +1,102 @@
+package com.example.geektrust.portfolio;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Monthly change and rebalance, both append to the history on every call.
+ * <p>
+ * Measured as fixed size batches on portfolios rebuilt before every iteration,
+ * so the history stays close to the requested length. The iteration times give
+ * the latency distribution of a batch.
+ * <p>
+ * A rebalance needs a change in June or December that is not rebalanced yet,
+ * so every rebalance is timed on a fork of a portfolio changed in June. The
+ * fork shares the history, and is taken before the call.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = PortfolioUpdateBenchmark.BATCH_SIZE)
+@Measurement(iterations = 30, batchSize = PortfolioUpdateBenchmark.BATCH_SIZE)
+@Fork(1)
+@State(Scope.Thread)
+public class PortfolioUpdateBenchmark {
+    // one year of months for a hundred portfolios
+    static final int BATCH_SIZE = 1200;
+    private static final Month[] MONTHS = Month.values();
+
+    @Param({ "1", "10", "100" })
+    public int years;
+
+    @Param({ "1", "64" })
+    public int portfolios;
+
+    private PortfolioManager[] portfolio;
+    private int[] nextMonth;
+    private Map<FundType, BigDecimal> change;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.portfolio = BenchmarkPortfolios.withHistory(this.portfolios, this.years, 42L);
+        this.nextMonth = new int[this.portfolios]; // January after the last December
+        this.change = BenchmarkPortfolios.randomChange(new SplittableRandom(7L));
+        this.next = 0;
+    }
+
+    @Benchmark
+    public void applyMonthlyChange() {
+        int index = this.next++ % this.portfolios;
+        // without rebalance, the months after June and December are opened without
+        // the SIP
+        this.portfolio[index].applyMonthlyChange(MONTHS[this.nextMonth[index]], this.change);
+        this.nextMonth[index] = (this.nextMonth[index] + 1) % 12;
+    }
+
+    @Benchmark
+    public Optional<Map<FundType, BigDecimal>> rebalance(ChangedInJune changed) {
+        return changed.fork.rebalance();
+    }
+
+    @State(Scope.Thread)
+    public static class ChangedInJune {
+        private PortfolioManager[] portfolio;
+        private PortfolioManager fork;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(PortfolioUpdateBenchmark benchmark) {
+            this.portfolio = BenchmarkPortfolios.withHistory(benchmark.portfolios, benchmark.years, 42L);
+            SplittableRandom random = new SplittableRandom(7L);
+            for (PortfolioManager changed : this.portfolio) {
+                // the last change is in December, change until June without the rebalance
+                for (int month = 0; month < Month.JUNE.ordinal(); month++)
+                    BenchmarkPortfolios.advance(changed, MONTHS[month], random);
+                changed.applyMonthlyChange(Month.JUNE, BenchmarkPortfolios.randomChange(random));
+            }
+            this.next = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void fork() {
+            this.fork = this.portfolio[this.next++ % this.portfolio.length].fork();
+        }
+    }
+}
@@ -2,27 +2,268 @@ package com.example.geektrust;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import javax.management.JMException;
+
+import com.example.geektrust.command.CommandMetrics;
+import com.example.geektrust.command.RecordingCommandMetrics;
+import com.example.geektrust.platform.BatchReplay;
+import com.example.geektrust.platform.BufferedOutputReporter;
+import com.example.geektrust.platform.CommandServer;
+import com.example.geektrust.platform.HttpQueryServer;
+import com.example.geektrust.platform.InputCommandProvider;
 import com.example.geektrust.platform.InputStreamCommandProvider;
+import com.example.geektrust.platform.JournaledCommandProvider;
+import com.example.geektrust.platform.MappedFileCommandProvider;
+import com.example.geektrust.platform.MultiTenantPlatform;
 import com.example.geektrust.platform.MyMoneyPlatform;
+import com.example.geektrust.platform.WorkloadGenerator;
 import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.HistoryRetention;
 import com.example.geektrust.portfolio.PortfolioManager;
+import com.example.geektrust.portfolio.TransactionJournal;
 
 public class Main {
+    // input lines are prefixed with the portfolio id, see MultiTenantPlatform.
+    // optionally followed by a snapshot directory restored before the input and
+    // written after it
+    private static final String MULTI_TENANT_OPTION = "--multi-tenant";
+    // input directory or manifest, optionally followed by the output directory
+    private static final String BATCH_OPTION = "--batch";
+    // line count, optionally followed by the tenant count, seed and invalid fraction
+    private static final String GENERATE_OPTION = "--generate";
+    // journal file followed by the input file, the portfolio is recovered first and
+    // the input lines already applied are skipped
+    private static final String JOURNAL_OPTION = "--journal";
+    private static final int JOURNAL_GROUP_SIZE = 64;
+    // input file read, parsed and executed on separate threads
+    private static final String PIPELINED_OPTION = "--pipelined";
+    // TCP port serving the multi-tenant line protocol until the process stops,
+    // optionally followed by the port of the HTTP query API
+    private static final String SERVE_OPTION = "--serve";
+    // comma separated fund types in column order, EQUITY,DEBT,GOLD by default
+    private static final String FUND_TYPES_PROPERTY = "mymoney.funds";
+    // seconds between command metrics reports on the standard error, the
+    // metrics are also registered with JMX. No metrics if not set.
+    private static final String METRICS_PROPERTY = "mymoney.metrics";
+    // months of history kept record by record by the multi-tenant platforms,
+    // earlier months are compacted in the background. Nothing compacted if not set.
+    private static final String RETENTION_PROPERTY = "mymoney.retention";
+    private static final Duration COMPACTION_PERIOD = Duration.ofMinutes(1);
+
+    private static CommandMetrics commandMetrics = CommandMetrics.NONE;
+
     public static void main(String[] args) {
-        // Sample code to read from file passed as command line argument
+        String fundTypes = System.getProperty(FUND_TYPES_PROPERTY);
+        if (fundTypes != null)
+            FundType.configure(fundTypes.trim().split("\\s*,\\s*"));
+
+        String metricsPeriod = System.getProperty(METRICS_PROPERTY);
+        if (metricsPeriod == null) {
+            exit(run(args));
+            return;
+        }
+        RecordingCommandMetrics metrics = new RecordingCommandMetrics();
+        try {
+            metrics.registerPlatformMBean();
+        } catch (JMException e) {
+            System.err.println("command metrics not registered with JMX: " + e);
+        }
+        metrics.startReporting(Duration.ofSeconds(Long.parseLong(metricsPeriod.trim())), System.err::println);
+        commandMetrics = metrics;
+        int status;
         try {
-            // the file to be opened for reading
-            FileInputStream fis = new FileInputStream(args[0]);
+            status = run(args);
+        } finally {
+            metrics.stopReporting();
+            System.err.println(metrics.getReport());
+        }
+        exit(status);
+    }
+
+    private static void exit(int status) {
+        if (status != 0)
+            System.exit(status);
+    }
+
+    /**
+     * @return exit status, zero on success.
+     */
+    private static int run(String[] args) {
+        if (args.length > 1 && MULTI_TENANT_OPTION.equals(args[0])) {
+            runMultiTenant(args[1], args.length > 2 ? Optional.of(args[2]) : Optional.empty());
+            return 0;
+        }
+        if (args.length > 1 && BATCH_OPTION.equals(args[0])) {
+            return runBatch(args[1], args.length > 2 ? Optional.of(args[2]) : Optional.empty());
+        }
+        if (args.length > 2 && JOURNAL_OPTION.equals(args[0])) {
+            runJournaled(args[1], args[2]);
+            return 0;
+        }
+        if (args.length > 1 && PIPELINED_OPTION.equals(args[0])) {
+            runPipelined(args[1]);
+            return 0;
+        }
+        if (args.length > 1 && SERVE_OPTION.equals(args[0])) {
+            Optional<Integer> httpPort = args.length > 2 ? Optional.of(Integer.parseInt(args[2])) : Optional.empty();
+            serve(Integer.parseInt(args[1]), httpPort);
+            return 0;
+        }
+        if (args.length > 1 && GENERATE_OPTION.equals(args[0])) {
+            generate(args);
+            return 0;
+        }
+
+        // Sample code to read from file passed as command line argument
+        try (InputCommandProvider input = open(args[0]);
+                BufferedOutputReporter output = BufferedOutputReporter.toStandardOutput()) {
             MyMoneyPlatform platform = MyMoneyPlatform.of(
                     new PortfolioManager(Arrays.asList(FundType.values())),
-                    new InputStreamCommandProvider(fis),
-                    Optional.of(System.out::println));
+                    input,
+                    Optional.of(output));
+            platform.setCommandMetrics(commandMetrics);
+            platform.start();
+            platform.shutDown();
+        } catch (IOException e) {
+        }
+        return 0;
+    }
+
+    private static void runJournaled(String journalFile, String file) {
+        PortfolioManager portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        try (TransactionJournal journal = TransactionJournal.open(Paths.get(journalFile), portfolio,
+                JOURNAL_GROUP_SIZE);
+                InputCommandProvider input = JournaledCommandProvider.of(open(file), journal);
+                BufferedOutputReporter output = BufferedOutputReporter.toStandardOutput()) {
+            MyMoneyPlatform platform = MyMoneyPlatform.of(portfolio, input, Optional.of(output));
+            platform.setCommandMetrics(commandMetrics);
             platform.start();
             platform.shutDown();
         } catch (IOException e) {
         }
     }
-}
\ No newline at end of file
+
+    private static void runPipelined(String file) {
+        try (InputCommandProvider input = open(file);
+                BufferedOutputReporter output = BufferedOutputReporter.toStandardOutput()) {
+            MyMoneyPlatform platform = MyMoneyPlatform.pipelined(
+                    new PortfolioManager(Arrays.asList(FundType.values())),
+                    input,
+                    Optional.of(output),
+                    MyMoneyPlatform.DEFAULT_QUEUE_CAPACITY);
+            platform.setCommandMetrics(commandMetrics);
+            platform.start();
+            platform.shutDown();
+        } catch (IOException e) {
+        }
+    }
+
+    private static void runMultiTenant(String file, Optional<String> snapshotDirectory) {
+        try (InputCommandProvider input = open(file);
+                BufferedOutputReporter output = BufferedOutputReporter.toStandardOutput()) {
+            MultiTenantPlatform platform = MultiTenantPlatform.of(
+                    () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                    Runtime.getRuntime().availableProcessors(),
+                    input,
+                    Optional.of(output));
+            platform.setCommandMetrics(commandMetrics);
+            if (snapshotDirectory.isPresent())
+                platform.restore(Paths.get(snapshotDirectory.get()));
+            startCompaction(platform);
+            platform.start();
+            if (snapshotDirectory.isPresent())
+                platform.snapshot(Paths.get(snapshotDirectory.get()));
+            platform.shutDown();
+        } catch (IOException e) {
+        }
+    }
+
+    private static void startCompaction(MultiTenantPlatform platform) {
+        String retention = System.getProperty(RETENTION_PROPERTY);
+        if (retention != null)
+            platform.startCompaction(HistoryRetention.ofMonths(Integer.parseInt(retention.trim())),
+                    COMPACTION_PERIOD);
+    }
+
+    private static void serve(int port, Optional<Integer> httpPort) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        MultiTenantPlatform platform = MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                cores,
+                Optional::empty,
+                Optional.empty());
+        platform.setCommandMetrics(commandMetrics);
+        startCompaction(platform);
+        HttpQueryServer queries = null;
+        try (CommandServer server = CommandServer.open(platform, new InetSocketAddress(port))) {
+            if (httpPort.isPresent())
+                queries = HttpQueryServer.open(platform, new InetSocketAddress(httpPort.get()), cores * 4);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.awaitClose();
+        } catch (IOException e) {
+            System.err.println("cannot serve on port " + port + ": " + e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (queries != null)
+                queries.close();
+            platform.shutDown();
+        }
+    }
+
+    /**
+     * @return non-zero if any input failed to replay, each failed input is
+     *         reported on the standard error.
+     */
+    private static int runBatch(String source, Optional<String> outputDirectory) {
+        Map<Path, IOException> failures;
+        try (BufferedOutputReporter output = BufferedOutputReporter.toStandardOutput()) {
+            BatchReplay batch = BatchReplay.of(
+                    () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                    Runtime.getRuntime().availableProcessors());
+            List<Path> inputs = BatchReplay.inputsOf(Paths.get(source));
+            if (outputDirectory.isPresent())
+                failures = batch.replay(inputs, Paths.get(outputDirectory.get()));
+            else
+                failures = batch.replay(inputs, output);
+        } catch (IOException e) {
+            System.err.println("cannot replay " + source + ": " + e);
+            return 1;
+        }
+        failures.forEach((input, failure) -> System.err.println("cannot replay " + input + ": " + failure));
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    private static void generate(String[] args) {
+        try (BufferedOutputReporter output = BufferedOutputReporter.toStandardOutput()) {
+            long lines = Long.parseLong(args[1]);
+            int tenants = args.length > 2 ? Integer.parseInt(args[2]) : WorkloadGenerator.SINGLE_PORTFOLIO;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+            double invalidFraction = args.length > 4 ? Double.parseDouble(args[4]) : 0d;
+            WorkloadGenerator.of(seed, tenants, invalidFraction)
+                    .write(lines, output);
+        } catch (IOException e) {
+        }
+    }
+
+    /**
+     * Regular files are memory mapped, anything else such as a pipe is read as a
+     * stream.
+     */
+    private static InputCommandProvider open(String file) throws IOException {
+        Path path = Paths.get(file);
+        if (Files.isRegularFile(path))
+            return new MappedFileCommandProvider(path);
+        return new InputStreamCommandProvider(new FileInputStream(file));
+    }
+}
@@ -19,7 +19,7 @@ public class AllocateCommand implements ExecutablePortfolioCommand {
 
     @Override
     public void execute(PortfolioManager portfolio, Optional<Consumer<String>> commandExecutionStateReporter) {
-        this.allocations.forEach((fund, amount) -> portfolio.allocate(fund, amount));
+        portfolio.allocate(this.allocations);
     }
 
     public Map<FundType, BigDecimal> getAllocations() {
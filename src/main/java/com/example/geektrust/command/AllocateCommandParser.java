@@ -2,34 +2,31 @@
 package com.example.geektrust.command;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.FundTypeMap;
 
 public class AllocateCommandParser implements PortfolioCommandParser {
-    // pattern to match ALLOCATE [num] [num] [num]
-    public static Pattern PATTERN = Pattern.compile(
-            "^" + CommandBinding.ALLOCATE.name() + ONE_OR_MORE_WHITESPACE + CAPTURE_POSITIVE_INT
-                    + ONE_OR_MORE_WHITESPACE
-                    + CAPTURE_POSITIVE_INT + ONE_OR_MORE_WHITESPACE + CAPTURE_POSITIVE_INT + ZERO_OR_MORE_WHITESPACE
-                    + "$");
-
+    // matches ALLOCATE [num]... with one amount per fund type
     @Override
-    public Optional<ExecutablePortfolioCommand> parse(String input) {
-        Matcher matcher = PATTERN.matcher(input.trim());
-        if (matcher.find() && matcher.hitEnd()) {
-            // pattern make sure we don't need special handling for NumberFormat issues.
-            Map<FundType, BigDecimal> allocations = new HashMap<>();
-            allocations.put(FundType.EQUITY, new BigDecimal(matcher.group(1)));
-            allocations.put(FundType.DEBT, new BigDecimal(matcher.group(2)));
-            allocations.put(FundType.GOLD, new BigDecimal(matcher.group(3)));
-            return Optional.of(new AllocateCommand(allocations));
+    public Optional<ExecutablePortfolioCommand> parse(CharSequence input) {
+        CommandTokenizer tokens = new CommandTokenizer(input);
+        if (!tokens.keyword(CommandBinding.ALLOCATE.name()))
+            return Optional.empty();
+
+        Map<FundType, BigDecimal> allocations = new FundTypeMap<>();
+        for (int type = 0; type < FundType.count(); type++) {
+            BigDecimal amount = tokens.whitespace() ? tokens.positiveInteger() : null;
+            if (amount == null)
+                return Optional.empty();
+            allocations.put(FundType.of(type), amount);
         }
 
-        return Optional.empty();
+        tokens.optionalWhitespace();
+        if (!tokens.atEnd())
+            return Optional.empty();
+        return Optional.of(new AllocateCommand(allocations));
     }
 }
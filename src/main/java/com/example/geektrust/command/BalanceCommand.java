@@ -1,7 +1,6 @@
 package com.example.geektrust.command;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Month;
 import java.util.Map;
 import java.util.Optional;
@@ -20,18 +19,8 @@ public class BalanceCommand implements ExecutablePortfolioCommand {
     @Override
     public void execute(PortfolioManager portfolio, Optional<Consumer<String>> executionOutputReporter) {
         Optional<Map<FundType, BigDecimal>> balanceResult = portfolio.calculateBalance(this.month);
-        String output;
-        if (balanceResult.isPresent()) {
-            BigDecimal equityBalance = balanceResult.get().get(FundType.EQUITY).setScale(0, RoundingMode.FLOOR);
-            BigDecimal debtBalance = balanceResult.get().get(FundType.DEBT).setScale(0, RoundingMode.FLOOR);
-            BigDecimal goldBalance = balanceResult.get().get(FundType.GOLD).setScale(0, RoundingMode.FLOOR);
-            output = String.format("%s %s %s",
-                    equityBalance.toString(),
-                    debtBalance.toString(),
-                    goldBalance.toString());
-            if (executionOutputReporter.isPresent())
-                executionOutputReporter.get().accept(output);
-        }
+        if (balanceResult.isPresent() && executionOutputReporter.isPresent())
+            FundValuesOutput.report(balanceResult.get(), executionOutputReporter.get());
     }
 
     public Month getMonth() {
@@ -2,40 +2,36 @@ package com.example.geektrust.command;
 
 import java.math.BigDecimal;
 import java.time.Month;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.FundTypeMap;
 
 public class ChangeCommandParser implements PortfolioCommandParser {
-    // pattern to match CHANGE [num] [num] [num] [MONTH]
-    public static Pattern PATTERN = Pattern.compile(
-            "^" + CommandBinding.CHANGE.name() + ONE_OR_MORE_WHITESPACE + CAPTURE_PERCENTAGE_VALUE
-                    + ONE_OR_MORE_WHITESPACE + CAPTURE_PERCENTAGE_VALUE + ONE_OR_MORE_WHITESPACE
-                    + CAPTURE_PERCENTAGE_VALUE + ONE_OR_MORE_WHITESPACE + CAPTURE_NEXT_WORD + ZERO_OR_MORE_WHITESPACE
-                    + "$");
-
+    // matches CHANGE [num]%... [MONTH] with one percentage per fund type
     @Override
-    public Optional<ExecutablePortfolioCommand> parse(String input) {
-        Matcher matcher = PATTERN.matcher(input.trim());
-        if (matcher.find() && matcher.hitEnd()) {
-            // pattern make sure we don't need special handling for NumberFormat issues.
-            Map<FundType, BigDecimal> change = new HashMap<>();
-            change.put(FundType.EQUITY, new BigDecimal(matcher.group(1)));
-            change.put(FundType.DEBT, new BigDecimal(matcher.group(3)));
-            change.put(FundType.GOLD, new BigDecimal(matcher.group(5)));
+    public Optional<ExecutablePortfolioCommand> parse(CharSequence input) {
+        CommandTokenizer tokens = new CommandTokenizer(input);
+        if (!tokens.keyword(CommandBinding.CHANGE.name()))
+            return Optional.empty();
 
-            try {
-                Month month = Month.valueOf(matcher.group(7));
-                return Optional.of(new ChangeCommand(change, month));
-            } catch (Exception e) {
-                // invalid text as month
+        Map<FundType, BigDecimal> change = new FundTypeMap<>();
+        for (int type = 0; type < FundType.count(); type++) {
+            BigDecimal percentage = tokens.whitespace() ? tokens.percentage() : null;
+            if (percentage == null)
                 return Optional.empty();
-            }
+            change.put(FundType.of(type), percentage);
         }
-        return Optional.empty();
+
+        // invalid text as month
+        Month month = tokens.whitespace() ? tokens.month() : null;
+        if (month == null)
+            return Optional.empty();
+
+        tokens.optionalWhitespace();
+        if (!tokens.atEnd())
+            return Optional.empty();
+        return Optional.of(new ChangeCommand(change, month));
     }
 }
@@ -2,33 +2,77 @@
 package com.example.geektrust.command;
 
 import java.util.Optional;
-import java.util.function.Supplier;
-import java.util.stream.Stream;
 
 public enum CommandBinding {
-    ALLOCATE(AllocateCommandParser::new),
-    SIP(SipCommandParser::new),
-    CHANGE(ChangeCommandParser::new),
-    BALANCE(BalanceCommandParser::new),
-    REBALANCE(RebalanceCommandParser::new);
+    ALLOCATE(new AllocateCommandParser()),
+    SIP(new SipCommandParser()),
+    CHANGE(new ChangeCommandParser()),
+    BALANCE(new BalanceCommandParser()),
+    REBALANCE(new RebalanceCommandParser());
 
-    private final Supplier<PortfolioCommandParser> parserSupplier;
+    // cached as values() copies the array on every call
+    static final CommandBinding[] BINDINGS = values();
 
-    private CommandBinding(Supplier<PortfolioCommandParser> parserSupplier) {
-        this.parserSupplier = parserSupplier;
+    private final PortfolioCommandParser parser; // stateless, shared
+
+    private CommandBinding(PortfolioCommandParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * @return the command named by the first token of the input, null if the
+     *         input does not start with a command name.
+     */
+    public static CommandBinding bindingOf(CharSequence input) {
+        return CommandTokenizer.bindingOf(input);
     }
 
-    public static Optional<ExecutablePortfolioCommand> toExecutable(String input) {
-        // @formatter:off
-        return Stream.of(values())
-                .map(CommandBinding::getParser)
-                .map(parser -> parser.parse(input))
-                .filter(Optional::isPresent)
-                .findFirst().orElse(Optional.empty());
-        // @formatter:on
+    /**
+     * Dispatch the input to the parser of the command named by the first token.
+     *
+     * @return empty if the input is not a valid command.
+     */
+    public static Optional<ExecutablePortfolioCommand> toExecutable(CharSequence input) {
+        CommandBinding binding = CommandTokenizer.bindingOf(input);
+        if (binding == null)
+            return Optional.empty();
+        return binding.parser.parse(input);
     }
 
-    private static PortfolioCommandParser getParser(CommandBinding binding) {
-        return binding.parserSupplier.get();
+    /**
+     * Same as {@link #toExecutable(CharSequence)}, reporting the parse time, or
+     * the rejection of the input, to the metrics. The returned command reports
+     * its execution time, or its rejection if it throws
+     * {@link ArithmeticException} for amounts out of the money range. Nothing is
+     * timed for {@link CommandMetrics#NONE}.
+     */
+    public static Optional<ExecutablePortfolioCommand> toExecutable(CharSequence input, CommandMetrics metrics) {
+        if (metrics == CommandMetrics.NONE)
+            return toExecutable(input);
+
+        long start = System.nanoTime();
+        CommandBinding binding = CommandTokenizer.bindingOf(input);
+        if (binding == null) {
+            metrics.onRejected(null);
+            return Optional.empty();
+        }
+        Optional<ExecutablePortfolioCommand> executable = binding.parser.parse(input);
+        metrics.onParsed(binding, System.nanoTime() - start);
+        if (executable.isEmpty()) {
+            metrics.onRejected(binding);
+            return executable;
+        }
+
+        ExecutablePortfolioCommand command = executable.get();
+        return Optional.of((portfolio, executionOutputReporter) -> {
+            long executionStart = System.nanoTime();
+            try {
+                command.execute(portfolio, executionOutputReporter);
+            } catch (ArithmeticException e) {
+                metrics.onRejected(binding);
+                throw e;
+            }
+            metrics.onExecuted(binding, System.nanoTime() - executionStart);
+        });
     }
 }
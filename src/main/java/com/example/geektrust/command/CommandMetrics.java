@@ -0,0 +1,26 @@
+package com.example.geektrust.command;
+
+/**
+ * Observer of the parsing and execution of the input lines, see
+ * {@link CommandBinding#toExecutable(CharSequence, CommandMetrics)}. Called
+ * from every thread parsing or executing commands.
+ */
+public interface CommandMetrics {
+    /**
+     * Nothing observed, nor timed.
+     */
+    static final CommandMetrics NONE = new CommandMetrics() {
+    };
+
+    default void onParsed(CommandBinding binding, long nanos) {
+    }
+
+    /**
+     * @param binding null if the line does not start with a command name.
+     */
+    default void onRejected(CommandBinding binding) {
+    }
+
+    default void onExecuted(CommandBinding binding, long nanos) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.geektrust.command;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link RecordingCommandMetrics}, maps are keyed by command
+ * name. Latencies are in nanoseconds.
+ */
+public interface CommandMetricsMXBean {
+    Map<String, Long> getExecutedCommands();
+
+    /**
+     * @return rejected lines by command name, lines not starting with a command
+     *         name are counted under {@value RecordingCommandMetrics#UNKNOWN}.
+     */
+    Map<String, Long> getRejectedLines();
+
+    Map<String, Long> getParseLatencyP50();
+
+    Map<String, Long> getParseLatencyP99();
+
+    Map<String, Long> getExecuteLatencyP50();
+
+    Map<String, Long> getExecuteLatencyP99();
+
+    Map<String, Long> getExecuteLatencyMax();
+
+    /**
+     * @return every reading as text, one line per command.
+     */
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,195 @@
+package com.example.geektrust.command;
+
+import java.math.BigDecimal;
+import java.time.Month;
+
+/**
+ * Single pass scanner over a command line, replacing the regular expressions
+ * the parsers used to match with. Values are read straight from the
+ * {@link CharSequence} without intermediate strings.
+ * <p>
+ * The accepted grammar is the same as the patterns it replaces: the line is
+ * trimmed, tokens are separated by one or more whitespace characters, amounts
+ * are {@code \d+}, percentages are {@code -?\d{1,2}(\.\d+)?%} and months are
+ * the upper case {@link Month} names.
+ */
+final class CommandTokenizer {
+    // unscaled values up to this many digits always fit in a long
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final Month[] MONTHS = Month.values();
+
+    private final CharSequence input;
+    private int position;
+    private final int end;
+
+    CommandTokenizer(CharSequence input) {
+        // same as String.trim()
+        int start = 0;
+        int limit = input.length();
+        while (start < limit && input.charAt(start) <= ' ')
+            start++;
+        while (limit > start && input.charAt(limit - 1) <= ' ')
+            limit--;
+
+        this.input = input;
+        this.position = start;
+        this.end = limit;
+    }
+
+    /**
+     * @return the command binding named by the first token, null if none.
+     */
+    static CommandBinding bindingOf(CharSequence input) {
+        CommandTokenizer tokenizer = new CommandTokenizer(input);
+        int tokenEnd = tokenizer.position;
+        while (tokenEnd < tokenizer.end && !isWhitespace(input.charAt(tokenEnd)))
+            tokenEnd++;
+
+        for (CommandBinding binding : CommandBinding.BINDINGS) {
+            if (tokenizer.matches(binding.name(), tokenEnd))
+                return binding;
+        }
+        return null;
+    }
+
+    /**
+     * Consumes the keyword if the line starts with it.
+     */
+    boolean keyword(String keyword) {
+        int keywordEnd = this.position + keyword.length();
+        if (keywordEnd > this.end || !matches(keyword, keywordEnd))
+            return false;
+
+        this.position = keywordEnd;
+        return true;
+    }
+
+    /**
+     * Consumes one or more whitespace characters.
+     */
+    boolean whitespace() {
+        int start = this.position;
+        optionalWhitespace();
+        return this.position > start;
+    }
+
+    void optionalWhitespace() {
+        while (this.position < this.end && isWhitespace(this.input.charAt(this.position)))
+            this.position++;
+    }
+
+    boolean atEnd() {
+        return this.position == this.end;
+    }
+
+    /**
+     * Consumes a {@code \d+} amount.
+     *
+     * @return null if there is no amount at the current position.
+     */
+    BigDecimal positiveInteger() {
+        int start = this.position;
+        long value = 0;
+        while (this.position < this.end && isDigit(this.input.charAt(this.position))) {
+            value = value * 10 + (this.input.charAt(this.position) - '0');
+            this.position++;
+        }
+
+        int digits = this.position - start;
+        if (digits == 0)
+            return null;
+        if (digits > MAX_LONG_DIGITS)
+            return new BigDecimal(this.input.subSequence(start, this.position).toString());
+        return BigDecimal.valueOf(value);
+    }
+
+    /**
+     * Consumes a {@code -?\d{1,2}(\.\d+)?%} percentage.
+     *
+     * @return null if there is no percentage at the current position.
+     */
+    BigDecimal percentage() {
+        int start = this.position;
+        boolean negative = this.position < this.end && this.input.charAt(this.position) == '-';
+        if (negative)
+            this.position++;
+
+        int integerStart = this.position;
+        long unscaled = 0;
+        while (this.position < this.end && this.position - integerStart < 2
+                && isDigit(this.input.charAt(this.position))) {
+            unscaled = unscaled * 10 + (this.input.charAt(this.position) - '0');
+            this.position++;
+        }
+        if (this.position == integerStart)
+            return null;
+
+        int scale = 0;
+        if (this.position < this.end && this.input.charAt(this.position) == '.') {
+            this.position++;
+            int fractionStart = this.position;
+            while (this.position < this.end && isDigit(this.input.charAt(this.position))) {
+                unscaled = unscaled * 10 + (this.input.charAt(this.position) - '0');
+                this.position++;
+            }
+            scale = this.position - fractionStart;
+            if (scale == 0)
+                return null;
+        }
+
+        if (this.position == this.end || this.input.charAt(this.position) != '%')
+            return null;
+
+        BigDecimal percentage = scale + 2 > MAX_LONG_DIGITS
+                ? new BigDecimal(this.input.subSequence(start, this.position).toString())
+                : BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+        this.position++; // '%'
+        return percentage;
+    }
+
+    /**
+     * Consumes an upper case word naming a {@link Month}.
+     *
+     * @return null if the word is not a month.
+     */
+    Month month() {
+        int start = this.position;
+        while (this.position < this.end && isUpperCaseLetter(this.input.charAt(this.position)))
+            this.position++;
+
+        for (Month month : MONTHS) {
+            if (regionEquals(month.name(), start, this.position))
+                return month;
+        }
+        return null;
+    }
+
+    private boolean matches(String keyword, int tokenEnd) {
+        return regionEquals(keyword, this.position, tokenEnd)
+                && (tokenEnd == this.end || isWhitespace(this.input.charAt(tokenEnd)));
+    }
+
+    private boolean regionEquals(String expected, int from, int to) {
+        if (to - from != expected.length())
+            return false;
+
+        for (int i = 0; i < expected.length(); i++) {
+            if (this.input.charAt(from + i) != expected.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpperCaseLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    // same as the \s character class
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
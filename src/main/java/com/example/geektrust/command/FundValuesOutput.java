@@ -0,0 +1,43 @@
+package com.example.geektrust.command;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.FundTypeMap;
+
+/**
+ * Reports the fund values rounded down to whole numbers, in {@link FundType}
+ * order.
+ */
+final class FundValuesOutput {
+    private FundValuesOutput() {
+    }
+
+    static void report(Map<FundType, BigDecimal> values, Consumer<String> reporter) {
+        int count = FundType.count();
+        if (reporter instanceof OutputSink) {
+            long[] wholeValues = new long[count];
+            for (int i = 0; i < count; i++)
+                wholeValues[i] = valueOf(values, i).setScale(0, RoundingMode.FLOOR).longValueExact();
+            ((OutputSink) reporter).acceptValues(wholeValues);
+            return;
+        }
+
+        StringBuilder output = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (output.length() > 0)
+                output.append(' ');
+            output.append(valueOf(values, i).setScale(0, RoundingMode.FLOOR).toString());
+        }
+        reporter.accept(output.toString());
+    }
+
+    private static BigDecimal valueOf(Map<FundType, BigDecimal> values, int ordinal) {
+        if (values instanceof FundTypeMap)
+            return ((FundTypeMap<BigDecimal>) values).getAt(ordinal);
+        return values.get(FundType.of(ordinal));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.geektrust.command;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations in nanoseconds, in the layout of an
+ * HdrHistogram: values below {@code 2^SUB_BUCKET_BITS} have a bucket each, and
+ * every power of two above is split in {@code 2^SUB_BUCKET_BITS} buckets, so a
+ * percentile is within about 3% of the exact value whatever its magnitude.
+ * Recording is a few bit operations and an atomic increment, no allocation.
+ */
+final class LatencyRecorder {
+    static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // up to Long.MAX_VALUE, whose exponent is 62
+    static final int BUCKETS = (62 - SUB_BUCKET_BITS + 2) << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos negative durations, e.g. from a clock adjustment, are
+     *              recorded as 0.
+     */
+    void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        this.counts.getAndIncrement(bucketOf(value));
+        this.count.increment();
+        this.total.add(value);
+        if (value > this.max.get())
+            this.max.accumulateAndGet(value, Math::max);
+    }
+
+    long count() {
+        return this.count.sum();
+    }
+
+    long max() {
+        return this.max.get();
+    }
+
+    double mean() {
+        long count = this.count.sum();
+        return count == 0 ? 0d : (double) this.total.sum() / count;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return the highest value of the bucket holding the value at the
+     *         percentile, at most the maximum recorded, 0 if nothing is
+     *         recorded.
+     */
+    long percentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("percentile out of range: " + percentile);
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            total += this.counts.get(bucket);
+        if (total == 0)
+            return 0L;
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += this.counts.get(bucket);
+            if (seen >= rank)
+                return Math.min(highestValueOf(bucket), max());
+        }
+        return max();
+    }
+
+    void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+            this.counts.set(bucket, 0L);
+        this.count.reset();
+        this.total.reset();
+        this.max.set(0L);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
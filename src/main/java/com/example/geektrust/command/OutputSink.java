@@ -0,0 +1,23 @@
+package com.example.geektrust.command;
+
+import java.util.function.Consumer;
+
+/**
+ * Execution output reporter with a fast path for lines made of whole numbers,
+ * such as the fund values printed by BALANCE and REBALANCE. Sinks can format
+ * the values without building the line as a {@link String} first.
+ */
+public interface OutputSink extends Consumer<String> {
+    /**
+     * Reports the values as a single line separated by a space.
+     */
+    public default void acceptValues(long[] values) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                line.append(' ');
+            line.append(values[i]);
+        }
+        accept(line.toString());
+    }
+}
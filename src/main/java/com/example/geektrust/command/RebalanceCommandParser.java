@@ -1,20 +1,18 @@
 package com.example.geektrust.command;
 
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class RebalanceCommandParser implements PortfolioCommandParser {
-    public static Pattern PATTERN = Pattern.compile(
-            "^" + CommandBinding.REBALANCE.name() + ZERO_OR_MORE_WHITESPACE + "$");
-
+    // matches REBALANCE
     @Override
-    public Optional<ExecutablePortfolioCommand> parse(String input) {
-        Matcher matcher = PATTERN.matcher(input.trim());
-        if (matcher.find() && matcher.hitEnd()) {
-            return Optional.of(new RebalanceCommand());
-        }
+    public Optional<ExecutablePortfolioCommand> parse(CharSequence input) {
+        CommandTokenizer tokens = new CommandTokenizer(input);
+        if (!tokens.keyword(CommandBinding.REBALANCE.name()))
+            return Optional.empty();
 
-        return Optional.empty();
+        tokens.optionalWhitespace();
+        if (!tokens.atEnd())
+            return Optional.empty();
+        return Optional.of(new RebalanceCommand());
     }
 }
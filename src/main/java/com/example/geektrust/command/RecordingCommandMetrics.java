@@ -0,0 +1,189 @@
+package com.example.geektrust.command;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link CommandMetrics} counting the executed commands and the rejected lines,
+ * and recording the parse and execution latencies, by command. Counters are
+ * {@link LongAdder}s and latencies {@link LatencyRecorder}s, so commands of
+ * many threads are recorded without locking.
+ * <p>
+ * Readings are available through JMX once {@link #register(MBeanServer)}ed,
+ * and as a text report written periodically with
+ * {@link #startReporting(Duration, Consumer)}.
+ */
+public final class RecordingCommandMetrics implements CommandMetrics, CommandMetricsMXBean {
+    public static final String OBJECT_NAME = "com.example.geektrust:type=CommandMetrics";
+    static final String UNKNOWN = "UNKNOWN";
+
+    private final LongAdder[] executed = newCounters(); // by CommandBinding ordinal
+    private final LongAdder[] rejected = newCounters(); // by CommandBinding ordinal
+    private final LongAdder rejectedUnknown = new LongAdder();
+    private final LatencyRecorder[] parseLatencies = newRecorders();
+    private final LatencyRecorder[] executeLatencies = newRecorders();
+    private ScheduledExecutorService reporter; // guarded by this
+
+    @Override
+    public void onParsed(CommandBinding binding, long nanos) {
+        this.parseLatencies[binding.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void onRejected(CommandBinding binding) {
+        if (binding == null)
+            this.rejectedUnknown.increment();
+        else
+            this.rejected[binding.ordinal()].increment();
+    }
+
+    @Override
+    public void onExecuted(CommandBinding binding, long nanos) {
+        this.executed[binding.ordinal()].increment();
+        this.executeLatencies[binding.ordinal()].record(nanos);
+    }
+
+    /**
+     * Registers the metrics under {@value #OBJECT_NAME}, replacing any metrics
+     * registered before.
+     */
+    public void register(MBeanServer server) throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name))
+            server.unregisterMBean(name);
+        server.registerMBean(this, name);
+    }
+
+    public void registerPlatformMBean() throws JMException {
+        register(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Writes the {@link #getReport()} to the output every period, on a daemon
+     * thread, until {@link #stopReporting()}.
+     */
+    public synchronized void startReporting(Duration period, Consumer<String> output) {
+        if (this.reporter != null)
+            throw new IllegalStateException("already reporting");
+        this.reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "command-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = period.toNanos();
+        this.reporter.scheduleAtFixedRate(() -> output.accept(getReport()), nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the periodic report, waiting for a report being written.
+     */
+    public synchronized void stopReporting() {
+        if (this.reporter == null)
+            return;
+
+        this.reporter.shutdown();
+        try {
+            this.reporter.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.reporter = null;
+    }
+
+    @Override
+    public Map<String, Long> getExecutedCommands() {
+        return byCommand(binding -> this.executed[binding.ordinal()].sum());
+    }
+
+    @Override
+    public Map<String, Long> getRejectedLines() {
+        Map<String, Long> rejected = byCommand(binding -> this.rejected[binding.ordinal()].sum());
+        rejected.put(UNKNOWN, this.rejectedUnknown.sum());
+        return rejected;
+    }
+
+    @Override
+    public Map<String, Long> getParseLatencyP50() {
+        return byCommand(binding -> this.parseLatencies[binding.ordinal()].percentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getParseLatencyP99() {
+        return byCommand(binding -> this.parseLatencies[binding.ordinal()].percentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getExecuteLatencyP50() {
+        return byCommand(binding -> this.executeLatencies[binding.ordinal()].percentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getExecuteLatencyP99() {
+        return byCommand(binding -> this.executeLatencies[binding.ordinal()].percentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getExecuteLatencyMax() {
+        return byCommand(binding -> this.executeLatencies[binding.ordinal()].max());
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (CommandBinding binding : CommandBinding.BINDINGS) {
+            LatencyRecorder parse = this.parseLatencies[binding.ordinal()];
+            LatencyRecorder execute = this.executeLatencies[binding.ordinal()];
+            report.append(String.format(
+                    "%-9s executed=%d rejected=%d parse_ns p50=%d p99=%d max=%d execute_ns p50=%d p99=%d max=%d%n",
+                    binding.name(), this.executed[binding.ordinal()].sum(), this.rejected[binding.ordinal()].sum(),
+                    parse.percentile(50), parse.percentile(99), parse.max(),
+                    execute.percentile(50), execute.percentile(99), execute.max()));
+        }
+        report.append(String.format("%-9s rejected=%d", UNKNOWN, this.rejectedUnknown.sum()));
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (CommandBinding binding : CommandBinding.BINDINGS) {
+            this.executed[binding.ordinal()].reset();
+            this.rejected[binding.ordinal()].reset();
+            this.parseLatencies[binding.ordinal()].reset();
+            this.executeLatencies[binding.ordinal()].reset();
+        }
+        this.rejectedUnknown.reset();
+    }
+
+    private static Map<String, Long> byCommand(ToLongFunction<CommandBinding> reading) {
+        Map<String, Long> readings = new LinkedHashMap<>();
+        for (CommandBinding binding : CommandBinding.BINDINGS)
+            readings.put(binding.name(), reading.applyAsLong(binding));
+        return readings;
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[CommandBinding.BINDINGS.length];
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = new LongAdder();
+        return counters;
+    }
+
+    private static LatencyRecorder[] newRecorders() {
+        LatencyRecorder[] recorders = new LatencyRecorder[CommandBinding.BINDINGS.length];
+        for (int i = 0; i < recorders.length; i++)
+            recorders[i] = new LatencyRecorder();
+        return recorders;
+    }
+}
@@ -1,33 +1,31 @@
 package com.example.geektrust.command;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.FundTypeMap;
 
 public class SipCommandParser implements PortfolioCommandParser {
-    // pattern to match SIP [num] [num] [num]
-    public static Pattern PATTERN = Pattern.compile(
-            "^" + CommandBinding.SIP.name() + ONE_OR_MORE_WHITESPACE + CAPTURE_POSITIVE_INT + ONE_OR_MORE_WHITESPACE
-                    + CAPTURE_POSITIVE_INT + ONE_OR_MORE_WHITESPACE + CAPTURE_POSITIVE_INT + ZERO_OR_MORE_WHITESPACE
-                    + "$");
-
+    // matches SIP [num]... with one amount per fund type
     @Override
-    public Optional<ExecutablePortfolioCommand> parse(String input) {
-        Matcher matcher = PATTERN.matcher(input.trim());
-        if (matcher.find() && matcher.hitEnd()) {
-            // pattern make sure we don't need special handling for NumberFormat issues.
-            Map<FundType, BigDecimal> sip = new HashMap<>();
-            sip.put(FundType.EQUITY, new BigDecimal((matcher.group(1))));
-            sip.put(FundType.DEBT, new BigDecimal((matcher.group(2))));
-            sip.put(FundType.GOLD, new BigDecimal(matcher.group(3)));
-            return Optional.of(new SipCommand(sip));
+    public Optional<ExecutablePortfolioCommand> parse(CharSequence input) {
+        CommandTokenizer tokens = new CommandTokenizer(input);
+        if (!tokens.keyword(CommandBinding.SIP.name()))
+            return Optional.empty();
+
+        Map<FundType, BigDecimal> sip = new FundTypeMap<>();
+        for (int type = 0; type < FundType.count(); type++) {
+            BigDecimal amount = tokens.whitespace() ? tokens.positiveInteger() : null;
+            if (amount == null)
+                return Optional.empty();
+            sip.put(FundType.of(type), amount);
         }
 
-        return Optional.empty();
+        tokens.optionalWhitespace();
+        if (!tokens.atEnd())
+            return Optional.empty();
+        return Optional.of(new SipCommand(sip));
     }
 }
@@ -0,0 +1,204 @@
+package com.example.geektrust.platform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import com.example.geektrust.portfolio.PortfolioManager;
+
+/**
+ * Replays independent command files in parallel, each file through its own
+ * {@link MyMoneyPlatform} and {@link PortfolioManager}.
+ * <p>
+ * Files are replayed on a work stealing pool, so a few long files do not hold
+ * up the rest, and a file failing to replay does not stop the others. The
+ * output of every file keeps the order of its commands, and when the outputs
+ * are combined into a single stream they follow the order of the input files.
+ */
+public class BatchReplay {
+    static final String OUTPUT_EXTENSION = ".out";
+
+    private final Supplier<PortfolioManager> portfolioFactory;
+    private final int parallelism;
+
+    private BatchReplay(Supplier<PortfolioManager> portfolioFactory, int parallelism) {
+        this.portfolioFactory = portfolioFactory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param portfolioFactory creates an empty portfolio for every input file.
+     * @param parallelism      number of files replayed at the same time.
+     */
+    public static BatchReplay of(Supplier<PortfolioManager> portfolioFactory, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("at least one worker required: " + parallelism);
+        return new BatchReplay(portfolioFactory, parallelism);
+    }
+
+    /**
+     * @param source a directory of input files, or a manifest file listing one
+     *               input file per line. Relative manifest entries are resolved
+     *               against the manifest directory.
+     * @return input files sorted by name for a directory, in manifest order for a
+     *         manifest.
+     */
+    public static List<Path> inputsOf(Path source) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(source, Files::isRegularFile)) {
+                files.forEach(inputs::add);
+            }
+            Collections.sort(inputs);
+            return inputs;
+        }
+
+        Path base = source.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+            String entry = line.trim();
+            if (!entry.isEmpty())
+                inputs.add(base.resolve(entry));
+        }
+        return inputs;
+    }
+
+    /**
+     * Replay every input into its own file in the output directory, named after
+     * the input file with the {@value #OUTPUT_EXTENSION} extension. An input
+     * failing to replay does not stop the others, and no output file is left for
+     * it.
+     *
+     * @return failure of every input failed to replay, in the order of the inputs.
+     *         Empty if every input is replayed.
+     */
+    public Map<Path, IOException> replay(List<Path> inputs, Path outputDirectory) throws IOException {
+        Set<Path> outputs = new HashSet<>();
+        for (Path input : inputs) {
+            if (!outputs.add(outputOf(input, outputDirectory)))
+                throw new IllegalArgumentException("more than one input named " + input.getFileName());
+        }
+        Files.createDirectories(outputDirectory);
+
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            List<Future<?>> jobs = new ArrayList<>(inputs.size());
+            for (Path input : inputs) {
+                Path output = outputOf(input, outputDirectory);
+                jobs.add(pool.submit(() -> {
+                    try (OutputStream out = Files.newOutputStream(output)) {
+                        replay(input, out);
+                    } catch (IOException | RuntimeException e) {
+                        Files.deleteIfExists(output);
+                        throw e;
+                    }
+                    return null;
+                }));
+            }
+
+            Map<Path, IOException> failures = new LinkedHashMap<>();
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    await(jobs.get(i));
+                } catch (ExecutionException e) {
+                    failures.put(inputs.get(i), causeOf(e));
+                }
+            }
+            return failures;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Replay every input and write the outputs to the given reporter one input
+     * after the other, in the order of the inputs. The output of an input is
+     * written as soon as it is complete and all the inputs before it are written.
+     * Inputs are replayed ahead of the written one by a window of twice the
+     * parallelism, so only the outputs of the window are held in memory. An input
+     * failing to replay does not stop the others, and none of its output is
+     * written.
+     *
+     * @return failure of every input failed to replay, in the order of the inputs.
+     *         Empty if every input is replayed.
+     */
+    public Map<Path, IOException> replay(List<Path> inputs, BufferedOutputReporter out) throws IOException {
+        int window = this.parallelism * 2;
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            Deque<Future<ByteArrayOutputStream>> jobs = new ArrayDeque<>(window);
+            Map<Path, IOException> failures = new LinkedHashMap<>();
+            int submitted = 0;
+            for (int written = 0; written < inputs.size(); written++) {
+                while (submitted < inputs.size() && submitted - written < window) {
+                    Path input = inputs.get(submitted++);
+                    jobs.add(pool.submit(() -> {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        replay(input, output);
+                        return output;
+                    }));
+                }
+
+                try {
+                    out.acceptFormatted(await(jobs.remove()));
+                    out.flush();
+                } catch (ExecutionException e) {
+                    failures.put(inputs.get(written), causeOf(e));
+                }
+            }
+            return failures;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void replay(Path input, OutputStream out) throws IOException {
+        BufferedOutputReporter output = new BufferedOutputReporter(out);
+        try (InputCommandProvider commands = new MappedFileCommandProvider(input)) {
+            MyMoneyPlatform platform = MyMoneyPlatform.of(this.portfolioFactory.get(), commands,
+                    Optional.of(output));
+            platform.start();
+            platform.shutDown();
+        }
+        output.flush();
+    }
+
+    private static Path outputOf(Path input, Path outputDirectory) {
+        return outputDirectory.resolve(input.getFileName().toString() + OUTPUT_EXTENSION);
+    }
+
+    private static <T> T await(Future<T> job) throws IOException, ExecutionException {
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while replaying", e);
+        }
+    }
+
+    private static IOException causeOf(ExecutionException e) {
+        // the pool wraps checked exceptions of the job
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException)
+                return (IOException) cause;
+        }
+        return new IOException("replay failed", e.getCause());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.geektrust.platform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import com.example.geektrust.command.OutputSink;
+
+/**
+ * {@link OutputSink} formatting the output lines straight into a reusable byte
+ * buffer, which is written to the stream only when full or on
+ * {@link #flush()}. Lines may be reported from multiple threads.
+ */
+public class BufferedOutputReporter implements OutputSink, Flushable, Closeable {
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // "-9223372036854775808"
+    private static final int MAX_LONG_CHARS = 20;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int size;
+
+    public BufferedOutputReporter(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    BufferedOutputReporter(OutputStream out, int bufferSize) {
+        if (bufferSize < MAX_LONG_CHARS + LINE_SEPARATOR.length)
+            throw new IllegalArgumentException("buffer too small: " + bufferSize);
+
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Writes to the standard output without the per line flush of
+     * {@link System#out}.
+     */
+    public static BufferedOutputReporter toStandardOutput() {
+        return new BufferedOutputReporter(new FileOutputStream(FileDescriptor.out));
+    }
+
+    @Override
+    public synchronized void accept(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length + LINE_SEPARATOR.length > this.buffer.length - this.size)
+            drain();
+
+        if (bytes.length + LINE_SEPARATOR.length > this.buffer.length) {
+            write(bytes, bytes.length); // longer than the whole buffer
+        } else {
+            System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+            this.size += bytes.length;
+        }
+        appendLineSeparator();
+    }
+
+    @Override
+    public synchronized void acceptValues(long[] values) {
+        for (int i = 0; i < values.length; i++) {
+            // room for the value, the space or the line separator
+            if (MAX_LONG_CHARS + LINE_SEPARATOR.length > this.buffer.length - this.size)
+                drain();
+            if (i > 0)
+                this.buffer[this.size++] = ' ';
+            appendLong(values[i]);
+        }
+        appendLineSeparator();
+    }
+
+    /**
+     * Appends lines already formatted with the line separator, such as the
+     * output of another reporter.
+     */
+    synchronized void acceptFormatted(ByteArrayOutputStream lines) {
+        drain();
+        try {
+            lines.writeTo(this.out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        drain();
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        this.out.close();
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            // no positive counterpart
+            byte[] digits = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(digits, 0, this.buffer, this.size, digits.length);
+            this.size += digits.length;
+            return;
+        }
+
+        long remaining = value;
+        if (remaining < 0) {
+            this.buffer[this.size++] = '-';
+            remaining = -remaining;
+        }
+
+        int end = this.size + digitCount(remaining);
+        int position = end;
+        do {
+            this.buffer[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        this.size = end;
+    }
+
+    private static int digitCount(long positive) {
+        int count = 1;
+        for (long limit = 10; count < 19 && positive >= limit; limit *= 10)
+            count++;
+        return count;
+    }
+
+    private void appendLineSeparator() {
+        if (LINE_SEPARATOR.length > this.buffer.length - this.size)
+            drain();
+        System.arraycopy(LINE_SEPARATOR, 0, this.buffer, this.size, LINE_SEPARATOR.length);
+        this.size += LINE_SEPARATOR.length;
+    }
+
+    private void drain() {
+        write(this.buffer, this.size);
+        this.size = 0;
+    }
+
+    private void write(byte[] bytes, int length) {
+        if (length == 0)
+            return;
+        try {
+            this.out.write(bytes, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
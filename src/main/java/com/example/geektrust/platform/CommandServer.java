@@ -0,0 +1,361 @@
+package com.example.geektrust.platform;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TCP front end of a {@link MultiTenantPlatform}, speaking the input line
+ * protocol: every line is {@code <portfolioId> <command>}, and the outputs of
+ * the command are written back as {@code <portfolioId> <output>} lines.
+ * <p>
+ * A single selector thread accepts the connections, reads the lines and routes
+ * them to the tenant shards. Clients may pipeline any number of lines without
+ * waiting for the outputs. As the commands of one connection may run on
+ * several shards, every line gets a sequence number and its outputs are held
+ * back until the outputs of all the earlier lines of the connection are
+ * written, so outputs always come back in request order. Shards hand the
+ * outputs to the connection and wake the selector up, which writes them out
+ * without blocking.
+ * <p>
+ * A connection only keeps a partial line between reads and the outputs not
+ * yet written, reads go through one buffer of the selector thread. A client
+ * not reading its outputs is not read from either once
+ * {@value #MAX_PENDING_OUTPUT} bytes are waiting, and a full shard blocks the
+ * selector thread until it drains. A connection whose input is shut down is
+ * closed once all its outputs are written.
+ */
+public final class CommandServer implements Closeable {
+    static final int MAX_LINE_LENGTH = 4096;
+    static final int MAX_PENDING_OUTPUT = 1 << 20;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int INITIAL_OUTPUT_SIZE = 256;
+
+    private final MultiTenantPlatform platform;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread loop;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE); // selector thread only
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean running = true;
+
+    private CommandServer(MultiTenantPlatform platform, ServerSocketChannel server, Selector selector) {
+        this.platform = platform;
+        this.server = server;
+        this.selector = selector;
+        this.loop = new Thread(this::run, "command-server");
+    }
+
+    /**
+     * Listens on the given address, port 0 for any free port, and serves the
+     * connections until closed.
+     */
+    public static CommandServer open(MultiTenantPlatform platform, InetSocketAddress address) throws IOException {
+        Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.bind(address, 1024);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+
+        CommandServer commandServer = new CommandServer(platform, server, selector);
+        commandServer.loop.start();
+        return commandServer;
+    }
+
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) this.server.getLocalAddress();
+    }
+
+    /**
+     * @return number of open connections.
+     */
+    public int getConnectionCount() {
+        return this.connections.get();
+    }
+
+    /**
+     * Waits until the server is closed.
+     */
+    public void awaitClose() throws InterruptedException {
+        this.loop.join();
+    }
+
+    /**
+     * Stops accepting and closes every connection, outputs not written yet are
+     * dropped. The platform is left running. May be called from any thread, such
+     * as a shutdown hook.
+     */
+    public void stop() {
+        this.running = false;
+        this.selector.wakeup();
+        try {
+            this.loop.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Same as {@link #stop()}.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void run() {
+        try {
+            while (this.running) {
+                this.selector.select();
+                this.wakeupPending.set(false);
+                for (Connection connection = this.writable.poll(); connection != null; connection = this.writable
+                        .poll())
+                    write(connection);
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    if (key.isReadable())
+                        read(connection);
+                    if (key.isValid() && key.isWritable())
+                        write(connection);
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // the server socket failed, nothing more can be accepted
+        } finally {
+            for (SelectionKey key : this.selector.keys()) {
+                if (key.attachment() instanceof Connection)
+                    close((Connection) key.attachment());
+            }
+            closeQuietly(this.server);
+            closeQuietly(this.selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+            this.connections.incrementAndGet();
+        }
+    }
+
+    private void read(Connection connection) {
+        ByteBuffer buffer = this.readBuffer;
+        buffer.clear();
+        int read;
+        try {
+            read = connection.channel.read(buffer);
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+        if (read < 0) {
+            // the client is done sending, answer what it sent then close
+            connection.inputClosed = true;
+            updateInterest(connection);
+            closeIfDone(connection);
+            return;
+        }
+
+        buffer.flip();
+        StringBuilder line = connection.partial;
+        while (buffer.hasRemaining()) {
+            char next = (char) (buffer.get() & 0xff); // ISO-8859-1, written back the same way
+            if (next != '\n') {
+                if (line.length() == MAX_LINE_LENGTH) {
+                    close(connection);
+                    return;
+                }
+                line.append(next);
+                continue;
+            }
+
+            if (line.length() > 0 && line.charAt(line.length() - 1) == '\r')
+                line.setLength(line.length() - 1);
+            long sequence = connection.nextSequence++;
+            this.platform.execute(line, outputs -> complete(connection, sequence, outputs));
+            line.setLength(0);
+        }
+        updateInterest(connection);
+    }
+
+    /**
+     * Called by the shards with the outputs of the line of the given sequence
+     * number, or by the selector thread for lines without a command.
+     */
+    private void complete(Connection connection, long sequence, List<String> outputs) {
+        boolean signal;
+        synchronized (connection) {
+            if (connection.closed)
+                return;
+            if (sequence != connection.nextToWrite) {
+                connection.held.put(sequence, outputs);
+                return;
+            }
+
+            connection.append(outputs);
+            connection.nextToWrite++;
+            List<String> next;
+            while ((next = connection.held.remove(connection.nextToWrite)) != null) {
+                connection.append(next);
+                connection.nextToWrite++;
+            }
+            signal = !connection.queued && (connection.output.position() > 0 || connection.inputClosed);
+            connection.queued |= signal;
+        }
+        if (signal) {
+            this.writable.add(connection);
+            if (this.wakeupPending.compareAndSet(false, true))
+                this.selector.wakeup();
+        }
+    }
+
+    private void write(Connection connection) {
+        synchronized (connection) {
+            connection.queued = false;
+            if (connection.closed)
+                return;
+            ByteBuffer output = connection.output;
+            output.flip();
+            try {
+                connection.channel.write(output);
+            } catch (IOException e) {
+                output.clear();
+                close(connection);
+                return;
+            } finally {
+                output.compact();
+            }
+        }
+        updateInterest(connection);
+        closeIfDone(connection);
+    }
+
+    /**
+     * Writes while outputs are waiting, reads while the input is open and the
+     * client keeps up with its outputs.
+     */
+    private void updateInterest(Connection connection) {
+        int pending;
+        synchronized (connection) {
+            if (connection.closed)
+                return;
+            pending = connection.output.position();
+        }
+        int interest = 0;
+        if (pending > 0)
+            interest |= SelectionKey.OP_WRITE;
+        if (!connection.inputClosed && pending < MAX_PENDING_OUTPUT)
+            interest |= SelectionKey.OP_READ;
+        if (connection.key.isValid())
+            connection.key.interestOps(interest);
+    }
+
+    private void closeIfDone(Connection connection) {
+        boolean done;
+        synchronized (connection) {
+            done = connection.inputClosed && connection.nextToWrite == connection.nextSequence
+                    && connection.output.position() == 0;
+        }
+        if (done)
+            close(connection);
+    }
+
+    private void close(Connection connection) {
+        synchronized (connection) {
+            if (connection.closed)
+                return;
+            connection.closed = true;
+            connection.held.clear();
+        }
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+        this.connections.decrementAndGet();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // nothing left to do with it
+        }
+    }
+
+    /**
+     * State of a client connection. The input side is only touched by the
+     * selector thread, the output side is shared with the shards.
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        final StringBuilder partial = new StringBuilder(); // line read so far
+        long nextSequence; // of the next line read, selector thread only
+        volatile boolean inputClosed;
+
+        // guarded by this
+        long nextToWrite; // sequence of the next line to answer
+        final Map<Long, List<String>> held = new HashMap<>(); // outputs of later lines, by sequence
+        ByteBuffer output = ByteBuffer.allocate(INITIAL_OUTPUT_SIZE); // in write mode
+        boolean queued; // waiting in the writable queue
+        boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void append(List<String> lines) {
+            for (String line : lines) {
+                byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+                ensureRemaining(bytes.length + 1);
+                this.output.put(bytes).put((byte) '\n');
+            }
+        }
+
+        private void ensureRemaining(int required) {
+            if (this.output.remaining() >= required)
+                return;
+            int capacity = Math.max(this.output.capacity() * 2, this.output.position() + required);
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            this.output.flip();
+            grown.put(this.output);
+            this.output = grown;
+        }
+    }
+}
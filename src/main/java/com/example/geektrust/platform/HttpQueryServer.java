@@ -0,0 +1,315 @@
+package com.example.geektrust.platform;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiPredicate;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioJson;
+import com.example.geektrust.portfolio.PortfolioManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Read only HTTP API over the portfolios of a {@link MultiTenantPlatform}, on
+ * the JDK {@link HttpServer}.
+ *
+ * <pre>
+ * GET /portfolios/{id}/balance                       current balances
+ * GET /portfolios/{id}/balance?month=MARCH           balances as reported by BALANCE
+ * GET /portfolios/{id}/rebalance                     pending status and last rebalance
+ * GET /portfolios/{id}/history?fund=EQUITY&amp;offset=0&amp;limit=100
+ * </pre>
+ * <p>
+ * Every read runs on the shard owning the portfolio, as a task queued after
+ * the commands routed before it, and encodes its {@link PortfolioJson} there
+ * straight from the ledgers. The JSON buffers are pooled, a buffer grown over
+ * {@value #MAX_POOLED_CAPACITY} bytes is left to the garbage collector.
+ * <p>
+ * Handlers run on a bounded executor: virtual threads limited to the given
+ * number of concurrent requests when the runtime has them, otherwise a fixed
+ * pool of that many threads. Requests beyond the bound wait in the dispatcher
+ * of the HTTP server.
+ */
+public final class HttpQueryServer implements Closeable {
+    static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    private static final String CONTEXT = "/portfolios/";
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final long QUERY_TIMEOUT_SECONDS = 5;
+    private static final int QUEUED_PER_THREAD = 16;
+
+    private final MultiTenantPlatform platform;
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final Queue<PortfolioJson> buffers = new ConcurrentLinkedQueue<>();
+
+    private HttpQueryServer(MultiTenantPlatform platform, HttpServer server, ExecutorService workers) {
+        this.platform = platform;
+        this.server = server;
+        this.workers = workers;
+    }
+
+    /**
+     * @param address        port 0 for any free port.
+     * @param maxConcurrency number of requests handled at the same time.
+     */
+    public static HttpQueryServer open(MultiTenantPlatform platform, InetSocketAddress address, int maxConcurrency)
+            throws IOException {
+        if (maxConcurrency < 1)
+            throw new IllegalArgumentException("at least one request at a time required: " + maxConcurrency);
+
+        HttpServer server = HttpServer.create(address, 1024);
+        ExecutorService virtualThreads = virtualThreadExecutor();
+        ExecutorService workers;
+        Executor executor;
+        if (virtualThreads != null) {
+            workers = virtualThreads;
+            Semaphore permits = new Semaphore(maxConcurrency);
+            executor = task -> {
+                permits.acquireUninterruptibly();
+                try {
+                    virtualThreads.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            };
+        } else {
+            workers = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(maxConcurrency * QUEUED_PER_THREAD), task -> {
+                        Thread thread = new Thread(task, "http-query");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+            executor = workers;
+        }
+
+        HttpQueryServer queryServer = new HttpQueryServer(platform, server, workers);
+        server.createContext(CONTEXT, queryServer::handle);
+        server.setExecutor(executor);
+        server.start();
+        return queryServer;
+    }
+
+    public InetSocketAddress getAddress() {
+        return this.server.getAddress();
+    }
+
+    /**
+     * Stops the server, requests being handled are given a second to complete.
+     * The platform is left running.
+     */
+    @Override
+    public void close() {
+        this.server.stop(1);
+        this.workers.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respondError(exchange, 405, "only GET is supported");
+                return;
+            }
+
+            // {id}/{resource}
+            String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+            int slash = path.indexOf('/');
+            if (slash <= 0 || path.indexOf('/', slash + 1) >= 0) {
+                respondError(exchange, 404, "no such resource");
+                return;
+            }
+            String id = path.substring(0, slash);
+            String resource = path.substring(slash + 1);
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+            BiPredicate<PortfolioJson, PortfolioManager> encoder;
+            try {
+                encoder = encoderOf(id, resource, parameters);
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 400, e.getMessage());
+                return;
+            }
+            if (encoder == null) {
+                respondError(exchange, 404, "no such resource");
+                return;
+            }
+            query(exchange, id, encoder);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return null if there is no such resource.
+     * @throws IllegalArgumentException if a parameter is not valid.
+     */
+    private static BiPredicate<PortfolioJson, PortfolioManager> encoderOf(
+            String id, String resource, Map<String, String> parameters) {
+        switch (resource) {
+        case "balance":
+            String month = parameters.get("month");
+            if (month == null)
+                return (json, portfolio) -> {
+                    json.writeBalance(id, portfolio);
+                    return true;
+                };
+            Month of = monthOf(month);
+            return (json, portfolio) -> json.writeBalance(id, portfolio, of);
+        case "rebalance":
+            return (json, portfolio) -> {
+                json.writeRebalanceStatus(id, portfolio);
+                return true;
+            };
+        case "history":
+            String fund = parameters.get("fund");
+            FundType type = fund == null ? null : FundType.valueOf(fund.toUpperCase(Locale.ROOT));
+            int offset = intParameter(parameters, "offset", 0);
+            int limit = Math.min(intParameter(parameters, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+            if (offset < 0 || limit < 0)
+                throw new IllegalArgumentException("offset and limit have to be positive");
+            return (json, portfolio) -> {
+                json.writeHistory(id, portfolio, type, offset, limit);
+                return true;
+            };
+        default:
+            return null;
+        }
+    }
+
+    private void query(HttpExchange exchange, String id,
+            BiPredicate<PortfolioJson, PortfolioManager> encoder) throws IOException {
+        PortfolioJson json = borrow();
+        CompletableFuture<Optional<Boolean>> result = this.platform.query(id,
+                portfolio -> encoder.test(json.reset(), portfolio));
+        Optional<Boolean> written;
+        try {
+            written = result.get(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            // the shard may still write to the buffer, it is not pooled again
+            respondError(exchange, 503, "portfolio busy, try again");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respondError(exchange, 503, "interrupted");
+            return;
+        } catch (ExecutionException e) {
+            release(json);
+            respondError(exchange, 500, "query failed");
+            return;
+        }
+
+        try {
+            if (!written.isPresent())
+                respondError(exchange, 404, "no portfolio " + id);
+            else if (!written.get())
+                respondError(exchange, 404, "no balance for the month");
+            else
+                respond(exchange, 200, json);
+        } finally {
+            release(json);
+        }
+    }
+
+    private void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        PortfolioJson json = borrow();
+        try {
+            json.reset().writeError(message);
+            respond(exchange, status, json);
+        } finally {
+            release(json);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, PortfolioJson json) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, json.size());
+        try (OutputStream body = exchange.getResponseBody()) {
+            json.writeTo(body);
+        }
+    }
+
+    private PortfolioJson borrow() {
+        PortfolioJson json = this.buffers.poll();
+        return json != null ? json : new PortfolioJson(INITIAL_BUFFER_SIZE);
+    }
+
+    private void release(PortfolioJson json) {
+        if (json.capacity() <= MAX_POOLED_CAPACITY)
+            this.buffers.offer(json);
+    }
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty())
+            return parameters;
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals <= 0)
+                continue;
+            parameters.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static Month monthOf(String name) {
+        try {
+            return Month.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("no month " + name);
+        }
+    }
+
+    private static int intParameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + name + "=" + value);
+        }
+    }
+
+    /**
+     * @return an executor starting a virtual thread per task, null if the
+     *         runtime has no virtual threads.
+     */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,8 +1,33 @@
 
 package com.example.geektrust.platform;
 
+import java.io.IOException;
 import java.util.Optional;
 
-public interface InputCommandProvider {
+/**
+ * Source of the input commands, one line each.
+ * <p>
+ * A provider may hold an input, such as a file, so it can be closed. Providers
+ * without one, including the implementations written before it, keep the
+ * default close which releases nothing.
+ */
+public interface InputCommandProvider extends AutoCloseable {
     public Optional<String> nextCommand();
+
+    /**
+     * The next command as a {@link CharSequence}, which is only guaranteed to be
+     * valid until the next call. Providers may override it to return the same
+     * view for every line without copying it into a String, the platforms read
+     * the commands through it. Provides {@link #nextCommand()} by default.
+     */
+    public default Optional<CharSequence> nextCommandView() {
+        return nextCommand().map(command -> command);
+    }
+
+    /**
+     * Release the input, nothing to release by default.
+     */
+    @Override
+    public default void close() throws IOException {
+    }
 }
@@ -0,0 +1,57 @@
+package com.example.geektrust.platform;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import com.example.geektrust.portfolio.TransactionJournal;
+
+/**
+ * {@link InputCommandProvider} of the input lines not yet applied to a
+ * journaled portfolio. The lines up to the input position recovered from the
+ * journal are skipped, and the position of every provided line is handed to
+ * the journal, so the update of the line commits with it.
+ * <p>
+ * Every command has to be executed before the next one is provided, as the
+ * sequential {@link MyMoneyPlatform} does.
+ */
+public final class JournaledCommandProvider implements InputCommandProvider {
+    private final InputCommandProvider input;
+    private final TransactionJournal journal;
+    private long position; // number of lines provided or skipped
+
+    private JournaledCommandProvider(InputCommandProvider input, TransactionJournal journal) {
+        this.input = input;
+        this.journal = journal;
+    }
+
+    public static JournaledCommandProvider of(InputCommandProvider input, TransactionJournal journal) {
+        if (input == null || journal == null)
+            throw new IllegalArgumentException("input and journal are required");
+        return new JournaledCommandProvider(input, journal);
+    }
+
+    @Override
+    public Optional<String> nextCommand() {
+        return nextCommandView().map(CharSequence::toString);
+    }
+
+    @Override
+    public Optional<CharSequence> nextCommandView() {
+        // skip the lines applied before the recovery
+        while (this.position < this.journal.getRecoveredInputPosition()) {
+            if (!this.input.nextCommandView().isPresent())
+                return Optional.empty();
+            this.position++;
+        }
+
+        Optional<CharSequence> command = this.input.nextCommandView();
+        if (command.isPresent())
+            this.journal.setInputPosition(++this.position);
+        return command;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+}
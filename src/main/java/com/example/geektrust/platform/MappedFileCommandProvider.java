@@ -0,0 +1,174 @@
+package com.example.geektrust.platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Implementation of {@link InputCommandProvider} which reads the commands from
+ * a memory mapped file.
+ * <p>
+ * Lines are split on the raw bytes and handed out as a reused
+ * {@link CharSequence} view over the mapped bytes, nothing is decoded or copied
+ * per line. Every byte is read as a single (ISO-8859-1) character, which is
+ * exact for the ASCII command grammar. Lines end with {@code \n},
+ * {@code \r\n} or {@code \r}, as {@link java.util.Scanner#nextLine()} reads
+ * them.
+ * <p>
+ * Large files are mapped in windows, a line crossing the end of a window is
+ * read again from a window starting at the line.
+ */
+public class MappedFileCommandProvider implements InputCommandProvider {
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int position; // within the window
+
+    private final ByteSlice line;
+    private final Optional<CharSequence> nextLine; // same view for every line
+
+    public MappedFileCommandProvider(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedFileCommandProvider(Path file, int windowSize) throws IOException {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("window size has to be positive: " + windowSize);
+
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = this.channel.size();
+        this.windowSize = windowSize;
+        this.line = new ByteSlice();
+        this.nextLine = Optional.of(this.line);
+        map(0, windowSize);
+    }
+
+    @Override
+    public Optional<String> nextCommand() {
+        return nextCommandView().map(CharSequence::toString);
+    }
+
+    /**
+     * @return a view of the next line valid until the next call, empty at the end
+     *         of the file.
+     */
+    @Override
+    public Optional<CharSequence> nextCommandView() {
+        while (true) {
+            int limit = this.window.limit();
+            boolean lastWindow = this.windowStart + limit == this.fileSize;
+            int lineBreak = indexOfLineBreak(this.position, limit);
+            if (lineBreak >= 0) {
+                if (this.window.get(lineBreak) == '\n')
+                    return nextLine(lineBreak, lineBreak + 1);
+                // a carriage return ends the line, with the line feed following it
+                if (lineBreak + 1 < limit) {
+                    int next = this.window.get(lineBreak + 1) == '\n' ? lineBreak + 2 : lineBreak + 1;
+                    return nextLine(lineBreak, next);
+                }
+                if (lastWindow)
+                    return nextLine(lineBreak, limit);
+                // the line feed may start the next window
+            } else if (lastWindow) {
+                if (this.position == limit)
+                    return Optional.empty();
+                return nextLine(limit, limit); // last line without a line break
+            }
+
+            // the line continues past the window, a line longer than a whole window
+            // needs a larger one
+            int size = this.position == 0 ? (int) Math.min(Integer.MAX_VALUE, 2L * limit) : this.windowSize;
+            map(this.windowStart + this.position, size);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private Optional<CharSequence> nextLine(int lineEnd, int next) {
+        this.line.reset(this.window, this.position, lineEnd);
+        this.position = next;
+        return this.nextLine;
+    }
+
+    private int indexOfLineBreak(int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = this.window.get(i);
+            if (b == '\n' || b == '\r')
+                return i;
+        }
+        return -1;
+    }
+
+    private void map(long start, int size) {
+        long length = Math.min(size, this.fileSize - start);
+        try {
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.windowStart = start;
+        this.position = 0;
+    }
+
+    /**
+     * {@link CharSequence} view over a range of mapped bytes.
+     */
+    private static final class ByteSlice implements CharSequence {
+        private MappedByteBuffer buffer;
+        private int start;
+        private int end;
+
+        private ByteSlice() {
+        }
+
+        private ByteSlice(MappedByteBuffer buffer, int start, int end) {
+            reset(buffer, start, end);
+        }
+
+        private void reset(MappedByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return this.end - this.start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length())
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+            return (char) (this.buffer.get(this.start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length() || start > end)
+                throw new IndexOutOfBoundsException("range [" + start + ", " + end + "), length " + length());
+            return new ByteSlice(this.buffer, this.start + start, this.start + end);
+        }
+
+        @Override
+        public String toString() {
+            byte[] bytes = new byte[length()];
+            for (int i = 0; i < bytes.length; i++)
+                bytes[i] = this.buffer.get(this.start + i);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.geektrust.platform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.example.geektrust.command.CommandMetrics;
+import com.example.geektrust.portfolio.HistoryRetention;
+import com.example.geektrust.portfolio.PortfolioManager;
+import com.example.geektrust.portfolio.PortfolioSnapshot;
+
+/**
+ * Tenant keyed variant of {@link MyMoneyPlatform}. Every input line carries the
+ * portfolio id as its first token, e.g. {@code c42 ALLOCATE 6000 3000 1000},
+ * and is routed to that tenant's {@link PortfolioManager}.
+ * <p>
+ * Tenants are hashed onto a fixed set of {@link TenantShard}s, each executing
+ * its commands on a single writer thread. Commands of the same tenant are
+ * executed in input order, there is no global lock across tenants. Outputs are
+ * reported as {@code <portfolioId> <output>}, the given reporter has to be
+ * thread safe as shards report concurrently.
+ * <p>
+ * The tenants can be saved to a directory of {@link PortfolioSnapshot}s, one
+ * per shard written by the shard itself, and restored from it on the next
+ * start instead of replaying their commands.
+ * <p>
+ * The history of long lived portfolios can be compacted in the background,
+ * see {@link #startCompaction(HistoryRetention, Duration)}.
+ */
+public class MultiTenantPlatform {
+    public static final int DEFAULT_SHARD_CAPACITY = 1024;
+    static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    private final TenantShard[] shards;
+    private final InputCommandProvider commandProvider;
+    private ScheduledExecutorService compactor; // guarded by this
+
+    private MultiTenantPlatform(TenantShard[] shards, InputCommandProvider commandProvider) {
+        this.shards = shards;
+        this.commandProvider = commandProvider;
+    }
+
+    /**
+     * @param portfolioFactory creates the portfolio of a tenant on its first
+     *                         command.
+     * @param shardCount       number of writer threads, usually the number of
+     *                         cores.
+     */
+    public static final MultiTenantPlatform of(Supplier<PortfolioManager> portfolioFactory, int shardCount,
+            InputCommandProvider commandProvider, Optional<Consumer<String>> executionOutputReporter) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("at least one shard required: " + shardCount);
+
+        TenantShard[] shards = new TenantShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new TenantShard(i, DEFAULT_SHARD_CAPACITY, portfolioFactory, executionOutputReporter);
+            shards[i].start();
+        }
+        return new MultiTenantPlatform(shards, commandProvider);
+    }
+
+    /**
+     * Every command parsed and executed by the shards from now on is reported to
+     * the metrics, which have to be thread safe.
+     */
+    public void setCommandMetrics(CommandMetrics metrics) {
+        for (TenantShard shard : this.shards)
+            shard.setCommandMetrics(metrics);
+    }
+
+    /**
+     * Route the given line to the owning shard, lines without a command after
+     * the portfolio id are skipped.
+     */
+    public void execute(CharSequence inputLine) {
+        int idStart = skipWhitespace(inputLine, 0);
+        int idEnd = skipToWhitespace(inputLine, idStart);
+        int commandStart = skipWhitespace(inputLine, idEnd);
+        if (idStart == idEnd || commandStart == inputLine.length())
+            return; // no portfolio id or no command
+
+        // copied as the line is handed over to the shard thread
+        execute(inputLine.subSequence(idStart, idEnd).toString(),
+                inputLine.subSequence(commandStart, inputLine.length()).toString());
+    }
+
+    public void execute(String portfolioId, String command) {
+        shardOf(portfolioId).submit(portfolioId, command);
+    }
+
+    /**
+     * Route the given line to the owning shard, its outputs are handed to the
+     * given consumer once executed instead of the platform reporter, on the
+     * shard thread. Lines without a command after the portfolio id get no
+     * output, on the calling thread.
+     *
+     * @param outputs receives the output lines of the command, prefixed with
+     *                the portfolio id, an empty list if there is none.
+     */
+    public void execute(CharSequence inputLine, Consumer<List<String>> outputs) {
+        int idStart = skipWhitespace(inputLine, 0);
+        int idEnd = skipToWhitespace(inputLine, idStart);
+        int commandStart = skipWhitespace(inputLine, idEnd);
+        if (idStart == idEnd || commandStart == inputLine.length()) {
+            outputs.accept(Collections.emptyList());
+            return;
+        }
+
+        String portfolioId = inputLine.subSequence(idStart, idEnd).toString();
+        shardOf(portfolioId).submit(portfolioId, inputLine.subSequence(commandStart, inputLine.length()).toString(),
+                outputs);
+    }
+
+    /**
+     * Runs a read of the tenant's portfolio on the shard owning it, after the
+     * commands routed to the shard before it. Blocks while the shard is full.
+     *
+     * @return completed with the result of the query, empty if the tenant has
+     *         no portfolio, exceptionally if the query failed.
+     */
+    public <T> CompletableFuture<Optional<T>> query(String portfolioId, Function<PortfolioManager, T> query) {
+        CompletableFuture<Optional<T>> result = new CompletableFuture<>();
+        shardOf(portfolioId).submit(portfolios -> {
+            PortfolioManager portfolio = portfolios.get(portfolioId);
+            result.complete(portfolio == null ? Optional.empty() : Optional.ofNullable(query.apply(portfolio)));
+        }).exceptionally(failure -> {
+            result.completeExceptionally(failure);
+            return null;
+        });
+        return result;
+    }
+
+    /**
+     * Continuously route the commands provided by the given
+     * {@code InputCommandProvider} until the provider has no command to send.
+     * Commands may still be executing when this method returns, use
+     * {@link #shutDown()} to wait for them.
+     */
+    public void start() {
+        Optional<CharSequence> nextCommand = this.commandProvider.nextCommandView();
+        while (nextCommand.isPresent()) {
+            this.execute(nextCommand.get());
+            nextCommand = this.commandProvider.nextCommandView();
+        }
+    }
+
+    /**
+     * Compacts the history of every portfolio to the given retention, on the
+     * shards after the commands routed so far. Blocks while a shard is full.
+     *
+     * @return completed with the number of transaction records removed.
+     */
+    public CompletableFuture<Long> compactHistory(HistoryRetention retention) {
+        CompletableFuture<Long> removed = CompletableFuture.completedFuture(0L);
+        for (TenantShard shard : this.shards) {
+            long[] count = new long[1];
+            CompletableFuture<Void> task = shard.submit(portfolios -> {
+                for (PortfolioManager portfolio : portfolios.values())
+                    count[0] += portfolio.compactHistory(retention);
+            });
+            removed = removed.thenCombine(task, (total, done) -> total + count[0]);
+        }
+        return removed;
+    }
+
+    /**
+     * Compacts the history of every portfolio to the given retention at the
+     * given period, on a background thread queueing one task per shard and
+     * waiting for them before the next run, until {@link #shutDown()}.
+     */
+    public synchronized void startCompaction(HistoryRetention retention, Duration period) {
+        if (this.compactor != null)
+            throw new IllegalStateException("already compacting");
+        this.compactor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "history-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = period.toNanos();
+        this.compactor.scheduleWithFixedDelay(() -> compact(retention), nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void compact(HistoryRetention retention) {
+        try {
+            compactHistory(retention).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // tried again at the next run
+        }
+    }
+
+    private synchronized void stopCompaction() {
+        if (this.compactor == null)
+            return;
+
+        this.compactor.shutdownNow();
+        try {
+            this.compactor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.compactor = null;
+    }
+
+    /**
+     * Waits until all the routed commands are executed and release the tenants.
+     */
+    public void shutDown() {
+        stopCompaction();
+        for (TenantShard shard : this.shards)
+            shard.shutDown();
+    }
+
+    /**
+     * Writes the portfolios of every shard into the directory, once the commands
+     * routed so far are executed. Snapshots of a previous call with more shards
+     * are removed.
+     */
+    public void snapshot(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Set<Path> written = new HashSet<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(this.shards.length);
+        for (int i = 0; i < this.shards.length; i++) {
+            Path file = directory.resolve("shard-" + i + SNAPSHOT_EXTENSION);
+            written.add(file);
+            tasks.add(this.shards[i].submit(portfolios -> {
+                try {
+                    PortfolioSnapshot.write(file, portfolios);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        awaitAll(tasks);
+
+        for (Path file : snapshotsOf(directory)) {
+            if (!written.contains(file))
+                Files.delete(file);
+        }
+    }
+
+    /**
+     * Restores the portfolios of every snapshot in the directory to their
+     * shards, whatever the number of shards they were written from. Intended to
+     * run before any command is routed, a restored portfolio replaces the one of
+     * the same tenant. Snapshots are restored in parallel, the history of a
+     * portfolio is read from its snapshot on first access.
+     *
+     * @return number of restored portfolios.
+     */
+    public long restore(Path directory) throws IOException {
+        List<Path> snapshots = snapshotsOf(directory);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        List<CompletableFuture<Long>> restores = new ArrayList<>(snapshots.size());
+        for (Path snapshot : snapshots) {
+            restores.add(CompletableFuture.supplyAsync(() -> {
+                List<Map<String, PortfolioManager>> byShard = new ArrayList<>(this.shards.length);
+                for (int i = 0; i < this.shards.length; i++)
+                    byShard.add(new HashMap<>());
+                long count;
+                try {
+                    count = PortfolioSnapshot.restore(snapshot,
+                            (id, portfolio) -> byShard.get(shardIndexOf(id)).put(id, portfolio));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                synchronized (tasks) {
+                    for (int i = 0; i < this.shards.length; i++) {
+                        Map<String, PortfolioManager> restored = byShard.get(i);
+                        tasks.add(this.shards[i].submit(portfolios -> portfolios.putAll(restored)));
+                    }
+                }
+                return count;
+            }));
+        }
+
+        long restored = 0;
+        for (CompletableFuture<Long> count : restores)
+            restored += await(count);
+        awaitAll(tasks);
+        return restored;
+    }
+
+    private static List<Path> snapshotsOf(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory))
+            return snapshots;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SNAPSHOT_EXTENSION)) {
+            files.forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+
+    private static void awaitAll(List<CompletableFuture<Void>> tasks) throws IOException {
+        for (CompletableFuture<Void> task : tasks)
+            await(task);
+    }
+
+    private static <T> T await(CompletableFuture<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException)
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            throw new IOException("shard task failed", e.getCause());
+        }
+    }
+
+    private TenantShard shardOf(String portfolioId) {
+        return this.shards[shardIndexOf(portfolioId)];
+    }
+
+    private int shardIndexOf(String portfolioId) {
+        return Math.floorMod(portfolioId.hashCode(), this.shards.length);
+    }
+
+    private static int skipWhitespace(CharSequence input, int from) {
+        int i = from;
+        while (i < input.length() && Character.isWhitespace(input.charAt(i)))
+            i++;
+        return i;
+    }
+
+    private static int skipToWhitespace(CharSequence input, int from) {
+        int i = from;
+        while (i < input.length() && !Character.isWhitespace(input.charAt(i)))
+            i++;
+        return i;
+    }
+}
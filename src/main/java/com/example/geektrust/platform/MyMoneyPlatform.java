@@ -1,33 +1,81 @@
 package com.example.geektrust.platform;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import com.example.geektrust.command.CommandBinding;
+import com.example.geektrust.command.CommandMetrics;
 import com.example.geektrust.command.ExecutablePortfolioCommand;
 import com.example.geektrust.portfolio.PortfolioManager;
 
 public class MyMoneyPlatform {
+    public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final int SEQUENTIAL = 0;
+
     private final PortfolioManager portfolio;
     private final InputCommandProvider commandProvider;
     private final Optional<Consumer<String>> executionOutputReporter;
+    private final int queueCapacity; // SEQUENTIAL if not pipelined
+    private volatile Pipeline pipeline; // last started pipeline
+    private CommandMetrics metrics = CommandMetrics.NONE;
 
     private MyMoneyPlatform(final PortfolioManager portfolio, InputCommandProvider commandProvider,
-            Optional<Consumer<String>> executionOutputReporter) {
+            Optional<Consumer<String>> executionOutputReporter, int queueCapacity) {
         this.portfolio = portfolio;
         this.commandProvider = commandProvider;
         this.executionOutputReporter = executionOutputReporter;
+        this.queueCapacity = queueCapacity;
     }
 
     public static final MyMoneyPlatform of(final PortfolioManager portfolio, InputCommandProvider commandProvider,
             Optional<Consumer<String>> executionOutputReporter) {
-        return new MyMoneyPlatform(portfolio, commandProvider, executionOutputReporter);
+        return new MyMoneyPlatform(portfolio, commandProvider, executionOutputReporter, SEQUENTIAL);
+    }
+
+    /**
+     * Platform reading, parsing and executing the commands on three threads, see
+     * {@link #start()}.
+     *
+     * @param queueCapacity maximum number of lines, and of parsed commands,
+     *                      queued between the stages.
+     */
+    public static final MyMoneyPlatform pipelined(final PortfolioManager portfolio,
+            InputCommandProvider commandProvider, Optional<Consumer<String>> executionOutputReporter,
+            int queueCapacity) {
+        if (queueCapacity < 1)
+            throw new IllegalArgumentException("queue capacity has to be positive: " + queueCapacity);
+        return new MyMoneyPlatform(portfolio, commandProvider, executionOutputReporter, queueCapacity);
     }
 
-    public void execute(String inputLine) {
-        Optional<ExecutablePortfolioCommand> executable = CommandBinding.toExecutable(inputLine);
+    /**
+     * Every command parsed and executed from now on is reported to the metrics,
+     * has to be set before {@link #start()}.
+     */
+    public void setCommandMetrics(CommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * A command with amounts out of the money range is skipped, as an invalid
+     * one is, the portfolio is left as it was.
+     */
+    public void execute(CharSequence inputLine) {
+        Optional<ExecutablePortfolioCommand> executable = CommandBinding.toExecutable(inputLine, this.metrics);
         if (executable.isPresent()) {
-            executable.get().execute(portfolio, executionOutputReporter);
+            execute(executable.get());
+        }
+    }
+
+    private void execute(ExecutablePortfolioCommand command) {
+        try {
+            command.execute(portfolio, executionOutputReporter);
+        } catch (ArithmeticException e) {
+            // out of the money range, rejected without any update
         }
     }
 
@@ -35,17 +83,156 @@ public class MyMoneyPlatform {
      * This method starts the platform and continuously accept input commands
      * provided by the given {@code InputCommandProvider} until the provider has no
      * command to send.
+     * <p>
+     * A pipelined platform reads the lines on a reader thread and parses them on
+     * a parser thread while the calling thread executes the parsed commands. The
+     * stages are connected by bounded lock-free queues with a single producer and
+     * a single consumer, so commands are executed in input order. The method
+     * returns once every command is executed, rethrowing the first failure of any
+     * stage.
      */
     public void start() {
+        if (this.queueCapacity != SEQUENTIAL) {
+            Pipeline pipeline = new Pipeline(this.queueCapacity);
+            this.pipeline = pipeline;
+            pipeline.run();
+            return;
+        }
+
         // continuously keep listening for new commands
-        Optional<String> nextCommand = this.commandProvider.nextCommand();
+        Optional<CharSequence> nextCommand = this.commandProvider.nextCommandView();
         while (nextCommand.isPresent()) {
             this.execute(nextCommand.get());
-            nextCommand = this.commandProvider.nextCommand();
+            nextCommand = this.commandProvider.nextCommandView();
         }
     }
 
+    /**
+     * @return statistics of the reader, parser and executor stages of the last
+     *         started pipeline, empty if none was started.
+     */
+    public List<StageStatistics> stageStatistics() {
+        Pipeline pipeline = this.pipeline;
+        return pipeline == null ? Collections.emptyList() : pipeline.statistics();
+    }
+
     public void shutDown() {
         portfolio.clear();
     }
+
+    private class Pipeline {
+        // end of input markers, compared by identity
+        private final String endOfLines = new String();
+        private final ExecutablePortfolioCommand endOfCommands = (portfolio, reporter) -> {
+        };
+
+        private final SpscRingBuffer<String> lines;
+        private final SpscRingBuffer<ExecutablePortfolioCommand> commands;
+        // written by a single stage each, read by the statistics
+        private final AtomicLong read = new AtomicLong();
+        private final AtomicLong parsed = new AtomicLong();
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        private volatile boolean stopped;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        Pipeline(int capacity) {
+            this.lines = new SpscRingBuffer<>(capacity);
+            this.commands = new SpscRingBuffer<>(capacity);
+        }
+
+        void run() {
+            this.startNanos = System.nanoTime();
+            Thread reader = stage("mymoney-reader", this::read);
+            Thread parser = stage("mymoney-parser", this::parse);
+            try {
+                execute();
+            } catch (RuntimeException e) {
+                this.failure.compareAndSet(null, e);
+            } finally {
+                this.stopped = true; // releases the other stages if the executor failed
+                join(reader);
+                join(parser);
+                this.endNanos = System.nanoTime();
+            }
+
+            RuntimeException failure = this.failure.get();
+            if (failure != null)
+                throw failure;
+        }
+
+        private void read() {
+            try {
+                // read as a String, the provider may reuse the view of a line
+                Optional<String> nextCommand = commandProvider.nextCommand();
+                while (nextCommand.isPresent()) {
+                    if (!this.lines.put(nextCommand.get(), this::isStopped))
+                        return;
+                    this.read.lazySet(this.read.get() + 1);
+                    nextCommand = commandProvider.nextCommand();
+                }
+            } finally {
+                this.lines.put(this.endOfLines, this::isStopped);
+            }
+        }
+
+        private void parse() {
+            try {
+                String line = this.lines.take(this::isStopped);
+                while (line != null && line != this.endOfLines) {
+                    this.parsed.lazySet(this.parsed.get() + 1);
+                    Optional<ExecutablePortfolioCommand> executable = CommandBinding.toExecutable(line, metrics);
+                    if (executable.isPresent() && !this.commands.put(executable.get(), this::isStopped))
+                        return;
+                    line = this.lines.take(this::isStopped);
+                }
+            } finally {
+                this.commands.put(this.endOfCommands, this::isStopped);
+            }
+        }
+
+        private void execute() {
+            ExecutablePortfolioCommand command = this.commands.take(this::isStopped);
+            while (command != null && command != this.endOfCommands) {
+                MyMoneyPlatform.this.execute(command);
+                this.executed.lazySet(this.executed.get() + 1);
+                command = this.commands.take(this::isStopped);
+            }
+        }
+
+        private boolean isStopped() {
+            return this.stopped;
+        }
+
+        private Thread stage(String name, Runnable body) {
+            Thread thread = new Thread(() -> {
+                try {
+                    body.run();
+                } catch (RuntimeException e) {
+                    this.failure.compareAndSet(null, e);
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        private void join(Thread stage) {
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        List<StageStatistics> statistics() {
+            long end = this.endNanos;
+            long elapsed = (end != 0 ? end : System.nanoTime()) - this.startNanos;
+            return Arrays.asList(
+                    new StageStatistics("reader", 0, this.read.get(), elapsed),
+                    new StageStatistics("parser", this.lines.size(), this.parsed.get(), elapsed),
+                    new StageStatistics("executor", this.commands.size(), this.executed.get(), elapsed));
+        }
+    }
 }
@@ -0,0 +1,119 @@
+package com.example.geektrust.platform;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import com.example.geektrust.command.CommandBinding;
+import com.example.geektrust.command.ExecutablePortfolioCommand;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+/**
+ * Runs what-if scenarios from the same starting portfolio, each scenario being
+ * a sequence of commands such as {@code CHANGE}, {@code BALANCE} and
+ * {@code REBALANCE}.
+ * <p>
+ * Every scenario runs on its own {@link PortfolioManager#fork()} of the
+ * starting portfolio, so the history up to the start is shared by all the
+ * scenarios instead of being replayed or copied for each of them. Scenarios run
+ * in parallel on a work stealing pool and are pulled from the input as workers
+ * free up, so only a bounded number of forks is alive at any time.
+ */
+public class ScenarioRunner {
+    // scenarios queued per worker, so workers do not wait for the next scenario
+    private static final int QUEUED_PER_WORKER = 4;
+
+    private final int parallelism;
+
+    private ScenarioRunner(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param parallelism number of scenarios run at the same time.
+     */
+    public static ScenarioRunner of(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("at least one worker required: " + parallelism);
+        return new ScenarioRunner(parallelism);
+    }
+
+    /**
+     * @return outputs of every scenario, in scenario order.
+     */
+    public List<List<String>> run(PortfolioManager portfolio, List<? extends List<String>> scenarios) {
+        List<List<String>> outputs = new ArrayList<>(scenarios.size());
+        run(portfolio, scenarios.iterator(), outputs::add);
+        return outputs;
+    }
+
+    /**
+     * Runs every scenario over a fork of the portfolio, the portfolio itself is
+     * not updated. Has to be called by the thread owning the portfolio.
+     *
+     * @param scenarios command lines of every scenario, invalid commands are
+     *                  skipped.
+     * @param outputs   receives the outputs of every scenario on the calling
+     *                  thread, in scenario order.
+     * @return number of scenarios run.
+     * @throws IllegalStateException if interrupted, or if a scenario failed
+     *                               with a checked exception.
+     */
+    public long run(PortfolioManager portfolio, Iterator<? extends List<String>> scenarios,
+            Consumer<List<String>> outputs) {
+        int maxQueued = this.parallelism * QUEUED_PER_WORKER;
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+        try {
+            Deque<Future<List<String>>> running = new ArrayDeque<>(maxQueued);
+            long count = 0;
+            while (scenarios.hasNext() || !running.isEmpty()) {
+                while (running.size() < maxQueued && scenarios.hasNext()) {
+                    List<String> scenario = scenarios.next();
+                    PortfolioManager fork = portfolio.fork(); // forked by the owner thread
+                    running.add(pool.submit(() -> execute(fork, scenario)));
+                }
+                outputs.accept(await(running.poll()));
+                count++;
+            }
+            return count;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<String> execute(PortfolioManager fork, List<String> scenario) {
+        List<String> outputs = new ArrayList<>();
+        Optional<Consumer<String>> reporter = Optional.of(outputs::add);
+        for (String line : scenario) {
+            Optional<ExecutablePortfolioCommand> executable = CommandBinding.toExecutable(line);
+            if (executable.isPresent()) {
+                try {
+                    executable.get().execute(fork, reporter);
+                } catch (ArithmeticException e) {
+                    // out of the money range, skipped as in the input of the platform
+                }
+            }
+        }
+        return outputs;
+    }
+
+    private static <T> T await(Future<T> scenario) {
+        try {
+            return scenario.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running scenarios", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("scenario failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.geektrust.platform;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bounded lock-free queue between exactly one producer thread and one consumer
+ * thread. Each side only writes its own counter, published with an ordered
+ * store, and caches the other side's counter so the shared cache lines are only
+ * read when the queue looks full or empty.
+ * <p>
+ * The blocking {@link #put(Object, BooleanSupplier)} and
+ * {@link #take(BooleanSupplier)} spin for a while, then yield and finally park
+ * for short periods until the queue is ready or the given stop condition holds.
+ */
+final class SpscRingBuffer<E> {
+    private static final int SPINS = 128;
+    private static final int YIELDS = 16;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); // next slot to poll, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); // next slot to offer, written by the producer
+    private long headCache; // producer only
+    private long tailCache; // consumer only
+
+    /**
+     * @param capacity rounded up to the next power of two.
+     */
+    SpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return this.mask + 1;
+    }
+
+    /**
+     * @return false if the queue is full, producer thread only.
+     */
+    boolean offer(E element) {
+        long tail = this.tail.get();
+        if (tail - this.headCache > this.mask) {
+            this.headCache = this.head.get();
+            if (tail - this.headCache > this.mask)
+                return false;
+        }
+        this.slots.lazySet((int) tail & this.mask, element);
+        this.tail.lazySet(tail + 1);
+        return true;
+    }
+
+    /**
+     * @return null if the queue is empty, consumer thread only.
+     */
+    E poll() {
+        long head = this.head.get();
+        if (head >= this.tailCache) {
+            this.tailCache = this.tail.get();
+            if (head >= this.tailCache)
+                return null;
+        }
+        int index = (int) head & this.mask;
+        E element = this.slots.get(index);
+        this.slots.lazySet(index, null);
+        this.head.lazySet(head + 1);
+        return element;
+    }
+
+    /**
+     * Offers the element, waiting while the queue is full.
+     *
+     * @return false if stopped before the element could be queued.
+     */
+    boolean put(E element, BooleanSupplier stopped) {
+        for (int idle = 0; !offer(element); idle++) {
+            if (stopped.getAsBoolean())
+                return false;
+            backOff(idle);
+        }
+        return true;
+    }
+
+    /**
+     * Polls the next element, waiting while the queue is empty.
+     *
+     * @return null if stopped with nothing queued.
+     */
+    E take(BooleanSupplier stopped) {
+        E element = poll();
+        for (int idle = 0; element == null; idle++) {
+            if (stopped.getAsBoolean())
+                return poll(); // may have been queued just before stopping
+            backOff(idle);
+            element = poll();
+        }
+        return element;
+    }
+
+    /**
+     * @return number of queued elements, approximate while both sides are busy.
+     */
+    int size() {
+        // head first so the difference never goes negative
+        long head = this.head.get();
+        return (int) Math.max(0, this.tail.get() - head);
+    }
+
+    /**
+     * @return number of elements polled so far.
+     */
+    long polled() {
+        return this.head.get();
+    }
+
+    private static void backOff(int idle) {
+        if (idle < SPINS)
+            Thread.onSpinWait();
+        else if (idle < SPINS + YIELDS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+    }
+}
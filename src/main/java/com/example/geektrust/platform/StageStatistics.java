@@ -0,0 +1,51 @@
+package com.example.geektrust.platform;
+
+/**
+ * Point in time statistics of a stage of a pipelined {@link MyMoneyPlatform}.
+ */
+public final class StageStatistics {
+    private final String name;
+    private final int queueDepth;
+    private final long processed;
+    private final double throughput;
+
+    StageStatistics(String name, int queueDepth, long processed, long elapsedNanos) {
+        this.name = name;
+        this.queueDepth = queueDepth;
+        this.processed = processed;
+        this.throughput = elapsedNanos > 0 ? processed * 1e9 / elapsedNanos : 0d;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return number of items waiting in the input queue of the stage, always 0
+     *         for the reader which pulls from the command provider.
+     */
+    public int getQueueDepth() {
+        return this.queueDepth;
+    }
+
+    /**
+     * @return number of items taken by the stage so far.
+     */
+    public long getProcessed() {
+        return this.processed;
+    }
+
+    /**
+     * @return items per second since the pipeline started, up to now or to the
+     *         end of the input.
+     */
+    public double getThroughput() {
+        return this.throughput;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s depth=%d processed=%d throughput=%.0f/s", this.name, this.queueDepth,
+                this.processed, this.throughput);
+    }
+}
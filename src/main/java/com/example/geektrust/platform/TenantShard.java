@@ -0,0 +1,212 @@
+
+package com.example.geektrust.platform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.example.geektrust.command.CommandBinding;
+import com.example.geektrust.command.CommandMetrics;
+import com.example.geektrust.command.ExecutablePortfolioCommand;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+/**
+ * A group of tenants owned by a single writer thread. Portfolios of the shard
+ * are only ever touched by that thread, so no locking is required on the
+ * portfolio state.
+ * <p>
+ * A command failing with an exception is reported to the metrics as rejected,
+ * the writer thread moves on to the next one. Queueing blocks while the shard
+ * is full, a caller interrupted meanwhile gets a
+ * {@link RejectedExecutionException} and nothing is queued.
+ */
+class TenantShard implements Runnable {
+    /**
+     * Command addressed to a tenant of this shard, or a task over all the
+     * tenants of this shard.
+     */
+    private static class TenantCommand {
+        private final String tenantId;
+        private final String command;
+        private final Consumer<Map<String, PortfolioManager>> task;
+        private final CompletableFuture<Void> completion;
+        private final Consumer<List<String>> replies; // null to report to the shard reporter
+
+        TenantCommand(String tenantId, String command) {
+            this(tenantId, command, null, null, null);
+        }
+
+        TenantCommand(String tenantId, String command, Consumer<Map<String, PortfolioManager>> task,
+                CompletableFuture<Void> completion, Consumer<List<String>> replies) {
+            this.tenantId = tenantId;
+            this.command = command;
+            this.task = task;
+            this.completion = completion;
+            this.replies = replies;
+        }
+    }
+
+    // marks the end of the stream for the writer thread
+    private static final TenantCommand END_OF_STREAM = new TenantCommand(null, null);
+
+    private final Supplier<PortfolioManager> portfolioFactory;
+    private final Optional<Consumer<String>> executionOutputReporter;
+    private final BlockingQueue<TenantCommand> pending;
+    private final Map<String, PortfolioManager> portfolios; // writer thread only
+    private final Thread writer;
+    private volatile CommandMetrics metrics = CommandMetrics.NONE;
+
+    TenantShard(int index, int capacity, Supplier<PortfolioManager> portfolioFactory,
+            Optional<Consumer<String>> executionOutputReporter) {
+        this.portfolioFactory = portfolioFactory;
+        this.executionOutputReporter = executionOutputReporter;
+        this.pending = new ArrayBlockingQueue<>(capacity);
+        this.portfolios = new HashMap<>();
+        this.writer = new Thread(this, "tenant-shard-" + index);
+        this.writer.setDaemon(true);
+    }
+
+    void start() {
+        this.writer.start();
+    }
+
+    void setCommandMetrics(CommandMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queue a command for the given tenant, blocks while the shard is full.
+     */
+    void submit(String tenantId, String command) {
+        put(new TenantCommand(tenantId, command));
+    }
+
+    /**
+     * Queue a command for the given tenant, its outputs are handed to the given
+     * consumer on the writer thread instead of the shard reporter, as an empty
+     * list if the command has no output or is invalid. Blocks while the shard is
+     * full.
+     */
+    void submit(String tenantId, String command, Consumer<List<String>> replies) {
+        put(new TenantCommand(tenantId, command, null, null, replies));
+    }
+
+    /**
+     * Queue a task over the portfolios of the shard by tenant id, run on the
+     * writer thread after the commands queued before it. Blocks while the shard
+     * is full.
+     *
+     * @return completed once the task has run, exceptionally if it failed.
+     */
+    CompletableFuture<Void> submit(Consumer<Map<String, PortfolioManager>> task) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        put(new TenantCommand(null, null, task, completion, null));
+        return completion;
+    }
+
+    /**
+     * Executes every queued command and waits for the writer thread to finish.
+     */
+    void shutDown() {
+        put(END_OF_STREAM);
+        try {
+            this.writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            TenantCommand next = this.pending.take();
+            while (next != END_OF_STREAM) {
+                try {
+                    execute(next);
+                } catch (RuntimeException e) {
+                    reject(next, e);
+                }
+                next = this.pending.take();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.portfolios.values().forEach(PortfolioManager::clear);
+            this.portfolios.clear();
+        }
+    }
+
+    private void execute(TenantCommand tenantCommand) {
+        if (tenantCommand.task != null) {
+            try {
+                tenantCommand.task.accept(this.portfolios);
+                tenantCommand.completion.complete(null);
+            } catch (RuntimeException e) {
+                tenantCommand.completion.completeExceptionally(e);
+            }
+            return;
+        }
+
+        Optional<ExecutablePortfolioCommand> executable = CommandBinding.toExecutable(tenantCommand.command,
+                this.metrics);
+        if (tenantCommand.replies != null) {
+            reply(tenantCommand, executable);
+            return;
+        }
+        if (executable.isPresent()) {
+            PortfolioManager portfolio = this.portfolios.computeIfAbsent(tenantCommand.tenantId,
+                    id -> this.portfolioFactory.get());
+            executable.get().execute(portfolio, tenantReporter(tenantCommand.tenantId));
+        }
+    }
+
+    /**
+     * The portfolio keeps what the failed command applied before failing, the
+     * replies of the command are left to the caller.
+     */
+    private void reject(TenantCommand tenantCommand, RuntimeException failure) {
+        // a command out of the money range is reported by the metrics already
+        if (tenantCommand.command != null && !(failure instanceof ArithmeticException))
+            this.metrics.onRejected(CommandBinding.bindingOf(tenantCommand.command));
+    }
+
+    private void reply(TenantCommand tenantCommand, Optional<ExecutablePortfolioCommand> executable) {
+        List<String> outputs = Collections.emptyList();
+        if (executable.isPresent()) {
+            String tenantId = tenantCommand.tenantId;
+            List<String> lines = new ArrayList<>(1);
+            try {
+                PortfolioManager portfolio = this.portfolios.computeIfAbsent(tenantId,
+                        id -> this.portfolioFactory.get());
+                executable.get().execute(portfolio, Optional.of(output -> lines.add(tenantId + " " + output)));
+                outputs = lines;
+            } catch (RuntimeException e) {
+                reject(tenantCommand, e);
+            }
+        }
+        tenantCommand.replies.accept(outputs);
+    }
+
+    private Optional<Consumer<String>> tenantReporter(String tenantId) {
+        // prefix every output with the tenant so interleaved outputs stay traceable
+        return this.executionOutputReporter.map(reporter -> output -> reporter.accept(tenantId + " " + output));
+    }
+
+    private void put(TenantCommand command) {
+        try {
+            this.pending.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for " + this.writer.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.geektrust.platform;
+
+import java.time.Month;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+/**
+ * Deterministic generator of command streams for load tests and benchmarks.
+ * The same seed always generates the same lines.
+ * <p>
+ * Every tenant starts with ALLOCATE and SIP, then follows the calendar one
+ * CHANGE at a time, rolling over to January after December. BALANCE asks for a
+ * month already changed in the current year, and REBALANCE follows the changes
+ * of the compulsory rebalance months. Market changes are kept in a range that
+ * lets a tenant run for any number of months without exceeding the supported
+ * amounts.
+ * <p>
+ * Unless generated for a {@link #SINGLE_PORTFOLIO}, every line starts with the
+ * tenant id as expected by {@link MultiTenantPlatform}. A configurable
+ * fraction of the lines are invalid commands, which the platforms skip.
+ */
+public final class WorkloadGenerator {
+    // lines are not prefixed with a tenant id
+    public static final int SINGLE_PORTFOLIO = 0;
+
+    private static final Month[] MONTHS = Month.values();
+    // market changes turn negative above this fund value, so that histories of
+    // any length stay realistic rather than compounding without bound
+    private static final double FUND_VALUE_CAP = 10_000_000d;
+    private static final String[] INVALID_LINES = {
+            "WITHDRAW 1000 2000 3000",
+            "ALLOCATE 6000 3000",
+            "allocate 6000 3000 1000",
+            "SIP 2000 -1000 500",
+            "CHANGE 4.00% 10.00% 2.00%",
+            "CHANGE 4.00% 10.00% 200.00% JANUARY",
+            "CHANGE 4.00% 10.00% 2.00% JANUARI",
+            "BALANCE",
+            "BALANCE 12",
+            "REBALANCE NOW",
+            "" };
+
+    private final SplittableRandom random;
+    private final int funds; // configured fund types
+    private final int tenants;
+    private final boolean prefixed;
+    private final double invalidFraction;
+
+    // tenant state, changedMonths is the number of changes since the allocation.
+    // fund values follow the platform closely enough to keep the changes in range.
+    private final boolean[] allocated;
+    private final boolean[] sipSet;
+    private final boolean[] rebalanceMonth; // last change in a compulsory month
+    private final boolean[] rebalanced;
+    private final long[] changedMonths;
+    private final double[][] fundValues;
+    private final int[] allocation;
+    private final int[] sip;
+
+    private final StringBuilder line;
+
+    private WorkloadGenerator(long seed, int tenants, double invalidFraction) {
+        this.random = new SplittableRandom(seed);
+        this.funds = FundType.count();
+        this.tenants = Math.max(tenants, 1);
+        this.prefixed = tenants != SINGLE_PORTFOLIO;
+        this.invalidFraction = invalidFraction;
+        this.allocated = new boolean[this.tenants];
+        this.sipSet = new boolean[this.tenants];
+        this.rebalanceMonth = new boolean[this.tenants];
+        this.rebalanced = new boolean[this.tenants];
+        this.changedMonths = new long[this.tenants];
+        this.fundValues = new double[this.tenants][this.funds];
+        this.allocation = new int[this.tenants * this.funds];
+        this.sip = new int[this.tenants * this.funds];
+        this.line = new StringBuilder(64);
+    }
+
+    /**
+     * @param tenants         number of tenant ids, {@link #SINGLE_PORTFOLIO} for
+     *                        lines without a tenant id.
+     * @param invalidFraction fraction of invalid lines, from 0 to 1.
+     */
+    public static WorkloadGenerator of(long seed, int tenants, double invalidFraction) {
+        if (tenants < 0)
+            throw new IllegalArgumentException("negative tenant count: " + tenants);
+        if (!(invalidFraction >= 0 && invalidFraction <= 1))
+            throw new IllegalArgumentException("invalid fraction out of range: " + invalidFraction);
+        return new WorkloadGenerator(seed, tenants, invalidFraction);
+    }
+
+    /**
+     * @return the next line, reused by the following call.
+     */
+    public CharSequence nextLine() {
+        this.line.setLength(0);
+        int tenant = this.random.nextInt(this.tenants);
+        if (this.prefixed)
+            this.line.append("tenant-").append(tenant).append(' ');
+
+        if (this.invalidFraction > 0 && this.random.nextDouble() < this.invalidFraction)
+            this.line.append(INVALID_LINES[this.random.nextInt(INVALID_LINES.length)]);
+        else
+            appendCommand(tenant);
+        return this.line;
+    }
+
+    /**
+     * @return provider of the next {@code lines} generated lines.
+     */
+    public InputCommandProvider asCommandProvider(long lines) {
+        return new InputCommandProvider() {
+            private long remaining = lines;
+
+            @Override
+            public Optional<String> nextCommand() {
+                return nextCommandView().map(CharSequence::toString);
+            }
+
+            @Override
+            public Optional<CharSequence> nextCommandView() {
+                if (this.remaining <= 0)
+                    return Optional.empty();
+                this.remaining--;
+                return Optional.of(nextLine());
+            }
+        };
+    }
+
+    /**
+     * Reports the next {@code lines} generated lines to the output.
+     */
+    public void write(long lines, Consumer<String> out) {
+        for (long i = 0; i < lines; i++)
+            out.accept(nextLine().toString());
+    }
+
+    private void appendCommand(int tenant) {
+        if (!this.allocated[tenant]) {
+            this.allocated[tenant] = true;
+            this.line.append("ALLOCATE");
+            for (int fund = 0; fund < this.funds; fund++) {
+                int amount = 1000 + this.random.nextInt(9000);
+                this.allocation[tenant * this.funds + fund] = amount;
+                this.fundValues[tenant][fund] = amount;
+                this.line.append(' ').append(amount);
+            }
+            return;
+        }
+
+        if (!this.sipSet[tenant]) {
+            this.sipSet[tenant] = true;
+            this.line.append("SIP");
+            for (int fund = 0; fund < this.funds; fund++) {
+                int amount = this.random.nextInt(3000);
+                this.sip[tenant * this.funds + fund] = amount;
+                this.line.append(' ').append(amount);
+            }
+            return;
+        }
+
+        int choice = this.random.nextInt(100);
+        boolean pendingRebalance = this.rebalanceMonth[tenant] && !this.rebalanced[tenant];
+        if (pendingRebalance || choice < 2)
+            appendRebalance(tenant); // otherwise CANNOT_REBALANCE most of the time
+        else if (choice < 22 && this.changedMonths[tenant] > 0)
+            appendBalance(tenant);
+        else
+            appendChange(tenant);
+    }
+
+    private void appendRebalance(int tenant) {
+        this.line.append("REBALANCE");
+        if (!this.rebalanceMonth[tenant])
+            return;
+
+        this.rebalanced[tenant] = true;
+        double[] values = this.fundValues[tenant];
+        double total = 0;
+        long allocationTotal = 0;
+        for (int fund = 0; fund < this.funds; fund++) {
+            total += values[fund];
+            allocationTotal += this.allocation[tenant * this.funds + fund];
+        }
+        for (int fund = 0; fund < this.funds; fund++)
+            values[fund] = total * this.allocation[tenant * this.funds + fund] / allocationTotal;
+    }
+
+    private void appendChange(int tenant) {
+        Month month = MONTHS[(int) (this.changedMonths[tenant] % 12)];
+        this.line.append("CHANGE");
+        double[] values = this.fundValues[tenant];
+        for (int fund = 0; fund < this.funds; fund++) {
+            // basis points, -4.00% .. 5.00% or -10.00% .. 0.00% above the cap
+            int change = values[fund] > FUND_VALUE_CAP
+                    ? -this.random.nextInt(1001)
+                    : this.random.nextInt(-400, 501);
+            values[fund] = values[fund] * (1 + change / 10_000d) + this.sip[tenant * this.funds + fund];
+            this.line.append(' ');
+            appendPercentage(change);
+        }
+        this.line.append(' ').append(month.name());
+
+        this.changedMonths[tenant]++;
+        this.rebalanceMonth[tenant] = PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month);
+        this.rebalanced[tenant] = false;
+    }
+
+    private void appendBalance(int tenant) {
+        // any month changed in the current year, or the last changed month
+        long changed = this.changedMonths[tenant];
+        int lastMonth = (int) ((changed - 1) % 12);
+        this.line.append("BALANCE ").append(MONTHS[this.random.nextInt(lastMonth + 1)].name());
+    }
+
+    private void appendPercentage(int basisPoints) {
+        int value = basisPoints;
+        if (value < 0) {
+            this.line.append('-');
+            value = -value;
+        }
+        this.line.append(value / 100).append('.');
+        int fraction = value % 100;
+        if (fraction < 10)
+            this.line.append('0');
+        this.line.append(fraction).append('%');
+    }
+}
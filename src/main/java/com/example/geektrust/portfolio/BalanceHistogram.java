@@ -0,0 +1,74 @@
+package com.example.geektrust.portfolio;
+
+/**
+ * Counts of balances in logarithmic buckets, for percentiles over millions of
+ * values without keeping them.
+ * <p>
+ * The bucket of a value is read from the exponent and the top
+ * {@value #SUB_BUCKET_BITS} mantissa bits of its {@code double}
+ * representation, so every power of two range is split in 128 buckets and a
+ * percentile is within 0.4% of the exact value. Values below one are counted
+ * as one, values beyond 2^37, well above the largest {@link Money} value, as
+ * 2^37.
+ */
+final class BalanceHistogram {
+    static final int SUB_BUCKET_BITS = 7;
+    private static final int SHIFT = 52 - SUB_BUCKET_BITS;
+    private static final long FIRST_BUCKET = Double.doubleToRawLongBits(1d) >>> SHIFT;
+    static final int BUCKETS = 37 << SUB_BUCKET_BITS;
+
+    private final int series;
+    private final long[] counts; // [series][bucket]
+    private final long[] totals; // by series
+
+    /**
+     * @param series number of independent value series, e.g. one per fund.
+     */
+    BalanceHistogram(int series) {
+        this.series = series;
+        this.counts = new long[series * BUCKETS];
+        this.totals = new long[series];
+    }
+
+    void record(int series, double value) {
+        long bucket = (Double.doubleToRawLongBits(value) >>> SHIFT) - FIRST_BUCKET;
+        this.counts[series * BUCKETS + (int) Math.min(Math.max(bucket, 0L), BUCKETS - 1)]++;
+        this.totals[series]++;
+    }
+
+    void add(BalanceHistogram other) {
+        for (int i = 0; i < this.counts.length; i++)
+            this.counts[i] += other.counts[i];
+        for (int i = 0; i < this.series; i++)
+            this.totals[i] += other.totals[i];
+    }
+
+    long count(int series) {
+        return this.totals[series];
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return the middle of the bucket holding the value at the percentile, NaN
+     *         if nothing is recorded.
+     */
+    double percentile(int series, double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("percentile out of range: " + percentile);
+        long total = this.totals[series];
+        if (total == 0)
+            return Double.NaN;
+
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100d * total));
+        int offset = series * BUCKETS;
+        long seen = 0;
+        int bucket = 0;
+        for (; bucket < BUCKETS - 1; bucket++) {
+            seen += this.counts[offset + bucket];
+            if (seen >= rank)
+                break;
+        }
+        // the half bucket bit set
+        return Double.longBitsToDouble((bucket + FIRST_BUCKET) << SHIFT | 1L << (SHIFT - 1));
+    }
+}
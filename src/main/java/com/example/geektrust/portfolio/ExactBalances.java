@@ -0,0 +1,326 @@
+package com.example.geektrust.portfolio;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Exact {@link BigDecimal} balances of the funds of a portfolio, behind the
+ * fixed point {@link Money} balances its records keep.
+ * <p>
+ * The fixed point balances round every market change and rebalance, so each
+ * of them is only known within an error bound, kept here in money units. A
+ * balance is certain when every value within its bound has the same whole part,
+ * the part {@code BALANCE} and {@code REBALANCE} print. The updates are logged
+ * rather than applied to the exact balances, and only replayed when a balance
+ * is not certain. The balance is then the exact one rounded half even, but
+ * rounded down when that would reach the next whole amount, so the whole parts
+ * of the fixed point balances are always the exact ones.
+ * <p>
+ * Updates by an amount or a percentage with more than {@link Money#SCALE}
+ * decimals are applied to the exact balances right away instead. Rebalance
+ * weights are the fixed point allocations, and a rebalanced balance that does
+ * not terminate is rounded half even to {@link Money#SCALE} decimals, as the
+ * fixed point one is.
+ * <p>
+ * The exact balances start from the fixed point balances of the funds, when
+ * created and whenever a fund was updated other than through the portfolio,
+ * e.g. by a journal recovery.
+ */
+final class ExactBalances {
+    // logged updates
+    private static final byte ALLOCATE = 0;
+    private static final byte ADD = 1;
+    private static final byte CHANGE = 2;
+    private static final byte REBALANCE = 3;
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long HUNDRED_PERCENT = 100 * Money.ONE;
+    private static final int HUNDRED_PERCENT_DIGITS = 8;
+    private static final long[] TEN_POWERS = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+            100_000_000L };
+    // bounds past it are not tracked, the balance is replayed instead
+    private static final long MAX_ERROR = Money.ONE / 4;
+    private static final long UNKNOWN = Long.MAX_VALUE;
+
+    private final Fund[] fundByType; // of the portfolio, null if not in it
+    private final BigDecimal[] balances; // by FundType ordinal, before the logged updates
+    private final long[] initials; // Money, by FundType ordinal, before the logged updates
+    private final long[] errors; // Money, by FundType ordinal, bound of the fixed point error
+    private final long[] tracked; // Money, by FundType ordinal, fixed point balances certified last
+    private final long[] trackedInitials; // Money, by FundType ordinal
+    private byte[] kinds = new byte[INITIAL_CAPACITY]; // by logged update
+    private int[] funds = new int[INITIAL_CAPACITY]; // FundType ordinal, by logged update
+    private long[] operands = new long[INITIAL_CAPACITY]; // Money, by logged update
+    private int size;
+
+    ExactBalances(Fund[] fundByType) {
+        int count = fundByType.length;
+        this.fundByType = fundByType;
+        this.balances = new BigDecimal[count];
+        this.initials = new long[count];
+        this.errors = new long[count];
+        this.tracked = new long[count];
+        this.trackedInitials = new long[count];
+        rebase();
+    }
+
+    /**
+     * Starts again from the fixed point balances if a fund was updated other than
+     * through the balances certified here.
+     */
+    void sync() {
+        for (int type = 0; type < this.fundByType.length; type++) {
+            Fund fund = this.fundByType[type];
+            long current = fund == null ? Money.ZERO : fund.getCurrentValue();
+            long initial = fund == null ? Money.ZERO : fund.getInitialValue();
+            if (current != this.tracked[type] || initial != this.trackedInitials[type]) {
+                rebase();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts again from the fixed point balances, taken as exact.
+     */
+    void rebase() {
+        for (int type = 0; type < this.fundByType.length; type++) {
+            Fund fund = this.fundByType[type];
+            this.tracked[type] = fund == null ? Money.ZERO : fund.getCurrentValue();
+            this.trackedInitials[type] = fund == null ? Money.ZERO : fund.getInitialValue();
+            this.balances[type] = Money.toBigDecimal(this.tracked[type]);
+            this.initials[type] = this.trackedInitials[type];
+            this.errors[type] = 0;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Takes the exact balances of the given portfolio, its fork.
+     */
+    void copyOf(ExactBalances other) {
+        other.replay();
+        System.arraycopy(other.balances, 0, this.balances, 0, this.balances.length);
+        System.arraycopy(other.initials, 0, this.initials, 0, this.initials.length);
+        System.arraycopy(other.errors, 0, this.errors, 0, this.errors.length);
+        System.arraycopy(other.tracked, 0, this.tracked, 0, this.tracked.length);
+        System.arraycopy(other.trackedInitials, 0, this.trackedInitials, 0, this.trackedInitials.length);
+        this.size = 0;
+    }
+
+    /**
+     * @return bound of the error of the fixed point balance, in money units.
+     */
+    long errorOf(int type) {
+        return this.errors[type];
+    }
+
+    /**
+     * @return the fixed point allocation, to initialise the fund with.
+     */
+    long allocate(int type, BigDecimal allocation) {
+        long balance;
+        if (Money.isExact(allocation)) {
+            balance = Money.of(allocation);
+            log(ALLOCATE, type, balance);
+            this.errors[type] = 0;
+        } else {
+            replay();
+            balance = roundedWithinWhole(allocation);
+            this.balances[type] = allocation;
+            this.initials[type] = balance;
+            this.errors[type] = 1;
+        }
+        this.trackedInitials[type] = balance;
+        this.tracked[type] = balance;
+        return balance;
+    }
+
+    /**
+     * @param exactAmount null if the amount is exact.
+     * @return the certified fixed point balance after the amount is put in.
+     */
+    long add(int type, long balance, long amount, BigDecimal exactAmount) {
+        if (exactAmount == null || Money.isExact(exactAmount)) {
+            log(ADD, type, amount);
+        } else {
+            replay();
+            this.balances[type] = this.balances[type].add(exactAmount);
+            this.errors[type] = UNKNOWN;
+        }
+        return certify(type, Math.addExact(balance, amount));
+    }
+
+    /**
+     * @return the certified fixed point balance after the market change.
+     */
+    long change(int type, long balance, BigDecimal percentage) {
+        long scaled = Money.of(percentage);
+        long changed = Math.addExact(balance, Money.percentOf(balance, scaled));
+        if (Money.isExact(percentage)) {
+            log(CHANGE, type, scaled);
+            long error = this.errors[type];
+            // |balance - exact| * (100 + percentage) / 100, and the rounding of the change
+            this.errors[type] = error > MAX_ERROR || Math.abs(scaled) > HUNDRED_PERCENT
+                    ? UNKNOWN
+                    : (error * (HUNDRED_PERCENT + scaled) + HUNDRED_PERCENT - 1) / HUNDRED_PERCENT + 1;
+        } else {
+            replay();
+            BigDecimal exact = this.balances[type];
+            this.balances[type] = exact.add(exact.multiply(percentage).movePointLeft(2));
+            this.errors[type] = UNKNOWN;
+        }
+        return certify(type, changed);
+    }
+
+    /**
+     * Logs a rebalance of every fund, their balances are then certified one by
+     * one with {@link #certify(int, long)}.
+     */
+    void rebalance() {
+        log(REBALANCE, 0, Money.ZERO);
+        long error = Money.ZERO;
+        long initialTotal = Money.ZERO;
+        for (int type = 0; type < this.errors.length; type++) {
+            if (this.fundByType[type] == null)
+                continue;
+            error = error > MAX_ERROR || this.errors[type] > MAX_ERROR ? UNKNOWN : error + this.errors[type];
+            initialTotal += this.trackedInitials[type];
+        }
+        for (int type = 0; type < this.errors.length; type++) {
+            if (this.fundByType[type] == null)
+                continue;
+            // |total - exact total| * weight, and the rounding of the weighted total
+            this.errors[type] = error == UNKNOWN || initialTotal <= 0
+                    ? UNKNOWN
+                    : Money.multiplyDivide(error, this.trackedInitials[type], initialTotal) + 2;
+        }
+    }
+
+    /**
+     * @param balance fixed point balance after the logged updates.
+     * @return the balance if its whole part is certain, the exact balance
+     *         replayed otherwise.
+     */
+    long certify(int type, long balance) {
+        long error = this.errors[type];
+        if (error > MAX_ERROR || Money.floor(balance - error) != Money.floor(balance + error)) {
+            replay();
+            BigDecimal exact = this.balances[type];
+            balance = roundedWithinWhole(exact);
+            this.errors[type] = Money.toBigDecimal(balance).compareTo(exact) == 0 ? 0 : 1;
+        }
+        this.tracked[type] = balance;
+        return balance;
+    }
+
+    /**
+     * @return the value rounded half even to money units, but rounded down when
+     *         that would reach the next whole amount.
+     */
+    private static long roundedWithinWhole(BigDecimal value) {
+        long rounded = Money.of(value);
+        if (Money.floor(rounded) != value.setScale(0, RoundingMode.FLOOR).longValueExact())
+            rounded--;
+        return rounded;
+    }
+
+    private void log(byte kind, int type, long operand) {
+        if (this.size == this.kinds.length) {
+            int capacity = this.size * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.funds = Arrays.copyOf(this.funds, capacity);
+            this.operands = Arrays.copyOf(this.operands, capacity);
+        }
+        this.kinds[this.size] = kind;
+        this.funds[this.size] = type;
+        this.operands[this.size] = operand;
+        this.size++;
+    }
+
+    /**
+     * Applies the logged updates to the exact balances. They are replayed
+     * unscaled, with the money unit at their scale, so an amount is put in
+     * without rescaling the whole balance.
+     */
+    private void replay() {
+        if (this.size == 0)
+            return;
+
+        int count = this.balances.length;
+        BigInteger[] unscaled = new BigInteger[count];
+        int[] scales = new int[count];
+        BigInteger[] units = new BigInteger[count]; // 10^(scale - Money.SCALE)
+        unscale(unscaled, scales, units);
+        for (int index = 0; index < this.size; index++) {
+            int type = this.funds[index];
+            long operand = this.operands[index];
+            switch (this.kinds[index]) {
+            case ALLOCATE:
+                unscaled[type] = BigInteger.valueOf(operand);
+                scales[type] = Money.SCALE;
+                units[type] = BigInteger.ONE;
+                this.initials[type] = operand;
+                break;
+            case ADD:
+                unscaled[type] = unscaled[type].add(units[type].multiply(BigInteger.valueOf(operand)));
+                break;
+            case CHANGE:
+                // balance * (100 + percentage) / 100, without the trailing zeros of both
+                long factor = HUNDRED_PERCENT + operand;
+                int digits = HUNDRED_PERCENT_DIGITS;
+                while (digits > 0 && factor % 10 == 0) {
+                    factor /= 10;
+                    digits--;
+                }
+                unscaled[type] = unscaled[type].multiply(BigInteger.valueOf(factor));
+                scales[type] += digits;
+                units[type] = units[type].multiply(BigInteger.valueOf(TEN_POWERS[digits]));
+                break;
+            default:
+                scale(unscaled, scales);
+                replayRebalance();
+                unscale(unscaled, scales, units);
+            }
+        }
+        scale(unscaled, scales);
+        this.size = 0;
+    }
+
+    private void unscale(BigInteger[] unscaled, int[] scales, BigInteger[] units) {
+        for (int type = 0; type < this.balances.length; type++) {
+            BigDecimal balance = this.balances[type];
+            if (balance.scale() < Money.SCALE)
+                balance = balance.setScale(Money.SCALE);
+            unscaled[type] = balance.unscaledValue();
+            scales[type] = balance.scale();
+            units[type] = BigInteger.TEN.pow(balance.scale() - Money.SCALE);
+        }
+    }
+
+    private void scale(BigInteger[] unscaled, int[] scales) {
+        for (int type = 0; type < this.balances.length; type++)
+            this.balances[type] = new BigDecimal(unscaled[type], scales[type]);
+    }
+
+    private void replayRebalance() {
+        BigDecimal total = BigDecimal.ZERO;
+        long initialTotal = Money.ZERO;
+        for (int type = 0; type < this.balances.length; type++) {
+            total = total.add(this.balances[type]);
+            initialTotal = Math.addExact(initialTotal, this.initials[type]);
+        }
+
+        BigDecimal divisor = BigDecimal.valueOf(initialTotal);
+        for (int type = 0; type < this.balances.length; type++) {
+            BigDecimal weighted = total.multiply(BigDecimal.valueOf(this.initials[type]));
+            try {
+                this.balances[type] = weighted.divide(divisor);
+            } catch (ArithmeticException nonTerminating) {
+                this.balances[type] = weighted.divide(divisor, Money.SCALE, RoundingMode.HALF_EVEN);
+            }
+        }
+    }
+}
@@ -4,26 +4,28 @@ import java.math.BigDecimal;
 import java.time.Month;
 import java.time.YearMonth;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.TreeMap;
 
 public class Fund {
     /**
      * READ only transaction record details.
      */
-    public class TransactionRecord {
+    public static class TransactionRecord {
         private final YearMonth month;
         private final TransactionEvent event;
-        private final BigDecimal amount;
-        private final BigDecimal balance;
+        private final long amount; // Money
+        private final long balance; // Money
 
         public TransactionRecord(YearMonth month, TransactionEvent event, BigDecimal amount, BigDecimal balance) {
+            this(month, event, Money.of(amount), Money.of(balance));
+        }
+
+        TransactionRecord(YearMonth month, TransactionEvent event, long amount, long balance) {
             this.month = month;
             this.event = event;
             this.amount = amount;
@@ -39,23 +41,41 @@ public class Fund {
         }
 
         public BigDecimal getAmount() {
-            return amount;
+            return Money.toBigDecimal(amount);
         }
 
         public BigDecimal getBalance() {
-            return balance;
+            return Money.toBigDecimal(balance);
         }
     }
 
+    // month index returned when there is no matching transaction
+    static final int NO_MONTH = Integer.MIN_VALUE;
+
     private final FundType type;
-    private YearMonth start;
-    private BigDecimal current;
-    private final NavigableMap<YearMonth, List<TransactionRecord>> trasactionHistory; // order by insert
+    private long initial; // Money, amount of the ALLOCATE record
+    private long current; // Money
+    private final TransactionLedger ledger; // order by insert
+    private TransactionListener listener;
+    private PortfolioTotals totals;
+    private ReturnIndex returns; // built on the first return query
 
     Fund(final FundType type) {
+        this(type, Money.ZERO, Money.ZERO, new TransactionLedger());
+    }
+
+    /**
+     * Fund restored with the given allocation, balance and history, see
+     * {@link PortfolioSnapshot}.
+     */
+    Fund(final FundType type, long initial, long current, TransactionLedger ledger) {
         this.type = type;
-        this.current = BigDecimal.ZERO;
-        this.trasactionHistory = new TreeMap<>();
+        this.initial = initial;
+        this.current = current;
+        this.ledger = ledger;
+        this.listener = TransactionListener.NONE;
+        this.totals = new PortfolioTotals();
+        this.totals.add(initial, current);
     }
 
     public FundType getType() {
@@ -63,54 +83,104 @@ public class Fund {
     }
 
     public BigDecimal getInitial() {
-        return !isInitialised() ? BigDecimal.ZERO
-                : this.trasactionHistory.get(this.start).stream()
-                        .filter(record -> TransactionEvent.ALLOCATE.equals(record.event)).findFirst().get().getAmount();
+        return Money.toBigDecimal(getInitialValue());
+    }
+
+    long getInitialValue() {
+        return this.initial;
     }
 
     /**
      * @param fundStart has to be greater than zero to initialise a fund.
      */
     public void initialise(BigDecimal allocation, YearMonth fundStart) {
+        initialise(Money.of(allocation), fundStart);
+    }
+
+    void initialise(long allocation, YearMonth fundStart) {
+        initialise(allocation, TransactionLedger.monthIndex(fundStart));
+    }
+
+    void initialise(long allocation, int fundStart) {
         if (isInitialised())
             return; // already initialised
 
-        if (allocation.compareTo(BigDecimal.ZERO) < 0)
+        if (allocation < 0)
             return;
 
-        this.start = fundStart;
+        this.initial = allocation;
         this.current = allocation;
+        this.totals.add(allocation, allocation);
         insertTransactionRecord(fundStart, TransactionEvent.ALLOCATE, allocation);
     }
 
-    private boolean isInitialised() {
-        return !(this.current.equals(BigDecimal.ZERO) && this.trasactionHistory.isEmpty());
+    boolean isInitialised() {
+        return !(this.current == Money.ZERO && this.ledger.isEmpty());
     }
 
     public BigDecimal getCurrent() {
+        return Money.toBigDecimal(this.current);
+    }
+
+    long getCurrentValue() {
         return this.current;
     }
 
     /**
-     * Fund has to be initialised to perform a transaction.
-     * 
+     * Fund has to be initialised to perform a transaction. A transaction earlier
+     * than the last recorded month is recorded after the other transactions of
+     * its month, with the current balance.
+     *
      * @param event  ALLOCATE event not supports as a transaction.
      * @param amount negative amount means a deduction from the current balance.
      */
     public void doTransaction(YearMonth month, TransactionEvent event, BigDecimal amount) {
+        doTransaction(month, event, Money.of(amount));
+    }
+
+    void doTransaction(YearMonth month, TransactionEvent event, long amount) {
+        doTransaction(TransactionLedger.monthIndex(month), event, amount);
+    }
+
+    void doTransaction(int monthIndex, TransactionEvent event, long amount) {
         if (!isInitialised() || TransactionEvent.ALLOCATE.equals(event))
             return;
 
-        this.current = this.current.add(amount);
-        insertTransactionRecord(month, event, amount);
+        this.current = Math.addExact(this.current, amount);
+        this.totals.add(Money.ZERO, amount);
+        insertTransactionRecord(monthIndex, event, amount);
     }
 
-    private void insertTransactionRecord(YearMonth month, TransactionEvent event, BigDecimal amount) {
-        TransactionRecord record = new TransactionRecord(month, event, amount, this.current);
-        List<TransactionRecord> existingEvents = this.trasactionHistory.putIfAbsent(month,
-                new ArrayList<>(Arrays.asList(record)));
-        if (existingEvents != null)
-            existingEvents.add(record);
+    private void insertTransactionRecord(int month, TransactionEvent event, long amount) {
+        this.ledger.append(month, event, amount, this.current);
+        this.listener.onTransaction(this.type, month, event, amount, this.current);
+    }
+
+    void setTransactionListener(TransactionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * The fund counts towards the given totals from now on, instead of the
+     * totals it counted towards so far.
+     */
+    void setTotals(PortfolioTotals totals) {
+        this.totals.add(-this.initial, -this.current);
+        totals.add(this.initial, this.current);
+        this.totals = totals;
+    }
+
+    TransactionLedger getLedger() {
+        return this.ledger;
+    }
+
+    /**
+     * @return a fund with the same balances and history, sharing the history so
+     *         far instead of copying it. The fork has no listener and counts
+     *         towards its own totals.
+     */
+    Fund fork() {
+        return new Fund(this.type, this.initial, this.current, this.ledger.fork());
     }
 
     /**
@@ -119,16 +189,77 @@ public class Fund {
      *         matching the given month, empty if no such record exists.
      */
     public Optional<BigDecimal> balanceOf(Month month) {
-        Iterator<YearMonth> descendingKeyIterator = this.trasactionHistory.navigableKeySet().descendingIterator();
-        while (descendingKeyIterator.hasNext()) {
-            // Last month matching the given month.
-            YearMonth it = descendingKeyIterator.next();
-            if (month.equals(it.getMonth())) {
-                List<TransactionRecord> records = this.trasactionHistory.get(it);
-                return Optional.of(records.get(records.size() - 1).balance);
-            }
-        }
-        return Optional.empty();
+        int index = this.ledger.lastIndexOf(month);
+        if (index == TransactionLedger.NO_RECORD)
+            return Optional.empty();
+        return Optional.of(Money.toBigDecimal(this.ledger.balanceOf(index)));
+    }
+
+    /**
+     * @return the balance at the end of the given month, carried from the
+     *         latest earlier month if the month has no records, empty if the
+     *         month is before the allocation.
+     */
+    public Optional<BigDecimal> balanceAt(YearMonth month) {
+        int index = this.ledger.lastIndexAtOrBefore(TransactionLedger.monthIndex(month));
+        if (index == TransactionLedger.NO_RECORD)
+            return Optional.empty();
+        return Optional.of(Money.toBigDecimal(this.ledger.balanceOf(index)));
+    }
+
+    /**
+     * Time weighted return of the fund from the end of one month to the end of
+     * another, only from the market changes, whatever the money put in or moved
+     * out in between.
+     *
+     * @return the return as a fraction, 0.1 for a 10% gain, empty if the first
+     *         month is before the allocation or after the second month.
+     */
+    public OptionalDouble returnBetween(YearMonth from, YearMonth to) {
+        int fromIndex = this.ledger.lastIndexAtOrBefore(TransactionLedger.monthIndex(from));
+        if (fromIndex == TransactionLedger.NO_RECORD || from.isAfter(to))
+            return OptionalDouble.empty();
+
+        ReturnIndex returns = returnIndex();
+        int toIndex = this.ledger.lastIndexAtOrBefore(TransactionLedger.monthIndex(to));
+        return OptionalDouble.of(returns.growthAt(toIndex) / returns.growthAt(fromIndex) - 1d);
+    }
+
+    /**
+     * Money weighted growth since the allocation: the balance at the end of the
+     * month less the allocation, the SIPs and the rebalance transfers up to
+     * that month.
+     *
+     * @return empty if the month is before the allocation.
+     */
+    public Optional<BigDecimal> gainAt(YearMonth month) {
+        int index = this.ledger.lastIndexAtOrBefore(TransactionLedger.monthIndex(month));
+        if (index == TransactionLedger.NO_RECORD)
+            return Optional.empty();
+        return Optional.of(Money.toBigDecimal(this.ledger.balanceOf(index) - returnIndex().flowsAt(index)));
+    }
+
+    /**
+     * Folds the months before the retention horizon into summary records, the
+     * balances, gains, returns and last transaction of every event read the
+     * same afterwards, see {@link TransactionLedger#compact(int)}.
+     *
+     * @return number of records removed.
+     */
+    int compactHistory(HistoryRetention retention) {
+        if (this.ledger.isEmpty())
+            return 0;
+        int removed = this.ledger.compact(retention.firstDetailedMonth(this.ledger.lastMonth()));
+        if (removed > 0)
+            this.returns = null; // built by record index
+        return removed;
+    }
+
+    private ReturnIndex returnIndex() {
+        if (this.returns == null)
+            this.returns = new ReturnIndex();
+        this.returns.update(this.ledger);
+        return this.returns;
     }
 
     /**
@@ -138,25 +269,68 @@ public class Fund {
         if (!isInitialised())
             return Optional.empty();
 
-        List<TransactionRecord> lastMonthHistory = this.trasactionHistory.lastEntry().getValue();
-        return Optional.of(lastMonthHistory.get(lastMonthHistory.size() - 1));
+        return Optional.of(recordAt(this.ledger.lastIndex()));
     }
 
     public Optional<TransactionRecord> lastTransactionOf(TransactionEvent event) {
-        Iterator<YearMonth> descendingKeyIterator = this.trasactionHistory.navigableKeySet().descendingIterator();
-        while (descendingKeyIterator.hasNext()) {
-            Optional<TransactionRecord> changeTransaction = this.trasactionHistory.get(descendingKeyIterator.next())
-                    .stream()
-                    .filter(record -> event.equals(record.event))
-                    .findFirst();
-            if (changeTransaction.isPresent())
-                return changeTransaction;
-        }
-        return Optional.empty();
+        int index = this.ledger.lastIndexOf(event);
+        if (index == TransactionLedger.NO_RECORD)
+            return Optional.empty();
+        return Optional.of(recordAt(index));
     }
 
+    /**
+     * @return month index of the last transaction, {@link #NO_MONTH} if no
+     *         transactions yet.
+     */
+    int lastMonth() {
+        return this.ledger.isEmpty() ? NO_MONTH : this.ledger.monthOf(this.ledger.lastIndex());
+    }
+
+    /**
+     * @return event of the last transaction, null if no transactions yet.
+     */
+    TransactionEvent lastEvent() {
+        return this.ledger.isEmpty() ? null : this.ledger.eventOf(this.ledger.lastIndex());
+    }
+
+    /**
+     * @return month index of the last transaction of the event, {@link #NO_MONTH}
+     *         if no such transaction exists.
+     */
+    int lastMonthOf(TransactionEvent event) {
+        int index = this.ledger.lastIndexOf(event);
+        return index == TransactionLedger.NO_RECORD ? NO_MONTH : this.ledger.monthOf(index);
+    }
+
+    /**
+     * @return a read only copy of the ledger, grouped by month in insert order.
+     */
     public Map<YearMonth, List<TransactionRecord>> getTransactionHistory() {
-        return Collections.unmodifiableMap(this.trasactionHistory);
+        TreeMap<YearMonth, List<TransactionRecord>> history = new TreeMap<>();
+        if (this.ledger.isEmpty())
+            return Collections.unmodifiableMap(history);
+
+        for (int month = this.ledger.firstMonth(); month <= this.ledger.lastMonth(); month++) {
+            int start = this.ledger.monthStart(month);
+            int end = this.ledger.monthEnd(month);
+            if (start == end)
+                continue; // no records for the month
+
+            List<TransactionRecord> records = new ArrayList<>(end - start);
+            for (int index = start; index < end; index++)
+                records.add(recordAt(index));
+            history.put(TransactionLedger.toYearMonth(month), Collections.unmodifiableList(records));
+        }
+        return Collections.unmodifiableMap(history);
+    }
+
+    private TransactionRecord recordAt(int index) {
+        return new TransactionRecord(
+                TransactionLedger.toYearMonth(this.ledger.monthOf(index)),
+                this.ledger.eventOf(index),
+                this.ledger.amountOf(index),
+                this.ledger.balanceOf(index));
     }
 
     /**
@@ -182,6 +356,6 @@ public class Fund {
     }
 
     public FundDTO toDTO() {
-        return new FundDTO(this.type, this.getInitial(), this.current, this.getTransactionHistory());
+        return new FundDTO(this.type, this.getInitial(), this.getCurrent(), this.getTransactionHistory());
     }
-}
\ No newline at end of file
+}
@@ -1,7 +1,162 @@
 package com.example.geektrust.portfolio;
 
-public enum FundType {
-    EQUITY,
-    DEBT,
-    GOLD
-}
\ No newline at end of file
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asset class of a {@link Fund}. The asset classes are {@link #EQUITY},
+ * {@link #DEBT} and {@link #GOLD} unless configured otherwise at startup, see
+ * {@link #configure(List)}. The asset classes are configured at most once, and
+ * never after they are in use.
+ * <p>
+ * The configured asset classes are numbered from zero in configuration order,
+ * which is also the order of the fund columns of every command and output. The
+ * number is used to index per fund arrays, like the ordinal of an enum.
+ */
+public final class FundType implements Comparable<FundType> {
+    // fund types are stored as a single byte in journals and snapshots
+    public static final int MAX_COUNT = 255;
+    static final int NOT_CONFIGURED = -1;
+
+    // every type ever created by name, so the same name is always the same type
+    private static final Map<String, FundType> KNOWN = new ConcurrentHashMap<>();
+
+    public static final FundType EQUITY = named("EQUITY");
+    public static final FundType DEBT = named("DEBT");
+    public static final FundType GOLD = named("GOLD");
+
+    private static volatile FundType[] configured = configureAll(Arrays.asList(EQUITY.name, DEBT.name, GOLD.name));
+    // set by the configuration or the first sizing by count or values, the
+    // configuration can not change from then on
+    private static volatile boolean inUse;
+
+    private final String name;
+    private volatile int ordinal;
+
+    private FundType(String name) {
+        this.name = name;
+        this.ordinal = NOT_CONFIGURED;
+    }
+
+    /**
+     * Replaces the asset classes, has to be called once at startup before any
+     * portfolio or fund type map is created.
+     *
+     * @param names asset class names in column order, at least one and at most
+     *              {@value #MAX_COUNT}, without duplicates or whitespace.
+     * @throws IllegalStateException if the fund types are already configured, or
+     *                               in use by a portfolio or a map.
+     */
+    public static synchronized void configure(List<String> names) {
+        if (inUse)
+            throw new IllegalStateException("fund types already configured or in use: " + Arrays.toString(configured));
+        if (names.isEmpty() || names.size() > MAX_COUNT)
+            throw new IllegalArgumentException("1 to " + MAX_COUNT + " fund types required: " + names.size());
+        Set<String> unique = new HashSet<>();
+        for (String name : names) {
+            if (name.isEmpty() || name.chars().anyMatch(Character::isWhitespace))
+                throw new IllegalArgumentException("invalid fund type name: '" + name + "'");
+            if (!unique.add(name))
+                throw new IllegalArgumentException("duplicate fund type: " + name);
+        }
+
+        replaceWith(names);
+        inUse = true;
+    }
+
+    public static void configure(String... names) {
+        configure(Arrays.asList(names));
+    }
+
+    /**
+     * Restores the default fund types, so tests can configure them again. Every
+     * portfolio and map of the replaced fund types is broken by it.
+     */
+    static synchronized void reset() {
+        replaceWith(Arrays.asList(EQUITY.name, DEBT.name, GOLD.name));
+        inUse = false;
+    }
+
+    private static void replaceWith(List<String> names) {
+        for (FundType type : configured)
+            type.ordinal = NOT_CONFIGURED;
+        configured = configureAll(names);
+    }
+
+    private static FundType[] configureAll(List<String> names) {
+        FundType[] types = new FundType[names.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = named(names.get(i));
+            types[i].ordinal = i;
+        }
+        return types;
+    }
+
+    private static FundType named(String name) {
+        return KNOWN.computeIfAbsent(name, FundType::new);
+    }
+
+    /**
+     * @return the configured fund types in column order.
+     */
+    public static FundType[] values() {
+        markInUse();
+        return configured.clone();
+    }
+
+    /**
+     * @return number of configured fund types.
+     */
+    public static int count() {
+        markInUse();
+        return configured.length;
+    }
+
+    private static void markInUse() {
+        if (!inUse)
+            inUse = true;
+    }
+
+    /**
+     * @return the configured fund type of the given ordinal.
+     */
+    public static FundType of(int ordinal) {
+        return configured[ordinal];
+    }
+
+    /**
+     * @throws IllegalArgumentException if no such fund type is configured.
+     */
+    public static FundType valueOf(String name) {
+        FundType type = KNOWN.get(name);
+        if (type == null || type.ordinal == NOT_CONFIGURED)
+            throw new IllegalArgumentException("no fund type " + name);
+        return type;
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    /**
+     * @return position in the configured fund types, negative if the type is not
+     *         configured.
+     */
+    public int ordinal() {
+        return this.ordinal;
+    }
+
+    @Override
+    public int compareTo(FundType other) {
+        return Integer.compare(this.ordinal, other.ordinal);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.geektrust.portfolio;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map keyed by the configured {@link FundType}s, held in a dense array indexed
+ * by the fund type ordinal. Iterates in fund type order. Null values are not
+ * supported.
+ */
+public final class FundTypeMap<V> extends AbstractMap<FundType, V> {
+    private final Object[] values; // by FundType ordinal, null if absent
+    private int size;
+
+    public FundTypeMap() {
+        this.values = new Object[FundType.count()];
+    }
+
+    public FundTypeMap(Map<FundType, ? extends V> values) {
+        this();
+        putAll(values);
+    }
+
+    /**
+     * @return value of the fund type of the given ordinal, null if absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V getAt(int ordinal) {
+        return (V) this.values[ordinal];
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        int ordinal = ordinalOf(key);
+        return ordinal < 0 ? null : getAt(ordinal);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the fund type is not configured.
+     */
+    @Override
+    public V put(FundType key, V value) {
+        Objects.requireNonNull(value, "null fund value");
+        int ordinal = ordinalOf(key);
+        if (ordinal < 0)
+            throw new IllegalArgumentException("fund type not configured: " + key);
+
+        V previous = getAt(ordinal);
+        this.values[ordinal] = value;
+        if (previous == null)
+            this.size++;
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int ordinal = ordinalOf(key);
+        if (ordinal < 0)
+            return null;
+
+        V previous = getAt(ordinal);
+        if (previous != null) {
+            this.values[ordinal] = null;
+            this.size--;
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<FundType, V>> entrySet() {
+        return new AbstractSet<Map.Entry<FundType, V>>() {
+            @Override
+            public Iterator<Map.Entry<FundType, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return FundTypeMap.this.size;
+            }
+        };
+    }
+
+    private int ordinalOf(Object key) {
+        if (!(key instanceof FundType))
+            return -1;
+        int ordinal = ((FundType) key).ordinal();
+        return ordinal < this.values.length ? ordinal : -1;
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<FundType, V>> {
+        private int next = advance(0);
+        private int last = -1;
+
+        @Override
+        public boolean hasNext() {
+            return this.next < values.length;
+        }
+
+        @Override
+        public Map.Entry<FundType, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            this.last = this.next;
+            this.next = advance(this.next + 1);
+            return new SimpleImmutableEntry<>(FundType.of(this.last), getAt(this.last));
+        }
+
+        @Override
+        public void remove() {
+            if (this.last < 0)
+                throw new IllegalStateException();
+            values[this.last] = null;
+            size--;
+            this.last = -1;
+        }
+
+        private int advance(int from) {
+            int ordinal = from;
+            while (ordinal < values.length && values[ordinal] == null)
+                ordinal++;
+            return ordinal;
+        }
+    }
+}
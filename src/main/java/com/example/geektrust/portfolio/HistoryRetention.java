@@ -0,0 +1,39 @@
+package com.example.geektrust.portfolio;
+
+/**
+ * How many months of the transaction history of a fund are kept record by
+ * record, counted back from its last recorded month. Earlier months are folded
+ * into one {@code MONTHLY_SUMMARY} record each, see
+ * {@link PortfolioManager#compactHistory(HistoryRetention)}.
+ */
+public final class HistoryRetention {
+    public static final HistoryRetention KEEP_ALL = new HistoryRetention(Integer.MAX_VALUE);
+
+    private final int horizonMonths;
+
+    private HistoryRetention(int horizonMonths) {
+        this.horizonMonths = horizonMonths;
+    }
+
+    /**
+     * @param horizonMonths number of latest months kept record by record, at
+     *                      least one.
+     */
+    public static HistoryRetention ofMonths(int horizonMonths) {
+        if (horizonMonths < 1)
+            throw new IllegalArgumentException("at least one month has to be kept: " + horizonMonths);
+        return new HistoryRetention(horizonMonths);
+    }
+
+    public int getHorizonMonths() {
+        return this.horizonMonths;
+    }
+
+    /**
+     * @param lastMonth month index of the last record of the fund.
+     * @return month index of the first month kept record by record.
+     */
+    int firstDetailedMonth(int lastMonth) {
+        return (int) Math.max((long) lastMonth - this.horizonMonths + 1, Integer.MIN_VALUE);
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.geektrust.portfolio;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed point money arithmetic on primitive {@code long} values scaled by
+ * {@link #ONE} (six decimal places), used on the {@link Fund} hot path instead
+ * of {@link BigDecimal}. The scale bounds a single money value to about
+ * {@code 9.2e12}. The rounded values only floor the same as exact
+ * {@link BigDecimal} arithmetic within an error bound, see
+ * {@link ExactBalances} for how a portfolio keeps its floored outputs exact.
+ * <p>
+ * Rounding rules:
+ * <ul>
+ * <li>conversions from {@link BigDecimal} with more than {@link #SCALE}
+ * decimals round {@link RoundingMode#HALF_EVEN},</li>
+ * <li>products and ratios ({@link #percentOf}, {@link #multiplyDivide}) are
+ * computed exactly and rounded once {@link RoundingMode#HALF_EVEN},</li>
+ * <li>conversions back to {@link BigDecimal} are exact,</li>
+ * <li>values out of the {@code long} range throw {@link ArithmeticException}.
+ * </li>
+ * </ul>
+ */
+public final class Money {
+    public static final int SCALE = 6;
+    public static final long ONE = 1_000_000L;
+    public static final long ZERO = 0L;
+    // percentages are scaled the same way as amounts, 100% == 100 * ONE
+    private static final long HUNDRED_PERCENT = 100 * ONE;
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException if the value does not fit in the money range.
+     */
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @return true if the value has at most {@link #SCALE} decimals, converted
+     *         by {@link #of(BigDecimal)} without rounding.
+     */
+    public static boolean isExact(BigDecimal value) {
+        return value.scale() <= SCALE || value.stripTrailingZeros().scale() <= SCALE;
+    }
+
+    public static long ofWhole(long value) {
+        return Math.multiplyExact(value, ONE);
+    }
+
+    public static BigDecimal toBigDecimal(long value) {
+        return BigDecimal.valueOf(value, SCALE);
+    }
+
+    /**
+     * @return the whole part of the value rounded towards negative infinity.
+     */
+    public static long floor(long value) {
+        return Math.floorDiv(value, ONE);
+    }
+
+    /**
+     * @param percentage scaled percentage, negative means a loss.
+     * @return {@code amount * percentage / 100}
+     */
+    public static long percentOf(long amount, long percentage) {
+        return multiplyDivide(amount, percentage, HUNDRED_PERCENT);
+    }
+
+    /**
+     * @return {@code value * numerator / denominator} rounded half even, the
+     *         product is kept in 128 bits so it never overflows.
+     * @throws ArithmeticException if the result does not fit in the money range.
+     */
+    public static long multiplyDivide(long value, long numerator, long denominator) {
+        if (denominator == 0)
+            throw new ArithmeticException("/ by zero");
+
+        boolean negative = (value < 0) ^ (numerator < 0) ^ (denominator < 0);
+        long a = Math.abs(value);
+        long b = Math.abs(numerator);
+        long divisor = Math.abs(denominator);
+        if (a < 0 || b < 0 || divisor < 0)
+            throw new ArithmeticException("money out of range");
+
+        // unsigned 128 bit product of two non negative longs
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if (Long.compareUnsigned(high, divisor) >= 0)
+            throw new ArithmeticException("money out of range");
+
+        long quotient = divideUnsigned128(high, low, divisor);
+        long remainder = low - quotient * divisor; // exact, the remainder fits in the low bits
+        long otherHalf = divisor - remainder;
+        if (remainder > otherHalf || (remainder == otherHalf && (quotient & 1) != 0))
+            quotient++;
+        if (quotient < 0)
+            throw new ArithmeticException("money out of range");
+
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * Unsigned division of the 128 bit {@code high:low} by {@code divisor}, the
+     * quotient has to fit in 64 bits ({@code high < divisor}). Knuth's algorithm
+     * D on 32 bit digits, as in Hacker's Delight {@code divlu}.
+     */
+    private static long divideUnsigned128(long high, long low, long divisor) {
+        final long base = 1L << 32;
+        final long digitMask = base - 1;
+
+        int shift = Long.numberOfLeadingZeros(divisor);
+        long v = divisor << shift;
+        long vn1 = v >>> 32;
+        long vn0 = v & digitMask;
+
+        long un32 = shift == 0 ? high : (high << shift) | (low >>> (64 - shift));
+        long un10 = low << shift;
+        long un1 = un10 >>> 32;
+        long un0 = un10 & digitMask;
+
+        long q1 = Long.divideUnsigned(un32, vn1);
+        long rhat = Long.remainderUnsigned(un32, vn1);
+        while (Long.compareUnsigned(q1, base) >= 0
+                || Long.compareUnsigned(q1 * vn0, (rhat << 32) + un1) > 0) {
+            q1--;
+            rhat += vn1;
+            if (Long.compareUnsigned(rhat, base) >= 0)
+                break;
+        }
+
+        long un21 = (un32 << 32) + un1 - q1 * v;
+        long q0 = Long.divideUnsigned(un21, vn1);
+        rhat = Long.remainderUnsigned(un21, vn1);
+        while (Long.compareUnsigned(q0, base) >= 0
+                || Long.compareUnsigned(q0 * vn0, (rhat << 32) + un0) > 0) {
+            q0--;
+            rhat += vn1;
+            if (Long.compareUnsigned(rhat, base) >= 0)
+                break;
+        }
+
+        return (q1 << 32) + q0;
+    }
+}
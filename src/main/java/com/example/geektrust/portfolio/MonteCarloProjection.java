@@ -0,0 +1,299 @@
+package com.example.geektrust.portfolio;
+
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Projects a portfolio over random market months, drawing the change of every
+ * fund from its {@link ReturnDistribution} on each of many independent paths.
+ * <p>
+ * Paths follow the rules of {@link PortfolioManager}: the SIP of the next month
+ * is added after every change, and in the compulsory rebalance months the
+ * funds are first rebalanced to the weights of the allocation, as if
+ * {@code REBALANCE} was run after every June and December change. A loss of
+ * more than 100% leaves the fund empty.
+ * <p>
+ * Paths are simulated in chunks of {@value #CHUNK}, with the balances of a
+ * chunk in primitive arrays, in double precision rather than with the exact
+ * {@link Money} arithmetic. Every chunk draws from its own split of the seeded
+ * random generator, so the result only depends on the seed whatever the
+ * parallelism. Balances are counted in a {@link BalanceHistogram} per month
+ * instead of being kept, for the percentiles.
+ */
+public final class MonteCarloProjection {
+    static final int CHUNK = 1024;
+
+    private final int funds;
+    private final double[] balances; // by fund ordinal
+    private final double[] weights; // by fund ordinal, of the allocation
+    private final double[] sip; // by fund ordinal
+    private final boolean pending; // rebalance due before the first month
+    private final Month firstMonth;
+    private final ReturnDistribution[] distributions; // by fund ordinal
+
+    private MonteCarloProjection(double[] balances, double[] weights, double[] sip, boolean pending,
+            Month firstMonth, ReturnDistribution[] distributions) {
+        this.funds = balances.length;
+        this.balances = balances;
+        this.weights = weights;
+        this.sip = sip;
+        this.pending = pending;
+        this.firstMonth = firstMonth;
+        this.distributions = distributions;
+    }
+
+    /**
+     * Projection starting from the current balances and SIP of the portfolio,
+     * from the month after its last change, or from January if there is none.
+     *
+     * @param distributions monthly change of every fund type.
+     * @throws IllegalArgumentException if the portfolio is not allocated or a
+     *                                  fund type has no distribution.
+     */
+    public static MonteCarloProjection of(PortfolioManager portfolio,
+            Map<FundType, ReturnDistribution> distributions) {
+        int funds = FundType.count();
+        double[] balances = new double[funds];
+        double[] initial = new double[funds];
+        double[] sip = new double[funds];
+        ReturnDistribution[] byFund = new ReturnDistribution[funds];
+        double initialTotal = 0;
+        int lastChange = Fund.NO_MONTH;
+        TransactionEvent lastEvent = null;
+        for (int fund = 0; fund < funds; fund++) {
+            FundType type = FundType.of(fund);
+            byFund[fund] = distributions.get(type);
+            if (byFund[fund] == null)
+                throw new IllegalArgumentException("no return distribution for " + type);
+
+            Fund owned = portfolio.fundOf(type);
+            balances[fund] = toDouble(owned.getCurrentValue());
+            initial[fund] = toDouble(owned.getInitialValue());
+            sip[fund] = toDouble(portfolio.sipOf(fund));
+            initialTotal += initial[fund];
+            lastChange = Math.max(lastChange, owned.lastMonthOf(TransactionEvent.MONTHLY_CHANGE));
+            if (owned.lastEvent() != null)
+                lastEvent = owned.lastEvent();
+        }
+        if (!(initialTotal > 0))
+            throw new IllegalArgumentException("portfolio not allocated");
+
+        for (int fund = 0; fund < funds; fund++)
+            initial[fund] /= initialTotal;
+        Month firstMonth = lastChange == Fund.NO_MONTH ? Month.JANUARY
+                : TransactionLedger.calendarMonthOf(lastChange + 1);
+        // a compulsory month change not rebalanced yet
+        boolean pending = TransactionEvent.MONTHLY_CHANGE.equals(lastEvent) && lastChange != Fund.NO_MONTH
+                && isCompulsory(TransactionLedger.calendarMonthOf(lastChange));
+        return new MonteCarloProjection(balances, initial, sip, pending, firstMonth, byFund);
+    }
+
+    public Month getFirstMonth() {
+        return this.firstMonth;
+    }
+
+    /**
+     * @param months      number of months projected.
+     * @param paths       number of independent paths.
+     * @param seed        of the random generator, the same seed gives the same
+     *                    result.
+     * @param parallelism number of paths simulated at the same time, usually
+     *                    the number of cores.
+     */
+    public Result run(int months, long paths, long seed, int parallelism) {
+        if (months < 1 || paths < 1 || parallelism < 1)
+            throw new IllegalArgumentException(
+                    "months, paths and parallelism have to be positive: " + months + ", " + paths + ", "
+                            + parallelism);
+        long chunkCount = (paths + CHUNK - 1) / CHUNK;
+        if (chunkCount > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many paths: " + paths);
+
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[(int) chunkCount];
+        for (int chunk = 0; chunk < streams.length; chunk++)
+            streams[chunk] = root.split();
+
+        int workers = (int) Math.min(parallelism, chunkCount);
+        AtomicInteger nextChunk = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            List<Future<BalanceHistogram[]>> jobs = new ArrayList<>(workers);
+            for (int worker = 0; worker < workers; worker++) {
+                jobs.add(pool.submit(() -> {
+                    BalanceHistogram[] histograms = newHistograms(months);
+                    double[][] balances = new double[this.funds][CHUNK];
+                    double[] changes = new double[CHUNK];
+                    double[] totals = new double[CHUNK];
+                    for (int chunk = nextChunk.getAndIncrement(); chunk < streams.length; chunk = nextChunk
+                            .getAndIncrement()) {
+                        int size = (int) Math.min(CHUNK, paths - (long) chunk * CHUNK);
+                        simulate(months, size, streams[chunk], balances, changes, totals, histograms);
+                    }
+                    return histograms;
+                }));
+            }
+
+            BalanceHistogram[] merged = await(jobs.get(0));
+            for (int worker = 1; worker < workers; worker++) {
+                BalanceHistogram[] histograms = await(jobs.get(worker));
+                for (int month = 0; month < months; month++)
+                    merged[month].add(histograms[month]);
+            }
+            return new Result(this.firstMonth, paths, this.funds, merged);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void simulate(int months, int size, SplittableRandom random, double[][] balances, double[] changes,
+            double[] totals, BalanceHistogram[] histograms) {
+        for (int fund = 0; fund < this.funds; fund++)
+            Arrays.fill(balances[fund], 0, size, this.balances[fund]);
+        if (this.pending) {
+            rebalance(size, balances, totals);
+            addSip(size, balances);
+        }
+
+        Month month = this.firstMonth;
+        for (int index = 0; index < months; index++) {
+            for (int fund = 0; fund < this.funds; fund++) {
+                this.distributions[fund].sample(random, changes, size);
+                double[] fundBalances = balances[fund];
+                for (int path = 0; path < size; path++)
+                    fundBalances[path] = Math.max(0d, fundBalances[path] * (1d + changes[path] / 100d));
+            }
+            if (isCompulsory(month))
+                rebalance(size, balances, totals);
+            else
+                sum(size, balances, totals);
+
+            // balance of the month, before the SIP of the next month
+            BalanceHistogram histogram = histograms[index];
+            for (int fund = 0; fund < this.funds; fund++) {
+                double[] fundBalances = balances[fund];
+                for (int path = 0; path < size; path++)
+                    histogram.record(fund, fundBalances[path]);
+            }
+            for (int path = 0; path < size; path++)
+                histogram.record(this.funds, totals[path]);
+
+            addSip(size, balances);
+            month = month.plus(1);
+        }
+    }
+
+    private void sum(int size, double[][] balances, double[] totals) {
+        Arrays.fill(totals, 0, size, 0d);
+        for (int fund = 0; fund < this.funds; fund++) {
+            double[] fundBalances = balances[fund];
+            for (int path = 0; path < size; path++)
+                totals[path] += fundBalances[path];
+        }
+    }
+
+    private void rebalance(int size, double[][] balances, double[] totals) {
+        sum(size, balances, totals);
+        for (int fund = 0; fund < this.funds; fund++) {
+            double weight = this.weights[fund];
+            double[] fundBalances = balances[fund];
+            for (int path = 0; path < size; path++)
+                fundBalances[path] = totals[path] * weight;
+        }
+    }
+
+    private void addSip(int size, double[][] balances) {
+        for (int fund = 0; fund < this.funds; fund++) {
+            double sip = this.sip[fund];
+            double[] fundBalances = balances[fund];
+            for (int path = 0; path < size; path++)
+                fundBalances[path] += sip;
+        }
+    }
+
+    private BalanceHistogram[] newHistograms(int months) {
+        BalanceHistogram[] histograms = new BalanceHistogram[months];
+        for (int month = 0; month < months; month++)
+            histograms[month] = new BalanceHistogram(this.funds + 1); // funds and total
+        return histograms;
+    }
+
+    private static boolean isCompulsory(Month month) {
+        return PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month);
+    }
+
+    private static double toDouble(long money) {
+        return (double) money / Money.ONE;
+    }
+
+    private static <T> T await(Future<T> job) {
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while projecting", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("projection failed", e.getCause());
+        }
+    }
+
+    /**
+     * Balance percentiles of every projected month, accurate to within 0.4%, see
+     * {@link BalanceHistogram}.
+     */
+    public static final class Result {
+        private final Month firstMonth;
+        private final long paths;
+        private final int funds;
+        private final BalanceHistogram[] byMonth;
+
+        private Result(Month firstMonth, long paths, int funds, BalanceHistogram[] byMonth) {
+            this.firstMonth = firstMonth;
+            this.paths = paths;
+            this.funds = funds;
+            this.byMonth = byMonth;
+        }
+
+        public long getPaths() {
+            return this.paths;
+        }
+
+        public int getMonths() {
+            return this.byMonth.length;
+        }
+
+        /**
+         * @param month from 0 for the first projected month.
+         * @return calendar month of the projected month.
+         */
+        public Month getMonth(int month) {
+            return this.firstMonth.plus(month);
+        }
+
+        /**
+         * @param month      from 0 for the first projected month.
+         * @param percentile from 0 to 100.
+         * @return the portfolio balance at the percentile of the paths.
+         */
+        public double percentile(int month, double percentile) {
+            return this.byMonth[month].percentile(this.funds, percentile);
+        }
+
+        /**
+         * @return the balance of the fund at the percentile of the paths.
+         */
+        public double percentile(int month, FundType type, double percentile) {
+            return this.byMonth[month].percentile(type.ordinal(), percentile);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.geektrust.portfolio;
+
+import java.util.Arrays;
+
+/**
+ * Net asset value of one unit of a fund type after every market month, shared
+ * by all the portfolios of a {@link UnitisedPortfolioBook}.
+ * <p>
+ * Steps count the market changes: step 0 is before the first change, with a
+ * value of 1, and step {@code k} is after the {@code k}th change. Along with
+ * the value, the series keeps the units a monthly contribution of 1 buys at
+ * every open step, cumulated since step 0, so the units bought by a SIP over
+ * any range of months is a difference of two entries instead of a sum over the
+ * months.
+ */
+final class NavSeries {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] values; // by step
+    private double[] sipUnits; // by step, cumulated units bought by a SIP of 1
+    private int lastStep;
+
+    NavSeries() {
+        this.values = new double[INITIAL_CAPACITY];
+        this.sipUnits = new double[INITIAL_CAPACITY];
+        this.values[0] = 1d;
+    }
+
+    /**
+     * Appends the value after the month's change.
+     *
+     * @param percentage market change, negative means a loss.
+     * @param open       true if the SIP of the next month is bought at the new
+     *                   value, false in compulsory rebalance months.
+     */
+    void append(double percentage, boolean open) {
+        int step = this.lastStep + 1;
+        if (step == this.values.length) {
+            this.values = Arrays.copyOf(this.values, step * 2);
+            this.sipUnits = Arrays.copyOf(this.sipUnits, step * 2);
+        }
+        double value = this.values[step - 1] * (1d + percentage / 100d);
+        this.values[step] = value;
+        this.sipUnits[step] = this.sipUnits[step - 1] + (open ? 1d / value : 0d);
+        this.lastStep = step;
+    }
+
+    int lastStep() {
+        return this.lastStep;
+    }
+
+    double valueAt(int step) {
+        return this.values[step];
+    }
+
+    /**
+     * @return units bought by a SIP of 1 at every open step after {@code from}
+     *         up to and including {@code to}.
+     */
+    double sipUnitsBetween(int from, int to) {
+        return this.sipUnits[to] - this.sipUnits[from];
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.geektrust.portfolio;
+
+import java.time.Month;
+import java.util.Arrays;
+
+/**
+ * Fund balances of many portfolios moving through the same market months,
+ * for market wide changes applied to every portfolio at once.
+ * <p>
+ * Every fund type is a column of contiguous {@code double} arrays indexed by
+ * portfolio, so a monthly change is one pass per fund over the portfolios: the
+ * change, the next month's SIP and the pending rebalance flag are all applied
+ * without branches, in a loop the JIT compiles to SIMD instructions.
+ * Rebalancing the pending portfolios is a pass of the same kind.
+ * <p>
+ * Portfolios follow the rules of {@link PortfolioManager}: the SIP of the next
+ * month is added with the change unless the change is in a compulsory
+ * rebalance month, in which case the portfolios are pending for rebalance and
+ * get the SIP with the rebalance. Values are in currency units, in double
+ * precision instead of the exact {@link Money} arithmetic of the ledgers, so
+ * a floored value may differ by one from the ledger when the exact value is
+ * within a few millionths of a whole number.
+ */
+public final class PortfolioBook {
+    static final int NO_MONTH = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final double PENDING = 1d;
+    private static final double OPEN = 0d;
+
+    private final int funds;
+    private double[][] balances; // [fund][portfolio]
+    private double[][] initial; // [fund][portfolio], allocations
+    private double[][] sip; // [fund][portfolio]
+    private double[] initialTotals; // by portfolio
+    private double[] pending; // by portfolio, PENDING or OPEN
+    private double[] currentTotals; // by portfolio, rebalance work array
+    private int size;
+    private int lastMonth = NO_MONTH; // calendar month ordinal of the last change
+
+    public PortfolioBook() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PortfolioBook(int capacity) {
+        this.funds = FundType.count();
+        int initialCapacity = Math.max(capacity, 1);
+        this.balances = new double[this.funds][initialCapacity];
+        this.initial = new double[this.funds][initialCapacity];
+        this.sip = new double[this.funds][initialCapacity];
+        this.initialTotals = new double[initialCapacity];
+        this.pending = new double[initialCapacity];
+        this.currentTotals = new double[initialCapacity];
+    }
+
+    /**
+     * Adds an allocated portfolio.
+     *
+     * @param allocation amount of every fund, in fund type order.
+     * @param sip        monthly contribution of every fund, in fund type order.
+     * @return index of the portfolio in the book.
+     * @throws IllegalArgumentException if the allocation total is not positive.
+     */
+    public int add(double[] allocation, double[] sip) {
+        if (allocation.length != this.funds || sip.length != this.funds)
+            throw new IllegalArgumentException("one value per fund type required: " + this.funds);
+        if (!(Arrays.stream(allocation).sum() > 0))
+            throw new IllegalArgumentException("allocation total has to be positive");
+
+        int portfolio = this.size;
+        ensureCapacity(portfolio + 1);
+        double initialTotal = 0;
+        for (int fund = 0; fund < this.funds; fund++) {
+            this.balances[fund][portfolio] = allocation[fund];
+            this.initial[fund][portfolio] = allocation[fund];
+            this.sip[fund][portfolio] = sip[fund];
+            initialTotal += allocation[fund];
+        }
+        this.initialTotals[portfolio] = initialTotal;
+        this.pending[portfolio] = OPEN;
+        this.size++;
+        return portfolio;
+    }
+
+    /**
+     * Adds the current balances, allocations and SIP of the portfolio, pending
+     * for rebalance if its last transaction is a compulsory rebalance month
+     * change.
+     *
+     * @return index of the portfolio in the book.
+     */
+    public int add(PortfolioManager portfolio) {
+        double[] balances = new double[this.funds];
+        double[] allocation = new double[this.funds];
+        double[] sip = new double[this.funds];
+        boolean pending = false;
+        for (int fund = 0; fund < this.funds; fund++) {
+            Fund owned = portfolio.fundOf(FundType.of(fund));
+            balances[fund] = toDouble(owned.getCurrentValue());
+            allocation[fund] = toDouble(owned.getInitialValue());
+            sip[fund] = toDouble(portfolio.sipOf(fund));
+            pending |= TransactionEvent.MONTHLY_CHANGE.equals(owned.lastEvent())
+                    && PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(
+                            TransactionLedger.calendarMonthOf(owned.lastMonth()));
+        }
+
+        int index = add(allocation, sip);
+        for (int fund = 0; fund < this.funds; fund++)
+            this.balances[fund][index] = balances[fund];
+        this.pending[index] = pending ? PENDING : OPEN;
+        return index;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Applies the month's market change to every portfolio of the book. Months
+     * follow each other, the first change may be in any month.
+     *
+     * @param percentages market change of every fund, in fund type order,
+     *                    negative means a loss.
+     * @return false if the month does not follow the last changed month, nothing
+     *         is applied.
+     */
+    public boolean applyMonthlyChange(Month month, double[] percentages) {
+        if (percentages.length != this.funds)
+            throw new IllegalArgumentException("one percentage per fund type required: " + this.funds);
+        if (this.lastMonth != NO_MONTH && month.ordinal() != (this.lastMonth + 1) % 12)
+            return false;
+
+        boolean compulsory = PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month);
+        // 1 adds the next month SIP, 0 leaves it to the rebalance
+        double open = compulsory ? 0d : 1d;
+        int size = this.size;
+        for (int fund = 0; fund < this.funds; fund++) {
+            double factor = 1d + percentages[fund] / 100d;
+            double[] balances = this.balances[fund];
+            double[] sip = this.sip[fund];
+            for (int i = 0; i < size; i++)
+                balances[i] = balances[i] * factor + sip[i] * open;
+        }
+        // a change in any other month drops a pending rebalance, as the ledgers do
+        Arrays.fill(this.pending, 0, size, compulsory ? PENDING : OPEN);
+        this.lastMonth = month.ordinal();
+        return true;
+    }
+
+    /**
+     * Rebalances every pending portfolio to the weights of its allocation and
+     * adds the SIP of the next month.
+     *
+     * @return number of rebalanced portfolios.
+     */
+    public int rebalance() {
+        int size = this.size;
+        double[] totals = this.currentTotals;
+        Arrays.fill(totals, 0, size, 0d);
+        for (int fund = 0; fund < this.funds; fund++) {
+            double[] balances = this.balances[fund];
+            for (int i = 0; i < size; i++)
+                totals[i] += balances[i];
+        }
+
+        double[] pending = this.pending;
+        double[] initialTotals = this.initialTotals;
+        for (int fund = 0; fund < this.funds; fund++) {
+            double[] balances = this.balances[fund];
+            double[] initial = this.initial[fund];
+            double[] sip = this.sip[fund];
+            for (int i = 0; i < size; i++) {
+                double rebalanced = totals[i] * initial[i] / initialTotals[i] + sip[i];
+                // blended by the pending flag instead of a branch
+                balances[i] += pending[i] * (rebalanced - balances[i]);
+            }
+        }
+
+        int rebalanced = 0;
+        for (int i = 0; i < size; i++)
+            rebalanced += (int) pending[i];
+        Arrays.fill(pending, 0, size, OPEN);
+        return rebalanced;
+    }
+
+    /**
+     * @return true if the last change was in a compulsory rebalance month and the
+     *         portfolio is not rebalanced yet.
+     */
+    public boolean isPendingForRebalance(int portfolio) {
+        checkIndex(portfolio);
+        return this.pending[portfolio] == PENDING;
+    }
+
+    public double balanceOf(int portfolio, FundType type) {
+        checkIndex(portfolio);
+        return this.balances[type.ordinal()][portfolio];
+    }
+
+    /**
+     * @return balances of the portfolio rounded down to whole numbers, in fund
+     *         type order, as reported by BALANCE.
+     */
+    public long[] wholeBalancesOf(int portfolio) {
+        checkIndex(portfolio);
+        long[] values = new long[this.funds];
+        for (int fund = 0; fund < this.funds; fund++)
+            values[fund] = (long) Math.floor(this.balances[fund][portfolio]);
+        return values;
+    }
+
+    private void checkIndex(int portfolio) {
+        if (portfolio < 0 || portfolio >= this.size)
+            throw new IndexOutOfBoundsException("no portfolio " + portfolio + " in a book of " + this.size);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= this.pending.length)
+            return;
+
+        int capacity = Math.max(required, this.pending.length * 2);
+        for (int fund = 0; fund < this.funds; fund++) {
+            this.balances[fund] = Arrays.copyOf(this.balances[fund], capacity);
+            this.initial[fund] = Arrays.copyOf(this.initial[fund], capacity);
+            this.sip[fund] = Arrays.copyOf(this.sip[fund], capacity);
+        }
+        this.initialTotals = Arrays.copyOf(this.initialTotals, capacity);
+        this.pending = Arrays.copyOf(this.pending, capacity);
+        this.currentTotals = new double[capacity];
+    }
+
+    private static double toDouble(long money) {
+        return (double) money / Money.ONE;
+    }
+}
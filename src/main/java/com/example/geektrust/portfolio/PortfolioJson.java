@@ -0,0 +1,318 @@
+package com.example.geektrust.portfolio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.util.Arrays;
+
+/**
+ * Reusable buffer holding one JSON document about a {@link PortfolioManager},
+ * encoded by hand from the fund ledgers without copying them into DTOs first.
+ * Amounts are exact decimals, e.g. {@code 6240.5}, months are {@code "2024-01"}.
+ * <p>
+ * A buffer is meant to be pooled: {@link #reset()} before encoding the next
+ * document keeps the grown capacity. Encoding reads the portfolio, so it has
+ * to run on the thread owning it.
+ *
+ * <pre>
+ * balance:   {"id":"c42","balances":{"EQUITY":6240,"DEBT":3300,"GOLD":1020}}
+ * month:     {"id":"c42","month":"JANUARY","balances":{...}}
+ * rebalance: {"id":"c42","pending":false,"lastRebalance":{"month":"2024-06","balances":{...}}}
+ * history:   {"id":"c42","funds":{"EQUITY":{"total":12,"offset":0,"transactions":[
+ *                {"month":"2024-01","event":"ALLOCATE","amount":6000,"balance":6000},...]}}}
+ * error:     {"error":"no portfolio c42"}
+ * </pre>
+ */
+public final class PortfolioJson {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int FRACTION_DIGITS = Money.SCALE;
+
+    private byte[] bytes;
+    private int size;
+
+    public PortfolioJson(int initialCapacity) {
+        this.bytes = new byte[Math.max(initialCapacity, 64)];
+    }
+
+    public PortfolioJson reset() {
+        this.size = 0;
+        return this;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int capacity() {
+        return this.bytes.length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.bytes, 0, this.size);
+    }
+
+    /**
+     * Current balance of every fund, SIP of the next month included.
+     */
+    public void writeBalance(String id, PortfolioManager portfolio) {
+        openDocument(id);
+        name("balances");
+        append('{');
+        boolean first = true;
+        for (Fund fund : portfolio.getFundList()) {
+            first = separate(first);
+            name(fund.getType().name());
+            money(fund.getCurrentValue());
+        }
+        append('}').append('}');
+    }
+
+    /**
+     * Balances as reported by {@code BALANCE}, the last record of the latest
+     * matching month of every fund.
+     *
+     * @return false if no fund has a record in the month, nothing is written.
+     */
+    public boolean writeBalance(String id, PortfolioManager portfolio, Month month) {
+        boolean any = false;
+        for (Fund fund : portfolio.getFundList())
+            any |= fund.getLedger().lastIndexOf(month) != TransactionLedger.NO_RECORD;
+        if (!any)
+            return false;
+
+        openDocument(id);
+        name("month");
+        string(month.name());
+        append(',');
+        name("balances");
+        append('{');
+        boolean first = true;
+        for (Fund fund : portfolio.getFundList()) {
+            TransactionLedger ledger = fund.getLedger();
+            int index = ledger.lastIndexOf(month);
+            if (index == TransactionLedger.NO_RECORD)
+                continue;
+            first = separate(first);
+            name(fund.getType().name());
+            money(ledger.balanceOf(index));
+        }
+        append('}').append('}');
+        return true;
+    }
+
+    /**
+     * Whether the portfolio waits for a {@code REBALANCE}, and the balances of
+     * the last one, null if never rebalanced.
+     */
+    public void writeRebalanceStatus(String id, PortfolioManager portfolio) {
+        openDocument(id);
+        name("pending");
+        ascii(Boolean.toString(portfolio.isPendingForRebalance()));
+        append(',');
+        name("lastRebalance");
+
+        int lastMonth = Fund.NO_MONTH;
+        for (Fund fund : portfolio.getFundList())
+            lastMonth = Math.max(lastMonth, fund.lastMonthOf(TransactionEvent.REBALANCE));
+        if (lastMonth == Fund.NO_MONTH) {
+            ascii("null").append('}');
+            return;
+        }
+
+        append('{');
+        name("month");
+        yearMonth(lastMonth);
+        append(',');
+        name("balances");
+        append('{');
+        boolean first = true;
+        for (Fund fund : portfolio.getFundList()) {
+            TransactionLedger ledger = fund.getLedger();
+            int index = ledger.lastIndexOf(TransactionEvent.REBALANCE);
+            if (index == TransactionLedger.NO_RECORD || ledger.monthOf(index) != lastMonth)
+                continue;
+            first = separate(first);
+            name(fund.getType().name());
+            money(ledger.balanceOf(index));
+        }
+        append('}').append('}').append('}');
+    }
+
+    /**
+     * A page of the transaction history of the funds, in insert order.
+     *
+     * @param type   fund of the history, null for every fund.
+     * @param offset index of the first record of the page.
+     * @param limit  maximum number of records per fund.
+     */
+    public void writeHistory(String id, PortfolioManager portfolio, FundType type, int offset, int limit) {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("offset and limit have to be positive: " + offset + ", " + limit);
+
+        openDocument(id);
+        name("funds");
+        append('{');
+        boolean firstFund = true;
+        for (Fund fund : portfolio.getFundList()) {
+            if (type != null && !type.equals(fund.getType()))
+                continue;
+            firstFund = separate(firstFund);
+            name(fund.getType().name());
+            TransactionLedger ledger = fund.getLedger();
+            append('{');
+            name("total");
+            number(ledger.size());
+            append(',');
+            name("offset");
+            number(offset);
+            append(',');
+            name("transactions");
+            append('[');
+            int end = (int) Math.min(ledger.size(), (long) offset + limit);
+            for (int index = offset; index < end; index++) {
+                if (index > offset)
+                    append(',');
+                append('{');
+                name("month");
+                yearMonth(ledger.monthOf(index));
+                append(',');
+                name("event");
+                string(ledger.eventOf(index).name());
+                append(',');
+                name("amount");
+                money(ledger.amountOf(index));
+                append(',');
+                name("balance");
+                money(ledger.balanceOf(index));
+                append('}');
+            }
+            append(']').append('}');
+        }
+        append('}').append('}');
+    }
+
+    public void writeError(String message) {
+        append('{');
+        name("error");
+        string(message);
+        append('}');
+    }
+
+    private void openDocument(String id) {
+        append('{');
+        name("id");
+        string(id);
+        append(',');
+    }
+
+    private boolean separate(boolean first) {
+        if (!first)
+            append(',');
+        return false;
+    }
+
+    private void name(String name) {
+        string(name);
+        append(':');
+    }
+
+    private void string(String value) {
+        append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                // control and non ASCII characters as unicode escapes
+                append('\\').append('u');
+                for (int shift = 12; shift >= 0; shift -= 4)
+                    appendByte(HEX[(c >>> shift) & 0xf]);
+            } else {
+                append(c);
+            }
+        }
+        append('"');
+    }
+
+    private void yearMonth(int month) {
+        int year = Math.floorDiv(month, 12);
+        int monthOfYear = Math.floorMod(month, 12) + 1;
+        append('"');
+        number(year);
+        append('-');
+        if (monthOfYear < 10)
+            append('0');
+        number(monthOfYear);
+        append('"');
+    }
+
+    /**
+     * Writes the fixed point amount as a decimal without trailing zeros.
+     */
+    private void money(long amount) {
+        if (amount < 0) {
+            append('-');
+            if (amount == Long.MIN_VALUE) {
+                // not representable as a positive long, never a real balance
+                ascii(Money.toBigDecimal(amount).negate().stripTrailingZeros().toPlainString());
+                return;
+            }
+            amount = -amount;
+        }
+        number(amount / Money.ONE);
+        long fraction = amount % Money.ONE;
+        if (fraction == 0)
+            return;
+
+        int digits = FRACTION_DIGITS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        append('.');
+        ensureCapacity(digits);
+        for (int i = digits - 1; i >= 0; i--) {
+            this.bytes[this.size + i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        this.size += digits;
+    }
+
+    /**
+     * Writes a non negative number.
+     */
+    private void number(long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+            digits++;
+        ensureCapacity(digits);
+        long rest = value;
+        for (int i = digits - 1; i >= 0; i--) {
+            this.bytes[this.size + i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        this.size += digits;
+    }
+
+    private PortfolioJson ascii(String value) {
+        for (int i = 0; i < value.length(); i++)
+            append(value.charAt(i));
+        return this;
+    }
+
+    private PortfolioJson append(char c) {
+        return appendByte((byte) c);
+    }
+
+    private PortfolioJson appendByte(byte b) {
+        ensureCapacity(1);
+        this.bytes[this.size++] = b;
+        return this;
+    }
+
+    private void ensureCapacity(int required) {
+        if (this.size + required > this.bytes.length)
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.size + required));
+    }
+}
@@ -3,62 +3,157 @@ package com.example.geektrust.portfolio;
 import java.math.BigDecimal;
 import java.time.Month;
 import java.time.Year;
-import java.time.YearMonth;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import com.example.geektrust.portfolio.Fund.FundDTO;
-import com.example.geektrust.portfolio.Fund.TransactionRecord;
 
 public class PortfolioManager {
-    private Map<FundType, BigDecimal> sip;
+    private final Map<FundType, BigDecimal> sip;
+    private final long[] sipByType; // Money, by FundType ordinal
     private final List<Fund> funds;
+    private final Fund[] fundByType; // by FundType ordinal, null if not in the portfolio
+    private final PortfolioTotals totals = new PortfolioTotals();
+    private final ExactBalances exact;
+    // validated by FundType ordinal before an update is applied
+    private final long[] pendingBalances; // Money
+    private final int[] pendingMonths;
+    private TransactionListener listener = TransactionListener.NONE;
     public static final List<Month> MONTHS_COMPULSORY_REBALANCE = Arrays.asList(Month.JUNE, Month.DECEMBER);
 
     public PortfolioManager(List<FundType> types) {
-        this.funds = types.stream().map(fund -> new Fund(fund)).collect(Collectors.toList());
+        this(types.stream().map(fund -> new Fund(fund)).collect(Collectors.toList()), null);
 
         // sip initialised with zero to no monthly contribution untill set
-        this.sip = new HashMap<>();
         types.stream().forEach(type -> this.sip.put(type, BigDecimal.ZERO));
     }
 
+    /**
+     * @param sip null for no monthly contribution until set.
+     */
     public PortfolioManager(List<Fund> funds, Map<FundType, BigDecimal> sip) {
         this.funds = funds;
-        this.sip = sip;
+        this.fundByType = new Fund[FundType.count()];
+        this.funds.forEach(fund -> {
+            this.fundByType[fund.getType().ordinal()] = fund;
+            fund.setTotals(this.totals);
+        });
+        this.exact = new ExactBalances(this.fundByType);
+        this.pendingBalances = new long[FundType.count()];
+        this.pendingMonths = new int[FundType.count()];
+
+        this.sip = new FundTypeMap<>();
+        this.sipByType = new long[FundType.count()];
+        if (sip != null)
+            putSip(sip);
     }
 
     /**
      * @param amount has to be greater than zero to initialise a fund.
+     * @throws ArithmeticException if the amount does not fit in the money range.
      */
     public void allocate(FundType type, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) < 0)
-            return; // skip initialising with negative allocation
+        allocate(Collections.singletonMap(type, amount));
+    }
 
-        // Initialise the fund.
-        this.fundOf(type).initialise(amount, Year.now().atMonth(Month.JANUARY));
+    /**
+     * Initialise every fund of the given allocations, committed together as one
+     * update.
+     *
+     * @param allocations amounts have to be greater than zero to initialise a
+     *                    fund.
+     * @throws ArithmeticException if an amount, or the portfolio total, does not
+     *                             fit in the money range, no fund is initialised
+     *                             then.
+     */
+    public void allocate(Map<FundType, BigDecimal> allocations) {
+        // added up before any fund is initialised
+        long allocated = Money.ZERO;
+        for (Map.Entry<FundType, BigDecimal> allocation : allocations.entrySet())
+            if (isAllocatedWith(allocation))
+                allocated = Math.addExact(allocated, Money.of(allocation.getValue()));
+        Math.addExact(this.totals.getInitial(), allocated);
+        Math.addExact(this.totals.getCurrent(), allocated);
+
+        this.exact.sync();
+        for (Map.Entry<FundType, BigDecimal> allocation : allocations.entrySet()) {
+            if (!isAllocatedWith(allocation))
+                continue;
+
+            // Initialise the fund.
+            this.fundOf(allocation.getKey()).initialise(
+                    this.exact.allocate(allocation.getKey().ordinal(), allocation.getValue()),
+                    Year.now().atMonth(Month.JANUARY));
+        }
+        this.listener.onCommit();
+    }
+
+    private boolean isAllocatedWith(Map.Entry<FundType, BigDecimal> allocation) {
+        if (allocation.getValue().compareTo(BigDecimal.ZERO) < 0)
+            return false; // skip initialising with negative allocation
+        return !this.fundOf(allocation.getKey()).isInitialised();
     }
 
     /**
      * @param month        - last month of.
      * @param marketChange - market change by percentage. negative means a loss.
+     * @throws ArithmeticException if a balance, or the portfolio total, would
+     *                             leave the money range, no fund is changed then.
      */
     public void applyMonthlyChange(Month month, Map<FundType, BigDecimal> marketChange) {
-        marketChange.forEach(
-                (fundType, change) -> {
-                    // validate
-                    Fund fund = this.fundOf(fundType);
-                    Optional<YearMonth> monthWithYear = validateAndGetChangeMonthWithYear(month, fund);
-
-                    // proceed only the current month or the next month to the last transaction
-                    if (monthWithYear.isPresent()) {
-                        fund.doTransaction(
-                                monthWithYear.get(),
-                                TransactionEvent.MONTHLY_CHANGE,
-                                fund.getCurrent().multiply(change).divide(BigDecimal.valueOf(100)));
-                        openNextMonthWithSipIfNotPendingForRebalance(fund);
-                    }
-                });
+        this.exact.sync();
+        try {
+            // every balance validated before any is changed
+            long total = this.totals.getCurrent();
+            // by fund type order, without iterating the entries
+            for (int type = 0; type < this.fundByType.length; type++) {
+                this.pendingMonths[type] = Fund.NO_MONTH;
+                BigDecimal change = valueAt(marketChange, type);
+                if (change == null)
+                    continue;
+
+                // validate
+                Fund fund = this.fundOf(FundType.of(type));
+                int monthWithYear = validateAndGetChangeMonthWithYear(month, fund);
+
+                // proceed only the current month or the next month to the last transaction
+                if (monthWithYear != Fund.NO_MONTH) {
+                    long balance = this.exact.change(type, fund.getCurrentValue(), change);
+                    total = Math.addExact(total, Math.subtractExact(balance, fund.getCurrentValue()));
+                    total = totalWithSip(total, type, balance);
+                    this.pendingBalances[type] = balance;
+                    this.pendingMonths[type] = monthWithYear;
+                }
+            }
+        } catch (RuntimeException e) {
+            this.exact.rebase();
+            throw e;
+        }
+
+        for (int type = 0; type < this.fundByType.length; type++) {
+            if (this.pendingMonths[type] == Fund.NO_MONTH)
+                continue;
+
+            Fund fund = this.fundByType[type];
+            fund.doTransaction(
+                    this.pendingMonths[type],
+                    TransactionEvent.MONTHLY_CHANGE,
+                    this.pendingBalances[type] - fund.getCurrentValue());
+            openNextMonthWithSipIfNotPendingForRebalance(fund);
+        }
+        this.listener.onCommit();
+    }
+
+    /**
+     * @return the total with the next month SIP of the fund, and the most its
+     *         balance may move by when certified.
+     * @throws ArithmeticException if the total, or the balance with the same
+     *                             SIP, does not fit in the money range.
+     */
+    private long totalWithSip(long total, int type, long balance) {
+        long sip = Math.addExact(Math.addExact(this.sipByType[type], this.exact.errorOf(type)), 1);
+        Math.addExact(balance, sip);
+        return Math.addExact(total, sip);
     }
 
     private void openNextMonthWithSipIfNotPendingForRebalance(Fund fund) {
@@ -68,38 +163,57 @@ public class PortfolioManager {
     }
 
     private void openNextMonthWithSip(Fund fund) {
+        if (!fund.isInitialised())
+            return; // no transaction before the allocation
+
         // Apply next month sip immediately after this month's change.
+        int type = fund.getType().ordinal();
+        long balance = this.exact.add(type, fund.getCurrentValue(), this.sipByType[type], valueAt(this.sip, type));
         fund.doTransaction(
-                fund.lastTransaction().get().getMonth().plusMonths(1),
+                fund.lastMonth() + 1,
                 TransactionEvent.MONTHLY_SIP,
-                this.sip.get(fund.getType()));
+                balance - fund.getCurrentValue());
+    }
+
+    /**
+     * @return true if the last change was in a compulsory rebalance month and
+     *         the portfolio is not rebalanced yet.
+     */
+    boolean isPendingForRebalance() {
+        for (Fund fund : this.funds)
+            if (isPendingForRebalance(fund))
+                return true;
+        return false;
     }
 
     private boolean isPendingForRebalance(Fund fund) {
         // if last transaction recorded in the fund,
         // 1. is a MONTHLY_CHANGE
         // 2. belong to any month defined in MONTHS_COMPULSORY_REBALANCE
-        TransactionRecord lastTransaction = fund.lastTransaction().get();
-        Month currentMonth = lastTransaction.getMonth().getMonth();
-        return (TransactionEvent.MONTHLY_CHANGE.equals(lastTransaction.getEvent())
+        Month currentMonth = TransactionLedger.calendarMonthOf(fund.lastMonth());
+        return (TransactionEvent.MONTHLY_CHANGE.equals(fund.lastEvent())
                 && MONTHS_COMPULSORY_REBALANCE.contains(currentMonth));
     }
 
-    private Optional<YearMonth> validateAndGetChangeMonthWithYear(Month intendedMonth, Fund fund) {
+    /**
+     * @return month index to record the change, {@link Fund#NO_MONTH} if the
+     *         change is not valid for the fund.
+     */
+    private int validateAndGetChangeMonthWithYear(Month intendedMonth, Fund fund) {
         // last month change has to be recorded and processed to continue for the
         // intended month.
-        Optional<TransactionRecord> lastChange = fund.lastTransactionOf(TransactionEvent.MONTHLY_CHANGE);
-        if (lastChange.isPresent())
-            if (intendedMonth.equals(lastChange.get().getMonth().getMonth().plus(1)))
-                return Optional.of(lastChange.get().getMonth().plusMonths(1));
+        int lastChange = fund.lastMonthOf(TransactionEvent.MONTHLY_CHANGE);
+        if (lastChange != Fund.NO_MONTH)
+            if (intendedMonth.equals(TransactionLedger.calendarMonthOf(lastChange + 1)))
+                return lastChange + 1;
         // no change event yet recorded
 
-        Optional<TransactionRecord> lastTransaction = fund.lastTransaction();
-        if (lastTransaction.isPresent())
-            if (intendedMonth.equals(lastTransaction.get().getMonth().getMonth()))
-                return Optional.of(lastTransaction.get().getMonth());
+        int lastTransaction = fund.lastMonth();
+        if (lastTransaction != Fund.NO_MONTH)
+            if (intendedMonth.equals(TransactionLedger.calendarMonthOf(lastTransaction)))
+                return lastTransaction;
 
-        return Optional.empty();
+        return Fund.NO_MONTH;
     }
 
     /**
@@ -109,12 +223,12 @@ public class PortfolioManager {
      * @return empty if balance can not be calculated for the given month.
      */
     public Optional<Map<FundType, BigDecimal>> calculateBalance(Month of) {
-        Map<FundType, BigDecimal> balance = new HashMap<>();
-        this.funds.forEach(fund -> {
+        Map<FundType, BigDecimal> balance = new FundTypeMap<>();
+        for (Fund fund : this.funds) {
             Optional<BigDecimal> balanceOfFund = fund.balanceOf(of);
             if (balanceOfFund.isPresent())
-                balance.put(fund.getType(), fund.balanceOf(of).get());
-        });
+                balance.put(fund.getType(), balanceOfFund.get());
+        }
 
         if (balance.isEmpty())
             // empty if balance not valid
@@ -128,51 +242,123 @@ public class PortfolioManager {
      * initial allocation.
      * 
      * @return
+     * @throws ArithmeticException if a balance, or the portfolio total, would
+     *                             leave the money range, no fund is rebalanced
+     *                             then.
      */
     public Optional<Map<FundType, BigDecimal>> rebalance() {
-        Optional<YearMonth> rebalanceMonth = validateBeforeRebalance();
-        if (rebalanceMonth.isPresent()) {
-            BigDecimal initialTotal = this.funds
-                    .stream()
-                    .map(Fund::getInitial)
-                    .reduce(BigDecimal.ZERO, (total, initial) -> total.add(initial));
-            BigDecimal currentTotal = this.funds
-                    .stream()
-                    .map(Fund::getCurrent)
-                    .reduce(BigDecimal.ZERO, (total, current) -> total.add(current));
-            Map<FundType, BigDecimal> postRebalance = new HashMap<>();
-            this.funds.forEach(fund -> {
-                BigDecimal weight = fund.getInitial().divide(initialTotal);
-                // calculate the re-balance value
-                BigDecimal balancedValue = currentTotal
-                        .multiply(weight)
-                        .subtract(fund.getCurrent());
+        int rebalanceMonth = validateBeforeRebalance();
+        if (rebalanceMonth != Fund.NO_MONTH) {
+            this.exact.sync();
+            try {
+                // totals kept by the funds, captured before the rebalance moves them
+                long initialTotal = this.totals.getInitial();
+                long currentTotal = this.totals.getCurrent();
+                long total = currentTotal;
+                this.exact.rebalance();
+                for (Fund fund : this.funds) {
+                    // calculate the re-balance value, weighted by the initial allocation
+                    int type = fund.getType().ordinal();
+                    long balance = this.exact.certify(
+                            type, Money.multiplyDivide(currentTotal, fund.getInitialValue(), initialTotal));
+                    total = Math.addExact(total, Math.subtractExact(balance, fund.getCurrentValue()));
+                    this.pendingBalances[type] = balance;
+                }
+                for (Fund fund : this.funds) {
+                    int type = fund.getType().ordinal();
+                    total = totalWithSip(total, type, this.pendingBalances[type]);
+                }
+            } catch (RuntimeException e) {
+                this.exact.rebase();
+                throw e;
+            }
+
+            Map<FundType, BigDecimal> postRebalance = new FundTypeMap<>();
+            for (Fund fund : this.funds) {
                 // apply rebalance
-                fund.doTransaction(rebalanceMonth.get(), TransactionEvent.REBALANCE, balancedValue);
+                fund.doTransaction(
+                        rebalanceMonth,
+                        TransactionEvent.REBALANCE,
+                        this.pendingBalances[fund.getType().ordinal()] - fund.getCurrentValue());
                 postRebalance.put(fund.getType(), fund.getCurrent());
-            });
-            this.funds.forEach(fund -> openNextMonthWithSipIfNotPendingForRebalance(fund));
+            }
+            for (Fund fund : this.funds)
+                openNextMonthWithSipIfNotPendingForRebalance(fund);
+            this.listener.onCommit();
             return Optional.of(postRebalance);
         }
         return Optional.empty();
     }
 
-    private Optional<YearMonth> validateBeforeRebalance() {
+    private int validateBeforeRebalance() {
         for (Fund fund : this.funds) {
-            Optional<TransactionRecord> lastChange = fund.lastTransactionOf(TransactionEvent.MONTHLY_CHANGE);
+            int lastChange = fund.lastMonthOf(TransactionEvent.MONTHLY_CHANGE);
             // rebalanced only allow in June and December
-            if (lastChange.isPresent() && MONTHS_COMPULSORY_REBALANCE.contains(lastChange.get().getMonth().getMonth()))
-                return Optional.of(lastChange.get().getMonth());
+            if (lastChange != Fund.NO_MONTH
+                    && MONTHS_COMPULSORY_REBALANCE.contains(TransactionLedger.calendarMonthOf(lastChange)))
+                return lastChange;
         }
-        return Optional.empty();
+        return Fund.NO_MONTH;
     }
 
-    private Fund fundOf(final FundType type) {
-        return this.funds.stream().filter(fund -> type.equals(fund.getType())).findFirst().get();
+    List<Fund> getFundList() {
+        return Collections.unmodifiableList(this.funds);
     }
 
+    /**
+     * @throws NoSuchElementException if the fund is not in the portfolio.
+     */
+    Fund fundOf(final FundType type) {
+        int ordinal = type.ordinal();
+        Fund fund = ordinal >= 0 && ordinal < this.fundByType.length ? this.fundByType[ordinal] : null;
+        if (fund == null)
+            throw new NoSuchElementException("no " + type + " fund in the portfolio");
+        return fund;
+    }
+
+    /**
+     * @throws ArithmeticException if an amount does not fit in the money range,
+     *                             the previous sip is kept then.
+     */
     public void setSip(Map<FundType, BigDecimal> sip) {
-        this.sip = sip;
+        for (BigDecimal amount : sip.values())
+            Money.of(amount); // validated before the previous sip is replaced
+
+        // replaces the previous sip of every fund
+        this.sip.clear();
+        Arrays.fill(this.sipByType, Money.ZERO);
+        putSip(sip);
+        for (FundType type : sip.keySet())
+            this.listener.onSip(type, this.sipByType[type.ordinal()]);
+        this.listener.onCommit();
+    }
+
+    /**
+     * @return monthly contribution of the fund type of the given ordinal.
+     */
+    long sipOf(int type) {
+        return this.sipByType[type];
+    }
+
+    private static BigDecimal valueAt(Map<FundType, BigDecimal> values, int type) {
+        if (values instanceof FundTypeMap)
+            return ((FundTypeMap<BigDecimal>) values).getAt(type);
+        return values.get(FundType.of(type));
+    }
+
+    private void putSip(Map<FundType, BigDecimal> sip) {
+        for (Map.Entry<FundType, BigDecimal> amount : sip.entrySet()) {
+            this.sip.put(amount.getKey(), amount.getValue());
+            this.sipByType[amount.getKey().ordinal()] = Money.of(amount.getValue());
+        }
+    }
+
+    /**
+     * Every update applied from now on is reported to the listener.
+     */
+    void setTransactionListener(TransactionListener listener) {
+        this.listener = listener;
+        this.funds.forEach(fund -> fund.setTransactionListener(listener));
     }
 
     public Map<FundType, BigDecimal> getSip() {
@@ -183,7 +369,41 @@ public class PortfolioManager {
         return this.funds.stream().map(Fund::toDTO).collect(Collectors.groupingBy(FundDTO::getType));
     }
 
+    /**
+     * Copy of the portfolio for what-if commands, e.g. other market changes. The
+     * transaction history so far is shared with this portfolio rather than
+     * copied, so a fork only takes memory for the transactions applied to it.
+     * Updates of either portfolio are not seen by the other one, and the fork
+     * has no transaction listener. Has to be called by the thread owning this
+     * portfolio, the fork can then be used by any other thread.
+     */
+    public PortfolioManager fork() {
+        List<Fund> forked = new ArrayList<>(this.funds.size());
+        for (Fund fund : this.funds)
+            forked.add(fund.fork());
+        PortfolioManager portfolio = new PortfolioManager(forked, this.sip);
+        this.exact.sync();
+        portfolio.exact.copyOf(this.exact);
+        return portfolio;
+    }
+
+    /**
+     * Compacts the history of every fund to the given retention, the months
+     * before its horizon keep a single summary record each. {@code BALANCE} and
+     * {@code REBALANCE} answer the same afterwards, the history of the
+     * compacted months only keeps their closing balance and market change.
+     *
+     * @return number of transaction records removed.
+     */
+    public int compactHistory(HistoryRetention retention) {
+        int removed = 0;
+        for (Fund fund : this.funds)
+            removed += fund.compactHistory(retention);
+        return removed;
+    }
+
     public void clear() {
         this.funds.clear();
+        Arrays.fill(this.fundByType, null);
     }
 }
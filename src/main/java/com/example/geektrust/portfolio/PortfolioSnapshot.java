@@ -0,0 +1,308 @@
+package com.example.geektrust.portfolio;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Versioned binary snapshot of {@link PortfolioManager}s keyed by portfolio id,
+ * holding the funds, the SIP and the complete transaction history of every
+ * portfolio.
+ * <p>
+ * Every portfolio is a self contained block, the history of a fund is written
+ * as its ledger columns so it is copied in bulk both ways. Restoring memory
+ * maps the snapshot and only reads the block headers, the history of a fund is
+ * read from the mapping on its first access. Blocks are 8 byte aligned and
+ * never cross a {@value #SEGMENT_SIZE} byte segment, so a snapshot of any size
+ * is mapped one segment at a time.
+ * <p>
+ * A snapshot is written to a temporary file first and moved over the target,
+ * an interrupted write never replaces the previous snapshot.
+ *
+ * <pre>
+ * header: magic (int) | version (int) | fund type count (int)
+ *         | fund type names (short length, UTF-8) | padding | portfolio count (long)
+ * block:  length (int, {@link #NEXT_SEGMENT} to skip to the next segment)
+ *         | id length (short) | sip count (byte) | fund count (byte) | id (UTF-8) | padding
+ *         | sip fund types (byte) | padding | sip amounts (long)
+ *         | per fund: type (byte) | padding (3) | record count (int) | current (long)
+ *                     | amounts (long) | balances (long) | months (int) | events (byte)
+ *                     | padding
+ * </pre>
+ */
+public final class PortfolioSnapshot {
+    static final int MAGIC = 0x4D594D53; // "MYMS"
+    static final int VERSION = 2; // 2: money in millionths
+    static final int SEGMENT_SIZE = 1 << 30;
+    static final int NEXT_SEGMENT = -1;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int FUND_HEADER_SIZE = 16;
+    private static final int MAX_ID_LENGTH = 0xFFFF;
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private PortfolioSnapshot() {
+    }
+
+    /**
+     * Writes the portfolios, in the iteration order of the map.
+     *
+     * @throws IllegalArgumentException if a portfolio id is longer than 65535
+     *                                  bytes or a portfolio is larger than a
+     *                                  segment.
+     */
+    public static void write(Path file, Map<String, PortfolioManager> portfolios) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(buffer, portfolios.size());
+
+            long offset = buffer.position(); // of the next block in the file
+            for (Map.Entry<String, PortfolioManager> portfolio : portfolios.entrySet()) {
+                byte[] id = portfolio.getKey().getBytes(StandardCharsets.UTF_8);
+                int length = blockSize(id, portfolio.getValue());
+                long segmentEnd = (offset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+                if (offset + length > segmentEnd) {
+                    // the rest of the segment is left as a hole in the file
+                    ensureRemaining(channel, buffer, BLOCK_HEADER_SIZE);
+                    buffer.putInt(NEXT_SEGMENT).putInt(0);
+                    drain(channel, buffer);
+                    channel.position(segmentEnd);
+                    offset = segmentEnd;
+                }
+
+                if (length > buffer.capacity()) {
+                    drain(channel, buffer);
+                    ByteBuffer large = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+                    writeBlock(large, length, id, portfolio.getValue());
+                    drain(channel, large);
+                } else {
+                    ensureRemaining(channel, buffer, length);
+                    writeBlock(buffer, length, id, portfolio.getValue());
+                }
+                offset += length;
+            }
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the restored portfolios by id, in snapshot order.
+     * @throws IOException if the file is not a snapshot of this version or of
+     *                     the current fund types.
+     */
+    public static Map<String, PortfolioManager> restore(Path file) throws IOException {
+        Map<String, PortfolioManager> portfolios = new LinkedHashMap<>();
+        restore(file, portfolios::put);
+        return portfolios;
+    }
+
+    /**
+     * Restores the portfolios one after the other, in snapshot order, into the
+     * given consumer. The history of a restored fund is read from the snapshot
+     * when first accessed, the snapshot file must not be modified in the
+     * meantime.
+     *
+     * @return number of restored portfolios.
+     * @throws IOException if the file is not a snapshot of this version or of
+     *                     the current fund types.
+     */
+    public static long restore(Path file, BiConsumer<String, PortfolioManager> portfolios) throws IOException {
+        List<ByteBuffer> segments = map(file);
+        if (segments.isEmpty())
+            throw new IOException("empty portfolio snapshot");
+
+        int segment = 0;
+        ByteBuffer blocks = segments.get(segment);
+        long count = readHeader(blocks);
+        for (long restored = 0; restored < count; restored++) {
+            if (!blocks.hasRemaining() || blocks.getInt(blocks.position()) == NEXT_SEGMENT) {
+                if (++segment == segments.size())
+                    throw new IOException("portfolio snapshot truncated");
+                blocks = segments.get(segment);
+            }
+            readBlock(blocks, portfolios);
+        }
+        return count;
+    }
+
+    private static void writeHeader(ByteBuffer buffer, long count) {
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(FundType.count());
+        for (FundType type : FundType.values()) {
+            byte[] name = type.name().getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) name.length).put(name);
+        }
+        pad(buffer);
+        buffer.putLong(count);
+    }
+
+    private static long readHeader(ByteBuffer blocks) throws IOException {
+        try {
+            if (blocks.getInt() != MAGIC || blocks.getInt() != VERSION)
+                throw new IOException("not a portfolio snapshot of version " + VERSION);
+
+            // fund types are referred to by ordinal, they have to match the current ones
+            int typeCount = blocks.getInt();
+            boolean matching = typeCount == FundType.count();
+            for (int type = 0; type < typeCount; type++) {
+                byte[] name = new byte[Short.toUnsignedInt(blocks.getShort())];
+                blocks.get(name);
+                matching &= type < FundType.count()
+                        && FundType.of(type).name().equals(new String(name, StandardCharsets.UTF_8));
+            }
+            if (!matching)
+                throw new IOException("portfolio snapshot of different fund types");
+
+            skipPadding(blocks);
+            return blocks.getLong();
+        } catch (RuntimeException e) {
+            throw new IOException("portfolio snapshot header corrupted", e);
+        }
+    }
+
+    private static int blockSize(byte[] id, PortfolioManager portfolio) {
+        if (id.length > MAX_ID_LENGTH)
+            throw new IllegalArgumentException("portfolio id too long: " + id.length + " bytes");
+
+        long size = align(BLOCK_HEADER_SIZE + id.length);
+        int sipCount = portfolio.getSip().size();
+        size += align(sipCount) + (long) sipCount * Long.BYTES;
+        for (Fund fund : portfolio.getFundList())
+            size += FUND_HEADER_SIZE + align(TransactionLedger.columnsSize(fund.getLedger().size()));
+        if (size > SEGMENT_SIZE)
+            throw new IllegalArgumentException("portfolio larger than a snapshot segment: " + size + " bytes");
+        return (int) size;
+    }
+
+    private static void writeBlock(ByteBuffer buffer, int length, byte[] id, PortfolioManager portfolio) {
+        int start = buffer.position();
+        Map<FundType, BigDecimal> sip = portfolio.getSip();
+        List<Fund> funds = portfolio.getFundList();
+        buffer.putInt(length)
+                .putShort((short) id.length)
+                .put((byte) sip.size())
+                .put((byte) funds.size())
+                .put(id);
+        pad(buffer);
+
+        for (FundType type : sip.keySet())
+            buffer.put((byte) type.ordinal());
+        pad(buffer);
+        for (BigDecimal amount : sip.values())
+            buffer.putLong(Money.of(amount));
+
+        for (Fund fund : funds) {
+            TransactionLedger ledger = fund.getLedger();
+            buffer.put((byte) fund.getType().ordinal())
+                    .put((byte) 0).putShort((short) 0)
+                    .putInt(ledger.size())
+                    .putLong(fund.getCurrentValue());
+            ledger.writeColumns(buffer);
+            pad(buffer);
+        }
+        assert buffer.position() - start == length;
+    }
+
+    private static void readBlock(ByteBuffer blocks, BiConsumer<String, PortfolioManager> portfolios)
+            throws IOException {
+        int start = blocks.position();
+        try {
+            int length = blocks.getInt();
+            if (length < BLOCK_HEADER_SIZE || length > blocks.remaining() + Integer.BYTES)
+                throw new IOException("portfolio snapshot block out of bounds at " + start);
+            int end = start + length;
+
+            int idLength = Short.toUnsignedInt(blocks.getShort());
+            int sipCount = Byte.toUnsignedInt(blocks.get());
+            int fundCount = Byte.toUnsignedInt(blocks.get());
+            byte[] id = new byte[idLength];
+            blocks.get(id);
+            skipPadding(blocks);
+
+            FundType[] sipTypes = new FundType[sipCount];
+            for (int i = 0; i < sipCount; i++)
+                sipTypes[i] = FundType.of(Byte.toUnsignedInt(blocks.get()));
+            skipPadding(blocks);
+            Map<FundType, BigDecimal> sip = new FundTypeMap<>();
+            for (int i = 0; i < sipCount; i++)
+                sip.put(sipTypes[i], Money.toBigDecimal(blocks.getLong()));
+
+            List<Fund> funds = new ArrayList<>(fundCount);
+            for (int i = 0; i < fundCount; i++) {
+                FundType type = FundType.of(Byte.toUnsignedInt(blocks.get()));
+                blocks.position(blocks.position() + 3);
+                int size = blocks.getInt();
+                long current = blocks.getLong();
+                int columnsEnd = blocks.position() + TransactionLedger.columnsSize(size);
+                if (size < 0 || columnsEnd > end)
+                    throw new IOException("portfolio snapshot fund out of bounds at " + start);
+
+                // the allocation is the first amount, read without restoring the ledger
+                long initial = size == 0 ? Money.ZERO : blocks.getLong(blocks.position());
+                funds.add(new Fund(type, initial, current,
+                        TransactionLedger.restore(blocks, blocks.position(), size)));
+                blocks.position(columnsEnd);
+                skipPadding(blocks);
+            }
+            if (blocks.position() != end)
+                throw new IOException("portfolio snapshot block corrupted at " + start);
+
+            portfolios.accept(new String(id, StandardCharsets.UTF_8), new PortfolioManager(funds, sip));
+        } catch (RuntimeException e) {
+            throw new IOException("portfolio snapshot block corrupted at " + start, e);
+        }
+    }
+
+    private static List<ByteBuffer> map(Path file) throws IOException {
+        List<ByteBuffer> segments = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long offset = 0; offset < size; offset += SEGMENT_SIZE) {
+                // a mapping stays valid after the channel is closed
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(SEGMENT_SIZE, size - offset))
+                        .order(ByteOrder.LITTLE_ENDIAN));
+            }
+        }
+        return segments;
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        if (buffer.remaining() < length)
+            drain(channel, buffer);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void pad(ByteBuffer buffer) {
+        while ((buffer.position() & 7) != 0)
+            buffer.put((byte) 0);
+    }
+
+    private static void skipPadding(ByteBuffer buffer) {
+        buffer.position((int) align(buffer.position()));
+    }
+}
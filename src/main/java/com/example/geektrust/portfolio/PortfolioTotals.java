@@ -0,0 +1,23 @@
+package com.example.geektrust.portfolio;
+
+/**
+ * Running totals of the initial allocation and the current value of a group of
+ * funds, kept up to date by the funds as their transactions are applied.
+ */
+final class PortfolioTotals {
+    private long initial; // Money
+    private long current; // Money
+
+    long getInitial() {
+        return this.initial;
+    }
+
+    long getCurrent() {
+        return this.current;
+    }
+
+    void add(long initial, long current) {
+        this.initial = Math.addExact(this.initial, initial);
+        this.current = Math.addExact(this.current, current);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.geektrust.portfolio;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of the monthly market change of a fund, in percent as in the
+ * {@code CHANGE} command, sampled by {@link MonteCarloProjection}.
+ */
+@FunctionalInterface
+public interface ReturnDistribution {
+    /**
+     * @return a monthly change in percent, negative means a loss.
+     */
+    double sample(SplittableRandom random);
+
+    /**
+     * Fills the first {@code count} changes, for distributions drawing more than
+     * one change at a time.
+     */
+    default void sample(SplittableRandom random, double[] percentages, int count) {
+        for (int i = 0; i < count; i++)
+            percentages[i] = sample(random);
+    }
+
+    /**
+     * @return the same change every month.
+     */
+    static ReturnDistribution fixed(double percentage) {
+        return random -> percentage;
+    }
+
+    /**
+     * @return changes uniformly distributed between min and max.
+     */
+    static ReturnDistribution uniform(double min, double max) {
+        if (!(min <= max))
+            throw new IllegalArgumentException("min has to be at most max: " + min + " > " + max);
+        double range = max - min;
+        return random -> min + range * random.nextDouble();
+    }
+
+    /**
+     * @return normally distributed changes.
+     */
+    static ReturnDistribution normal(double mean, double standardDeviation) {
+        if (!(standardDeviation >= 0))
+            throw new IllegalArgumentException("negative standard deviation: " + standardDeviation);
+        return new ReturnDistribution() {
+            @Override
+            public double sample(SplittableRandom random) {
+                return mean + standardDeviation * gaussian(random);
+            }
+
+            @Override
+            public void sample(SplittableRandom random, double[] percentages, int count) {
+                // Box-Muller gives two independent values per pair of uniform values
+                int i = 0;
+                for (; i + 1 < count; i += 2) {
+                    double radius = standardDeviation * Math.sqrt(-2d * Math.log(1d - random.nextDouble()));
+                    double angle = 2d * Math.PI * random.nextDouble();
+                    percentages[i] = mean + radius * Math.cos(angle);
+                    percentages[i + 1] = mean + radius * Math.sin(angle);
+                }
+                if (i < count)
+                    percentages[i] = sample(random);
+            }
+        };
+    }
+
+    /**
+     * @return changes drawn from the given past changes, with replacement.
+     */
+    static ReturnDistribution historical(double... percentages) {
+        if (percentages.length == 0)
+            throw new IllegalArgumentException("at least one change required");
+        double[] changes = Arrays.copyOf(percentages, percentages.length);
+        return random -> changes[random.nextInt(changes.length)];
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller, SplittableRandom has no nextGaussian before Java 17
+        double radius = Math.sqrt(-2d * Math.log(1d - random.nextDouble()));
+        return radius * Math.cos(2d * Math.PI * random.nextDouble());
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.geektrust.portfolio;
+
+import java.util.Arrays;
+
+/**
+ * Cumulative growth of a {@link Fund} by transaction record, for period returns
+ * and gains read in constant time instead of walking the records.
+ * <p>
+ * For every record the index keeps the product of the growth factors of all
+ * the {@code MONTHLY_CHANGE} records up to and including it, and the sum of
+ * the amounts of all the other records, the money put in or moved out of the
+ * fund. A {@code MONTHLY_SUMMARY} record counts as both, its change and the
+ * money put in before it. The return between two records is then the ratio of their growth, and
+ * the gain at a record its balance less the money put in so far.
+ * <p>
+ * The index follows the ledger it was built from as records are appended, it
+ * only reads the records it has not seen yet when it is next updated. It has
+ * to be built again once the ledger is compacted.
+ */
+final class ReturnIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] growth = new double[INITIAL_CAPACITY]; // by record
+    private long[] flows = new long[INITIAL_CAPACITY]; // Money, by record
+    private int size;
+
+    /**
+     * Reads the records appended to the ledger since the last update.
+     */
+    void update(TransactionLedger ledger) {
+        int size = ledger.size();
+        if (size > this.growth.length) {
+            int capacity = Math.max(size, this.growth.length * 2);
+            this.growth = Arrays.copyOf(this.growth, capacity);
+            this.flows = Arrays.copyOf(this.flows, capacity);
+        }
+
+        double growth = this.size == 0 ? 1d : this.growth[this.size - 1];
+        long flows = this.size == 0 ? Money.ZERO : this.flows[this.size - 1];
+        for (int index = this.size; index < size; index++) {
+            long amount = ledger.amountOf(index);
+            TransactionEvent event = ledger.eventOf(index);
+            if (TransactionEvent.MONTHLY_CHANGE.equals(event) || TransactionEvent.MONTHLY_SUMMARY.equals(event)) {
+                long balance = ledger.balanceOf(index);
+                long before = balance - amount;
+                // an empty fund does not grow
+                if (before != Money.ZERO)
+                    growth *= (double) balance / before;
+                if (TransactionEvent.MONTHLY_SUMMARY.equals(event))
+                    // money put in during the compacted month, before its change
+                    flows += before - (index == 0 ? Money.ZERO : ledger.balanceOf(index - 1));
+            } else {
+                flows += amount;
+            }
+            this.growth[index] = growth;
+            this.flows[index] = flows;
+        }
+        this.size = size;
+    }
+
+    /**
+     * @return product of the change factors up to and including the record, 1
+     *         for {@link TransactionLedger#NO_RECORD}.
+     */
+    double growthAt(int index) {
+        return index == TransactionLedger.NO_RECORD ? 1d : this.growth[index];
+    }
+
+    /**
+     * @return money put in the fund up to and including the record, less the
+     *         money moved out.
+     */
+    long flowsAt(int index) {
+        return index == TransactionLedger.NO_RECORD ? Money.ZERO : this.flows[index];
+    }
+}
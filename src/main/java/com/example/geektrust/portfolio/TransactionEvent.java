@@ -4,5 +4,7 @@ enum TransactionEvent {
     ALLOCATE,
     MONTHLY_SIP,
     MONTHLY_CHANGE,
-    REBALANCE
+    REBALANCE,
+    // a compacted month: amount is its market change, balance its closing balance
+    MONTHLY_SUMMARY
 }
\ No newline at end of file
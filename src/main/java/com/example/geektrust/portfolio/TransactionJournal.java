@@ -0,0 +1,371 @@
+package com.example.geektrust.portfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append only write ahead journal of the updates applied to a
+ * {@link PortfolioManager}, used to recover the portfolio after a crash
+ * without replaying the original input.
+ * <p>
+ * The journal is a header followed by fixed size records, each protected by a
+ * CRC32. Every portfolio update (an allocation, a SIP, a monthly change or a
+ * rebalance) ends with a position record flagged as the commit of the update,
+ * holding the position of the input applied up to the update (see
+ * {@link #setInputPosition(long)}), so the input already applied is not
+ * applied again after a recovery. Records
+ * are buffered and written with a single write once {@code groupSize} updates
+ * are committed, followed by a single {@code fsync}, so a crash loses at most
+ * the last group of updates.
+ * <p>
+ * Recovery reads the journal in large sequential chunks and applies the ledger
+ * records straight to the funds, without parsing or decimal arithmetic. It
+ * stops at the first torn or corrupted record, drops the records of the last
+ * incomplete update and truncates the journal there, so the portfolio is always
+ * recovered to the end of a complete update.
+ *
+ * <pre>
+ * header: magic (int) | version (int)
+ * record: kind (byte) | fund (byte) | event (byte) | flags (byte) | month (int)
+ *         | amount (long) | balance (long) | reserved (int) | crc32 (int)
+ * position record: amount is the input position
+ * </pre>
+ */
+public final class TransactionJournal implements TransactionListener, Closeable {
+    static final int MAGIC = 0x4D594D4A; // "MYMJ"
+    static final int VERSION = 3; // 2: money in millionths, 3: input position records
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 32;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    private static final int RECOVERY_CHUNK_SIZE = 32 * 1024 * RECORD_SIZE;
+
+    private static final byte TRANSACTION = 0;
+    private static final byte SIP = 1;
+    private static final byte POSITION = 2;
+    private static final byte COMMIT = 1; // flag of the last record of an update
+
+    private static final TransactionEvent[] EVENTS = TransactionEvent.values();
+
+    private final FileChannel channel;
+    private final PortfolioManager portfolio;
+    private final int groupSize;
+    private final ByteBuffer buffer;
+    private final CRC32 crc;
+    private final long recoveredUpdates;
+    private final long recoveredInputPosition;
+
+    private long inputPosition;
+    private int uncommittedRecords; // in the buffer, after the last commit
+    private int pendingUpdates; // committed but not yet synced
+
+    private TransactionJournal(FileChannel channel, PortfolioManager portfolio, int groupSize,
+            Recovery recovery) {
+        this.channel = channel;
+        this.portfolio = portfolio;
+        this.groupSize = groupSize;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(groupSize, 64) * 8 * RECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        this.crc = new CRC32();
+        this.recoveredUpdates = recovery.updates;
+        this.recoveredInputPosition = recovery.inputPosition;
+        this.inputPosition = recovery.inputPosition;
+    }
+
+    /**
+     * Recovers the portfolio from the journal, if the journal exists, and keeps
+     * journaling every update applied to the portfolio from now on.
+     *
+     * @param portfolio has to be empty, as created for the journaled funds.
+     * @param groupSize number of updates written and synced together, 1 syncs
+     *                  every update.
+     * @throws IOException if the journal is not readable or does not match the
+     *                     portfolio.
+     */
+    public static TransactionJournal open(Path file, PortfolioManager portfolio, int groupSize) throws IOException {
+        if (groupSize < 1)
+            throw new IllegalArgumentException("group size has to be positive: " + groupSize);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            Recovery recovered = recover(channel, portfolio);
+            TransactionJournal journal = new TransactionJournal(channel, portfolio, groupSize, recovered);
+            portfolio.setTransactionListener(journal);
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of complete updates recovered when the journal was opened.
+     */
+    public long getRecoveredUpdates() {
+        return this.recoveredUpdates;
+    }
+
+    /**
+     * @return input position committed with the last recovered update, zero if
+     *         none was recovered.
+     */
+    public long getRecoveredInputPosition() {
+        return this.recoveredInputPosition;
+    }
+
+    /**
+     * @param position of the input, such as the number of input lines, applied
+     *                 once the next update is committed. Positions are not
+     *                 interpreted, only committed and recovered.
+     */
+    public void setInputPosition(long position) {
+        this.inputPosition = position;
+    }
+
+    @Override
+    public void onTransaction(FundType type, int month, TransactionEvent event, long amount, long balance) {
+        append(TRANSACTION, type, event, month, amount, balance);
+    }
+
+    @Override
+    public void onSip(FundType type, long amount) {
+        append(SIP, type, TransactionEvent.MONTHLY_SIP, 0, amount, 0);
+    }
+
+    @Override
+    public void onCommit() {
+        if (this.uncommittedRecords == 0)
+            return; // nothing updated
+
+        // the update ends with its input position, flagged as the commit
+        append(POSITION, FundType.of(0), TransactionEvent.ALLOCATE, 0, this.inputPosition, 0);
+        int last = this.buffer.position() - RECORD_SIZE;
+        this.buffer.put(last + 3, COMMIT);
+        seal(last);
+        this.uncommittedRecords = 0;
+
+        if (++this.pendingUpdates >= this.groupSize)
+            sync();
+    }
+
+    /**
+     * Writes and syncs every committed update.
+     */
+    public void sync() {
+        try {
+            writeCommitted();
+            this.channel.force(false);
+            this.pendingUpdates = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Syncs the committed updates and stops journaling the portfolio.
+     */
+    @Override
+    public void close() throws IOException {
+        this.portfolio.setTransactionListener(TransactionListener.NONE);
+        try {
+            sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    private void append(byte kind, FundType type, TransactionEvent event, int month, long amount, long balance) {
+        if (this.buffer.remaining() < RECORD_SIZE)
+            makeRoom();
+
+        int offset = this.buffer.position();
+        this.buffer.put(kind)
+                .put((byte) type.ordinal())
+                .put((byte) event.ordinal())
+                .put((byte) 0)
+                .putInt(month)
+                .putLong(amount)
+                .putLong(balance)
+                .putInt(0)
+                .putInt(0); // crc
+        seal(offset);
+        this.uncommittedRecords++;
+    }
+
+    private void seal(int offset) {
+        this.buffer.putInt(offset + CRC_OFFSET, checksum(this.buffer, offset, this.crc));
+    }
+
+    private void makeRoom() {
+        try {
+            // an update larger than the buffer is written in parts, recovery drops the
+            // parts without a commit
+            if (this.uncommittedRecords * RECORD_SIZE == this.buffer.position())
+                writeAll();
+            else
+                writeCommitted();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeCommitted() throws IOException {
+        int committedEnd = this.buffer.position() - this.uncommittedRecords * RECORD_SIZE;
+        this.buffer.flip();
+        ByteBuffer committed = this.buffer.duplicate();
+        committed.limit(committedEnd);
+        while (committed.hasRemaining())
+            this.channel.write(committed);
+
+        // keep the uncommitted records for the next write
+        this.buffer.position(committedEnd);
+        this.buffer.compact();
+    }
+
+    private void writeAll() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining())
+            this.channel.write(this.buffer);
+        this.buffer.clear();
+        this.uncommittedRecords = 0;
+    }
+
+    private static Recovery recover(FileChannel channel, PortfolioManager portfolio) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            // new journal, or torn before the header was complete
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            while (header.hasRemaining())
+                channel.write(header, header.position());
+            channel.force(false);
+            channel.position(HEADER_SIZE);
+            return new Recovery(0, 0);
+        }
+
+        ByteBuffer chunk = ByteBuffer.allocateDirect(RECOVERY_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, chunk, 0, HEADER_SIZE);
+        if (chunk.getInt(0) != MAGIC || chunk.getInt(4) != VERSION)
+            throw new IOException("not a portfolio journal of version " + VERSION);
+
+        // records of an update are held until its commit record is read
+        ByteBuffer update = ByteBuffer.allocate(16 * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        Map<FundType, BigDecimal> sip = new FundTypeMap<>();
+        CRC32 crc = new CRC32();
+        long updates = 0;
+        long inputPosition = 0;
+        long committedEnd = HEADER_SIZE;
+        long offset = HEADER_SIZE;
+        boolean intact = true;
+        while (intact && offset + RECORD_SIZE <= size) {
+            int length = (int) Math.min(chunk.capacity(), (size - offset) / RECORD_SIZE * RECORD_SIZE);
+            readFully(channel, chunk, offset, length);
+            for (int record = 0; record < length; record += RECORD_SIZE, offset += RECORD_SIZE) {
+                if (!isIntact(chunk, record, crc)) {
+                    intact = false; // torn or corrupted tail
+                    break;
+                }
+
+                if (update.remaining() < RECORD_SIZE)
+                    update = grow(update);
+                chunk.limit(record + RECORD_SIZE).position(record);
+                update.put(chunk);
+                chunk.clear();
+                if (chunk.get(record + 3) != COMMIT)
+                    continue;
+
+                for (int applied = 0; applied < update.position(); applied += RECORD_SIZE)
+                    apply(update, applied, portfolio, sip);
+                if (!sip.isEmpty()) {
+                    portfolio.setSip(new FundTypeMap<>(sip));
+                    sip.clear();
+                }
+                update.clear();
+                inputPosition = chunk.getLong(record + 8);
+                updates++;
+                committedEnd = offset + RECORD_SIZE;
+            }
+        }
+
+        // drop the torn tail and the records of the last incomplete update
+        channel.truncate(committedEnd);
+        channel.position(committedEnd);
+        return new Recovery(updates, inputPosition);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer chunk, long offset, int length)
+            throws IOException {
+        chunk.clear().limit(length);
+        while (chunk.hasRemaining()) {
+            if (channel.read(chunk, offset + chunk.position()) < 0)
+                throw new IOException("journal truncated while reading");
+        }
+        chunk.clear();
+    }
+
+    private static ByteBuffer grow(ByteBuffer update) {
+        ByteBuffer larger = ByteBuffer.allocate(update.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+        update.flip();
+        return larger.put(update);
+    }
+
+    private static boolean isIntact(ByteBuffer journal, int offset, CRC32 crc) {
+        return checksum(journal, offset, crc) == journal.getInt(offset + CRC_OFFSET);
+    }
+
+    private static int checksum(ByteBuffer records, int offset, CRC32 crc) {
+        crc.reset();
+        crc.update(records.duplicate().limit(offset + CRC_OFFSET).position(offset));
+        return (int) crc.getValue();
+    }
+
+    private static void apply(ByteBuffer records, int offset, PortfolioManager portfolio,
+            Map<FundType, BigDecimal> sip) throws IOException {
+        int ordinal = Byte.toUnsignedInt(records.get(offset + 1));
+        if (ordinal >= FundType.count())
+            throw new IOException("journal of more fund types than configured");
+        FundType type = FundType.of(ordinal);
+        TransactionEvent event = EVENTS[records.get(offset + 2)];
+        int month = records.getInt(offset + 4);
+        long amount = records.getLong(offset + 8);
+        long balance = records.getLong(offset + 16);
+
+        byte kind = records.get(offset);
+        if (kind == POSITION)
+            return; // read with the commit
+        if (kind == SIP) {
+            sip.put(type, Money.toBigDecimal(amount));
+            return;
+        }
+
+        Fund fund = portfolio.fundOf(type);
+        if (TransactionEvent.ALLOCATE.equals(event))
+            fund.initialise(amount, month);
+        else
+            fund.doTransaction(month, event, amount);
+        if (fund.getCurrentValue() != balance)
+            throw new IOException("journal does not match the " + type + " fund balance");
+    }
+
+    private static final class Recovery {
+        private final long updates;
+        private final long inputPosition;
+
+        private Recovery(long updates, long inputPosition) {
+            this.updates = updates;
+            this.inputPosition = inputPosition;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+package com.example.geektrust.portfolio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * Column oriented transaction history of a {@link Fund}.
+ * <p>
+ * Each record is spread over parallel primitive arrays (month, event, amount
+ * and balance), and a dense month index keeps the offset of the first record of
+ * every month since the first recorded month. Records are kept in month order,
+ * and in append order within a month. A record of a month earlier than the last
+ * recorded month is inserted after the records of its month, which rewrites the
+ * columns, so appending in month order stays the fast path.
+ * <p>
+ * The last record of every calendar month and of every event is tracked as
+ * records are appended, so the latest balance of a month or the latest record
+ * of an event is found in constant time regardless of the history length.
+ * <p>
+ * A ledger restored from a snapshot keeps only its size until a record is
+ * first accessed, the columns are then read from the snapshot in bulk.
+ * <p>
+ * A ledger is forked by freezing its records into a base shared with the fork,
+ * see {@link #fork()}. Each side then appends to its own columns, so a fork
+ * only takes memory for the records appended after it.
+ * <p>
+ * Months older than a horizon can be compacted into a single
+ * {@code MONTHLY_SUMMARY} record each, see {@link #compact(int)}.
+ */
+class TransactionLedger {
+    static final int NO_RECORD = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final TransactionEvent[] EVENTS = TransactionEvent.values();
+
+    // records [0, baseSize) are read from the base, which is never modified
+    // again, the columns hold the records from baseSize on
+    private TransactionLedger base;
+    private int baseSize;
+
+    private int[] months; // see monthIndex(YearMonth)
+    private byte[] events; // TransactionEvent ordinal
+    private long[] amounts; // Money
+    private long[] balances; // Money
+    private int size;
+
+    // first record offset of each month since offsetsFirstMonth, a month without
+    // records starts where the next month starts. Earlier months are in the base.
+    private int[] monthOffsets;
+    private int offsetsFirstMonth;
+    private int firstMonth;
+    private int monthCount;
+
+    // last record offset by calendar month (0 = January) and by event ordinal
+    private final int[] lastByCalendarMonth;
+    private final int[] lastByEvent;
+
+    // snapshot columns not yet read, see restore(ByteBuffer, int, int)
+    private ByteBuffer snapshot;
+    private int snapshotOffset;
+
+    TransactionLedger() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private TransactionLedger(int capacity) {
+        this.months = new int[capacity];
+        this.events = new byte[capacity];
+        this.amounts = new long[capacity];
+        this.balances = new long[capacity];
+        this.monthOffsets = new int[INITIAL_CAPACITY];
+        this.lastByCalendarMonth = new int[12];
+        this.lastByEvent = new int[EVENTS.length];
+        Arrays.fill(this.lastByCalendarMonth, NO_RECORD);
+        Arrays.fill(this.lastByEvent, NO_RECORD);
+    }
+
+    /**
+     * @return a ledger of {@code size} records read from the snapshot columns at
+     *         the given offset on first access, see
+     *         {@link #writeColumns(ByteBuffer)}.
+     */
+    static TransactionLedger restore(ByteBuffer snapshot, int offset, int size) {
+        TransactionLedger ledger = new TransactionLedger(0);
+        ledger.size = size;
+        if (size > 0) {
+            ledger.snapshot = snapshot;
+            ledger.snapshotOffset = offset;
+        }
+        return ledger;
+    }
+
+    /**
+     * @return number of bytes written by {@link #writeColumns(ByteBuffer)} for
+     *         the given number of records.
+     */
+    static int columnsSize(int size) {
+        return size * (Long.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES);
+    }
+
+    /**
+     * Writes the amount, balance, month and event columns, in little endian
+     * order, at the position of the buffer and moves past them.
+     */
+    void writeColumns(ByteBuffer out) {
+        int size = this.size;
+        if (this.snapshot != null) {
+            // still as restored, copied without reading the columns
+            ByteBuffer restored = this.snapshot.duplicate();
+            restored.limit(this.snapshotOffset + columnsSize(size)).position(this.snapshotOffset);
+            out.put(restored);
+            return;
+        }
+        if (this.base != null) {
+            writeColumnsByRecord(out);
+            return;
+        }
+
+        ByteBuffer columns = out.slice().order(ByteOrder.LITTLE_ENDIAN);
+        columns.asLongBuffer().put(this.amounts, 0, size);
+        columns.position(size * Long.BYTES);
+        columns.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(this.balances, 0, size);
+        columns.position(2 * size * Long.BYTES);
+        columns.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(this.months, 0, size);
+        columns.position(2 * size * Long.BYTES + size * Integer.BYTES);
+        columns.put(this.events, 0, size);
+        out.position(out.position() + columnsSize(size));
+    }
+
+    private void writeColumnsByRecord(ByteBuffer out) {
+        int size = this.size;
+        ByteBuffer columns = out.slice().order(ByteOrder.LITTLE_ENDIAN);
+        for (int index = 0; index < size; index++)
+            columns.putLong(amountOf(index));
+        for (int index = 0; index < size; index++)
+            columns.putLong(balanceOf(index));
+        for (int index = 0; index < size; index++)
+            columns.putInt(monthOf(index));
+        for (int index = 0; index < size; index++)
+            columns.put((byte) eventOf(index).ordinal());
+        out.position(out.position() + columnsSize(size));
+    }
+
+    /**
+     * Forks the ledger, the records so far are frozen into a base shared by this
+     * ledger and the fork, and by any other fork of either, instead of being
+     * copied. Has to be called by the thread owning the ledger, the fork can then
+     * be handed to another thread.
+     *
+     * @return a ledger with the same records, appended to independently of this
+     *         one.
+     */
+    TransactionLedger fork() {
+        load();
+        if (this.size > this.baseSize)
+            layerOn(freeze());
+
+        TransactionLedger fork = new TransactionLedger(0);
+        if (this.base != null) {
+            fork.layerOn(this.base);
+            System.arraycopy(this.lastByCalendarMonth, 0, fork.lastByCalendarMonth, 0, 12);
+            System.arraycopy(this.lastByEvent, 0, fork.lastByEvent, 0, EVENTS.length);
+        }
+        return fork;
+    }
+
+    /**
+     * @return a ledger taking over the records of this one, never appended to.
+     */
+    private TransactionLedger freeze() {
+        TransactionLedger frozen = new TransactionLedger(0);
+        frozen.base = this.base;
+        frozen.baseSize = this.baseSize;
+        frozen.months = this.months;
+        frozen.events = this.events;
+        frozen.amounts = this.amounts;
+        frozen.balances = this.balances;
+        frozen.size = this.size;
+        frozen.monthOffsets = this.monthOffsets;
+        frozen.offsetsFirstMonth = this.offsetsFirstMonth;
+        frozen.firstMonth = this.firstMonth;
+        frozen.monthCount = this.monthCount;
+        System.arraycopy(this.lastByCalendarMonth, 0, frozen.lastByCalendarMonth, 0, 12);
+        System.arraycopy(this.lastByEvent, 0, frozen.lastByEvent, 0, EVENTS.length);
+        return frozen;
+    }
+
+    /**
+     * Continues the given ledger with no records of its own, the last record
+     * pointers are left to the caller.
+     */
+    private void layerOn(TransactionLedger frozen) {
+        this.base = frozen;
+        this.baseSize = frozen.size;
+        this.size = frozen.size;
+        this.months = new int[0];
+        this.events = new byte[0];
+        this.amounts = new long[0];
+        this.balances = new long[0];
+        // the last month may get more records, it starts in the base
+        this.firstMonth = frozen.firstMonth;
+        this.offsetsFirstMonth = frozen.lastMonth();
+        this.monthOffsets = new int[INITIAL_CAPACITY];
+        this.monthOffsets[0] = frozen.monthStart(this.offsetsFirstMonth);
+        this.monthCount = 1;
+    }
+
+    static int monthIndex(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    static YearMonth toYearMonth(int monthIndex) {
+        return YearMonth.of(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1);
+    }
+
+    static Month calendarMonthOf(int monthIndex) {
+        return Month.of(Math.floorMod(monthIndex, 12) + 1);
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Appends the record after the records of its month. A record of a month
+     * earlier than the last recorded month moves the indexes of the later
+     * records.
+     */
+    void append(int month, TransactionEvent event, long amount, long balance) {
+        load();
+        if (this.size > 0 && month < monthOf(this.size - 1)) {
+            insert(month, event, amount, balance);
+            return;
+        }
+
+        int own = this.size - this.baseSize;
+        ensureCapacity(own + 1);
+        if (this.size == 0) {
+            this.firstMonth = month;
+            this.offsetsFirstMonth = month;
+        }
+        openMonthsUntil(month);
+
+        this.months[own] = month;
+        this.events[own] = (byte) event.ordinal();
+        this.amounts[own] = amount;
+        this.balances[own] = balance;
+        this.lastByCalendarMonth[Math.floorMod(month, 12)] = this.size;
+        this.lastByEvent[event.ordinal()] = this.size;
+        this.size++;
+    }
+
+    /**
+     * Rewrites the columns, without the base of a fork, with the record after
+     * the records of its earlier month.
+     */
+    private void insert(int month, TransactionEvent event, long amount, long balance) {
+        int at = month < this.firstMonth ? 0 : monthEnd(month);
+        TransactionLedger inserted = new TransactionLedger(this.size + 1);
+        for (int index = 0; index < this.size; index++) {
+            if (index == at)
+                inserted.append(month, event, amount, balance);
+            inserted.append(monthOf(index), eventOf(index), amountOf(index), balanceOf(index));
+        }
+        replaceWith(inserted);
+    }
+
+    int monthOf(int index) {
+        load();
+        return index < this.baseSize ? this.base.monthOf(index) : this.months[index - this.baseSize];
+    }
+
+    TransactionEvent eventOf(int index) {
+        load();
+        return index < this.baseSize ? this.base.eventOf(index) : EVENTS[this.events[index - this.baseSize]];
+    }
+
+    long amountOf(int index) {
+        load();
+        return index < this.baseSize ? this.base.amountOf(index) : this.amounts[index - this.baseSize];
+    }
+
+    long balanceOf(int index) {
+        load();
+        return index < this.baseSize ? this.base.balanceOf(index) : this.balances[index - this.baseSize];
+    }
+
+    int lastIndex() {
+        return this.size - 1;
+    }
+
+    int firstMonth() {
+        load();
+        return this.firstMonth;
+    }
+
+    int lastMonth() {
+        load();
+        return this.offsetsFirstMonth + this.monthCount - 1;
+    }
+
+    /**
+     * @return offset of the first record of the month, or the offset where the
+     *         month would start when it has no records.
+     */
+    int monthStart(int month) {
+        load();
+        if (month < this.offsetsFirstMonth)
+            return this.base.monthStart(month);
+        return this.monthOffsets[month - this.offsetsFirstMonth];
+    }
+
+    /**
+     * @return offset after the last record of the month.
+     */
+    int monthEnd(int month) {
+        load();
+        if (month < this.offsetsFirstMonth)
+            return this.base.monthEnd(month);
+        int next = month - this.offsetsFirstMonth + 1;
+        return next < this.monthCount ? this.monthOffsets[next] : this.size;
+    }
+
+    /**
+     * @return the last record of the latest month matching the given calendar
+     *         month, {@link #NO_RECORD} if no such record exists.
+     */
+    int lastIndexOf(Month calendarMonth) {
+        // records are in month order, the last one appended for the calendar month
+        // belongs to its latest year
+        load();
+        return this.lastByCalendarMonth[calendarMonth.ordinal()];
+    }
+
+    /**
+     * @param month month index, see {@link #monthIndex(YearMonth)}.
+     * @return the last record of the month or of the latest earlier month with
+     *         records, {@link #NO_RECORD} if the month is before the first
+     *         recorded month.
+     */
+    int lastIndexAtOrBefore(int month) {
+        if (this.size == 0 || month < firstMonth())
+            return NO_RECORD;
+        if (month >= lastMonth())
+            return this.size - 1;
+        return monthEnd(month) - 1;
+    }
+
+    /**
+     * @return the last record of the given event, {@link #NO_RECORD} if no such
+     *         record exists.
+     */
+    int lastIndexOf(TransactionEvent event) {
+        load();
+        return this.lastByEvent[event.ordinal()];
+    }
+
+    /**
+     * Folds every month before the given month into one
+     * {@code MONTHLY_SUMMARY} record, its amount the market change of the
+     * month and its balance the closing balance of the month. The money put in
+     * or moved out during the month is the balance before the change less the
+     * closing balance of the previous record, so balances, gains and returns
+     * read the same from the summary.
+     * <p>
+     * A month is only folded if it has more than one record, its only market
+     * change if any is its last record, and it holds no last record of an
+     * event, so the last record of every event stays as it was. Months with a
+     * rebalance after the change are then kept record by record. The columns
+     * are rewritten without the base of a fork, and record indexes move. A
+     * ledger restored from a snapshot is left as it is until first accessed.
+     *
+     * @return number of records removed.
+     */
+    int compact(int beforeMonth) {
+        if (this.size == 0 || this.snapshot != null)
+            return 0; // restored columns are left unread until first accessed
+
+        // the last month may still get records, it is never folded
+        int until = Math.min(beforeMonth, lastMonth());
+        int folded = 0;
+        for (int month = this.firstMonth; month < until; month++) {
+            int start = monthStart(month);
+            int end = monthEnd(month);
+            if (isFoldable(start, end))
+                folded += end - start - 1;
+        }
+        if (folded == 0)
+            return 0;
+
+        TransactionLedger compacted = new TransactionLedger(this.size - folded);
+        for (int month = this.firstMonth; month <= lastMonth(); month++) {
+            int start = monthStart(month);
+            int end = monthEnd(month);
+            if (month < until && isFoldable(start, end)) {
+                TransactionEvent last = eventOf(end - 1);
+                long change = TransactionEvent.MONTHLY_CHANGE.equals(last) ? amountOf(end - 1) : Money.ZERO;
+                compacted.append(month, TransactionEvent.MONTHLY_SUMMARY, change, balanceOf(end - 1));
+                continue;
+            }
+            for (int index = start; index < end; index++)
+                compacted.append(monthOf(index), eventOf(index), amountOf(index), balanceOf(index));
+        }
+        replaceWith(compacted);
+        return folded;
+    }
+
+    /**
+     * Takes over the columns of the given ledger, written without a base.
+     */
+    private void replaceWith(TransactionLedger rewritten) {
+        this.base = null;
+        this.baseSize = 0;
+        this.months = rewritten.months;
+        this.events = rewritten.events;
+        this.amounts = rewritten.amounts;
+        this.balances = rewritten.balances;
+        this.size = rewritten.size;
+        this.monthOffsets = rewritten.monthOffsets;
+        this.offsetsFirstMonth = rewritten.offsetsFirstMonth;
+        this.firstMonth = rewritten.firstMonth;
+        this.monthCount = rewritten.monthCount;
+        System.arraycopy(rewritten.lastByCalendarMonth, 0, this.lastByCalendarMonth, 0, 12);
+        System.arraycopy(rewritten.lastByEvent, 0, this.lastByEvent, 0, EVENTS.length);
+    }
+
+    private boolean isFoldable(int start, int end) {
+        if (end - start < 2)
+            return false;
+        for (int index = start; index < end; index++) {
+            TransactionEvent event = eventOf(index);
+            if (this.lastByEvent[event.ordinal()] == index || TransactionEvent.MONTHLY_SUMMARY.equals(event))
+                return false;
+            if (TransactionEvent.MONTHLY_CHANGE.equals(event) && index != end - 1)
+                return false;
+        }
+        return true;
+    }
+
+    private void load() {
+        if (this.snapshot == null)
+            return;
+
+        int size = this.size;
+        ByteBuffer columns = this.snapshot.duplicate();
+        columns.position(this.snapshotOffset);
+        this.amounts = new long[size];
+        this.balances = new long[size];
+        this.months = new int[size];
+        this.events = new byte[size];
+        columns.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(this.amounts);
+        columns.position(columns.position() + size * Long.BYTES);
+        columns.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(this.balances);
+        columns.position(columns.position() + size * Long.BYTES);
+        columns.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(this.months);
+        columns.position(columns.position() + size * Integer.BYTES);
+        columns.get(this.events);
+        this.snapshot = null;
+
+        // rebuild the month index and the last record pointers as append does
+        this.firstMonth = this.months[0];
+        this.offsetsFirstMonth = this.firstMonth;
+        for (int index = 0; index < size; index++) {
+            this.size = index;
+            openMonthsUntil(this.months[index]);
+            this.lastByCalendarMonth[Math.floorMod(this.months[index], 12)] = index;
+            this.lastByEvent[this.events[index]] = index;
+        }
+        this.size = size;
+    }
+
+    private void openMonthsUntil(int month) {
+        int required = month - this.offsetsFirstMonth + 1;
+        if (required <= this.monthCount)
+            return;
+
+        if (required > this.monthOffsets.length)
+            this.monthOffsets = Arrays.copyOf(this.monthOffsets, Math.max(required, this.monthOffsets.length * 2));
+        // months in between have no records
+        Arrays.fill(this.monthOffsets, this.monthCount, required, this.size);
+        this.monthCount = required;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= this.months.length)
+            return;
+
+        int capacity = Math.max(Math.max(required, this.months.length * 2), INITIAL_CAPACITY);
+        this.months = Arrays.copyOf(this.months, capacity);
+        this.events = Arrays.copyOf(this.events, capacity);
+        this.amounts = Arrays.copyOf(this.amounts, capacity);
+        this.balances = Arrays.copyOf(this.balances, capacity);
+    }
+}
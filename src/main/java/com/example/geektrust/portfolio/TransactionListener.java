@@ -0,0 +1,25 @@
+package com.example.geektrust.portfolio;
+
+/**
+ * Observer of the updates applied to a portfolio, in the order they are
+ * applied.
+ */
+interface TransactionListener {
+    static final TransactionListener NONE = new TransactionListener() {
+    };
+
+    /**
+     * A record appended to the ledger of a fund.
+     */
+    default void onTransaction(FundType type, int month, TransactionEvent event, long amount, long balance) {
+    }
+
+    default void onSip(FundType type, long amount) {
+    }
+
+    /**
+     * Every update since the previous commit forms a complete portfolio update.
+     */
+    default void onCommit() {
+    }
+}
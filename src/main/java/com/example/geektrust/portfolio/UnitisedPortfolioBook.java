@@ -0,0 +1,339 @@
+package com.example.geektrust.portfolio;
+
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Portfolios holding units of funds priced by a {@link NavSeries} per fund
+ * type, for market wide changes whose cost does not depend on the number of
+ * portfolios.
+ * <p>
+ * A monthly change only appends a value to the series of every fund type. The
+ * SIP of a portfolio buys units at the value of the month, and as the SIP stays
+ * the same until it is set again, the units it bought since the last update of
+ * the portfolio are read from the cumulated units of the series. A portfolio is
+ * only updated by a rebalance or a new SIP, which start a new segment of its
+ * holdings, and its balances are computed when they are asked for.
+ * <p>
+ * Portfolios follow the rules of {@link PortfolioManager}, as in
+ * {@link PortfolioBook}: the SIP of the next month is bought after every change
+ * except in the compulsory rebalance months, where it is bought with the
+ * rebalance, or not at all if the portfolio is not rebalanced before the next
+ * change. Values are in double precision, see {@link PortfolioBook}.
+ */
+public final class UnitisedPortfolioBook {
+    static final int NO_STEP = -1;
+
+    private final int funds;
+    private final NavSeries[] series; // by fund ordinal
+    private final List<Holdings> portfolios = new ArrayList<>();
+    private Month firstMonth; // of step 1, null until the first change
+
+    public UnitisedPortfolioBook() {
+        this.funds = FundType.count();
+        this.series = new NavSeries[this.funds];
+        for (int fund = 0; fund < this.funds; fund++)
+            this.series[fund] = new NavSeries();
+    }
+
+    /**
+     * Adds a portfolio allocated at the current values, its first change is the
+     * next change of the book.
+     *
+     * @param allocation amount of every fund, in fund type order.
+     * @param sip        monthly contribution of every fund, in fund type order.
+     * @return index of the portfolio in the book.
+     * @throws IllegalArgumentException if the allocation total is not positive.
+     */
+    public int add(double[] allocation, double[] sip) {
+        checkLength(allocation);
+        checkLength(sip);
+        double total = Arrays.stream(allocation).sum();
+        if (!(total > 0))
+            throw new IllegalArgumentException("allocation total has to be positive");
+
+        int step = lastStep();
+        double[] weights = new double[this.funds];
+        double[] units = new double[this.funds];
+        for (int fund = 0; fund < this.funds; fund++) {
+            weights[fund] = allocation[fund] / total;
+            units[fund] = allocation[fund] / this.series[fund].valueAt(step);
+        }
+        Holdings holdings = new Holdings(this.funds, weights, step);
+        holdings.append(step, units, new double[this.funds], sip.clone());
+        this.portfolios.add(holdings);
+        return this.portfolios.size() - 1;
+    }
+
+    public int size() {
+        return this.portfolios.size();
+    }
+
+    /**
+     * Applies the month's market change to every portfolio of the book, in
+     * constant time whatever the number of portfolios. Months follow each
+     * other, the first change may be in any month.
+     *
+     * @param percentages market change of every fund, in fund type order,
+     *                    negative means a loss.
+     * @return false if the month does not follow the last changed month, nothing
+     *         is applied.
+     * @throws IllegalArgumentException if a fund would lose 100% or more, units
+     *                                  have no value to be bought at.
+     */
+    public boolean applyMonthlyChange(Month month, double[] percentages) {
+        checkLength(percentages);
+        for (double percentage : percentages)
+            if (!(percentage > -100d))
+                throw new IllegalArgumentException("change out of range: " + percentage + "%");
+        if (this.firstMonth != null && !month.equals(calendarMonthOf(lastStep() + 1)))
+            return false;
+
+        if (this.firstMonth == null)
+            this.firstMonth = month.minus(lastStep());
+        boolean open = !PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month);
+        for (int fund = 0; fund < this.funds; fund++)
+            this.series[fund].append(percentages[fund], open);
+        return true;
+    }
+
+    /**
+     * Replaces the SIP of the portfolio from the next month on, a SIP already
+     * bought for the next month is kept.
+     */
+    public void setSip(int portfolio, double[] sip) {
+        checkLength(sip);
+        Holdings holdings = holdingsOf(portfolio);
+        int step = lastStep();
+        int segment = holdings.segmentAt(step);
+        double[] units = new double[this.funds];
+        double[] bought = new double[this.funds];
+        for (int fund = 0; fund < this.funds; fund++) {
+            units[fund] = heldAt(holdings, segment, fund, step);
+            bought[fund] = unitsAfter(holdings, segment, fund, step) - units[fund];
+        }
+        holdings.append(step, units, bought, sip.clone());
+    }
+
+    /**
+     * @return true if the last change was in a compulsory rebalance month and the
+     *         portfolio is not rebalanced yet.
+     */
+    public boolean isPendingForRebalance(int portfolio) {
+        Holdings holdings = holdingsOf(portfolio);
+        int step = lastStep();
+        return step > holdings.joined && !isOpen(step) && holdings.rebalanced != step;
+    }
+
+    /**
+     * Rebalances the portfolio to the weights of its allocation at the values of
+     * the last change and buys the SIP of the next month.
+     *
+     * @return false if the portfolio is not pending for rebalance.
+     */
+    public boolean rebalance(int portfolio) {
+        if (!isPendingForRebalance(portfolio))
+            return false;
+
+        Holdings holdings = this.portfolios.get(portfolio);
+        int step = lastStep();
+        int segment = holdings.segmentAt(step);
+        double total = 0;
+        for (int fund = 0; fund < this.funds; fund++)
+            total += heldAt(holdings, segment, fund, step) * this.series[fund].valueAt(step);
+
+        double[] units = new double[this.funds];
+        double[] bought = new double[this.funds];
+        double[] sip = new double[this.funds];
+        for (int fund = 0; fund < this.funds; fund++) {
+            double value = this.series[fund].valueAt(step);
+            sip[fund] = holdings.sipOf(segment, fund);
+            units[fund] = total * holdings.weights[fund] / value;
+            bought[fund] = sip[fund] / value;
+        }
+        holdings.append(step, units, bought, sip);
+        holdings.rebalanced = step;
+        return true;
+    }
+
+    /**
+     * Rebalances every pending portfolio, see {@link #rebalance(int)}.
+     *
+     * @return number of rebalanced portfolios.
+     */
+    public int rebalance() {
+        int rebalanced = 0;
+        for (int portfolio = 0; portfolio < this.portfolios.size(); portfolio++)
+            if (rebalance(portfolio))
+                rebalanced++;
+        return rebalanced;
+    }
+
+    /**
+     * @return current balance of the fund, including a SIP already bought for
+     *         the next month.
+     */
+    public double balanceOf(int portfolio, FundType type) {
+        Holdings holdings = holdingsOf(portfolio);
+        int fund = type.ordinal();
+        int step = lastStep();
+        return unitsAfter(holdings, holdings.segmentAt(step), fund, step) * this.series[fund].valueAt(step);
+    }
+
+    /**
+     * @param month last month of.
+     * @return balances of the portfolio at the end of the last month matching
+     *         the given month rounded down to whole numbers, in fund type order,
+     *         as reported by BALANCE. Empty if the portfolio has no record in
+     *         that month.
+     */
+    public Optional<long[]> wholeBalancesOf(int portfolio, Month month) {
+        Holdings holdings = holdingsOf(portfolio);
+        int last = lastStep();
+        if (last == holdings.joined)
+            return Optional.empty(); // not changed yet
+
+        long[] values = new long[this.funds];
+        if (month.equals(calendarMonthOf(last + 1)) && (isOpen(last) || holdings.rebalanced == last)) {
+            // the next month is opened by its SIP
+            for (FundType type : FundType.values())
+                values[type.ordinal()] = (long) Math.floor(balanceOf(portfolio, type));
+            return Optional.of(values);
+        }
+
+        int step = last - (calendarMonthOf(last).ordinal() - month.ordinal() + 12) % 12;
+        if (step <= holdings.joined)
+            return Optional.empty();
+
+        int segment = holdings.segmentAt(step);
+        for (int fund = 0; fund < this.funds; fund++)
+            values[fund] = (long) Math.floor(heldAt(holdings, segment, fund, step) * this.series[fund].valueAt(step));
+        return Optional.of(values);
+    }
+
+    /**
+     * @return value of a unit of the fund type after the last change.
+     */
+    public double navOf(FundType type) {
+        return this.series[type.ordinal()].valueAt(lastStep());
+    }
+
+    /**
+     * @return units of the fund held at the end of the step, before the SIP
+     *         bought at that step.
+     */
+    private double heldAt(Holdings holdings, int segment, int fund, int step) {
+        int from = holdings.from[segment];
+        if (step == from)
+            return holdings.unitsOf(segment, fund);
+        return unitsAfter(holdings, segment, fund, step - 1);
+    }
+
+    /**
+     * @return units of the fund held after the SIP bought at the step.
+     */
+    private double unitsAfter(Holdings holdings, int segment, int fund, int step) {
+        return holdings.unitsOf(segment, fund) + holdings.boughtOf(segment, fund)
+                + holdings.sipOf(segment, fund) * this.series[fund].sipUnitsBetween(holdings.from[segment], step);
+    }
+
+    private int lastStep() {
+        return this.series[0].lastStep();
+    }
+
+    /**
+     * @return false if the step is a compulsory rebalance month change.
+     */
+    private boolean isOpen(int step) {
+        return !PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(calendarMonthOf(step));
+    }
+
+    private Month calendarMonthOf(int step) {
+        return this.firstMonth.plus(step - 1L);
+    }
+
+    private Holdings holdingsOf(int portfolio) {
+        if (portfolio < 0 || portfolio >= this.portfolios.size())
+            throw new IndexOutOfBoundsException("no portfolio " + portfolio + " in a book of " + size());
+        return this.portfolios.get(portfolio);
+    }
+
+    private void checkLength(double[] values) {
+        if (values.length != this.funds)
+            throw new IllegalArgumentException("one value per fund type required: " + this.funds);
+    }
+
+    /**
+     * Units held by a portfolio, in segments starting at every update. A segment
+     * holds the units at the end of its first step, the units bought at that
+     * step for the next month and the SIP bought at every later open step.
+     */
+    private static final class Holdings {
+        private final int funds;
+        final double[] weights; // by fund ordinal, of the allocation
+        final int joined; // step the portfolio was added at
+        int rebalanced = NO_STEP;
+
+        int[] from = new int[2]; // first step of every segment
+        private double[] units; // [segment * funds + fund]
+        private double[] bought; // [segment * funds + fund]
+        private double[] sip; // [segment * funds + fund]
+        private int segments;
+
+        Holdings(int funds, double[] weights, int joined) {
+            this.funds = funds;
+            this.weights = weights;
+            this.joined = joined;
+            this.units = new double[2 * funds];
+            this.bought = new double[2 * funds];
+            this.sip = new double[2 * funds];
+        }
+
+        void append(int step, double[] units, double[] bought, double[] sip) {
+            if (this.segments == this.from.length) {
+                int capacity = this.segments * 2;
+                this.from = Arrays.copyOf(this.from, capacity);
+                this.units = Arrays.copyOf(this.units, capacity * this.funds);
+                this.bought = Arrays.copyOf(this.bought, capacity * this.funds);
+                this.sip = Arrays.copyOf(this.sip, capacity * this.funds);
+            }
+            int offset = this.segments * this.funds;
+            this.from[this.segments] = step;
+            System.arraycopy(units, 0, this.units, offset, this.funds);
+            System.arraycopy(bought, 0, this.bought, offset, this.funds);
+            System.arraycopy(sip, 0, this.sip, offset, this.funds);
+            this.segments++;
+        }
+
+        /**
+         * @return the last segment started at or before the step.
+         */
+        int segmentAt(int step) {
+            int low = 0;
+            int high = this.segments - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (this.from[middle] <= step)
+                    low = middle;
+                else
+                    high = middle - 1;
+            }
+            return low;
+        }
+
+        double unitsOf(int segment, int fund) {
+            return this.units[segment * this.funds + fund];
+        }
+
+        double boughtOf(int segment, int fund) {
+            return this.bought[segment * this.funds + fund];
+        }
+
+        double sipOf(int segment, int fund) {
+            return this.sip[segment * this.funds + fund];
+        }
+    }
+}
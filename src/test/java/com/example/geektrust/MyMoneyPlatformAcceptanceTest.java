@@ -1,19 +1,25 @@
 
 package com.example.geektrust;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import com.example.geektrust.platform.InputCommandProvider;
 import com.example.geektrust.platform.MyMoneyPlatform;
+import com.example.geektrust.platform.StageStatistics;
 import com.example.geektrust.portfolio.FundType;
 import com.example.geektrust.portfolio.PortfolioManager;
 
@@ -26,7 +32,8 @@ public class MyMoneyPlatformAcceptanceTest {
     @SuppressWarnings("unchecked") // skip mock types warnings.
     @BeforeEach
     public void setUp() {
-        commandProvider = Mockito.mock(InputCommandProvider.class);
+        // stubs nextCommand, the platform reads it through the default nextCommandView
+        commandProvider = Mockito.mock(InputCommandProvider.class, Mockito.CALLS_REAL_METHODS);
         reporter = Mockito.mock(Consumer.class);
         portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
         platform = MyMoneyPlatform.of(portfolio, commandProvider, Optional.of(reporter));
@@ -54,6 +61,36 @@ public class MyMoneyPlatformAcceptanceTest {
         Mockito.verify(reporter).accept("23622 11811 3937");
     }
 
+    @Test
+    public void acceptance_repeatedRebalance() {
+        // @formatter:off
+        Mockito.when(commandProvider.nextCommand())
+                .thenReturn(Optional.of("ALLOCATE 6000 3000 1000"))
+                .thenReturn(Optional.of("SIP 2000 1000 500"))
+                .thenReturn(Optional.of("CHANGE 4.00% 10.00% 2.00% JANUARY"))
+                .thenReturn(Optional.of("CHANGE -10.00% 40.00% 0.00% FEBRUARY"))
+                .thenReturn(Optional.of("CHANGE 12.50% 12.50% 12.50% MARCH"))
+                .thenReturn(Optional.of("CHANGE 8.00% -3.00% 7.00% APRIL"))
+                .thenReturn(Optional.of("CHANGE 13.00% 21.00% 10.50% MAY"))
+                .thenReturn(Optional.of("CHANGE 10.00% 8.00% -5.00% JUNE"))
+                .thenReturn(Optional.of("REBALANCE"))
+                .thenReturn(Optional.of("REBALANCE"))
+                .thenReturn(Optional.of("CHANGE 2.00% 3.00% 4.00% JULY"))
+                .thenReturn(Optional.of("BALANCE JUNE"))
+                .thenReturn(Optional.of("BALANCE JULY"))
+                .thenReturn(Optional.of("CHANGE 2.00% 3.00% 4.00% AUGUST"))
+                .thenReturn(Optional.of("BALANCE AUGUST"))
+                .thenReturn(Optional.empty());
+        // @formatter:on
+
+        platform.start();
+        InOrder inOrder = Mockito.inOrder(reporter);
+        inOrder.verify(reporter).accept("23622 11811 3937");
+        inOrder.verify(reporter, times(2)).accept("25722 12861 4287");
+        inOrder.verify(reporter).accept("28276 14277 4978");
+        inOrder.verify(reporter).accept("30882 15735 5697");
+    }
+
     @Test
     public void acceptance_noEnoughDataToRebalance() {
         // @formatter:off
@@ -76,6 +113,18 @@ public class MyMoneyPlatformAcceptanceTest {
         Mockito.verify(reporter).accept("CANNOT_REBALANCE");
     }
 
+    @Test
+    public void acceptance_providerOfStringCommands() {
+        // a provider implementing only nextCommand, as before nextCommandView
+        List<String> lines = Arrays.asList("ALLOCATE 8000 6000 3500", "SIP 3000 2000 1000",
+                "CHANGE 11.00% 9.00% 4.00% JANUARY", "BALANCE JANUARY");
+        Iterator<String> commands = lines.iterator();
+        InputCommandProvider provider = () -> commands.hasNext() ? Optional.of(commands.next()) : Optional.empty();
+
+        MyMoneyPlatform.of(portfolio, provider, Optional.of(reporter)).start();
+        Mockito.verify(reporter).accept("8880 6540 3640");
+    }
+
     @Test
     public void acceptance_skipInvalidCommands() {
         // @formatter:off
@@ -125,4 +174,52 @@ public class MyMoneyPlatformAcceptanceTest {
         platform.start();
         Mockito.verify(reporter, times(2)).accept("8880 6540 3640");
     }
+
+    @Test
+    public void acceptance_pipelinedInInputOrder() {
+        platform = MyMoneyPlatform.pipelined(portfolio, commandProvider, Optional.of(reporter), 2);
+        // @formatter:off
+        Mockito.when(commandProvider.nextCommand())
+                .thenReturn(Optional.of("ALLOCATE 6000 3000 1000"))
+                .thenReturn(Optional.of("SIP 2000 1000 500"))
+                .thenReturn(Optional.of("CHANGE 4.00% 10.00% 2.00% JANUARY"))
+                .thenReturn(Optional.of("CHANGE -10.00% 40.00% 0.00% FEBRUARY"))
+                .thenReturn(Optional.of("ANY INVALID WILL SAFELY SKIP"))
+                .thenReturn(Optional.of("CHANGE 12.50% 12.50% 12.50% MARCH"))
+                .thenReturn(Optional.of("CHANGE 8.00% -3.00% 7.00% APRIL"))
+                .thenReturn(Optional.of("CHANGE 13.00% 21.00% 10.50% MAY"))
+                .thenReturn(Optional.of("CHANGE 10.00% 8.00% -5.00% JUNE"))
+                .thenReturn(Optional.of("BALANCE MARCH"))
+                .thenReturn(Optional.of("REBALANCE"))
+                .thenReturn(Optional.empty());
+        // @formatter:on
+
+        platform.start();
+        InOrder outputs = Mockito.inOrder(reporter);
+        outputs.verify(reporter).accept("10593 7897 2272");
+        outputs.verify(reporter).accept("23622 11811 3937");
+
+        List<StageStatistics> statistics = platform.stageStatistics();
+        assertEquals(Arrays.asList("reader", "parser", "executor"),
+                Arrays.asList(statistics.get(0).getName(), statistics.get(1).getName(), statistics.get(2).getName()));
+        assertEquals(11, statistics.get(0).getProcessed());
+        assertEquals(11, statistics.get(1).getProcessed());
+        assertEquals(10, statistics.get(2).getProcessed());
+        assertEquals(0, statistics.get(2).getQueueDepth());
+    }
+
+    @Test
+    public void acceptance_pipelinedRethrowsInputFailure() {
+        platform = MyMoneyPlatform.pipelined(portfolio, commandProvider, Optional.of(reporter), 2);
+        // @formatter:off
+        Mockito.when(commandProvider.nextCommand())
+                .thenReturn(Optional.of("ALLOCATE 8000 6000 3500"))
+                .thenReturn(Optional.of("BALANCE JANUARY"))
+                .thenThrow(new IllegalStateException("input failed"));
+        // @formatter:on
+
+        assertThrows(IllegalStateException.class, platform::start);
+        // commands read before the failure are still executed
+        Mockito.verify(reporter).accept("8000 6000 3500");
+    }
 }
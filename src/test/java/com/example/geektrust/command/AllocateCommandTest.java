@@ -40,9 +40,7 @@ public class AllocateCommandTest {
     @Test
     public void verify_executeForAllFundTypesInTheAllocationsMap() {
         command.execute(portfolio, Optional.of(output));
-        Mockito.verify(portfolio).allocate(FundType.EQUITY, BigDecimal.valueOf(100));
-        Mockito.verify(portfolio).allocate(FundType.DEBT, BigDecimal.valueOf(20));
-        Mockito.verify(portfolio).allocate(FundType.GOLD, BigDecimal.valueOf(2000));
+        Mockito.verify(portfolio).allocate(allocations);
         Mockito.verify(output, never()).accept(any());
     }
 }
@@ -46,6 +46,19 @@ public class BalanceCommandTest {
         Mockito.verify(output).accept("100 20 2000");
     }
 
+    @Test
+    public void verify_valuesReportedToOutputSink() {
+        balancedResult.put(FundType.GOLD, new BigDecimal("2000.99"));
+        balancedResult.put(FundType.EQUITY, BigDecimal.valueOf(100));
+        balancedResult.put(FundType.DEBT, new BigDecimal("20.5"));
+
+        OutputSink sink = Mockito.mock(OutputSink.class);
+        when(portfolio.calculateBalance(Month.MARCH)).thenReturn(Optional.of(balancedResult));
+        command.execute(portfolio, Optional.of(sink));
+        Mockito.verify(sink).acceptValues(new long[] { 100, 20, 2000 });
+        Mockito.verify(sink, never()).accept(any());
+    }
+
     @Test
     public void verify_noOutPutWhenBalanceCanNotCalculate() {
         when(portfolio.calculateBalance(Month.MARCH)).thenReturn(Optional.empty());
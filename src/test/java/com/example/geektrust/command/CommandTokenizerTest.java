@@ -0,0 +1,58 @@
+package com.example.geektrust.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Month;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class CommandTokenizerTest {
+    @ParameterizedTest
+    @ValueSource(strings = { "-10%", "0.00%", "12.548%", "99.9999%", "-0.5%" })
+    public void verify_percentageMatchesBigDecimal(String percentage) {
+        CommandTokenizer tokens = new CommandTokenizer(percentage);
+        BigDecimal expected = new BigDecimal(percentage.substring(0, percentage.length() - 1));
+        assertEquals(expected, tokens.percentage());
+        assertTrue(tokens.atEnd());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "100%", "10", "10.%", ".5%", "-%" })
+    public void verify_invalidPercentage(String percentage) {
+        assertNull(new CommandTokenizer(percentage).percentage());
+    }
+
+    @Test
+    public void verify_amountBeyondLongRange() {
+        String digits = "123456789012345678901234567890";
+        assertEquals(new BigDecimal(digits), new CommandTokenizer(digits).positiveInteger());
+        assertEquals(BigDecimal.valueOf(6000), new CommandTokenizer("6000 ").positiveInteger());
+    }
+
+    @Test
+    public void verify_keywordAndMonthTokens() {
+        CommandTokenizer tokens = new CommandTokenizer("  BALANCE\tMARCH \r\n");
+        assertTrue(tokens.keyword("BALANCE"));
+        assertTrue(tokens.whitespace());
+        assertEquals(Month.MARCH, tokens.month());
+        assertTrue(tokens.atEnd());
+
+        assertFalse(new CommandTokenizer("BALANCEMARCH").keyword("BALANCE"));
+        assertNull(new CommandTokenizer("March").month());
+        assertNull(new CommandTokenizer("MARCHING").month());
+    }
+
+    @Test
+    public void verify_bindingOfFirstToken() {
+        assertEquals(CommandBinding.REBALANCE, CommandTokenizer.bindingOf(" REBALANCE "));
+        assertEquals(CommandBinding.SIP, CommandTokenizer.bindingOf("SIP 1 2 3"));
+        assertNull(CommandTokenizer.bindingOf("SIPS 1 2 3"));
+        assertNull(CommandTokenizer.bindingOf(""));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.geektrust.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Latency recorder test suit")
+public class LatencyRecorderTest {
+    @Test
+    public void verify_bucketsCoverEveryValue() {
+        assertEquals(0, LatencyRecorder.bucketOf(0));
+        assertEquals(31, LatencyRecorder.bucketOf(31));
+        assertEquals(LatencyRecorder.BUCKETS - 1, LatencyRecorder.bucketOf(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyRecorder.highestValueOf(LatencyRecorder.BUCKETS - 1));
+        for (int bucket = 0; bucket < LatencyRecorder.BUCKETS - 1; bucket++) {
+            long highest = LatencyRecorder.highestValueOf(bucket);
+            assertEquals(bucket, LatencyRecorder.bucketOf(highest));
+            assertEquals(bucket + 1, LatencyRecorder.bucketOf(highest + 1));
+        }
+    }
+
+    @Test
+    public void verify_percentilesWithinPrecision() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (long nanos = 1; nanos <= 1_000_000; nanos++)
+            recorder.record(nanos);
+        recorder.record(-5);
+
+        assertEquals(1_000_001, recorder.count());
+        assertEquals(1_000_000, recorder.max());
+        assertEquals(500_000d, recorder.mean(), 1d);
+        assertEquals(0, recorder.percentile(0));
+        assertEquals(1_000_000, recorder.percentile(100));
+        for (double percentile : new double[] { 10, 50, 90, 99 }) {
+            long exact = (long) (percentile * 10_000);
+            long reading = recorder.percentile(percentile);
+            assertTrue(reading >= exact && reading <= exact * 1.04, percentile + ": " + reading);
+        }
+        assertThrows(IllegalArgumentException.class, () -> recorder.percentile(-1));
+
+        recorder.reset();
+        assertEquals(0, recorder.percentile(50));
+        assertEquals(0, recorder.count());
+    }
+}
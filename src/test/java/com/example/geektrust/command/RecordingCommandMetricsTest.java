@@ -0,0 +1,92 @@
+package com.example.geektrust.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+@DisplayName("Command metrics test suit")
+public class RecordingCommandMetricsTest {
+    private RecordingCommandMetrics metrics;
+    private PortfolioManager portfolio;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new RecordingCommandMetrics();
+        portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+    }
+
+    @Test
+    public void verify_countExecutedAndRejected() {
+        for (String line : Arrays.asList("ALLOCATE 6000 3000 1000", "SIP 2000 1000 500", "SIP 2000 1000",
+                "CHANGE 4.00% 10.00% 2.00% JANUARY", "BALANCE JANUARY", "BALANCE JANUARY", "INVALID LINE", ""))
+            CommandBinding.toExecutable(line, metrics).ifPresent(executable -> executable.execute(portfolio,
+                    Optional.empty()));
+
+        assertEquals(Long.valueOf(2), metrics.getExecutedCommands().get("BALANCE"));
+        assertEquals(Long.valueOf(1), metrics.getExecutedCommands().get("SIP"));
+        assertEquals(Long.valueOf(0), metrics.getExecutedCommands().get("REBALANCE"));
+        assertEquals(Long.valueOf(1), metrics.getRejectedLines().get("SIP"));
+        assertEquals(Long.valueOf(2), metrics.getRejectedLines().get(RecordingCommandMetrics.UNKNOWN));
+        assertTrue(metrics.getExecuteLatencyMax().get("CHANGE") > 0);
+        assertTrue(metrics.getParseLatencyP99().get("ALLOCATE") > 0);
+        assertTrue(metrics.getReport().contains("BALANCE   executed=2 rejected=0"));
+
+        metrics.reset();
+        assertEquals(Long.valueOf(0), metrics.getExecutedCommands().get("BALANCE"));
+        assertEquals(Long.valueOf(0), metrics.getExecuteLatencyP50().get("BALANCE"));
+    }
+
+    @Test
+    public void verify_noMetricsKeepsTheParsedCommand() {
+        ExecutablePortfolioCommand executable = CommandBinding.toExecutable("BALANCE MARCH", CommandMetrics.NONE)
+                .get();
+        assertTrue(executable instanceof BalanceCommand);
+        assertFalse(CommandBinding.toExecutable("BALANCE", CommandMetrics.NONE).isPresent());
+    }
+
+    @Test
+    public void verify_readingsThroughJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.register(server);
+        RecordingCommandMetrics replacement = new RecordingCommandMetrics();
+        replacement.register(server);
+        CommandBinding.toExecutable("REBALANCE", replacement).get().execute(portfolio, Optional.empty());
+
+        ObjectName name = new ObjectName(RecordingCommandMetrics.OBJECT_NAME);
+        TabularData executed = (TabularData) server.getAttribute(name, "ExecutedCommands");
+        CompositeData rebalance = executed.get(new Object[] { "REBALANCE" });
+        assertEquals(1L, rebalance.get("value"));
+        assertTrue(((String) server.getAttribute(name, "Report")).startsWith("ALLOCATE"));
+        server.unregisterMBean(name);
+    }
+
+    @Test
+    public void verify_periodicReport() throws InterruptedException {
+        StringBuffer reports = new StringBuffer();
+        metrics.startReporting(Duration.ofMillis(10), reports::append);
+        Thread.sleep(100);
+        metrics.stopReporting();
+
+        assertTrue(reports.toString().contains(RecordingCommandMetrics.UNKNOWN + "   rejected=0"));
+        int length = reports.length();
+        Thread.sleep(50);
+        assertEquals(length, reports.length());
+    }
+}
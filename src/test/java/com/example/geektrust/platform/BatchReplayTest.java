@@ -0,0 +1,116 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+public class BatchReplayTest {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    @TempDir
+    Path directory;
+
+    private Path inputs;
+    private BatchReplay batch;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        inputs = Files.createDirectory(directory.resolve("inputs"));
+        batch = BatchReplay.of(() -> new PortfolioManager(Arrays.asList(FundType.values())), 4);
+    }
+
+    @Test
+    public void verify_outputsCombinedInInputOrder() throws IOException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            write("customer-" + (char) ('a' + i),
+                    "ALLOCATE " + (1000 + i) + " 2000 3000",
+                    "CHANGE 10.00% 0.00% 0.00% JANUARY",
+                    "BALANCE JANUARY");
+            expected.add((1100 + i + i / 10) + " 2000 3000");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batch.replay(BatchReplay.inputsOf(inputs), new BufferedOutputReporter(out));
+        assertEquals(String.join(NEW_LINE, expected) + NEW_LINE, new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void verify_outputFilePerInputFromManifest() throws IOException {
+        write("first", "ALLOCATE 6000 3000 1000", "BALANCE JANUARY");
+        write("second", "REBALANCE");
+        Path manifest = Files.write(directory.resolve("manifest.txt"),
+                Arrays.asList("inputs/second", "", "inputs/first"));
+        Path outputs = directory.resolve("outputs");
+
+        List<Path> files = BatchReplay.inputsOf(manifest);
+        assertEquals(Arrays.asList(inputs.resolve("second"), inputs.resolve("first")), files);
+
+        batch.replay(files, outputs);
+        assertEquals(Arrays.asList("6000 3000 1000"), Files.readAllLines(outputs.resolve("first.out")));
+        assertEquals(Arrays.asList("CANNOT_REBALANCE"), Files.readAllLines(outputs.resolve("second.out")));
+    }
+
+    @Test
+    public void verify_failedInputDoesNotStopTheOthers() throws IOException {
+        write("first", "ALLOCATE 6000 3000 1000", "BALANCE JANUARY");
+        write("third", "REBALANCE");
+        List<Path> files = Arrays.asList(inputs.resolve("first"), inputs.resolve("missing"), inputs.resolve("third"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Map<Path, IOException> failures = batch.replay(files, new BufferedOutputReporter(out));
+        assertEquals(Collections.singleton(inputs.resolve("missing")), failures.keySet());
+        assertEquals("6000 3000 1000" + NEW_LINE + "CANNOT_REBALANCE" + NEW_LINE,
+                new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void verify_failedInputLeavesNoOutputFile() throws IOException {
+        write("first", "ALLOCATE 6000 3000 1000", "BALANCE JANUARY");
+        List<Path> files = Arrays.asList(inputs.resolve("missing"), inputs.resolve("first"));
+        Path outputs = directory.resolve("outputs");
+
+        Map<Path, IOException> failures = batch.replay(files, outputs);
+        assertEquals(Collections.singleton(inputs.resolve("missing")), failures.keySet());
+        assertEquals(Arrays.asList("6000 3000 1000"), Files.readAllLines(outputs.resolve("first.out")));
+        assertFalse(Files.exists(outputs.resolve("missing.out")));
+    }
+
+    @Test
+    public void verify_outputsBeyondTheWindowCombinedInOrder() throws IOException {
+        BatchReplay single = BatchReplay.of(() -> new PortfolioManager(Arrays.asList(FundType.values())), 1);
+        List<Path> files = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            write("customer-" + i, "ALLOCATE " + (1000 + i) + " 2000 3000", "BALANCE JANUARY");
+            files.add(inputs.resolve("customer-" + i));
+            expected.append(1000 + i).append(" 2000 3000").append(NEW_LINE);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(single.replay(files, new BufferedOutputReporter(out)).isEmpty());
+        assertEquals(expected.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private void write(String name, String... lines) throws IOException {
+        Files.write(inputs.resolve(name), Arrays.asList(lines));
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BufferedOutputReporterTest {
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private ByteArrayOutputStream out;
+
+    @BeforeEach
+    public void setUp() {
+        out = new ByteArrayOutputStream();
+    }
+
+    @Test
+    public void verify_valuesFormattedAsLine() {
+        BufferedOutputReporter reporter = new BufferedOutputReporter(out);
+        reporter.acceptValues(new long[] { 100, 20, 2000 });
+        reporter.acceptValues(new long[] { 0, -45, 9 });
+        reporter.acceptValues(new long[] { Long.MAX_VALUE, Long.MIN_VALUE });
+        reporter.accept("CANNOT_REBALANCE");
+        reporter.flush();
+
+        assertEquals("100 20 2000" + NEW_LINE + "0 -45 9" + NEW_LINE
+                + Long.MAX_VALUE + " " + Long.MIN_VALUE + NEW_LINE
+                + "CANNOT_REBALANCE" + NEW_LINE, output());
+    }
+
+    @Test
+    public void verify_outputWrittenOnlyWhenBufferFullOrFlushed() {
+        BufferedOutputReporter reporter = new BufferedOutputReporter(out, 32);
+        reporter.acceptValues(new long[] { 1, 2, 3 });
+        assertEquals("", output());
+
+        StringBuilder expected = new StringBuilder("1 2 3" + NEW_LINE);
+        for (int i = 0; i < 10; i++) {
+            reporter.acceptValues(new long[] { 1_000_000, 2_000_000, 3_000_000 });
+            expected.append("1000000 2000000 3000000").append(NEW_LINE);
+        }
+        reporter.accept("a line longer than the whole thirty two byte buffer");
+        expected.append("a line longer than the whole thirty two byte buffer").append(NEW_LINE);
+        reporter.flush();
+        assertEquals(expected.toString(), output());
+    }
+
+    private String output() {
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
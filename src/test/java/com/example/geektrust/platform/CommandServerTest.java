@@ -0,0 +1,140 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+@Timeout(30)
+public class CommandServerTest {
+    private MultiTenantPlatform platform;
+    private CommandServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        platform = MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                4,
+                Optional::empty,
+                Optional.empty());
+        server = CommandServer.open(platform, new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.close();
+        platform.shutDown();
+    }
+
+    @Test
+    public void verify_pipelinedOutputsInRequestOrder() throws IOException {
+        try (Socket socket = connect()) {
+            // tenants on different shards, written at once before reading anything
+            send(socket, "alice ALLOCATE 6000 3000 1000\n"
+                    + "bob ALLOCATE 8000 6000 3500\n"
+                    + "alice SIP 2000 1000 500\n"
+                    + "bob SIP 3000 2000 1000\n"
+                    + "bob CHANGE 11.00% 9.00% 4.00% JANUARY\n"
+                    + "alice CHANGE 4.00% 10.00% 2.00% JANUARY\n"
+                    + "alice CHANGE -10.00% 40.00% 0.00% FEBRUARY\n"
+                    + "alice BALANCE FEBRUARY\n"
+                    + "bob BALANCE JANUARY\n"
+                    + "alice REBALANCE\n"
+                    + "alice BALANCE JANUARY\n");
+            socket.shutdownOutput();
+
+            assertEquals(Arrays.asList("alice 7416 6020 1520", "bob 8880 6540 3640", "alice CANNOT_REBALANCE",
+                    "alice 6240 3300 1020"), readAll(socket));
+        }
+    }
+
+    @Test
+    public void verify_linesSplitAcrossWrites() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "carol ALLOC");
+            send(socket, "ATE 100 200 300\r\ncarol BAL");
+            send(socket, "ANCE JANUARY\n");
+            BufferedReader reader = reader(socket);
+            assertEquals("carol 100 200 300", reader.readLine());
+
+            // invalid lines get no output and do not hold back the next ones
+            send(socket, "\n   \ncarol\ncarol UNKNOWN 1 2\ncarol BALANCE JANUARY\n");
+            assertEquals("carol 100 200 300", reader.readLine());
+        }
+    }
+
+    @Test
+    public void verify_manyConnections() throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                Socket socket = connect();
+                sockets.add(socket);
+                send(socket, "t" + i + " ALLOCATE " + (i + 1) + "00 200 300\n"
+                        + "t" + i + " CHANGE 10.00% 0.00% 0.00% JANUARY\n"
+                        + "t" + i + " BALANCE JANUARY\n");
+            }
+            for (int i = 0; i < sockets.size(); i++) {
+                Socket socket = sockets.get(i);
+                socket.shutdownOutput();
+                assertEquals(Arrays.asList("t" + i + " " + (i + 1) * 110 + " 200 300"), readAll(socket));
+            }
+        } finally {
+            for (Socket socket : sockets)
+                socket.close();
+        }
+    }
+
+    @Test
+    public void verify_closeLongLines() throws IOException {
+        try (Socket socket = connect()) {
+            char[] line = new char[CommandServer.MAX_LINE_LENGTH + 1];
+            Arrays.fill(line, 'x');
+            send(socket, new String(line));
+            assertNull(reader(socket).readLine());
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket("127.0.0.1", server.getLocalAddress().getPort());
+    }
+
+    private static void send(Socket socket, String lines) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(lines.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return every line until the server closes the connection.
+     */
+    private static List<String> readAll(Socket socket) throws IOException {
+        BufferedReader reader = reader(socket);
+        List<String> lines = new ArrayList<>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine())
+            lines.add(line);
+        return lines;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+@Timeout(30)
+public class HttpQueryServerTest {
+    private MultiTenantPlatform platform;
+    private HttpQueryServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException, InterruptedException, ExecutionException {
+        platform = MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                2,
+                Optional::empty,
+                Optional.empty());
+        server = HttpQueryServer.open(platform, new InetSocketAddress("127.0.0.1", 0), 4);
+
+        for (String line : Arrays.asList(
+                "alice ALLOCATE 6000 3000 1000",
+                "alice SIP 2000 1000 500",
+                "alice CHANGE 4.00% 10.00% 2.00% JANUARY",
+                "alice CHANGE -10.00% 40.00% 0.00% FEBRUARY",
+                "alice CHANGE 12.50% 12.50% 12.50% MARCH",
+                "alice CHANGE 8.00% -3.00% 7.00% APRIL",
+                "alice CHANGE 13.00% 21.00% 10.50% MAY",
+                "alice CHANGE 10.00% 8.00% -5.00% JUNE"))
+            platform.execute(line);
+        // queued after the commands on the same shard
+        platform.query("alice", portfolio -> true).get();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+        platform.shutDown();
+    }
+
+    @Test
+    public void verify_balances() throws IOException {
+        assertEquals("{\"id\":\"alice\",\"month\":\"JANUARY\",\"balances\":{\"EQUITY\":6240,\"DEBT\":3300,\"GOLD\":1020}}",
+                get("/portfolios/alice/balance?month=january", 200));
+        // exact amounts, pending for rebalance so no July SIP yet
+        assertEquals("{\"id\":\"alice\",\"balances\":{\"EQUITY\":21591.34692,\"DEBT\":13665.23541,"
+                + "\"GOLD\":4114.037106}}", get("/portfolios/alice/balance", 200));
+        assertEquals("{\"error\":\"no balance for the month\"}",
+                get("/portfolios/alice/balance?month=DECEMBER", 404));
+        assertEquals("{\"error\":\"no portfolio bob\"}", get("/portfolios/bob/balance", 404));
+        assertEquals("{\"error\":\"no month SMARCH\"}", get("/portfolios/alice/balance?month=SMARCH", 400));
+    }
+
+    @Test
+    public void verify_rebalanceStatus() throws IOException {
+        assertEquals("{\"id\":\"alice\",\"pending\":true,\"lastRebalance\":null}",
+                get("/portfolios/alice/rebalance", 200));
+
+        platform.execute("alice REBALANCE");
+        assertEquals("{\"id\":\"alice\",\"pending\":false,\"lastRebalance\":{\"month\":\""
+                + Year.now() + "-06\",\"balances\":{\"EQUITY\":23622,\"DEBT\":11811,\"GOLD\":3937}}}",
+                get("/portfolios/alice/rebalance", 200).replaceAll("\\.\\d+", ""));
+    }
+
+    @Test
+    public void verify_historyPages() throws IOException {
+        String year = Year.now().toString();
+        assertEquals("{\"id\":\"alice\",\"funds\":{\"GOLD\":{\"total\":12,\"offset\":1,\"transactions\":["
+                + "{\"month\":\"" + year + "-01\",\"event\":\"MONTHLY_CHANGE\",\"amount\":20,\"balance\":1020},"
+                + "{\"month\":\"" + year + "-02\",\"event\":\"MONTHLY_SIP\",\"amount\":500,\"balance\":1520}]}}}",
+                get("/portfolios/alice/history?fund=gold&offset=1&limit=2", 200));
+        assertEquals("{\"id\":\"alice\",\"funds\":{\"EQUITY\":{\"total\":12,\"offset\":20,\"transactions\":[]},"
+                + "\"DEBT\":{\"total\":12,\"offset\":20,\"transactions\":[]},"
+                + "\"GOLD\":{\"total\":12,\"offset\":20,\"transactions\":[]}}}",
+                get("/portfolios/alice/history?offset=20", 200));
+        assertEquals("{\"error\":\"no fund type SILVER\"}", get("/portfolios/alice/history?fund=silver", 400));
+        assertEquals("{\"error\":\"not a number: limit=ten\"}", get("/portfolios/alice/history?limit=ten", 400));
+    }
+
+    @Test
+    public void verify_unknownResources() throws IOException {
+        assertEquals("{\"error\":\"no such resource\"}", get("/portfolios/alice/funds", 404));
+        assertEquals("{\"error\":\"no such resource\"}", get("/portfolios/alice", 404));
+        assertEquals("{\"error\":\"no such resource\"}", get("/portfolios/alice/balance/more", 404));
+    }
+
+    private String get(String path, int expectedStatus) throws IOException {
+        URL url = new URL("http", "127.0.0.1", server.getAddress().getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            assertEquals(expectedStatus, connection.getResponseCode());
+            assertEquals("application/json", connection.getHeaderField("Content-Type"));
+            try (InputStream body = expectedStatus < 400 ? connection.getInputStream()
+                    : connection.getErrorStream()) {
+                return new String(body.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -20,4 +20,15 @@ public class InputStreamCommandProviderTest {
         // next attempt should result in an empty optional as it has only two lines.
         assertFalse(provider.nextCommand().isPresent());
     }
+
+    @Test
+    public void test_linesEndedByCarriageReturnAlone() {
+        InputStream is = new ByteArrayInputStream("ALLOCATE 10 10 10\rSIP 1 1 1\r\n\rBALANCE JAN".getBytes());
+        InputStreamCommandProvider provider = new InputStreamCommandProvider(is);
+        assertEquals("ALLOCATE 10 10 10", provider.nextCommandView().get().toString());
+        assertEquals("SIP 1 1 1", provider.nextCommandView().get().toString());
+        assertEquals("", provider.nextCommandView().get().toString());
+        assertEquals("BALANCE JAN", provider.nextCommandView().get().toString());
+        assertFalse(provider.nextCommandView().isPresent());
+    }
 }
@@ -0,0 +1,90 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+import com.example.geektrust.portfolio.TransactionJournal;
+
+public class JournaledCommandProviderTest {
+    private static final List<String> INPUT = Arrays.asList(
+            "ALLOCATE 6000 3000 1000",
+            "SIP 2000 1000 500",
+            "CHANGE 4.00% 10.00% 2.00% JANUARY",
+            "CHANGE -10.00% 40.00% 0.00% FEBRUARY",
+            "CHANGE 12.50% 12.50% 12.50% MARCH",
+            "CHANGE 8.00% -3.00% 7.00% APRIL",
+            "CHANGE 13.00% 21.00% 10.50% MAY",
+            "CHANGE 10.00% 8.00% -5.00% JUNE",
+            "BALANCE MARCH",
+            "REBALANCE");
+
+    @TempDir
+    Path directory;
+
+    private Path journal;
+
+    @BeforeEach
+    public void setUp() {
+        journal = directory.resolve("portfolio.journal");
+    }
+
+    @Test
+    public void verify_sameInputTwiceAppliedOnce() throws IOException {
+        assertEquals(Arrays.asList("10593 7897 2272", "23622 11811 3937"), run(INPUT));
+        // every line is already applied
+        assertEquals(Arrays.asList(), run(INPUT));
+
+        // the portfolio is not changed by the second run
+        assertEquals(Arrays.asList("10593 7897 2272", "23622 11811 3937"),
+                run(append(INPUT, "BALANCE MARCH", "BALANCE JUNE")));
+    }
+
+    @Test
+    public void verify_resumeAfterTheLastAppliedLine() throws IOException {
+        // crashed after the changes up to April
+        assertEquals(Arrays.asList(), run(INPUT.subList(0, 6)));
+
+        assertEquals(Arrays.asList("10593 7897 2272", "23622 11811 3937"), run(INPUT));
+    }
+
+    @Test
+    public void verify_recoveredPositionAfterReadOnlyLines() throws IOException {
+        run(INPUT.subList(0, 9));
+        // the trailing balance is not an update, so it is provided again
+        assertEquals(Arrays.asList("10593 7897 2272", "23622 11811 3937"), run(INPUT));
+    }
+
+    private List<String> run(List<String> lines) throws IOException {
+        List<String> outputs = new ArrayList<>();
+        PortfolioManager portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        byte[] input = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        try (TransactionJournal transactions = TransactionJournal.open(journal, portfolio, 1);
+                InputCommandProvider provider = JournaledCommandProvider.of(
+                        new InputStreamCommandProvider(new ByteArrayInputStream(input)), transactions)) {
+            MyMoneyPlatform platform = MyMoneyPlatform.of(portfolio, provider, Optional.of(outputs::add));
+            platform.start();
+            platform.shutDown();
+        }
+        return outputs;
+    }
+
+    private static List<String> append(List<String> lines, String... more) {
+        List<String> appended = new ArrayList<>(lines);
+        appended.addAll(Arrays.asList(more));
+        return appended;
+    }
+}
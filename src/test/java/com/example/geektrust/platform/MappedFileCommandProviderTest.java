@@ -0,0 +1,117 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.example.geektrust.command.CommandBinding;
+
+public class MappedFileCommandProviderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void test_getNextCommand() throws IOException {
+        Path file = write("ALLOCATE 10 10 10\r\nBALANCE JAN"); // 2 lines
+        try (MappedFileCommandProvider provider = new MappedFileCommandProvider(file)) {
+            assertEquals("ALLOCATE 10 10 10", provider.nextCommand().get());
+            assertEquals("BALANCE JAN", provider.nextCommand().get());
+
+            // next attempt should result in an empty optional as it has only two lines.
+            assertFalse(provider.nextCommand().isPresent());
+        }
+    }
+
+    @Test
+    public void test_emptyFile() throws IOException {
+        try (MappedFileCommandProvider provider = new MappedFileCommandProvider(write(""))) {
+            assertFalse(provider.nextCommand().isPresent());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 3, 7, 16, 1024 })
+    public void test_linesAcrossWindows(int windowSize) throws IOException {
+        List<String> lines = Arrays.asList("ALLOCATE 6000 3000 1000", "", "SIP 2000 1000 500",
+                "CHANGE 4.00% 10.00% 2.00% JANUARY", "BALANCE JANUARY");
+        Path file = write(String.join("\n", lines) + "\n");
+
+        List<String> read = new ArrayList<>();
+        try (MappedFileCommandProvider provider = new MappedFileCommandProvider(file, windowSize)) {
+            Optional<CharSequence> next = provider.nextCommandView();
+            while (next.isPresent()) {
+                read.add(next.get().toString());
+                next = provider.nextCommandView();
+            }
+        }
+        assertEquals(lines, read);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 5, 18, 19, 1024 })
+    public void test_crlfLinesAcrossWindows(int windowSize) throws IOException {
+        List<String> lines = Arrays.asList("ALLOCATE 6000 3000 1000", "", "SIP 2000 1000 500",
+                "CHANGE 4.00% 10.00% 2.00% JANUARY", "BALANCE JANUARY", "REBALANCE");
+        // the last line ends with a carriage return but no line feed
+        Path file = write(String.join("\r\n", lines) + "\r");
+
+        List<String> read = new ArrayList<>();
+        try (MappedFileCommandProvider provider = new MappedFileCommandProvider(file, windowSize)) {
+            Optional<CharSequence> next = provider.nextCommandView();
+            while (next.isPresent()) {
+                read.add(next.get().toString());
+                next = provider.nextCommandView();
+            }
+        }
+        assertEquals(lines, read);
+        for (String line : read) {
+            if (!line.isEmpty())
+                assertTrue(CommandBinding.toExecutable(line).isPresent(), line);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 2, 3, 5, 1024 })
+    public void test_linesEndedByCarriageReturnAlone(int windowSize) throws IOException {
+        // the line breaks Scanner reads, a carriage return may end the window
+        Path file = write("ALLOCATE 10 10 10\rSIP 1 1 1\r\n\rBALANCE JAN\nREBALANCE\r");
+
+        List<String> read = new ArrayList<>();
+        try (MappedFileCommandProvider provider = new MappedFileCommandProvider(file, windowSize)) {
+            Optional<String> next = provider.nextCommand();
+            while (next.isPresent()) {
+                read.add(next.get());
+                next = provider.nextCommand();
+            }
+        }
+        assertEquals(Arrays.asList("ALLOCATE 10 10 10", "SIP 1 1 1", "", "BALANCE JAN", "REBALANCE"), read);
+    }
+
+    @Test
+    public void test_subSequenceOfLine() throws IOException {
+        try (MappedFileCommandProvider provider = new MappedFileCommandProvider(write("alice BALANCE MARCH\n"))) {
+            CharSequence line = provider.nextCommandView().get();
+            assertEquals(19, line.length());
+            assertEquals('B', line.charAt(6));
+            assertEquals("BALANCE", line.subSequence(6, 13).toString());
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.write(directory.resolve("input.txt"), content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
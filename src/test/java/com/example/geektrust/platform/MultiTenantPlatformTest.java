@@ -0,0 +1,243 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+
+import com.example.geektrust.command.CommandBinding;
+import com.example.geektrust.command.CommandMetrics;
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.HistoryRetention;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+public class MultiTenantPlatformTest {
+    private InputCommandProvider commandProvider;
+    private ConcurrentLinkedQueue<String> outputs;
+    private MultiTenantPlatform platform;
+
+    @BeforeEach
+    public void setUp() {
+        // stubs nextCommand, the platform reads it through the default nextCommandView
+        commandProvider = Mockito.mock(InputCommandProvider.class, Mockito.CALLS_REAL_METHODS);
+        outputs = new ConcurrentLinkedQueue<>();
+        platform = MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())),
+                4,
+                commandProvider,
+                Optional.of(outputs::add));
+    }
+
+    @Test
+    public void verify_commandsRoutedToTheirOwnPortfolio() {
+        // @formatter:off
+        Mockito.when(commandProvider.nextCommand())
+                .thenReturn(Optional.of("alice ALLOCATE 6000 3000 1000"))
+                .thenReturn(Optional.of("bob ALLOCATE 8000 6000 3500"))
+                .thenReturn(Optional.of("alice SIP 2000 1000 500"))
+                .thenReturn(Optional.of("bob SIP 3000 2000 1000"))
+                .thenReturn(Optional.of("bob CHANGE 11.00% 9.00% 4.00% JANUARY"))
+                .thenReturn(Optional.of("alice CHANGE 4.00% 10.00% 2.00% JANUARY"))
+                .thenReturn(Optional.of("alice CHANGE -10.00% 40.00% 0.00% FEBRUARY"))
+                .thenReturn(Optional.of("alice BALANCE FEBRUARY"))
+                .thenReturn(Optional.of("bob BALANCE JANUARY"))
+                .thenReturn(Optional.empty());
+        // @formatter:on
+
+        platform.start();
+        platform.shutDown();
+
+        assertEquals(2, outputs.size());
+        assertTrue(outputs.contains("alice 7416 6020 1520"));
+        assertTrue(outputs.contains("bob 8880 6540 3640"));
+    }
+
+    @Test
+    public void verify_outputsOfATenantKeepInputOrder() {
+        platform.execute("carol BALANCE JANUARY"); // no output before allocation
+        platform.execute("carol ALLOCATE 100 200 300");
+        platform.execute("carol BALANCE JANUARY");
+        platform.execute("carol REBALANCE");
+        platform.shutDown();
+
+        List<String> carol = outputs.stream().filter(output -> output.startsWith("carol")).collect(Collectors.toList());
+        assertEquals(Arrays.asList("carol 100 200 300", "carol CANNOT_REBALANCE"), carol);
+    }
+
+    @Test
+    public void verify_skipLinesWithoutCommand() {
+        platform.execute("");
+        platform.execute("   ");
+        platform.execute("dave");
+        platform.execute("dave INVALID COMMAND");
+        platform.shutDown();
+
+        assertTrue(outputs.isEmpty());
+    }
+
+    @Test
+    public void verify_tenantsRestoredFromSnapshotOfMoreShards(@TempDir Path directory) throws IOException {
+        platform.execute("alice ALLOCATE 6000 3000 1000");
+        platform.execute("alice SIP 2000 1000 500");
+        platform.execute("alice CHANGE 4.00% 10.00% 2.00% JANUARY");
+        platform.execute("bob ALLOCATE 8000 6000 3500");
+        platform.snapshot(directory);
+        platform.shutDown();
+        assertEquals(4, snapshotCount(directory));
+
+        MultiTenantPlatform restored = MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())), 2, commandProvider,
+                Optional.of(outputs::add));
+        assertEquals(2, restored.restore(directory));
+        restored.execute("alice CHANGE -10.00% 40.00% 0.00% FEBRUARY");
+        restored.execute("alice BALANCE FEBRUARY");
+        restored.execute("bob BALANCE JANUARY");
+        restored.snapshot(directory);
+        restored.shutDown();
+
+        assertTrue(outputs.contains("alice 7416 6020 1520"));
+        assertTrue(outputs.contains("bob 8000 6000 3500"));
+        // snapshots of the shards no longer in use are removed
+        assertEquals(2, snapshotCount(directory));
+    }
+
+    @Test
+    @Timeout(30)
+    public void verify_failingCommandRejectedAndShardKeepsRunning() {
+        platform.shutDown();
+        LongAdder rejected = new LongAdder();
+        // a single shard for every tenant, failing on a large gold allocation
+        platform = MultiTenantPlatform.of(() -> new PortfolioManager(Arrays.asList(FundType.values())) {
+            @Override
+            public void allocate(Map<FundType, BigDecimal> allocations) {
+                if (allocations.get(FundType.GOLD).compareTo(BigDecimal.valueOf(1_000_000)) > 0)
+                    throw new ArithmeticException("too large");
+                super.allocate(allocations);
+            }
+        }, 1, commandProvider, Optional.of(outputs::add));
+        platform.setCommandMetrics(new CommandMetrics() {
+            @Override
+            public void onRejected(CommandBinding binding) {
+                if (binding == CommandBinding.ALLOCATE)
+                    rejected.increment();
+            }
+        });
+        List<List<String>> replies = new ArrayList<>();
+
+        platform.execute("alice ALLOCATE 6000 3000 2000000");
+        platform.execute("carol ALLOCATE 6000 3000 2000000", replies::add);
+        platform.execute("bob ALLOCATE 100 200 300");
+        platform.execute("bob BALANCE JANUARY");
+        platform.execute("carol BALANCE JANUARY", replies::add);
+        platform.shutDown();
+
+        assertEquals(Arrays.asList("bob 100 200 300"), new ArrayList<>(outputs));
+        assertEquals(Arrays.asList(Collections.emptyList(), Collections.emptyList()), replies);
+        assertEquals(2, rejected.sum());
+    }
+
+    @Test
+    public void verify_interruptedRoutingRejected() {
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(RejectedExecutionException.class, () -> platform.execute("alice ALLOCATE 100 200 300"));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        platform.execute("alice BALANCE JANUARY");
+        platform.shutDown();
+        assertTrue(outputs.isEmpty());
+    }
+
+    @Test
+    public void verify_compactedHistoryKeepsBalances() throws Exception {
+        allocateTwoYears("alice");
+        for (Month month : Month.values())
+            platform.execute("alice BALANCE " + month);
+        assertTrue(platform.compactHistory(HistoryRetention.ofMonths(3)).get() > 0);
+        assertEquals(0L, platform.compactHistory(HistoryRetention.ofMonths(3)).get());
+        for (Month month : Month.values())
+            platform.execute("alice BALANCE " + month);
+        platform.execute("alice CHANGE 1.00% 1.00% 1.00% JANUARY");
+        platform.execute("alice BALANCE JANUARY");
+        platform.shutDown();
+
+        // after the outputs of the four rebalances
+        List<String> alice = new ArrayList<>(outputs);
+        assertEquals(4 + 12 + 12 + 1, alice.size());
+        assertEquals(alice.subList(4, 16), alice.subList(16, 28));
+    }
+
+    @Test
+    public void verify_compactionInTheBackground() throws Exception {
+        allocateTwoYears("bob");
+        int size = platform.query("bob", MultiTenantPlatformTest::historySize).get().get();
+        platform.startCompaction(HistoryRetention.ofMonths(1), Duration.ofMillis(10));
+        assertThrows(IllegalStateException.class,
+                () -> platform.startCompaction(HistoryRetention.ofMonths(1), Duration.ofMillis(10)));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (platform.query("bob", MultiTenantPlatformTest::historySize).get().get() == size)
+            assertTrue(System.nanoTime() < deadline, "not compacted in time");
+        platform.shutDown();
+    }
+
+    private void allocateTwoYears(String tenant) {
+        platform.execute(tenant + " ALLOCATE 6000 3000 1000");
+        platform.execute(tenant + " SIP 2000 1000 500");
+        for (int year = 0; year < 2; year++) {
+            for (Month month : Month.values()) {
+                platform.execute(tenant + " CHANGE 4.00% -2.00% 1.50% " + month);
+                if (month == Month.JUNE || month == Month.DECEMBER)
+                    platform.execute(tenant + " REBALANCE");
+            }
+        }
+    }
+
+    private static int historySize(PortfolioManager portfolio) {
+        return portfolio.getFunds().values().stream()
+                .flatMap(funds -> funds.stream())
+                .flatMap(fund -> fund.transactionHistory.values().stream())
+                .mapToInt(List::size)
+                .sum();
+    }
+
+    @Test
+    public void verify_atLeastOneShardRequired() {
+        platform.shutDown();
+        assertThrows(IllegalArgumentException.class, () -> MultiTenantPlatform.of(
+                () -> new PortfolioManager(Arrays.asList(FundType.values())), 0, commandProvider,
+                Optional.empty()));
+    }
+
+    private static long snapshotCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
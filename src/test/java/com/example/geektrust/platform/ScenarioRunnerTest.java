@@ -0,0 +1,76 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.geektrust.command.CommandBinding;
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+@DisplayName("Scenario runner test suit")
+public class ScenarioRunnerTest {
+    private PortfolioManager portfolio;
+
+    @BeforeEach
+    public void setUp() {
+        portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        for (String command : Arrays.asList("ALLOCATE 6000 3000 1000", "SIP 2000 1000 500",
+                "CHANGE 4.00% 10.00% 2.00% JANUARY", "CHANGE -10.00% 40.00% 0.00% FEBRUARY"))
+            CommandBinding.toExecutable(command).get().execute(portfolio, Optional.empty());
+    }
+
+    @Test
+    public void verify_scenariosFromTheSamePortfolio() {
+        List<List<String>> scenarios = Arrays.asList(
+                Arrays.asList("CHANGE 12.50% 12.50% 12.50% MARCH", "CHANGE 8.00% -3.00% 7.00% APRIL",
+                        "CHANGE 13.00% 21.00% 10.50% MAY", "CHANGE 10.00% 8.00% -5.00% JUNE", "BALANCE MARCH",
+                        "REBALANCE"),
+                Arrays.asList("CHANGE 0.00% 0.00% 0.00% MARCH", "BALANCE MARCH", "REBALANCE"),
+                Arrays.asList("BALANCE FEBRUARY"),
+                Collections.emptyList());
+
+        List<List<String>> outputs = ScenarioRunner.of(2).run(portfolio, scenarios);
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("10593 7897 2272", "23622 11811 3937"),
+                Arrays.asList("9416 7020 2020", "CANNOT_REBALANCE"),
+                Arrays.asList("7416 6020 1520"),
+                Collections.emptyList()), outputs);
+        // the starting portfolio is left as it was, with only the March SIP
+        assertEquals(Arrays.asList("7416 6020 1520", "9416 7020 2020", "CANNOT_REBALANCE"),
+                ScenarioRunner.of(1).run(portfolio,
+                        Collections.singletonList(Arrays.asList("BALANCE FEBRUARY", "BALANCE MARCH", "BALANCE APRIL",
+                                "REBALANCE"))).get(0));
+    }
+
+    @Test
+    public void verify_thousandsOfScenariosInOrder() {
+        List<String> results = new ArrayList<>();
+        long count = ScenarioRunner.of(4).run(portfolio,
+                IntStream.range(0, 5000)
+                        .mapToObj(i -> Arrays.asList("CHANGE " + (i % 100) + ".00% 0.00% 0.00% MARCH", "BALANCE MARCH"))
+                        .iterator(),
+                outputs -> results.add(outputs.get(0)));
+
+        assertEquals(5000, count);
+        assertEquals("9416 7020 2020", results.get(0));
+        assertEquals("14124 7020 2020", results.get(50));
+        assertEquals(results.subList(0, 100), results.subList(4900, 5000));
+    }
+
+    @Test
+    public void verify_rejectNoWorker() {
+        assertThrows(IllegalArgumentException.class, () -> ScenarioRunner.of(0));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.geektrust.platform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("SPSC ring buffer test suit")
+public class SpscRingBufferTest {
+    @Test
+    public void verify_capacityRoundedToPowerOfTwo() {
+        assertEquals(1, new SpscRingBuffer<>(1).capacity());
+        assertEquals(8, new SpscRingBuffer<>(5).capacity());
+        assertEquals(8, new SpscRingBuffer<>(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new SpscRingBuffer<>(0));
+    }
+
+    @Test
+    public void verify_boundedFirstInFirstOut() {
+        SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++)
+            assertTrue(queue.offer(i));
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4)); // wraps around
+        for (int i = 1; i <= 4; i++)
+            assertEquals(i, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+        assertEquals(5, queue.polled());
+    }
+
+    @Test
+    public void verify_stopReleasesWaitingSides() {
+        SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(1);
+        assertNull(queue.take(() -> true));
+        queue.offer(1);
+        assertFalse(queue.put(2, () -> true));
+        assertEquals(1, queue.take(() -> true)); // queued before stopping
+    }
+
+    @Test
+    public void verify_orderAcrossThreads() throws InterruptedException {
+        int count = 1_000_000;
+        SpscRingBuffer<Integer> queue = new SpscRingBuffer<>(64);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++)
+                queue.put(i, () -> false);
+        });
+        producer.start();
+
+        for (int i = 0; i < count; i++)
+            assertEquals(i, queue.take(() -> false));
+        producer.join();
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.geektrust.platform;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.example.geektrust.command.CommandBinding;
+import com.example.geektrust.portfolio.FundType;
+import com.example.geektrust.portfolio.PortfolioManager;
+
+public class WorkloadGeneratorTest {
+    @ParameterizedTest
+    @ValueSource(ints = { WorkloadGenerator.SINGLE_PORTFOLIO, 1, 50 })
+    public void verify_sameSeedSameLines(int tenants) {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        WorkloadGenerator.of(7L, tenants, 0.1).write(5_000, first::add);
+        WorkloadGenerator.of(7L, tenants, 0.1).write(5_000, second::add);
+        assertEquals(5_000, first.size());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void verify_validLinesParse() {
+        WorkloadGenerator generator = WorkloadGenerator.of(42L, WorkloadGenerator.SINGLE_PORTFOLIO, 0);
+        assertEquals("ALLOCATE", generator.nextLine().toString().split(" ")[0]);
+        assertEquals("SIP", generator.nextLine().toString().split(" ")[0]);
+        for (int i = 0; i < 10_000; i++) {
+            String line = generator.nextLine().toString();
+            assertTrue(CommandBinding.toExecutable(line).isPresent(), line);
+        }
+    }
+
+    @Test
+    public void verify_invalidFraction() {
+        WorkloadGenerator generator = WorkloadGenerator.of(42L, WorkloadGenerator.SINGLE_PORTFOLIO, 0.25);
+        int invalid = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (!CommandBinding.toExecutable(generator.nextLine()).isPresent())
+                invalid++;
+        }
+        assertThat(invalid, both(greaterThan(2_250)).and(lessThan(2_750)));
+    }
+
+    @Test
+    public void verify_tenantPrefix() {
+        WorkloadGenerator generator = WorkloadGenerator.of(42L, 3, 0);
+        for (int i = 0; i < 100; i++)
+            assertThat(generator.nextLine().toString(), startsWith("tenant-"));
+    }
+
+    @Test
+    public void verify_longStreamStaysInRange() {
+        // over a century of months on a single portfolio
+        List<String> output = new ArrayList<>();
+        MyMoneyPlatform platform = MyMoneyPlatform.of(new PortfolioManager(Arrays.asList(FundType.values())),
+                WorkloadGenerator.of(3L, WorkloadGenerator.SINGLE_PORTFOLIO, 0.05).asCommandProvider(2_000),
+                Optional.of(output::add));
+        platform.start();
+
+        assertFalse(output.isEmpty());
+        assertTrue(output.stream().anyMatch(line -> !line.equals("CANNOT_REBALANCE")));
+    }
+
+    @Test
+    public void verify_invalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> WorkloadGenerator.of(1L, -1, 0));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadGenerator.of(1L, 1, 1.5));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Balance histogram test suit")
+public class BalanceHistogramTest {
+    @Test
+    public void verify_percentilesWithinBucketPrecision() {
+        BalanceHistogram histogram = new BalanceHistogram(2);
+        for (int value = 1; value <= 100_000; value++)
+            histogram.record(1, value);
+
+        assertEquals(100_000, histogram.count(1));
+        assertEquals(0, histogram.count(0));
+        assertTrue(Double.isNaN(histogram.percentile(0, 50)));
+        for (double percentile : new double[] { 1, 25, 50, 90, 99.9, 100 }) {
+            double exact = percentile * 1000;
+            assertEquals(exact, histogram.percentile(1, percentile), exact * 0.004);
+        }
+    }
+
+    @Test
+    public void verify_outOfRangeValuesClamped() {
+        BalanceHistogram histogram = new BalanceHistogram(1);
+        histogram.record(0, 0d);
+        histogram.record(0, 0.5);
+        histogram.record(0, 1e15);
+
+        assertEquals(1d, histogram.percentile(0, 0), 0.004);
+        assertEquals(Math.pow(2, 37), histogram.percentile(0, 100), Math.pow(2, 37) * 0.008);
+        assertThrows(IllegalArgumentException.class, () -> histogram.percentile(0, 101));
+    }
+
+    @Test
+    public void verify_addHistograms() {
+        BalanceHistogram first = new BalanceHistogram(1);
+        BalanceHistogram second = new BalanceHistogram(1);
+        for (int value = 1; value <= 100; value++)
+            (value % 2 == 0 ? first : second).record(0, value);
+        first.add(second);
+
+        assertEquals(100, first.count(0));
+        assertEquals(50, first.percentile(0, 50), 50 * 0.004);
+    }
+}
@@ -2,12 +2,14 @@ package com.example.geektrust.portfolio;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
 import java.time.Month;
 import java.time.YearMonth;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -47,8 +49,8 @@ class FundTest {
     class FundAllocationTest {
         @Test
         public void verify_afterInitialisationState() {
-            assertEquals(allocationAmount, initialisedFund.getInitial());
-            assertEquals(allocationAmount, initialisedFund.getCurrent());
+            assertTrue(allocationAmount.compareTo(initialisedFund.getInitial()) == 0);
+            assertTrue(allocationAmount.compareTo(initialisedFund.getCurrent()) == 0);
             assertTransactionRecord(initialisedFund.lastTransaction().get(), Jan, TransactionEvent.ALLOCATE,
                     allocationAmount);
         }
@@ -57,13 +59,37 @@ class FundTest {
         public void verify_skipReinitialise() {
             BigDecimal reallocationAmount = BigDecimal.valueOf(300.00);
             initialisedFund.initialise(reallocationAmount, Jan); // reinitialise effort
-            assertEquals(allocationAmount, initialisedFund.getInitial());
-            assertEquals(allocationAmount, initialisedFund.getCurrent());
+            assertTrue(allocationAmount.compareTo(initialisedFund.getInitial()) == 0);
+            assertTrue(allocationAmount.compareTo(initialisedFund.getCurrent()) == 0);
             assertTransactionRecord(initialisedFund.lastTransaction().get(), Jan, TransactionEvent.ALLOCATE,
                     allocationAmount);
         }
     }
 
+    @DisplayName("Running totals tests")
+    @Nested
+    class TotalsTest {
+        @Test
+        public void verify_totalsFollowTransactions() {
+            PortfolioTotals totals = new PortfolioTotals();
+            initialisedFund.setTotals(totals);
+            fund.setTotals(totals);
+            assertEquals(Money.of(allocationAmount), totals.getInitial());
+            assertEquals(Money.of(allocationAmount), totals.getCurrent());
+
+            fund.initialise(BigDecimal.valueOf(50), Jan);
+            initialisedFund.doTransaction(Feb, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(-20));
+            initialisedFund.doTransaction(Jan, TransactionEvent.MONTHLY_SIP, BigDecimal.valueOf(10)); // earlier month
+            assertEquals(Money.ofWhole(150), totals.getInitial());
+            assertEquals(Money.ofWhole(140), totals.getCurrent());
+
+            // moved to other totals
+            fund.setTotals(new PortfolioTotals());
+            assertEquals(Money.ofWhole(100), totals.getInitial());
+            assertEquals(Money.ofWhole(90), totals.getCurrent());
+        }
+    }
+
     @DisplayName("Performs a transaction event tests")
     @Nested
     @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -194,11 +220,127 @@ class FundTest {
         }
     }
 
+    @DisplayName("Return index tests")
+    @Nested
+    class ReturnTest {
+        private YearMonth Apr = YearMonth.of(2020, Month.APRIL);
+
+        @BeforeEach
+        public void insertTransactions() {
+            // allocation=100 (allocationAmount)
+            initialisedFund.doTransaction(Jan, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(10));
+            initialisedFund.doTransaction(Feb, TransactionEvent.MONTHLY_SIP, BigDecimal.valueOf(100));
+            initialisedFund.doTransaction(Feb, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(-21));
+            // no records for march
+            initialisedFund.doTransaction(Apr, TransactionEvent.MONTHLY_SIP, BigDecimal.valueOf(300));
+        }
+
+        @Test
+        public void verify_balanceAtMonth() {
+            assertEquals(0, BigDecimal.valueOf(110).compareTo(initialisedFund.balanceAt(Jan).get()));
+            assertEquals(0, BigDecimal.valueOf(189).compareTo(initialisedFund.balanceAt(Feb).get()));
+            assertEquals(0, BigDecimal.valueOf(189).compareTo(initialisedFund.balanceAt(Mar).get()));
+            assertEquals(0, BigDecimal.valueOf(489).compareTo(initialisedFund.balanceAt(Apr.plusYears(1)).get()));
+            assertTrue(initialisedFund.balanceAt(Jan.minusMonths(1)).isEmpty());
+            assertTrue(fund.balanceAt(Jan).isEmpty());
+        }
+
+        @Test
+        public void verify_returnBetweenMonthsIgnoresFlows() {
+            // -21 on 210 after the 100 SIP is a 10% loss
+            assertEquals(-0.1, initialisedFund.returnBetween(Jan, Feb).getAsDouble(), 1e-12);
+            assertEquals(-0.1, initialisedFund.returnBetween(Jan, Apr).getAsDouble(), 1e-12);
+            assertEquals(0d, initialisedFund.returnBetween(Mar, Apr).getAsDouble(), 1e-12);
+            assertEquals(OptionalDouble.empty(), initialisedFund.returnBetween(Jan.minusMonths(1), Apr));
+            assertEquals(OptionalDouble.empty(), initialisedFund.returnBetween(Apr, Jan));
+
+            // records appended after a query are read by the next one
+            initialisedFund.doTransaction(Apr, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(48.9));
+            assertEquals(0.1, initialisedFund.returnBetween(Mar, Apr).getAsDouble(), 1e-12);
+        }
+
+        @Test
+        public void verify_gainSinceAllocation() {
+            assertEquals(0, BigDecimal.valueOf(10).compareTo(initialisedFund.gainAt(Jan).get()));
+            assertEquals(0, BigDecimal.valueOf(-11).compareTo(initialisedFund.gainAt(Feb).get()));
+            assertEquals(0, BigDecimal.valueOf(-11).compareTo(initialisedFund.gainAt(Apr).get()));
+            assertTrue(initialisedFund.gainAt(Jan.minusMonths(1)).isEmpty());
+        }
+    }
+
+    @DisplayName("History compaction tests")
+    @Nested
+    class CompactionTest {
+        private Fund reference = new Fund(TYPE);
+        private YearMonth last = Jan.plusYears(3);
+
+        @BeforeEach
+        public void insertTransactions() {
+            reference.initialise(allocationAmount, Jan);
+            for (Fund target : new Fund[] { initialisedFund, reference }) {
+                target.doTransaction(Jan, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(4));
+                for (YearMonth month = Feb; !month.isAfter(last); month = month.plusMonths(1)) {
+                    target.doTransaction(month, TransactionEvent.MONTHLY_SIP, BigDecimal.valueOf(20));
+                    target.doTransaction(month, TransactionEvent.MONTHLY_CHANGE,
+                            BigDecimal.valueOf(month.getMonthValue() % 3 == 0 ? -7.5 : 3.25));
+                    if (month.getMonth() == Month.JUNE)
+                        target.doTransaction(month, TransactionEvent.REBALANCE, BigDecimal.valueOf(-12));
+                }
+            }
+        }
+
+        @Test
+        public void verify_compactedFundReadsTheSame() {
+            int size = initialisedFund.getLedger().size();
+            assertTrue(initialisedFund.compactHistory(HistoryRetention.ofMonths(12)) > 0);
+            assertTrue(initialisedFund.getLedger().size() < size);
+            assertEquals(0, initialisedFund.compactHistory(HistoryRetention.ofMonths(12)));
+
+            assertEquals(0, reference.getInitial().compareTo(initialisedFund.getInitial()));
+            assertEquals(0, reference.getCurrent().compareTo(initialisedFund.getCurrent()));
+            for (Month month : Month.values())
+                assertEquals(reference.balanceOf(month), initialisedFund.balanceOf(month));
+            for (YearMonth month = Jan.minusMonths(1); !month.isAfter(last); month = month.plusMonths(1)) {
+                assertEquals(reference.balanceAt(month), initialisedFund.balanceAt(month));
+                assertEquals(reference.gainAt(month), initialisedFund.gainAt(month));
+                if (!month.isBefore(Jan))
+                    assertEquals(reference.returnBetween(Jan, month).getAsDouble(),
+                            initialisedFund.returnBetween(Jan, month).getAsDouble(), 1e-12);
+            }
+            for (TransactionEvent event : TransactionEvent.values()) {
+                Optional<TransactionRecord> expected = reference.lastTransactionOf(event);
+                Optional<TransactionRecord> actual = initialisedFund.lastTransactionOf(event);
+                if (event == TransactionEvent.MONTHLY_SUMMARY) {
+                    assertTrue(actual.isPresent());
+                    continue;
+                }
+                assertEquals(expected.get().getMonth(), actual.get().getMonth());
+                assertEquals(0, expected.get().getAmount().compareTo(actual.get().getAmount()));
+                assertEquals(0, expected.get().getBalance().compareTo(actual.get().getBalance()));
+            }
+        }
+
+        @Test
+        public void verify_compactedMonthsInHistory() {
+            initialisedFund.compactHistory(HistoryRetention.ofMonths(12));
+
+            // summary of the month, with its change
+            assertEquals(1, initialisedFund.getTransactionHistory().get(Feb).size());
+            assertTransactionRecord(initialisedFund.getTransactionHistory().get(Feb).get(0), Feb,
+                    TransactionEvent.MONTHLY_SUMMARY, BigDecimal.valueOf(3.25));
+            // rebalanced months and the months of the horizon are kept
+            assertEquals(3, initialisedFund.getTransactionHistory().get(YearMonth.of(2020, Month.JUNE)).size());
+            assertEquals(2, initialisedFund.getTransactionHistory().get(last.minusMonths(11)).size());
+            assertEquals(0, reference.compactHistory(HistoryRetention.KEEP_ALL));
+            assertThrows(IllegalArgumentException.class, () -> HistoryRetention.ofMonths(0));
+        }
+    }
+
     private void assertTransactionRecord(TransactionRecord actual, YearMonth expectedMonth,
             TransactionEvent expectedEvent,
             BigDecimal expectedAmount) {
         assertEquals(expectedMonth, actual.getMonth());
         assertEquals(expectedEvent, actual.getEvent());
-        assertEquals(expectedAmount, actual.getAmount());
+        assertTrue(expectedAmount.compareTo(actual.getAmount()) == 0);
     }
 }
\ No newline at end of file
@@ -0,0 +1,130 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.geektrust.command.CommandBinding;
+
+@DisplayName("Fund type configuration test suit")
+public class FundTypeTest {
+    // the default fund types are in use by the other tests
+    @BeforeEach
+    @AfterEach
+    public void restoreDefaultFundTypes() {
+        FundType.reset();
+    }
+
+    @Test
+    public void verify_defaultFundTypes() {
+        assertEquals(Arrays.asList(FundType.EQUITY, FundType.DEBT, FundType.GOLD), Arrays.asList(FundType.values()));
+        assertEquals(3, FundType.count());
+        assertSame(FundType.DEBT, FundType.valueOf("DEBT"));
+        assertSame(FundType.GOLD, FundType.of(2));
+    }
+
+    @Test
+    public void verify_configureFundTypes() {
+        FundType.configure("GOLD", "REIT", "EQUITY");
+
+        assertEquals(3, FundType.count());
+        assertSame(FundType.GOLD, FundType.of(0));
+        assertEquals("REIT", FundType.of(1).name());
+        assertEquals(2, FundType.EQUITY.ordinal());
+        assertTrue(FundType.DEBT.ordinal() < 0);
+        assertThrows(IllegalArgumentException.class, () -> FundType.valueOf("DEBT"));
+    }
+
+    @Test
+    public void verify_rejectInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> FundType.configure(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> FundType.configure("EQUITY", "EQUITY"));
+        assertThrows(IllegalArgumentException.class, () -> FundType.configure("REAL ESTATE"));
+        assertEquals(3, FundType.count());
+    }
+
+    @Test
+    public void verify_configureOnlyOnce() {
+        FundType.configure("GOLD", "REIT", "EQUITY");
+        assertThrows(IllegalStateException.class, () -> FundType.configure("EQUITY", "DEBT", "GOLD"));
+        assertSame(FundType.GOLD, FundType.of(0));
+        assertEquals(2, FundType.EQUITY.ordinal());
+    }
+
+    @Test
+    public void verify_rejectConfigurationOnceInUse() {
+        FundTypeMap<BigDecimal> values = new FundTypeMap<>();
+        values.put(FundType.GOLD, BigDecimal.ONE);
+        assertThrows(IllegalStateException.class, () -> FundType.configure("GOLD", "REIT", "EQUITY"));
+        assertEquals(2, FundType.GOLD.ordinal());
+        assertEquals(BigDecimal.ONE, values.get(FundType.GOLD));
+
+        FundType.reset();
+        new PortfolioManager(Arrays.asList(FundType.EQUITY, FundType.DEBT));
+        assertThrows(IllegalStateException.class, () -> FundType.configure("GOLD", "REIT", "EQUITY"));
+    }
+
+    @Test
+    public void verify_fundTypeMapInFundTypeOrder() {
+        FundTypeMap<BigDecimal> values = new FundTypeMap<>();
+        values.put(FundType.GOLD, BigDecimal.ONE);
+        values.put(FundType.EQUITY, BigDecimal.TEN);
+        assertNull(values.put(FundType.DEBT, BigDecimal.ZERO));
+        assertEquals(BigDecimal.ZERO, values.put(FundType.DEBT, BigDecimal.ONE));
+
+        assertEquals(3, values.size());
+        assertEquals(Arrays.asList(FundType.EQUITY, FundType.DEBT, FundType.GOLD), new ArrayList<>(values.keySet()));
+        assertEquals(Map.of(FundType.EQUITY, BigDecimal.TEN, FundType.DEBT, BigDecimal.ONE, FundType.GOLD,
+                BigDecimal.ONE), values);
+
+        Iterator<FundType> types = values.keySet().iterator();
+        types.next();
+        types.remove();
+        assertFalse(values.containsKey(FundType.EQUITY));
+        assertEquals(BigDecimal.ONE, values.remove(FundType.DEBT));
+        assertEquals(1, values.size());
+        assertEquals(BigDecimal.ONE, values.getAt(FundType.GOLD.ordinal()));
+    }
+
+    @Test
+    public void verify_commandsOverConfiguredFundTypes() {
+        FundType.configure("EQUITY", "DEBT", "GOLD", "REIT", "CASH");
+        PortfolioManager portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        List<String> outputs = new ArrayList<>();
+
+        execute(portfolio, outputs, "ALLOCATE 1000 2000 3000 4000 10000");
+        execute(portfolio, outputs, "SIP 100 100 100 100 100");
+        execute(portfolio, outputs, "CHANGE 10.00% 0.00% 0.00% 0.00% 0.00% JANUARY");
+        execute(portfolio, outputs, "CHANGE 10.00% 0.00% 0.00% 0.00% FEBRUARY"); // a column short
+        execute(portfolio, outputs, "BALANCE JANUARY");
+        for (Month month : Arrays.asList(Month.FEBRUARY, Month.MARCH, Month.APRIL, Month.MAY, Month.JUNE))
+            execute(portfolio, outputs, "CHANGE 0.00% 0.00% 0.00% 0.00% 0.00% " + month);
+        execute(portfolio, outputs, "REBALANCE");
+
+        // 1600 2500 3500 4500 10500 weighted 5%, 10%, 15%, 20% and 50%
+        assertEquals(Arrays.asList("1100 2000 3000 4000 10000", "1130 2260 3390 4520 11300"), outputs);
+    }
+
+    private void execute(PortfolioManager portfolio, List<String> outputs, String command) {
+        CommandBinding.toExecutable(command)
+                .ifPresent(executable -> executable.execute(portfolio, Optional.of(outputs::add)));
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.example.geektrust.platform.MyMoneyPlatform;
+
+@DisplayName("Fixed point money test suit")
+public class MoneyTest {
+    @Test
+    public void verify_conversionRoundsHalfEven() {
+        assertEquals(1_234_567L, Money.of(new BigDecimal("1.234567")));
+        assertEquals(1_234_568L, Money.of(new BigDecimal("1.2345675")));
+        assertEquals(1_234_566L, Money.of(new BigDecimal("1.2345665")));
+        assertEquals(-1_234_566L, Money.of(new BigDecimal("-1.2345665")));
+        assertEquals(0, new BigDecimal("1.234567").compareTo(Money.toBigDecimal(1_234_567L)));
+    }
+
+    @Test
+    public void verify_percentOf() {
+        assertEquals(Money.ofWhole(20), Money.percentOf(Money.ofWhole(200), Money.ofWhole(10)));
+        assertEquals(Money.of(new BigDecimal("39.105")),
+                Money.percentOf(Money.ofWhole(711), Money.of(new BigDecimal("5.5"))));
+        assertEquals(-Money.ofWhole(40), Money.percentOf(Money.ofWhole(200), -Money.ofWhole(20)));
+        // the smallest unit * 50% rounds to the even zero
+        assertEquals(0L, Money.percentOf(1L, Money.ofWhole(50)));
+        assertEquals(2L, Money.percentOf(3L, Money.ofWhole(50)));
+    }
+
+    @Test
+    public void verify_multiplyDivideWithoutOverflow() {
+        long large = 1L << 61;
+        assertEquals(large / 2, Money.multiplyDivide(large, 1_000_000L, 2_000_000L));
+        assertEquals(-large, Money.multiplyDivide(large, -Money.ONE, Money.ONE));
+        assertThrows(ArithmeticException.class, () -> Money.multiplyDivide(Long.MAX_VALUE, 4L, 1L));
+    }
+
+    @Test
+    public void verify_isExact() {
+        assertTrue(Money.isExact(new BigDecimal("1.234567")));
+        assertTrue(Money.isExact(new BigDecimal("1.2345670000")));
+        assertTrue(Money.isExact(new BigDecimal("1E+3")));
+        assertFalse(Money.isExact(new BigDecimal("1.2345675")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = { 0L, 999_999L, 1_000_000L, -1L, -1_000_000L, -1_000_001L })
+    public void verify_floor(long value) {
+        assertEquals(Money.toBigDecimal(value).setScale(0, RoundingMode.FLOOR).longValueExact(), Money.floor(value));
+    }
+
+    @DisplayName("Differential tests against BigDecimal arithmetic")
+    @Nested
+    class DifferentialTest {
+        private final Month[] months = Month.values();
+
+        @ParameterizedTest
+        @ValueSource(longs = { 1L, 7L, 42L, 2023L, 90210L })
+        public void verify_balanceAndRebalanceMatchBigDecimal(long seed) {
+            Random random = new Random(seed);
+            int funds = FundType.values().length;
+            // allocation total of 10000 keeps the BigDecimal weights terminating
+            BigDecimal[] allocation = new BigDecimal[funds];
+            int remaining = 100;
+            for (int i = 0; i < funds - 1; i++) {
+                int share = 1 + random.nextInt(remaining - (funds - i));
+                allocation[i] = BigDecimal.valueOf(share * 100L);
+                remaining -= share;
+            }
+            allocation[funds - 1] = BigDecimal.valueOf(remaining * 100L);
+            BigDecimal[] sip = new BigDecimal[funds];
+            for (int i = 0; i < funds; i++)
+                sip[i] = BigDecimal.valueOf(random.nextInt(1000));
+
+            List<String> commands = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            commands.add("ALLOCATE " + join(allocation));
+            commands.add("SIP " + join(sip));
+
+            BigDecimal[] current = allocation.clone();
+            BigDecimal allocationTotal = Arrays.stream(allocation).reduce(BigDecimal.ZERO, BigDecimal::add);
+            for (int monthIndex = 0; monthIndex < 60; monthIndex++) {
+                Month month = months[monthIndex % 12];
+                BigDecimal[] change = new BigDecimal[funds];
+                for (int i = 0; i < funds; i++) {
+                    change[i] = BigDecimal.valueOf(random.nextInt(4000) - 1500, 2); // -15.00% .. 24.99%
+                    current[i] = current[i].add(current[i].multiply(change[i]).divide(BigDecimal.valueOf(100)));
+                }
+                commands.add("CHANGE " + joinPercentages(change) + " " + month.name());
+                commands.add("BALANCE " + month.name());
+                expected.add(joinFloor(current));
+
+                if (PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month)) {
+                    BigDecimal currentTotal = Arrays.stream(current).reduce(BigDecimal.ZERO, BigDecimal::add);
+                    for (int i = 0; i < funds; i++)
+                        current[i] = currentTotal.multiply(allocation[i].divide(allocationTotal));
+                    commands.add("REBALANCE");
+                    expected.add(joinFloor(current));
+                }
+
+                for (int i = 0; i < funds; i++)
+                    current[i] = current[i].add(sip[i]);
+            }
+
+            List<String> actual = new ArrayList<>();
+            MyMoneyPlatform platform = MyMoneyPlatform.of(new PortfolioManager(Arrays.asList(FundType.values())),
+                    null, Optional.of(actual::add));
+            commands.forEach(platform::execute);
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        public void verify_noMismatchOverManySeeds() {
+            int funds = FundType.values().length;
+            for (long seed = 0; seed < 500; seed++) {
+                Random random = new Random(seed);
+                // small amounts and fine changes, for balances close to whole amounts
+                BigDecimal[] allocation = new BigDecimal[funds];
+                BigDecimal[] sip = new BigDecimal[funds];
+                for (int i = 0; i < funds; i++) {
+                    allocation[i] = BigDecimal.valueOf(1 + random.nextInt(20));
+                    sip[i] = BigDecimal.valueOf(random.nextInt(3));
+                }
+
+                List<String> commands = new ArrayList<>();
+                List<String> expected = new ArrayList<>();
+                commands.add("ALLOCATE " + join(allocation));
+                commands.add("SIP " + join(sip));
+
+                BigDecimal[] current = allocation.clone();
+                BigDecimal allocationTotal = Arrays.stream(allocation).reduce(BigDecimal.ZERO, BigDecimal::add);
+                for (int monthIndex = 0; monthIndex < 120; monthIndex++) {
+                    Month month = months[monthIndex % 12];
+                    BigDecimal[] change = new BigDecimal[funds];
+                    for (int i = 0; i < funds; i++) {
+                        // -20.00% .. 24.99%, or a hundredth of a percent either way
+                        change[i] = random.nextBoolean()
+                                ? BigDecimal.valueOf(random.nextInt(4500) - 2000, 2)
+                                : BigDecimal.valueOf(random.nextBoolean() ? 1 : -1, 2);
+                        current[i] = current[i].add(current[i].multiply(change[i]).divide(BigDecimal.valueOf(100)));
+                    }
+                    commands.add("CHANGE " + joinPercentages(change) + " " + month.name());
+                    commands.add("BALANCE " + month.name());
+                    expected.add(joinFloor(current));
+
+                    if (PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(month)) {
+                        BigDecimal currentTotal = Arrays.stream(current).reduce(BigDecimal.ZERO, BigDecimal::add);
+                        for (int i = 0; i < funds; i++)
+                            current[i] = weighted(currentTotal, allocation[i], allocationTotal);
+                        commands.add("REBALANCE");
+                        expected.add(joinFloor(current));
+                    }
+
+                    for (int i = 0; i < funds; i++)
+                        current[i] = current[i].add(sip[i]);
+                }
+
+                List<String> actual = new ArrayList<>();
+                MyMoneyPlatform platform = MyMoneyPlatform.of(
+                        new PortfolioManager(Arrays.asList(FundType.values())), null, Optional.of(actual::add));
+                commands.forEach(platform::execute);
+                assertEquals(expected, actual, "seed " + seed);
+            }
+        }
+
+        @Test
+        public void verify_balanceJustBelowWholeAmount() {
+            // 0.9999 * 1.0001 = 0.99999999, that is 1.000000 at six decimals
+            List<String> actual = new ArrayList<>();
+            PortfolioManager portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+            MyMoneyPlatform platform = MyMoneyPlatform.of(portfolio, null, Optional.of(actual::add));
+            platform.execute("ALLOCATE 1 1 1");
+            platform.execute("SIP 0 0 0");
+            platform.execute("CHANGE -0.01% -0.01% -0.01% JANUARY");
+
+            // the fork carries on from the exact balances too
+            List<String> forked = new ArrayList<>();
+            MyMoneyPlatform fork = MyMoneyPlatform.of(portfolio.fork(), null, Optional.of(forked::add));
+            fork.execute("CHANGE 0.01% 0.01% 0.01% FEBRUARY");
+            fork.execute("BALANCE FEBRUARY");
+            assertEquals(Arrays.asList("0 0 0"), forked);
+
+            platform.execute("CHANGE 0.01% 0.01% 0.01% FEBRUARY");
+            platform.execute("BALANCE FEBRUARY");
+            assertEquals(Arrays.asList("0 0 0"), actual);
+            assertEquals(new BigDecimal("0.999999"), portfolio.fundOf(FundType.EQUITY).getCurrent());
+        }
+
+        @Test
+        public void verify_percentageOfMoreThanSixDecimals() {
+            List<String> actual = new ArrayList<>();
+            MyMoneyPlatform platform = MyMoneyPlatform.of(new PortfolioManager(Arrays.asList(FundType.values())),
+                    null, Optional.of(actual::add));
+            platform.execute("ALLOCATE 1 1 1");
+            platform.execute("SIP 0 0 0");
+            // rounds to a 0% change at six decimals
+            platform.execute("CHANGE -0.0000001% 0.00% 0.0000001% JANUARY");
+            platform.execute("BALANCE JANUARY");
+            assertEquals(Arrays.asList("0 1 1"), actual);
+        }
+
+        @Test
+        public void verify_largeAmountsMatchBigDecimal() {
+            List<String> actual = new ArrayList<>();
+            MyMoneyPlatform platform = MyMoneyPlatform.of(new PortfolioManager(Arrays.asList(FundType.values())),
+                    null, Optional.of(actual::add));
+            platform.execute("ALLOCATE 100000000000 3000 1000");
+            platform.execute("SIP 2000000000 1000 500");
+            platform.execute("CHANGE 4.00% 10.00% 2.00% JANUARY");
+            platform.execute("BALANCE JANUARY");
+            assertEquals(Arrays.asList("104000000000 3300 1020"), actual);
+
+            // grows further through SIPs and changes, until the june rebalance
+            BigDecimal equity = new BigDecimal("104000000000");
+            for (int month = 1; month < 5; month++) {
+                platform.execute("CHANGE 12.34% 0.00% 0.00% " + months[month].name());
+                equity = equity.add(new BigDecimal("2000000000"));
+                equity = equity.add(equity.multiply(new BigDecimal("12.34")).divide(BigDecimal.valueOf(100)));
+            }
+            platform.execute("BALANCE MAY");
+            assertEquals(equity.setScale(0, RoundingMode.FLOOR).toPlainString(), actual.get(1).split(" ")[0]);
+        }
+
+        private BigDecimal weighted(BigDecimal total, BigDecimal allocation, BigDecimal allocationTotal) {
+            BigDecimal product = total.multiply(allocation);
+            try {
+                return product.divide(allocationTotal);
+            } catch (ArithmeticException nonTerminating) {
+                return product.divide(allocationTotal, Money.SCALE, RoundingMode.HALF_EVEN);
+            }
+        }
+
+        private String join(BigDecimal[] values) {
+            StringBuilder joined = new StringBuilder();
+            for (BigDecimal value : values)
+                joined.append(joined.length() == 0 ? "" : " ").append(value.toPlainString());
+            return joined.toString();
+        }
+
+        private String joinPercentages(BigDecimal[] values) {
+            StringBuilder joined = new StringBuilder();
+            for (BigDecimal value : values)
+                joined.append(joined.length() == 0 ? "" : " ").append(value.toPlainString()).append('%');
+            return joined.toString();
+        }
+
+        private String joinFloor(BigDecimal[] values) {
+            BigDecimal[] floored = new BigDecimal[values.length];
+            for (int i = 0; i < values.length; i++)
+                floored[i] = values[i].setScale(0, RoundingMode.FLOOR);
+            return join(floored);
+        }
+    }
+
+    @DisplayName("Amounts out of the money range")
+    @Nested
+    class OutOfRangeTest {
+        private final List<String> actual = new ArrayList<>();
+        private final PortfolioManager portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        private final MyMoneyPlatform platform = MyMoneyPlatform.of(this.portfolio, null,
+                Optional.of(this.actual::add));
+
+        @Test
+        public void verify_allocationRejected() {
+            this.platform.execute("ALLOCATE 10000000000000 3000 1000");
+            this.platform.execute("BALANCE JANUARY");
+            assertTrue(this.actual.isEmpty());
+            assertFalse(this.portfolio.fundOf(FundType.DEBT).isInitialised());
+
+            // the platform carries on with the next commands
+            this.platform.execute("ALLOCATE 6000 3000 1000");
+            this.platform.execute("SIP 2000 1000 500");
+            this.platform.execute("CHANGE 4.00% 10.00% 2.00% JANUARY");
+            this.platform.execute("BALANCE JANUARY");
+            assertEquals(Arrays.asList("6240 3300 1020"), this.actual);
+        }
+
+        @Test
+        public void verify_changeRejectedForEveryFund() {
+            this.platform.execute("ALLOCATE 1000 1000 4000000000000");
+            this.platform.execute("SIP 0 0 0");
+            this.platform.execute("CHANGE 10.00% 10.00% 99.00% JANUARY");
+            this.platform.execute("BALANCE JANUARY");
+            Map<FundType, BigDecimal> february = this.portfolio.calculateBalance(Month.FEBRUARY).get();
+
+            // gold leaves the range, equity and debt are changed before it
+            assertThrows(ArithmeticException.class, () -> this.portfolio.applyMonthlyChange(Month.FEBRUARY,
+                    Map.of(FundType.EQUITY, BigDecimal.TEN, FundType.DEBT, BigDecimal.TEN,
+                            FundType.GOLD, new BigDecimal("99"))));
+            assertEquals(february, this.portfolio.calculateBalance(Month.FEBRUARY).get());
+
+            this.platform.execute("CHANGE 10.00% 10.00% 99.00% FEBRUARY");
+            this.platform.execute("CHANGE 10.00% 10.00% 10.00% FEBRUARY");
+            this.platform.execute("BALANCE FEBRUARY");
+            assertEquals(Arrays.asList("1100 1100 7960000000000", "1210 1210 8756000000000"), this.actual);
+        }
+
+        @Test
+        public void verify_sipRejected() {
+            this.platform.execute("ALLOCATE 6000 3000 1000");
+            this.platform.execute("SIP 2000 1000 500");
+            this.platform.execute("SIP 2000 10000000000000 500");
+            assertEquals(Money.ofWhole(1000), this.portfolio.sipOf(FundType.DEBT.ordinal()));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.geektrust.command.CommandBinding;
+
+@DisplayName("Monte Carlo projection test suit")
+public class MonteCarloProjectionTest {
+    private static final double PRECISION = 0.004; // see BalanceHistogram
+
+    private PortfolioManager portfolio;
+
+    @BeforeEach
+    public void setUp() {
+        portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        execute("ALLOCATE 6000 3000 1000");
+        execute("SIP 2000 1000 500");
+    }
+
+    @Test
+    public void verify_fixedChangesFollowPortfolioManager() {
+        MonteCarloProjection projection = MonteCarloProjection.of(portfolio, Map.of(
+                FundType.EQUITY, ReturnDistribution.fixed(4), FundType.DEBT, ReturnDistribution.fixed(-2),
+                FundType.GOLD, ReturnDistribution.fixed(1.5)));
+        MonteCarloProjection.Result result = projection.run(14, 3000, 1L, 2);
+
+        assertEquals(Month.JANUARY, projection.getFirstMonth());
+        assertEquals(3000, result.getPaths());
+        assertEquals(Month.FEBRUARY, result.getMonth(13));
+        List<String> balances = new ArrayList<>();
+        for (int month = 0; month < 14; month++) {
+            // rebalanced in June and December before the balance is taken
+            execute("CHANGE 4.00% -2.00% 1.50% " + result.getMonth(month));
+            execute("REBALANCE");
+            balances.clear();
+            execute("BALANCE " + result.getMonth(month), balances);
+
+            String[] expected = balances.get(0).split(" ");
+            double total = 0;
+            for (FundType type : FundType.values()) {
+                double balance = Double.parseDouble(expected[type.ordinal()]);
+                total += balance;
+                assertEquals(balance, result.percentile(month, type, 0), balance * PRECISION);
+                assertEquals(balance, result.percentile(month, type, 100), balance * PRECISION);
+            }
+            assertEquals(total, result.percentile(month, 50), total * PRECISION);
+        }
+    }
+
+    @Test
+    public void verify_sameResultWhateverTheParallelism() {
+        MonteCarloProjection projection = MonteCarloProjection.of(portfolio, Map.of(
+                FundType.EQUITY, ReturnDistribution.normal(1, 5), FundType.DEBT, ReturnDistribution.uniform(-1, 2),
+                FundType.GOLD, ReturnDistribution.historical(-3, 0, 4)));
+        MonteCarloProjection.Result single = projection.run(24, 10_000, 42L, 1);
+        MonteCarloProjection.Result parallel = projection.run(24, 10_000, 42L, 4);
+
+        for (int month = 0; month < 24; month++) {
+            for (double percentile : new double[] { 0, 5, 50, 95, 100 })
+                assertEquals(single.percentile(month, percentile), parallel.percentile(month, percentile));
+            assertTrue(single.percentile(month, 5) < single.percentile(month, 50));
+            assertTrue(single.percentile(month, 50) < single.percentile(month, 95));
+        }
+        assertTrue(single.percentile(23, FundType.DEBT, 100) != projection.run(24, 10_000, 43L, 1)
+                .percentile(23, FundType.DEBT, 100));
+    }
+
+    @Test
+    public void verify_pendingRebalanceBeforeFirstMonth() {
+        for (Month month : Arrays.asList(Month.JANUARY, Month.FEBRUARY, Month.MARCH, Month.APRIL, Month.MAY,
+                Month.JUNE))
+            execute("CHANGE 10.00% 0.00% 0.00% " + month);
+        MonteCarloProjection projection = MonteCarloProjection.of(portfolio, Map.of(
+                FundType.EQUITY, ReturnDistribution.fixed(0), FundType.DEBT, ReturnDistribution.fixed(0),
+                FundType.GOLD, ReturnDistribution.fixed(0)));
+        MonteCarloProjection.Result result = projection.run(1, 10, 1L, 1);
+
+        List<String> balances = new ArrayList<>();
+        execute("REBALANCE");
+        execute("CHANGE 0.00% 0.00% 0.00% JULY");
+        execute("BALANCE JULY", balances);
+        assertEquals(Month.JULY, result.getMonth(0));
+        String[] expected = balances.get(0).split(" ");
+        for (FundType type : FundType.values()) {
+            double balance = Double.parseDouble(expected[type.ordinal()]);
+            assertEquals(balance, result.percentile(0, type, 50), balance * PRECISION);
+        }
+    }
+
+    @Test
+    public void verify_rejectInvalidProjection() {
+        assertThrows(IllegalArgumentException.class,
+                () -> MonteCarloProjection.of(portfolio, Map.of(FundType.EQUITY, ReturnDistribution.fixed(1))));
+        Map<FundType, ReturnDistribution> none = Map.of(FundType.EQUITY, ReturnDistribution.fixed(0),
+                FundType.DEBT, ReturnDistribution.fixed(0), FundType.GOLD, ReturnDistribution.fixed(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> MonteCarloProjection.of(new PortfolioManager(Arrays.asList(FundType.values())), none));
+        assertThrows(IllegalArgumentException.class, () -> MonteCarloProjection.of(portfolio, none).run(0, 1, 1L, 1));
+        assertThrows(IllegalArgumentException.class, () -> ReturnDistribution.normal(0, -1));
+        assertThrows(IllegalArgumentException.class, () -> ReturnDistribution.uniform(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> ReturnDistribution.historical());
+    }
+
+    private void execute(String command) {
+        execute(command, new ArrayList<>());
+    }
+
+    private void execute(String command, List<String> outputs) {
+        CommandBinding.toExecutable(command)
+                .ifPresent(executable -> executable.execute(portfolio, Optional.of(outputs::add)));
+    }
+}
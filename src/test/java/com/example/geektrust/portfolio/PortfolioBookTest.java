@@ -0,0 +1,122 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.geektrust.command.CommandBinding;
+
+@DisplayName("Portfolio book test suit")
+public class PortfolioBookTest {
+    private static final double[][] CHANGES = {
+            { 4, 10, 2 }, { -10, 40, 0 }, { 12.5, 12.5, 12.5 }, { 8, -3, 7 }, { 13, 21, 10.5 }, { 10, 8, -5 } };
+
+    private PortfolioBook book;
+    private PortfolioManager portfolio;
+
+    @BeforeEach
+    public void setUp() {
+        book = new PortfolioBook(1);
+        portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        execute("ALLOCATE 6000 3000 1000");
+        execute("SIP 2000 1000 500");
+    }
+
+    @Test
+    public void verify_changesFollowPortfolioManager() {
+        int index = book.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+
+        for (int month = 0; month < CHANGES.length; month++) {
+            assertTrue(book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]));
+            execute("CHANGE " + percentages(CHANGES[month]) + " " + Month.of(month + 1));
+            assertBalancesEqual(index);
+        }
+
+        // June is a compulsory rebalance month, the July SIP waits for the rebalance
+        assertTrue(book.isPendingForRebalance(index));
+        assertEquals(1, book.rebalance());
+        execute("REBALANCE");
+        assertFalse(book.isPendingForRebalance(index));
+        assertBalancesEqual(index);
+        assertArrayEquals(new long[] { 25622, 12811, 4437 }, book.wholeBalancesOf(index));
+        assertEquals(0, book.rebalance());
+    }
+
+    @Test
+    public void verify_manyPortfoliosInOnePass() {
+        for (int i = 1; i <= 100; i++)
+            book.add(new double[] { 6000 * i, 3000 * i, 1000 * i }, new double[] { 2000 * i, 1000 * i, 500 * i });
+
+        for (int month = 0; month < CHANGES.length; month++)
+            book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]);
+        assertEquals(100, book.rebalance());
+
+        // every portfolio is a multiple of the first one
+        for (int i = 0; i < 100; i++)
+            for (FundType type : FundType.values())
+                assertEquals(book.balanceOf(0, type) * (i + 1), book.balanceOf(i, type), 1e-6 * (i + 1));
+    }
+
+    @Test
+    public void verify_addPortfolioPendingForRebalance() {
+        for (int month = 0; month < CHANGES.length; month++)
+            execute("CHANGE " + percentages(CHANGES[month]) + " " + Month.of(month + 1));
+
+        int index = book.add(portfolio);
+        assertTrue(book.isPendingForRebalance(index));
+        assertBalancesEqual(index);
+
+        execute("REBALANCE");
+        book.rebalance();
+        assertBalancesEqual(index);
+    }
+
+    @Test
+    public void verify_skipMonthOutOfOrder() {
+        int index = book.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+        assertTrue(book.applyMonthlyChange(Month.DECEMBER, CHANGES[0]));
+        assertFalse(book.applyMonthlyChange(Month.FEBRUARY, CHANGES[1]));
+        assertFalse(book.applyMonthlyChange(Month.DECEMBER, CHANGES[1]));
+        assertTrue(book.isPendingForRebalance(index));
+        assertTrue(book.applyMonthlyChange(Month.JANUARY, CHANGES[1]));
+        assertFalse(book.isPendingForRebalance(index));
+    }
+
+    @Test
+    public void verify_rejectInvalidPortfolio() {
+        assertThrows(IllegalArgumentException.class, () -> book.add(new double[3], new double[3]));
+        assertThrows(IllegalArgumentException.class, () -> book.add(new double[] { 1, 1 }, new double[3]));
+        assertThrows(IllegalArgumentException.class, () -> book.applyMonthlyChange(Month.JANUARY, new double[2]));
+        assertThrows(IndexOutOfBoundsException.class, () -> book.wholeBalancesOf(0));
+        assertEquals(0, book.size());
+    }
+
+    private void assertBalancesEqual(int index) {
+        for (FundType type : FundType.values()) {
+            BigDecimal expected = Money.toBigDecimal(portfolio.fundOf(type).getCurrentValue());
+            assertEquals(expected.doubleValue(), book.balanceOf(index, type), 1e-6, type.name());
+        }
+    }
+
+    private static String percentages(double[] changes) {
+        StringBuilder builder = new StringBuilder();
+        for (double change : changes)
+            builder.append(BigDecimal.valueOf(change).setScale(2)).append("% ");
+        return builder.toString().trim();
+    }
+
+    private void execute(String command) {
+        CommandBinding.toExecutable(command).ifPresent(executable -> executable.execute(portfolio, Optional.empty()));
+    }
+}
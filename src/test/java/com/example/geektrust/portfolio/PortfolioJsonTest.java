@@ -0,0 +1,68 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PortfolioJsonTest {
+    private PortfolioManager portfolio;
+    private PortfolioJson json;
+
+    @BeforeEach
+    public void setUp() {
+        portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        json = new PortfolioJson(1); // grows as written
+    }
+
+    @Test
+    public void verify_exactAmounts() throws IOException {
+        portfolio.allocate(FundType.EQUITY, new BigDecimal("6000.5"));
+        portfolio.allocate(FundType.DEBT, new BigDecimal("0.000001"));
+        portfolio.allocate(FundType.GOLD, new BigDecimal("1000"));
+
+        json.writeBalance("c42", portfolio);
+        assertEquals("{\"id\":\"c42\",\"balances\":{\"EQUITY\":6000.5,\"DEBT\":0.000001,\"GOLD\":1000}}",
+                text());
+
+        json.reset();
+        assertFalse(json.writeBalance("c42", portfolio, Month.MARCH));
+        assertEquals(0, json.size());
+    }
+
+    @Test
+    public void verify_negativeAmountsInHistory() throws IOException {
+        Fund gold = portfolio.fundOf(FundType.GOLD);
+        gold.initialise(Money.ofWhole(100), TransactionLedger.monthIndex(YearMonth.of(2020, 1)));
+        gold.doTransaction(YearMonth.of(2020, 1), TransactionEvent.MONTHLY_CHANGE, new BigDecimal("-0.25"));
+
+        json.writeHistory("c42", portfolio, FundType.GOLD, 1, 10);
+        assertEquals("{\"id\":\"c42\",\"funds\":{\"GOLD\":{\"total\":2,\"offset\":1,\"transactions\":["
+                + "{\"month\":\"2020-01\",\"event\":\"MONTHLY_CHANGE\",\"amount\":-0.25,\"balance\":99.75}]}}}",
+                text());
+        assertThrows(IllegalArgumentException.class, () -> json.writeHistory("c42", portfolio, null, -1, 10));
+    }
+
+    @Test
+    public void verify_escapedStrings() throws IOException {
+        json.writeError("quote \" backslash \\ tab \t \u00e9");
+        assertEquals("{\"error\":\"quote \\\" backslash \\\\ tab \\u0009 \\u00e9\"}", text());
+    }
+
+    private String text() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        json.writeTo(out);
+        assertEquals(json.size(), out.size());
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.geektrust.portfolio;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
@@ -14,6 +15,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -23,7 +25,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
 
 import com.example.geektrust.portfolio.Fund.FundDTO;
 import com.example.geektrust.portfolio.Fund.TransactionRecord;
@@ -32,6 +34,10 @@ import org.junit.jupiter.params.provider.ValueSource;
 public class PortfolioManagerTest {
     private PortfolioManager portfolioManager;
 
+    static Stream<FundType> fundTypes() {
+        return Stream.of(FundType.values());
+    }
+
     @BeforeEach
     public void setUp() {
         portfolioManager = new PortfolioManager(Arrays.asList(FundType.values()));
@@ -40,7 +46,7 @@ public class PortfolioManagerTest {
     }
 
     @ParameterizedTest
-    @EnumSource(FundType.class)
+    @MethodSource("com.example.geektrust.portfolio.PortfolioManagerTest#fundTypes")
     public void fundsAtInitialState(FundType fundType) {
         Map<FundType, List<FundDTO>> fundsAtInit = portfolioManager.getFunds();
         FundDTO fund = fundsAtInit.get(fundType).get(0);
@@ -50,7 +56,7 @@ public class PortfolioManagerTest {
     }
 
     @ParameterizedTest
-    @EnumSource(FundType.class)
+    @MethodSource("com.example.geektrust.portfolio.PortfolioManagerTest#fundTypes")
     public void verify_allocate(FundType fundType) {
         BigDecimal amount = BigDecimal.valueOf(100.00);
         portfolioManager.allocate(fundType, amount);
@@ -63,7 +69,7 @@ public class PortfolioManagerTest {
     }
 
     @ParameterizedTest
-    @EnumSource(FundType.class)
+    @MethodSource("com.example.geektrust.portfolio.PortfolioManagerTest#fundTypes")
     public void verify_skipAllocateWithNegativeAmount(FundType fundType) {
         BigDecimal amount = BigDecimal.valueOf(-100.00);
         portfolioManager.allocate(fundType, amount);
@@ -73,6 +79,51 @@ public class PortfolioManagerTest {
         assertTrue(BigDecimal.ZERO.compareTo(funds.get(fundType).get(0).current) == 0);
     }
 
+    @Test
+    public void verify_setSipReplacesPreviousSip() {
+        portfolioManager.setSip(Map.of(FundType.EQUITY, BigDecimal.valueOf(500), FundType.GOLD, BigDecimal.ONE));
+        portfolioManager.setSip(Map.of(FundType.DEBT, BigDecimal.valueOf(300)));
+
+        assertEquals(Map.of(FundType.DEBT, BigDecimal.valueOf(300)), portfolioManager.getSip());
+    }
+
+    @Test
+    public void verify_fundNotInPortfolio() {
+        portfolioManager = new PortfolioManager(Arrays.asList(FundType.EQUITY));
+        assertThrows(NoSuchElementException.class, () -> portfolioManager.fundOf(FundType.GOLD));
+        assertThrows(NoSuchElementException.class,
+                () -> portfolioManager.applyMonthlyChange(Month.JANUARY, Map.of(FundType.GOLD, BigDecimal.ONE)));
+    }
+
+    @Test
+    public void verify_forkIsIndependentOfPortfolio() {
+        portfolioManager.allocate(FundType.EQUITY, BigDecimal.valueOf(6000));
+        portfolioManager.allocate(FundType.DEBT, BigDecimal.valueOf(3000));
+        portfolioManager.allocate(FundType.GOLD, BigDecimal.valueOf(1000));
+        portfolioManager.setSip(Map.of(FundType.EQUITY, BigDecimal.valueOf(2000)));
+        portfolioManager.applyMonthlyChange(Month.JANUARY, changes(10, 0, 0));
+
+        PortfolioManager fork = portfolioManager.fork();
+        fork.applyMonthlyChange(Month.FEBRUARY, changes(-50, 0, 0));
+        portfolioManager.applyMonthlyChange(Month.FEBRUARY, changes(50, 0, 0));
+
+        assertEquals(portfolioManager.getSip(), fork.getSip());
+        assertEquals(Optional.of(balances(6600, 3000, 1000)), fork.calculateBalance(Month.JANUARY));
+        assertEquals(Optional.of(balances(4300, 3000, 1000)), fork.calculateBalance(Month.FEBRUARY));
+        assertEquals(Optional.of(balances(12900, 3000, 1000)), portfolioManager.calculateBalance(Month.FEBRUARY));
+        assertEquals(Money.ofWhole(6000), fork.fundOf(FundType.EQUITY).getInitialValue());
+    }
+
+    private static Map<FundType, BigDecimal> changes(double equity, double debt, double gold) {
+        return Map.of(FundType.EQUITY, BigDecimal.valueOf(equity), FundType.DEBT, BigDecimal.valueOf(debt),
+                FundType.GOLD, BigDecimal.valueOf(gold));
+    }
+
+    private static Map<FundType, BigDecimal> balances(long equity, long debt, long gold) {
+        return Map.of(FundType.EQUITY, Money.toBigDecimal(Money.ofWhole(equity)), FundType.DEBT,
+                Money.toBigDecimal(Money.ofWhole(debt)), FundType.GOLD, Money.toBigDecimal(Money.ofWhole(gold)));
+    }
+
     @DisplayName("Monthly Change tests")
     @Nested
     @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -292,6 +343,36 @@ public class PortfolioManagerTest {
             assertTrue(BigDecimal.valueOf(1800).compareTo(gold.getCurrent()) == 0); // 1300 + 500
         }
 
+        @Test
+        public void verify_repeatedRebalanceAndChangeAfterIt() {
+            YearMonth atJune = YearMonth.now().withMonth(6);
+            equity.doTransaction(atJune, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(5000));
+            debt.doTransaction(atJune, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(1000));
+            gold.doTransaction(atJune, TransactionEvent.MONTHLY_CHANGE, BigDecimal.valueOf(6000));
+            portfolioManager.rebalance(); // 8300, 4400, 1800 with the july sip
+
+            // rebalanced again in june, as the last change is still in june, and the
+            // sip of the following month is opened
+            Optional<Map<FundType, BigDecimal>> postRebalance = portfolioManager.rebalance();
+            assertTrue(postRebalance.isPresent());
+            assertTrue(BigDecimal.valueOf(8700).compareTo(postRebalance.get().get(FundType.EQUITY)) == 0);
+            assertTrue(BigDecimal.valueOf(4350).compareTo(postRebalance.get().get(FundType.DEBT)) == 0);
+            assertTrue(BigDecimal.valueOf(1450).compareTo(postRebalance.get().get(FundType.GOLD)) == 0);
+            assertTrue(BigDecimal.valueOf(9200).compareTo(equity.getCurrent()) == 0); // august sip
+            assertEquals(TransactionEvent.REBALANCE,
+                    equity.getTransactionHistory().get(atJune).get(2).getEvent());
+
+            // the july change is recorded in july, before the august sip
+            Map<FundType, BigDecimal> change = new HashMap<>();
+            Stream.of(FundType.values()).forEach(type -> change.put(type, BigDecimal.valueOf(10)));
+            portfolioManager.applyMonthlyChange(Month.JULY, change);
+            Map<FundType, BigDecimal> july = portfolioManager.calculateBalance(Month.JULY).get();
+            assertTrue(BigDecimal.valueOf(10120).compareTo(july.get(FundType.EQUITY)) == 0);
+            assertTrue(BigDecimal.valueOf(5335).compareTo(july.get(FundType.DEBT)) == 0);
+            assertTrue(BigDecimal.valueOf(2145).compareTo(july.get(FundType.GOLD)) == 0);
+            assertTrue(BigDecimal.valueOf(10620).compareTo(equity.getCurrent()) == 0); // september sip
+        }
+
         @Test
         @ValueSource
         public void verify_rebalanceInDecember() {
@@ -337,7 +418,7 @@ public class PortfolioManagerTest {
         }
 
         @ParameterizedTest
-        @EnumSource(FundType.class)
+        @MethodSource("com.example.geektrust.portfolio.PortfolioManagerTest#fundTypes")
         public void verify_balanceJustAfterAllocation(FundType type) {
             Optional<Map<FundType, BigDecimal>> actual = portfolioManager.calculateBalance(Month.JANUARY);
             assertTrue(actual.isPresent());
@@ -345,7 +426,7 @@ public class PortfolioManagerTest {
         }
 
         @ParameterizedTest
-        @EnumSource(FundType.class)
+        @MethodSource("com.example.geektrust.portfolio.PortfolioManagerTest#fundTypes")
         public void verify_balanaceAfterFewTransactions(FundType type) {
             // same chance for all funds (10.0)
             Map<FundType, BigDecimal> change = new HashMap<>();
@@ -0,0 +1,150 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.geektrust.portfolio.Fund.TransactionRecord;
+
+@DisplayName("Portfolio snapshot test suit")
+public class PortfolioSnapshotTest {
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() {
+        file = directory.resolve("portfolios.snapshot");
+    }
+
+    @Test
+    public void verify_restoreFundsSipAndHistory() throws IOException {
+        Map<String, PortfolioManager> portfolios = new LinkedHashMap<>();
+        portfolios.put("alice", newPortfolio(30));
+        portfolios.put("bob", newPortfolio(7));
+        portfolios.put("\u00e9milie", newPortfolio(0));
+        portfolios.put("new", newPortfolio());
+
+        PortfolioSnapshot.write(file, portfolios);
+        Map<String, PortfolioManager> restored = PortfolioSnapshot.restore(file);
+
+        assertEquals(Arrays.asList("alice", "bob", "\u00e9milie", "new"), Arrays.asList(restored.keySet().toArray()));
+        portfolios.forEach((id, portfolio) -> {
+            assertEquals(describe(portfolio), describe(restored.get(id)));
+            assertEquals(portfolio.getSip().keySet(), restored.get(id).getSip().keySet());
+            portfolio.getSip().forEach((type, sip) -> assertEquals(0, sip.compareTo(restored.get(id).getSip().get(type))));
+        });
+        assertFalse(Files.exists(directory.resolve("portfolios.snapshot.tmp")));
+    }
+
+    @Test
+    public void verify_restoredPortfolioContinuesAsTheOriginal() throws IOException {
+        PortfolioManager portfolio = newPortfolio(11);
+        PortfolioSnapshot.write(file, Map.of("alice", portfolio));
+        PortfolioManager restored = PortfolioSnapshot.restore(file).get("alice");
+
+        for (PortfolioManager updated : Arrays.asList(portfolio, restored)) {
+            updated.applyMonthlyChange(Month.DECEMBER, change("2.50"));
+            updated.rebalance();
+            updated.applyMonthlyChange(Month.JANUARY, change("-1.00"));
+        }
+        assertEquals(describe(portfolio), describe(restored));
+        assertEquals(portfolio.calculateBalance(Month.DECEMBER), restored.calculateBalance(Month.DECEMBER));
+    }
+
+    @Test
+    public void verify_snapshotOfRestoredPortfolios() throws IOException {
+        Map<String, PortfolioManager> portfolios = Map.of("alice", newPortfolio(5), "bob", newPortfolio(9));
+        PortfolioSnapshot.write(file, portfolios);
+
+        // histories are copied from the previous snapshot without being read
+        Path again = directory.resolve("again.snapshot");
+        PortfolioSnapshot.write(again, PortfolioSnapshot.restore(file));
+
+        Map<String, PortfolioManager> restored = PortfolioSnapshot.restore(again);
+        portfolios.forEach((id, portfolio) -> assertEquals(describe(portfolio), describe(restored.get(id))));
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(again));
+    }
+
+    @Test
+    public void verify_rejectNonSnapshotFile() throws IOException {
+        Files.write(file, "ALLOCATE 6000 3000 1000\n".getBytes());
+        assertThrows(IOException.class, () -> PortfolioSnapshot.restore(file));
+    }
+
+    @Test
+    public void verify_rejectTruncatedSnapshot() throws IOException {
+        PortfolioSnapshot.write(file, Map.of("alice", newPortfolio(12)));
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 100));
+
+        assertThrows(IOException.class, () -> PortfolioSnapshot.restore(file));
+    }
+
+    private PortfolioManager newPortfolio() {
+        return new PortfolioManager(Arrays.asList(FundType.values()));
+    }
+
+    private PortfolioManager newPortfolio(int months) {
+        PortfolioManager portfolio = newPortfolio();
+        portfolio.allocate(FundType.EQUITY, BigDecimal.valueOf(6000));
+        portfolio.allocate(FundType.DEBT, BigDecimal.valueOf(3000));
+        portfolio.allocate(FundType.GOLD, BigDecimal.valueOf(1000));
+        portfolio.setSip(sip());
+        for (int month = 0; month < months; month++) {
+            Month calendarMonth = Month.values()[month % 12];
+            portfolio.applyMonthlyChange(calendarMonth, change(month % 3 == 0 ? "-3.25" : "4.10"));
+            if (PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(calendarMonth))
+                portfolio.rebalance();
+        }
+        return portfolio;
+    }
+
+    private Map<FundType, BigDecimal> sip() {
+        Map<FundType, BigDecimal> sip = new FundTypeMap<>();
+        sip.put(FundType.EQUITY, BigDecimal.valueOf(2000));
+        sip.put(FundType.DEBT, BigDecimal.valueOf(1000));
+        sip.put(FundType.GOLD, new BigDecimal("500.5"));
+        return sip;
+    }
+
+    private Map<FundType, BigDecimal> change(String percentage) {
+        Map<FundType, BigDecimal> change = new FundTypeMap<>();
+        for (FundType type : FundType.values())
+            change.put(type, new BigDecimal(percentage));
+        return change;
+    }
+
+    private String describe(PortfolioManager portfolio) {
+        StringBuilder description = new StringBuilder();
+        for (FundType type : FundType.values()) {
+            Fund fund = portfolio.fundOf(type);
+            description.append(type).append(' ').append(fund.getInitial()).append(' ')
+                    .append(fund.getCurrentValue()).append('\n');
+            for (Map.Entry<YearMonth, List<TransactionRecord>> month : fund.getTransactionHistory().entrySet()) {
+                for (TransactionRecord record : month.getValue())
+                    description.append(month.getKey()).append(' ').append(record.getEvent()).append(' ')
+                            .append(record.getAmount()).append(' ').append(record.getBalance()).append('\n');
+            }
+        }
+        return description.toString();
+    }
+}
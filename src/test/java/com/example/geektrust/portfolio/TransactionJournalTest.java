@@ -0,0 +1,236 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.example.geektrust.portfolio.Fund.TransactionRecord;
+
+@DisplayName("Transaction journal test suit")
+public class TransactionJournalTest {
+    @TempDir
+    Path directory;
+
+    private Path file;
+
+    @BeforeEach
+    public void setUp() {
+        file = directory.resolve("portfolio.journal");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 5, 1000 })
+    public void verify_recoverAllUpdates(int groupSize) throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, groupSize)) {
+            assertEquals(0, journal.getRecoveredUpdates());
+            applyUpdates(portfolio, 24);
+        }
+
+        PortfolioManager recovered = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, recovered, groupSize)) {
+            // 3 allocations, the SIP, 24 changes and 4 rebalances
+            assertEquals(32, journal.getRecoveredUpdates());
+        }
+        assertEquals(describe(portfolio), describe(recovered));
+        assertEquals(portfolio.getSip().keySet(), recovered.getSip().keySet());
+        portfolio.getSip().forEach((type, sip) -> assertEquals(0, sip.compareTo(recovered.getSip().get(type))));
+    }
+
+    @Test
+    public void verify_continueJournalAfterRecovery() throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, 1)) {
+            assertEquals(0, journal.getRecoveredUpdates());
+            applyUpdates(portfolio, 6);
+        }
+        PortfolioManager recovered = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, recovered, 1)) {
+            assertEquals(3 + 1 + 6 + 1, journal.getRecoveredUpdates());
+            recovered.applyMonthlyChange(Month.JULY, change("1.00"));
+        }
+        portfolio.applyMonthlyChange(Month.JULY, change("1.00"));
+
+        PortfolioManager again = newPortfolio();
+        TransactionJournal.open(file, again, 1).close();
+        assertEquals(describe(portfolio), describe(again));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 7, TransactionJournal.RECORD_SIZE - 1 })
+    public void verify_tornTailRecordDropsIncompleteUpdate(int tornBytes) throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, 1)) {
+            assertEquals(0, journal.getRecoveredUpdates());
+            applyUpdates(portfolio, 3);
+        }
+        PortfolioManager expected = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, expected, 1)) {
+            assertEquals(3 + 1 + 3, journal.getRecoveredUpdates());
+            // the last update is torn by the crash
+            expected.applyMonthlyChange(Month.APRIL, change("2.00"));
+        }
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - tornBytes);
+        }
+
+        PortfolioManager recovered = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, recovered, 1)) {
+            assertEquals(3 + 1 + 3, journal.getRecoveredUpdates());
+        }
+        assertEquals(describe(portfolio), describe(recovered));
+        assertEquals(0, (Files.size(file) - TransactionJournal.HEADER_SIZE) % TransactionJournal.RECORD_SIZE);
+    }
+
+    @Test
+    public void verify_corruptedRecordStopsRecovery() throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, 1)) {
+            assertEquals(0, journal.getRecoveredUpdates());
+            applyUpdates(portfolio, 2);
+        }
+        long size = Files.size(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) size - 20] ^= 0x10; // amount of the last record
+        Files.write(file, bytes);
+
+        PortfolioManager recovered = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, recovered, 1)) {
+            assertEquals(3 + 1 + 1, journal.getRecoveredUpdates());
+        }
+    }
+
+    @Test
+    public void verify_groupCommitWritesCompleteGroups() throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, 4)) {
+            assertEquals(0, journal.getRecoveredUpdates());
+            portfolio.allocate(FundType.EQUITY, BigDecimal.valueOf(6000));
+            portfolio.allocate(FundType.DEBT, BigDecimal.valueOf(3000));
+            portfolio.allocate(FundType.GOLD, BigDecimal.valueOf(1000));
+            assertEquals(TransactionJournal.HEADER_SIZE, Files.size(file));
+
+            portfolio.setSip(sip());
+            // 3 allocations and 3 SIP records, each update ends with a position record
+            assertEquals(TransactionJournal.HEADER_SIZE + 10 * TransactionJournal.RECORD_SIZE, Files.size(file));
+        }
+    }
+
+    @Test
+    public void verify_recoverInputPositionOfLastCommit() throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, 1)) {
+            assertEquals(0, journal.getRecoveredInputPosition());
+            journal.setInputPosition(1);
+            portfolio.allocate(allocations());
+            journal.setInputPosition(2);
+            portfolio.setSip(sip());
+            journal.setInputPosition(3);
+            portfolio.calculateBalance(Month.JANUARY); // not an update
+        }
+
+        PortfolioManager recovered = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, recovered, 1)) {
+            assertEquals(2, journal.getRecoveredUpdates());
+            assertEquals(2, journal.getRecoveredInputPosition());
+        }
+        assertEquals(describe(portfolio), describe(recovered));
+    }
+
+    @Test
+    public void verify_allocationCommittedAsOneUpdate() throws IOException {
+        PortfolioManager portfolio = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, portfolio, 1)) {
+            assertEquals(0, journal.getRecoveredUpdates());
+            portfolio.allocate(allocations());
+        }
+        // the allocation of every fund, then the position record
+        assertEquals(TransactionJournal.HEADER_SIZE + 4 * TransactionJournal.RECORD_SIZE, Files.size(file));
+
+        PortfolioManager recovered = newPortfolio();
+        try (TransactionJournal journal = TransactionJournal.open(file, recovered, 1)) {
+            assertEquals(1, journal.getRecoveredUpdates());
+        }
+        assertEquals(describe(portfolio), describe(recovered));
+    }
+
+    @Test
+    public void verify_rejectNonJournalFile() throws IOException {
+        Files.write(file, "ALLOCATE 6000 3000 1000\n".getBytes());
+        assertThrows(IOException.class, () -> TransactionJournal.open(file, newPortfolio(), 1));
+    }
+
+    private PortfolioManager newPortfolio() {
+        return new PortfolioManager(Arrays.asList(FundType.values()));
+    }
+
+    private void applyUpdates(PortfolioManager portfolio, int months) {
+        portfolio.allocate(FundType.EQUITY, BigDecimal.valueOf(6000));
+        portfolio.allocate(FundType.DEBT, BigDecimal.valueOf(3000));
+        portfolio.allocate(FundType.GOLD, BigDecimal.valueOf(1000));
+        portfolio.setSip(sip());
+        for (int month = 0; month < months; month++) {
+            Month calendarMonth = Month.values()[month % 12];
+            portfolio.applyMonthlyChange(calendarMonth, change(month % 3 == 0 ? "-3.25" : "4.10"));
+            if (PortfolioManager.MONTHS_COMPULSORY_REBALANCE.contains(calendarMonth))
+                portfolio.rebalance();
+            portfolio.calculateBalance(calendarMonth); // not an update
+        }
+    }
+
+    private Map<FundType, BigDecimal> allocations() {
+        Map<FundType, BigDecimal> allocations = new FundTypeMap<>();
+        allocations.put(FundType.EQUITY, BigDecimal.valueOf(6000));
+        allocations.put(FundType.DEBT, BigDecimal.valueOf(3000));
+        allocations.put(FundType.GOLD, BigDecimal.valueOf(1000));
+        return allocations;
+    }
+
+    private Map<FundType, BigDecimal> sip() {
+        Map<FundType, BigDecimal> sip = new FundTypeMap<>();
+        sip.put(FundType.EQUITY, BigDecimal.valueOf(2000));
+        sip.put(FundType.DEBT, BigDecimal.valueOf(1000));
+        sip.put(FundType.GOLD, new BigDecimal("500.5"));
+        return sip;
+    }
+
+    private Map<FundType, BigDecimal> change(String percentage) {
+        Map<FundType, BigDecimal> change = new FundTypeMap<>();
+        for (FundType type : FundType.values())
+            change.put(type, new BigDecimal(percentage));
+        return change;
+    }
+
+    private String describe(PortfolioManager portfolio) {
+        StringBuilder description = new StringBuilder();
+        for (FundType type : FundType.values()) {
+            Fund fund = portfolio.fundOf(type);
+            description.append(type).append(' ').append(fund.getCurrentValue()).append('\n');
+            for (Map.Entry<YearMonth, List<TransactionRecord>> month : fund.getTransactionHistory().entrySet()) {
+                for (TransactionRecord record : month.getValue())
+                    description.append(month.getKey()).append(' ').append(record.getEvent()).append(' ')
+                            .append(record.getAmount()).append(' ').append(record.getBalance()).append('\n');
+            }
+        }
+        return description.toString();
+    }
+}
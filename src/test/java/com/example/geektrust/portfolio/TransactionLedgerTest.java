@@ -0,0 +1,268 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.time.Month;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class TransactionLedgerTest {
+    private TransactionLedger ledger;
+    private int jan = TransactionLedger.monthIndex(YearMonth.of(2020, Month.JANUARY));
+    private int feb = jan + 1;
+    private int apr = jan + 3;
+
+    @BeforeEach
+    public void setUp() {
+        ledger = new TransactionLedger();
+        ledger.append(jan, TransactionEvent.ALLOCATE, 100, 100);
+        ledger.append(jan, TransactionEvent.MONTHLY_CHANGE, 10, 110);
+        ledger.append(feb, TransactionEvent.MONTHLY_SIP, 50, 160);
+        // no records for march
+        ledger.append(apr, TransactionEvent.MONTHLY_SIP, 50, 210);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1999, 2020, 2021 })
+    public void verify_monthIndexRoundTrip(int year) {
+        for (Month month : Month.values()) {
+            YearMonth yearMonth = YearMonth.of(year, month);
+            assertEquals(yearMonth, TransactionLedger.toYearMonth(TransactionLedger.monthIndex(yearMonth)));
+            assertEquals(month, TransactionLedger.calendarMonthOf(TransactionLedger.monthIndex(yearMonth)));
+        }
+    }
+
+    @Test
+    public void verify_monthOffsets() {
+        assertEquals(4, ledger.size());
+        assertEquals(0, ledger.monthStart(jan));
+        assertEquals(2, ledger.monthEnd(jan));
+        assertEquals(2, ledger.monthStart(feb));
+        assertEquals(3, ledger.monthEnd(feb));
+        // empty march range
+        assertEquals(ledger.monthStart(feb + 1), ledger.monthEnd(feb + 1));
+        assertEquals(3, ledger.monthStart(apr));
+        assertEquals(4, ledger.monthEnd(apr));
+    }
+
+    @Test
+    public void verify_lastIndexOfCalendarMonthAndEvent() {
+        assertEquals(1, ledger.lastIndexOf(Month.JANUARY));
+        assertEquals(3, ledger.lastIndexOf(Month.APRIL));
+        assertEquals(TransactionLedger.NO_RECORD, ledger.lastIndexOf(Month.MARCH));
+        assertEquals(3, ledger.lastIndexOf(TransactionEvent.MONTHLY_SIP));
+        assertEquals(1, ledger.lastIndexOf(TransactionEvent.MONTHLY_CHANGE));
+        assertEquals(TransactionLedger.NO_RECORD, ledger.lastIndexOf(TransactionEvent.REBALANCE));
+    }
+
+    @Test
+    public void verify_lastIndexAtOrBeforeMonth() {
+        assertEquals(TransactionLedger.NO_RECORD, ledger.lastIndexAtOrBefore(jan - 1));
+        assertEquals(1, ledger.lastIndexAtOrBefore(jan));
+        assertEquals(2, ledger.lastIndexAtOrBefore(feb));
+        assertEquals(2, ledger.lastIndexAtOrBefore(feb + 1)); // carried over march
+        assertEquals(3, ledger.lastIndexAtOrBefore(apr));
+        assertEquals(3, ledger.lastIndexAtOrBefore(apr + 24));
+
+        TransactionLedger fork = ledger.fork();
+        fork.append(apr + 2, TransactionEvent.MONTHLY_SIP, 50, 260);
+        assertEquals(2, fork.lastIndexAtOrBefore(feb + 1));
+        assertEquals(3, fork.lastIndexAtOrBefore(apr + 1));
+        assertEquals(4, fork.lastIndexAtOrBefore(apr + 2));
+    }
+
+    @Test
+    public void verify_insertRecordOfEarlierMonth() {
+        ledger.append(feb, TransactionEvent.REBALANCE, 1, 211);
+
+        assertEquals(5, ledger.size());
+        assertEquals(3, ledger.lastIndexOf(TransactionEvent.REBALANCE));
+        assertEquals(3, ledger.lastIndexOf(Month.FEBRUARY));
+        assertEquals(211, ledger.balanceOf(ledger.lastIndexOf(Month.FEBRUARY)));
+        assertEquals(4, ledger.lastIndexOf(TransactionEvent.MONTHLY_SIP));
+        assertEquals(2, ledger.monthStart(feb));
+        assertEquals(4, ledger.monthEnd(feb));
+        assertEquals(4, ledger.monthStart(apr));
+        assertEquals(apr, ledger.lastMonth());
+
+        // appended in month order again
+        ledger.append(apr, TransactionEvent.MONTHLY_CHANGE, 1, 212);
+        assertEquals(5, ledger.lastIndexOf(TransactionEvent.MONTHLY_CHANGE));
+        assertEquals(212, ledger.balanceOf(ledger.lastIndex()));
+    }
+
+    @Test
+    public void verify_insertIntoForkKeepsSharedRecords() {
+        TransactionLedger fork = ledger.fork();
+        fork.append(jan, TransactionEvent.REBALANCE, -10, 200);
+
+        assertEquals(5, fork.size());
+        assertEquals(TransactionEvent.REBALANCE, fork.eventOf(2));
+        assertEquals(TransactionEvent.MONTHLY_SIP, fork.eventOf(3));
+        assertEquals(4, ledger.size());
+        assertEquals(TransactionEvent.MONTHLY_SIP, ledger.eventOf(2));
+        assertEquals(TransactionLedger.NO_RECORD, ledger.lastIndexOf(TransactionEvent.REBALANCE));
+    }
+
+    @Test
+    public void verify_growsOverDecadesOfMonths() {
+        int months = 100 * 12;
+        long balance = 210;
+        for (int month = apr + 1; month < apr + months; month++) {
+            balance += 2;
+            ledger.append(month, TransactionEvent.MONTHLY_CHANGE, 1, balance - 1);
+            ledger.append(month, TransactionEvent.MONTHLY_SIP, 1, balance);
+        }
+
+        assertEquals(4 + 2 * (months - 1), ledger.size());
+        assertEquals(balance, ledger.balanceOf(ledger.lastIndexOf(TransactionLedger.calendarMonthOf(ledger.lastMonth()))));
+        assertEquals(TransactionEvent.MONTHLY_CHANGE, ledger.eventOf(ledger.lastIndexOf(TransactionEvent.MONTHLY_CHANGE)));
+        assertEquals(100, ledger.amountOf(0));
+    }
+
+    @Test
+    public void verify_forkDivergesFromSharedRecords() {
+        TransactionLedger fork = ledger.fork();
+        // both append to the shared last month and beyond
+        ledger.append(apr, TransactionEvent.MONTHLY_CHANGE, 5, 215);
+        fork.append(apr, TransactionEvent.REBALANCE, -10, 200);
+        fork.append(apr + 2, TransactionEvent.MONTHLY_SIP, 50, 250);
+
+        assertEquals(5, ledger.size());
+        assertEquals(215, ledger.balanceOf(4));
+        assertEquals(TransactionLedger.NO_RECORD, ledger.lastIndexOf(TransactionEvent.REBALANCE));
+        assertEquals(apr, ledger.lastMonth());
+
+        assertEquals(6, fork.size());
+        assertEquals(100, fork.amountOf(0));
+        assertEquals(TransactionEvent.REBALANCE, fork.eventOf(4));
+        assertEquals(4, fork.lastIndexOf(TransactionEvent.REBALANCE));
+        assertEquals(5, fork.lastIndexOf(TransactionEvent.MONTHLY_SIP));
+        assertEquals(1, fork.lastIndexOf(Month.JANUARY));
+        assertEquals(jan, fork.firstMonth());
+        assertEquals(apr + 2, fork.lastMonth());
+        assertEquals(0, fork.monthStart(jan));
+        assertEquals(2, fork.monthEnd(jan));
+        assertEquals(3, fork.monthStart(apr));
+        assertEquals(5, fork.monthEnd(apr));
+        assertEquals(5, fork.monthStart(apr + 1));
+        assertEquals(5, fork.monthEnd(apr + 1));
+        assertEquals(6, fork.monthEnd(apr + 2));
+    }
+
+    @Test
+    public void verify_forkOfFork() {
+        TransactionLedger fork = ledger.fork();
+        fork.append(apr + 1, TransactionEvent.MONTHLY_CHANGE, 10, 220);
+        TransactionLedger second = fork.fork();
+        second.append(apr + 1, TransactionEvent.MONTHLY_SIP, 50, 270);
+        TransactionLedger third = second.fork();
+
+        assertEquals(5, fork.size());
+        assertEquals(6, third.size());
+        assertEquals(270, third.balanceOf(5));
+        assertEquals(220, third.balanceOf(4));
+        assertEquals(110, third.balanceOf(1));
+        assertEquals(4, third.monthStart(apr + 1));
+        assertEquals(6, third.monthEnd(apr + 1));
+        assertEquals(TransactionLedger.columnsSize(6), write(third).length);
+    }
+
+    @Test
+    public void verify_forkWritesAllColumns() {
+        TransactionLedger fork = ledger.fork();
+        TransactionLedger copy = new TransactionLedger();
+        for (int index = 0; index < ledger.size(); index++)
+            copy.append(ledger.monthOf(index), ledger.eventOf(index), ledger.amountOf(index), ledger.balanceOf(index));
+        fork.append(apr + 1, TransactionEvent.MONTHLY_CHANGE, 10, 220);
+        copy.append(apr + 1, TransactionEvent.MONTHLY_CHANGE, 10, 220);
+
+        assertArrayEquals(write(copy), write(fork));
+    }
+
+    @Test
+    public void verify_compactFoldsMonthsBeforeHorizon() {
+        long balance = 210;
+        for (int month = apr + 1; month <= apr + 24; month++) {
+            ledger.append(month, TransactionEvent.MONTHLY_SIP, 50, balance += 50);
+            ledger.append(month, TransactionEvent.MONTHLY_CHANGE, 5, balance += 5);
+            if (TransactionLedger.calendarMonthOf(month) == Month.JUNE)
+                ledger.append(month, TransactionEvent.REBALANCE, -3, balance -= 3);
+        }
+        TransactionLedger copy = copyOf(ledger);
+        int lastMonth = ledger.lastMonth();
+
+        // two rebalanced junes, january with the allocation and single record months are kept
+        int folded = 0;
+        for (int month = apr + 1; month < lastMonth - 2; month++)
+            folded += TransactionLedger.calendarMonthOf(month) == Month.JUNE ? 0 : 1;
+        assertEquals(folded, ledger.compact(lastMonth - 2));
+        assertEquals(copy.size() - folded, ledger.size());
+        assertEquals(0, ledger.compact(lastMonth - 2));
+
+        int summary = ledger.monthStart(apr + 1);
+        assertEquals(summary + 1, ledger.monthEnd(apr + 1));
+        assertEquals(TransactionEvent.MONTHLY_SUMMARY, ledger.eventOf(summary));
+        assertEquals(5, ledger.amountOf(summary));
+        assertEquals(265, ledger.balanceOf(summary));
+        assertEquals(2, ledger.monthEnd(jan));
+        assertEquals(2, ledger.monthEnd(lastMonth - 2) - ledger.monthStart(lastMonth - 2));
+
+        for (int month = jan - 1; month <= lastMonth + 1; month++) {
+            int index = ledger.lastIndexAtOrBefore(month);
+            int expected = copy.lastIndexAtOrBefore(month);
+            assertEquals(expected == TransactionLedger.NO_RECORD, index == TransactionLedger.NO_RECORD);
+            if (index != TransactionLedger.NO_RECORD)
+                assertEquals(copy.balanceOf(expected), ledger.balanceOf(index));
+        }
+        for (Month month : Month.values())
+            assertEquals(copy.balanceOf(copy.lastIndexOf(month)), ledger.balanceOf(ledger.lastIndexOf(month)));
+        for (TransactionEvent event : Arrays.asList(TransactionEvent.ALLOCATE, TransactionEvent.MONTHLY_SIP,
+                TransactionEvent.MONTHLY_CHANGE, TransactionEvent.REBALANCE)) {
+            int index = ledger.lastIndexOf(event);
+            assertEquals(event, ledger.eventOf(index));
+            assertEquals(copy.monthOf(copy.lastIndexOf(event)), ledger.monthOf(index));
+            assertEquals(copy.amountOf(copy.lastIndexOf(event)), ledger.amountOf(index));
+            assertEquals(copy.balanceOf(copy.lastIndexOf(event)), ledger.balanceOf(index));
+        }
+
+        // appended to as before
+        ledger.append(lastMonth, TransactionEvent.MONTHLY_CHANGE, 1, balance + 1);
+        assertEquals(balance + 1, ledger.balanceOf(ledger.lastIndex()));
+    }
+
+    @Test
+    public void verify_compactForkKeepsSharedRecords() {
+        for (int month = apr + 1; month <= apr + 12; month++) {
+            ledger.append(month, TransactionEvent.MONTHLY_SIP, 50, 210 + 100 * (month - apr) - 50);
+            ledger.append(month, TransactionEvent.MONTHLY_CHANGE, 50, 210 + 100 * (month - apr));
+        }
+        TransactionLedger fork = ledger.fork();
+        TransactionLedger copy = copyOf(fork);
+
+        assertEquals(11, ledger.compact(ledger.lastMonth()));
+        assertArrayEquals(write(copy), write(fork));
+        assertEquals(fork.balanceOf(fork.lastIndex()), ledger.balanceOf(ledger.lastIndex()));
+    }
+
+    private static TransactionLedger copyOf(TransactionLedger ledger) {
+        TransactionLedger copy = new TransactionLedger();
+        for (int index = 0; index < ledger.size(); index++)
+            copy.append(ledger.monthOf(index), ledger.eventOf(index), ledger.amountOf(index), ledger.balanceOf(index));
+        return copy;
+    }
+
+    private static byte[] write(TransactionLedger ledger) {
+        ByteBuffer buffer = ByteBuffer.allocate(TransactionLedger.columnsSize(ledger.size()));
+        ledger.writeColumns(buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+        return buffer.array();
+    }
+}
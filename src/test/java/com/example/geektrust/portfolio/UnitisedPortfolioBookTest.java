@@ -0,0 +1,175 @@
+package com.example.geektrust.portfolio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.example.geektrust.command.CommandBinding;
+
+@DisplayName("Unitised portfolio book test suit")
+public class UnitisedPortfolioBookTest {
+    private static final double[][] CHANGES = {
+            { 4, 10, 2 }, { -10, 40, 0 }, { 12.5, 12.5, 12.5 }, { 8, -3, 7 }, { 13, 21, 10.5 }, { 10, 8, -5 },
+            { 2, 3, -1 }, { -4, 1, 6 }, { 5, 5, 5 }, { 1, -2, 3 }, { 7, 0, -3 }, { -6, 4, 2 } };
+
+    private UnitisedPortfolioBook book;
+    private PortfolioManager portfolio;
+
+    @BeforeEach
+    public void setUp() {
+        book = new UnitisedPortfolioBook();
+        portfolio = new PortfolioManager(Arrays.asList(FundType.values()));
+        execute("ALLOCATE 6000 3000 1000");
+        execute("SIP 2000 1000 500");
+    }
+
+    @Test
+    public void verify_changesFollowPortfolioManager() {
+        int index = book.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+
+        for (int month = 0; month < CHANGES.length; month++) {
+            assertTrue(book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]));
+            execute("CHANGE " + percentages(CHANGES[month]) + " " + Month.of(month + 1));
+            if (book.isPendingForRebalance(index) && month < 6) {
+                // June is rebalanced, December is not and the next January SIP is lost
+                assertTrue(book.rebalance(index));
+                execute("REBALANCE");
+            }
+            assertBalancesEqual(index);
+        }
+        assertTrue(book.isPendingForRebalance(index));
+        assertTrue(book.applyMonthlyChange(Month.JANUARY, CHANGES[0]));
+        execute("CHANGE " + percentages(CHANGES[0]) + " JANUARY");
+
+        assertBalancesEqual(index);
+        for (Month month : Month.values())
+            assertMonthBalancesEqual(index, month);
+    }
+
+    @Test
+    public void verify_sipChangeFollowsPortfolioManager() {
+        int index = book.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+
+        for (int month = 0; month < 8; month++) {
+            book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]);
+            execute("CHANGE " + percentages(CHANGES[month]) + " " + Month.of(month + 1));
+            if (month == 2 || month == 5) {
+                // in an open month and before a rebalance
+                book.setSip(index, new double[] { 100 * month, 50, 0 });
+                execute("SIP " + 100 * month + " 50 0");
+            }
+            if (month == 5) {
+                book.rebalance(index);
+                execute("REBALANCE");
+            }
+            assertBalancesEqual(index);
+        }
+        for (Month month : Month.values())
+            assertMonthBalancesEqual(index, month);
+    }
+
+    @Test
+    public void verify_portfoliosJoinAtTheCurrentValues() {
+        for (int month = 0; month < 3; month++)
+            book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]);
+        int late = book.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+        assertEquals(Optional.empty(), book.wholeBalancesOf(late, Month.MARCH));
+
+        // a book starting in April with the same changes
+        UnitisedPortfolioBook fromApril = new UnitisedPortfolioBook();
+        int index = fromApril.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+        for (int month = 3; month < 8; month++) {
+            book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]);
+            fromApril.applyMonthlyChange(Month.of(month + 1), CHANGES[month]);
+            if (month == 5) {
+                assertEquals(1, book.rebalance());
+                assertEquals(1, fromApril.rebalance());
+            }
+        }
+        for (FundType type : FundType.values())
+            assertEquals(fromApril.balanceOf(index, type), book.balanceOf(late, type), 1e-6);
+        assertEquals(Optional.empty(), book.wholeBalancesOf(late, Month.MARCH));
+        assertArrayEquals(fromApril.wholeBalancesOf(index, Month.MAY).get(),
+                book.wholeBalancesOf(late, Month.MAY).get());
+    }
+
+    @Test
+    public void verify_changeOnlyMovesTheValues() {
+        for (int i = 1; i <= 100; i++)
+            book.add(new double[] { 6000 * i, 3000 * i, 1000 * i }, new double[] { 2000 * i, 1000 * i, 500 * i });
+
+        for (int month = 0; month < 6; month++)
+            book.applyMonthlyChange(Month.of(month + 1), CHANGES[month]);
+        assertEquals(100, book.rebalance());
+        assertEquals(0, book.rebalance());
+
+        assertEquals(1.04 * 0.9 * 1.125 * 1.08 * 1.13 * 1.1, book.navOf(FundType.EQUITY), 1e-12);
+        for (int i = 0; i < 100; i++)
+            for (FundType type : FundType.values())
+                assertEquals(book.balanceOf(0, type) * (i + 1), book.balanceOf(i, type), 1e-6 * (i + 1));
+    }
+
+    @Test
+    public void verify_skipMonthOutOfOrder() {
+        int index = book.add(new double[] { 6000, 3000, 1000 }, new double[] { 2000, 1000, 500 });
+        assertTrue(book.applyMonthlyChange(Month.DECEMBER, CHANGES[0]));
+        assertFalse(book.applyMonthlyChange(Month.FEBRUARY, CHANGES[1]));
+        assertFalse(book.applyMonthlyChange(Month.DECEMBER, CHANGES[1]));
+        assertTrue(book.isPendingForRebalance(index));
+        assertTrue(book.applyMonthlyChange(Month.JANUARY, CHANGES[1]));
+        assertFalse(book.isPendingForRebalance(index));
+        assertFalse(book.rebalance(index));
+    }
+
+    @Test
+    public void verify_rejectInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> book.add(new double[3], new double[3]));
+        assertThrows(IllegalArgumentException.class, () -> book.add(new double[] { 1, 1 }, new double[3]));
+        assertThrows(IllegalArgumentException.class,
+                () -> book.applyMonthlyChange(Month.JANUARY, new double[] { -100, 0, 0 }));
+        assertThrows(IndexOutOfBoundsException.class, () -> book.balanceOf(0, FundType.EQUITY));
+        assertEquals(0, book.size());
+    }
+
+    private void assertBalancesEqual(int index) {
+        for (FundType type : FundType.values()) {
+            BigDecimal expected = Money.toBigDecimal(portfolio.fundOf(type).getCurrentValue());
+            // the ledger rounds every transaction to the money scale
+            assertEquals(expected.doubleValue(), book.balanceOf(index, type), 10d / Money.ONE, type.name());
+        }
+    }
+
+    private void assertMonthBalancesEqual(int index, Month month) {
+        Optional<Map<FundType, BigDecimal>> expected = portfolio.calculateBalance(month);
+        Optional<long[]> actual = book.wholeBalancesOf(index, month);
+        assertEquals(expected.isPresent(), actual.isPresent(), month.name());
+        if (!expected.isPresent())
+            return;
+
+        for (FundType type : FundType.values())
+            assertEquals(expected.get().get(type).longValue(), actual.get()[type.ordinal()], month + " " + type);
+    }
+
+    private static String percentages(double[] changes) {
+        StringBuilder builder = new StringBuilder();
+        for (double change : changes)
+            builder.append(BigDecimal.valueOf(change).setScale(2)).append("% ");
+        return builder.toString().trim();
+    }
+
+    private void execute(String command) {
+        CommandBinding.toExecutable(command).ifPresent(executable -> executable.execute(portfolio, Optional.empty()));
+    }
+}